@@ -0,0 +1,161 @@
+package financeproject2;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Controls the step size of another stepper by step doubling. Every step is taken once whole and once as two
+ * halves; when the two results differ by more than the tolerance the step is split and each half is controlled
+ * the same way. The Brownian increments of the halves are drawn from the Brownian bridge between the ends of the
+ * step, so the refined path follows the same Brownian motion as the coarse one and the result stays a sample of
+ * the same path. Where the prices move calmly whole steps are accepted, and the work goes where they move fast.
+ *
+ * The two halves are always kept, so an accepted step is as accurate as two half steps.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class AdaptiveStepper implements SDEStepper
+{
+	//Smallest price the differences are taken relative to
+	private static final double PRICE_FLOOR = 1e-8;
+
+	SDEStepper baseStepper;
+
+	double tolerance;
+
+	int maximumDepth;
+
+	RandomGenerator bridgeSampler;
+
+	double[] growthRates;
+
+	long numberOfSubsteps;
+
+	//Buffers indexed by [depth][stock or noise dimension]
+	double[][] coarsePrices;
+	double[][] middlePrices;
+	double[][] firstHalfIncrements;
+	double[][] secondHalfIncrements;
+
+	/**
+	 * Sets up the stepper
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param baseStepper-Stepper used for every step and substep
+	 * @param tolerance-Largest accepted relative difference between one step and two half steps
+	 * @param maximumDepth-Most times a step is halved
+	 * @param bridgeSampler-Source of the Brownian bridge samples, one stream per path
+	 */
+	public AdaptiveStepper(SDESystem SDESystemForStocks, SDEStepper baseStepper, double tolerance, int maximumDepth,
+			RandomGenerator bridgeSampler)
+	{
+		this.baseStepper = baseStepper;
+		this.tolerance = tolerance;
+		this.maximumDepth = maximumDepth;
+		this.bridgeSampler = bridgeSampler;
+		this.growthRates = EulerMaruyamaStepper.growthRatesOf(SDESystemForStocks);
+
+		int numberOfStocks = SDESystemForStocks.getNumberOfStocks();
+		int noiseDimension = SDESystemForStocks.getCovolatilityFactor().getNoiseDimension();
+
+		this.coarsePrices = new double[maximumDepth + 1][numberOfStocks];
+		this.middlePrices = new double[maximumDepth + 1][numberOfStocks];
+		this.firstHalfIncrements = new double[maximumDepth + 1][noiseDimension];
+		this.secondHalfIncrements = new double[maximumDepth + 1][noiseDimension];
+	}
+
+	@Override
+	public void step(double[] currentPrices, double[] nextPrices, double timeStep, double[] brownianIncrement)
+	{
+		advance(currentPrices, nextPrices, timeStep, brownianIncrement, 0, false);
+	}
+
+	/**
+	 * Takes a step as two halves, splitting the halves again while they disagree with the whole step. The first
+	 * half of a split starts where its parent started, so its whole step is the first half step the parent already
+	 * took and is handed down in the coarse buffer of the next depth. The second half starts from the refined
+	 * midpoint, so its whole step has to be taken again.
+	 *
+	 * @param startPrices
+	 * @param endPrices
+	 * @param timeStep
+	 * @param brownianIncrement
+	 * @param depth-Number of times the original step has been halved
+	 * @param isCoarseKnown-Whether coarsePrices[depth] already holds the whole step
+	 */
+	private void advance(double[] startPrices, double[] endPrices, double timeStep, double[] brownianIncrement,
+			int depth, boolean isCoarseKnown)
+	{
+		double[] coarse = coarsePrices[depth];
+		double[] middle = middlePrices[depth];
+		double[] firstHalf = firstHalfIncrements[depth];
+		double[] secondHalf = secondHalfIncrements[depth];
+
+		if (!isCoarseKnown)
+		{
+			baseStepper.step(startPrices, coarse, timeStep, brownianIncrement);
+			numberOfSubsteps++;
+		}
+
+		//Given W at both ends, W at the midpoint is their average plus an independent sample of variance dt / 4
+		double bridgeDeviation = Math.sqrt(timeStep / 4);
+		for (int k = 0; k < brownianIncrement.length; k++)
+		{
+			firstHalf[k] = 0.5 * brownianIncrement[k] + bridgeDeviation * bridgeSampler.nextGaussian();
+			secondHalf[k] = brownianIncrement[k] - firstHalf[k];
+		}
+		SimulationMetrics.countGaussianDraws(brownianIncrement.length);
+
+		baseStepper.step(startPrices, middle, timeStep / 2, firstHalf);
+		baseStepper.step(middle, endPrices, timeStep / 2, secondHalf);
+		numberOfSubsteps += 2;
+
+		if (depth == maximumDepth || relativeDifference(coarse, endPrices) <= tolerance)
+		{
+			return;
+		}
+
+		System.arraycopy(middle, 0, coarsePrices[depth + 1], 0, middle.length);
+		advance(startPrices, middle, timeStep / 2, firstHalf, depth + 1, true);
+		advance(middle, endPrices, timeStep / 2, secondHalf, depth + 1, false);
+	}
+
+	/**
+	 * Largest difference between the two results relative to the finer one. Prices below PRICE_FLOOR are
+	 * compared in absolute terms, so a price of zero does not give NaN and refine every step to the maximum depth.
+	 *
+	 * @param coarse
+	 * @param fine
+	 * @return
+	 */
+	private static double relativeDifference(double[] coarse, double[] fine)
+	{
+		double largest = 0.0;
+		for (int i = 0; i < fine.length; i++)
+		{
+			largest = Math.max(largest, Math.abs(fine[i] - coarse[i]) / Math.max(Math.abs(fine[i]), PRICE_FLOOR));
+		}
+
+		return largest;
+	}
+
+	/**
+	 * The expectation of the refined scheme has no closed form; it lies between that of the base scheme and the
+	 * exact exp(a dt), which it approaches as the tolerance shrinks, so the exact value is returned
+	 */
+	@Override
+	public double expectedGrowthFactor(int stock, double timeStep)
+	{
+		return Math.exp(growthRates[stock] * timeStep);
+	}
+
+	/**
+	 * Getter for the number of base steps taken so far, counting the whole steps compared against their halves
+	 *
+	 * @return
+	 */
+	public long getNumberOfSubsteps()
+	{
+		return numberOfSubsteps;
+	}
+}
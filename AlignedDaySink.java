@@ -0,0 +1,30 @@
+package financeproject2;
+
+import java.io.IOException;
+
+/**
+ * Receives the prices of a system of stocks one trading day at a time, in order of date, as they are joined by 
+ * AlignedPriceIngestion. The array handed to a sink is reused for the next day once acceptDay returns, so a sink 
+ * that wants to keep the prices has to copy them. OnlineStockStatistics can be fed directly from an ingestion with
+ * the FORWARD_FILL or DROP policy:
+ *
+ * ingestion.run((date, pricesOnDay) -> statistics.addPrices(pricesOnDay));
+ *
+ * Under MISSING a stock without a price on a day gets NaN, which makes every statistic of that stock NaN. Those 
+ * days are better collected and their returns handed to CovarianceEngine, which uses the days each pair of stocks 
+ * has in common.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface AlignedDaySink 
+{
+	/**
+	 * Takes in the prices of one day
+	 * 
+	 * @param date-The day as the number yyyymmdd
+	 * @param pricesOnDay-Price of each stock on the day, in the order of the files
+	 * @throws IOException
+	 */
+	void acceptDay(int date, double[] pricesOnDay) throws IOException;
+}
@@ -0,0 +1,566 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Joins the csv files of many stocks, one file per stock, into prices aligned by trading date. Stocks list
+ * different days when they start or stop trading at different times or miss a day, and the block format assumes
+ * every stock has the same days; here the days are matched by their date and a GapPolicy decides what happens to
+ * the days some stocks have no price for.
+ *
+ * The files are read in the csv format of StockDataLoader, sorted by date (yyyy-MM-dd) from old to new. The join
+ * is a sorted merge: every file has a cursor on its next row, the cursors are kept in a priority queue by date,
+ * and each day is made from the cursors at the smallest date. Each cursor holds only a buffer of a few kilobytes
+ * and the offset it has read up to, and the file is closed between reads, so thousands of files can be joined
+ * without holding them in memory or running out of file handles.
+ *
+ * A row without a price ("null") is treated as a missing day. When a file lists a date twice the first row is
+ * used. Dates going backwards are an error.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class AlignedPriceIngestion
+{
+	//Bytes read from a file at a time; a longer line grows the buffer of its file
+	private static final int READ_SIZE = 1 << 13;
+
+	Path[] files;
+
+	GapPolicy gapPolicy;
+
+	/**
+	 * Sets up the join of the given files
+	 *
+	 * @param files-One csv file per stock
+	 * @param gapPolicy-What to do on days some stocks have no price for
+	 */
+	public AlignedPriceIngestion(List<Path> files, GapPolicy gapPolicy)
+	{
+		this.files = files.toArray(new Path[files.size()]);
+		this.gapPolicy = gapPolicy;
+	}
+
+	/**
+	 * Getter for the ticker of each stock, the name of its file without the extension
+	 *
+	 * @return
+	 */
+	public String[] getTickers()
+	{
+		String[] tickers = new String[files.length];
+
+		for (int stock = 0; stock < files.length; stock++)
+		{
+			String name = files[stock].getFileName().toString();
+			int extension = name.lastIndexOf('.');
+			tickers[stock] = extension > 0 ? name.substring(0, extension) : name;
+		}
+
+		return tickers;
+	}
+
+	/**
+	 * Joins the files and hands each day kept by the gap policy to the sink, in order of date
+	 *
+	 * @param sink
+	 * @return-Number of days handed to the sink
+	 * @throws IOException-When a file cannot be read, has no Date or price column, or its dates go backwards
+	 */
+	public int run(AlignedDaySink sink) throws IOException
+	{
+		int numberOfStocks = files.length;
+
+		double[] pricesOnDay = new double[numberOfStocks];
+		double[] lastPrices = new double[numberOfStocks];
+		Arrays.fill(lastPrices, Double.NaN);
+
+		int numberOfDays = 0;
+
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.PARSE);
+		try
+		{
+			PriorityQueue<TickerCursor> cursors = new PriorityQueue<TickerCursor>(Math.max(1, numberOfStocks),
+					(a, b) -> a.date != b.date ? Integer.compare(a.date, b.date) : Integer.compare(a.stock, b.stock));
+
+			for (int stock = 0; stock < numberOfStocks; stock++)
+			{
+				TickerCursor cursor = new TickerCursor(files[stock], stock);
+				if (cursor.advance())
+				{
+					cursors.add(cursor);
+				}
+				else if (gapPolicy != GapPolicy.MISSING)
+				{
+					//A stock without prices leaves no day that every stock has
+					return 0;
+				}
+			}
+
+			while (!cursors.isEmpty())
+			{
+				int date = cursors.peek().date;
+				boolean hasStockEnded = false;
+
+				Arrays.fill(pricesOnDay, Double.NaN);
+				while (!cursors.isEmpty() && cursors.peek().date == date)
+				{
+					TickerCursor cursor = cursors.poll();
+					pricesOnDay[cursor.stock] = cursor.price;
+
+					if (cursor.advance())
+					{
+						cursors.add(cursor);
+					}
+					else
+					{
+						hasStockEnded = true;
+					}
+				}
+
+				if (isKept(pricesOnDay, lastPrices))
+				{
+					sink.acceptDay(date, pricesOnDay);
+					numberOfDays++;
+				}
+
+				//Past the end of a stock no day can be complete, nor filled without carrying a price past its end
+				if (hasStockEnded && gapPolicy != GapPolicy.MISSING)
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			timer.stop();
+		}
+
+		return numberOfDays;
+	}
+
+	/**
+	 * Joins the files into arrays
+	 *
+	 * @return-The days kept by the gap policy and the price of each stock on them
+	 * @throws IOException
+	 */
+	public AlignedPrices load() throws IOException
+	{
+		int numberOfStocks = files.length;
+
+		StockDataLoader.DoubleColumn[] columns = new StockDataLoader.DoubleColumn[numberOfStocks];
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			columns[stock] = new StockDataLoader.DoubleColumn();
+		}
+		int[][] dates = {new int[256]};
+
+		int numberOfDays = run((date, pricesOnDay) ->
+		{
+			int day = columns.length > 0 ? columns[0].size : 0;
+			if (day == dates[0].length)
+			{
+				dates[0] = Arrays.copyOf(dates[0], day * 2);
+			}
+			dates[0][day] = date;
+
+			for (int stock = 0; stock < columns.length; stock++)
+			{
+				columns[stock].add(pricesOnDay[stock]);
+			}
+		});
+
+		double[][] dailyPricesOfStocks = new double[numberOfStocks][];
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			dailyPricesOfStocks[stock] = columns[stock].toArray();
+		}
+
+		return new AlignedPrices(getTickers(), Arrays.copyOf(dates[0], numberOfDays), dailyPricesOfStocks);
+	}
+
+	/**
+	 * Applies the gap policy to the prices of a day, filling them in place when forward filling
+	 *
+	 * @param pricesOnDay-Price of each stock on the day, NaN for stocks without one
+	 * @param lastPrices-Last price seen of each stock, updated by forward filling
+	 * @return-Whether the day is kept
+	 */
+	private boolean isKept(double[] pricesOnDay, double[] lastPrices)
+	{
+		switch (gapPolicy)
+		{
+			case FORWARD_FILL:
+				boolean isComplete = true;
+				for (int stock = 0; stock < pricesOnDay.length; stock++)
+				{
+					if (Double.isNaN(pricesOnDay[stock]))
+					{
+						pricesOnDay[stock] = lastPrices[stock];
+						isComplete &= !Double.isNaN(pricesOnDay[stock]);
+					}
+					else
+					{
+						lastPrices[stock] = pricesOnDay[stock];
+					}
+				}
+				return isComplete;
+
+			case DROP:
+				for (double price : pricesOnDay)
+				{
+					if (Double.isNaN(price))
+					{
+						return false;
+					}
+				}
+				return true;
+
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Prices of a system of stocks aligned by date
+	 */
+	public static class AlignedPrices
+	{
+		String[] tickers;
+
+		int[] dates;
+
+		double[][] dailyPricesOfStocks;
+
+		AlignedPrices(String[] tickers, int[] dates, double[][] dailyPricesOfStocks)
+		{
+			this.tickers = tickers;
+			this.dates = dates;
+			this.dailyPricesOfStocks = dailyPricesOfStocks;
+		}
+
+		/**
+		 * Getter for the ticker of each stock
+		 *
+		 * @return
+		 */
+		public String[] getTickers()
+		{
+			return tickers;
+		}
+
+		/**
+		 * Getter for the dates of the days, as the numbers yyyymmdd
+		 *
+		 * @return
+		 */
+		public int[] getDates()
+		{
+			return dates;
+		}
+
+		/**
+		 * Getter for the prices, indexed by [stock][day] like StockDataLoader.load
+		 *
+		 * @return
+		 */
+		public double[][] getDailyPrices()
+		{
+			return dailyPricesOfStocks;
+		}
+	}
+
+	/**
+	 * Reads the rows of one csv file in order, a buffer at a time
+	 */
+	private static class TickerCursor
+	{
+		Path file;
+
+		int stock;
+
+		//Offset in the file of the first byte not yet read into the buffer
+		long position;
+
+		boolean isEndOfFile;
+
+		//Unparsed bytes, between the position and the limit of the buffer
+		ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE).limit(0);
+
+		int dateColumn = -1;
+
+		int priceColumn = -1;
+
+		//Number of the line last read, counting from 1
+		int lineNumber;
+
+		//Row the cursor is on
+		int date = Integer.MIN_VALUE;
+		double price;
+
+		TickerCursor(Path file, int stock)
+		{
+			this.file = file;
+			this.stock = stock;
+		}
+
+		/**
+		 * Moves to the next row with a price and a later date than the current one
+		 *
+		 * @return-False when the file has no more rows
+		 * @throws IOException
+		 */
+		boolean advance() throws IOException
+		{
+			while (true)
+			{
+				int lineStart = buffer.position();
+				int lineEnd = lineStart;
+				while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n')
+				{
+					lineEnd++;
+				}
+
+				if (lineEnd == buffer.limit())
+				{
+					if (!isEndOfFile)
+					{
+						refill();
+						continue;
+					}
+					if (lineStart == lineEnd)
+					{
+						return false;
+					}
+					buffer.position(lineEnd);
+				}
+				else
+				{
+					buffer.position(lineEnd + 1);
+				}
+
+				lineNumber++;
+
+				if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r')
+				{
+					lineEnd--;
+				}
+				if (lineEnd == lineStart)
+				{
+					continue;
+				}
+
+				if (priceColumn < 0)
+				{
+					readHeader(lineStart, lineEnd);
+				}
+				else if (readRow(lineStart, lineEnd))
+				{
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Keeps the unparsed bytes and reads more after them, opening the file only for the read
+		 *
+		 * @throws IOException
+		 */
+		private void refill() throws IOException
+		{
+			buffer.compact();
+			if (!buffer.hasRemaining())
+			{
+				//The line does not fit in the buffer
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+			{
+				int read = channel.read(buffer, position);
+				if (read > 0)
+				{
+					position += read;
+				}
+				isEndOfFile = read < 0 || position >= channel.size();
+			}
+
+			buffer.flip();
+		}
+
+		/**
+		 * Finds the Date and price columns in the header
+		 *
+		 * @param start
+		 * @param end
+		 * @throws IOException
+		 */
+		private void readHeader(int start, int end) throws IOException
+		{
+			int fieldStart = start;
+			int field = 0;
+
+			for (int i = start; i <= end; i++)
+			{
+				if (i == end || buffer.get(i) == ',')
+				{
+					if (StockDataLoader.equalsIgnoreCase(buffer, fieldStart, i, "Date"))
+					{
+						dateColumn = field;
+					}
+					field++;
+					fieldStart = i + 1;
+				}
+			}
+
+			if (dateColumn < 0)
+			{
+				throw new IOException("The csv header of " + file + " has no Date column");
+			}
+
+			try
+			{
+				priceColumn = StockDataLoader.findPriceColumn(buffer, start, end);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IOException(e.getMessage() + " in " + file, e);
+			}
+		}
+
+		/**
+		 * Reads the date and price of a data row
+		 *
+		 * @param start
+		 * @param end
+		 * @return-Whether the row has a price and a new date
+		 * @throws IOException-When the date cannot be read or goes backwards
+		 */
+		private boolean readRow(int start, int end) throws IOException
+		{
+			int dateStart = -1;
+			int dateEnd = -1;
+			int priceStart = -1;
+			int priceEnd = -1;
+
+			int fieldStart = start;
+			int field = 0;
+			int lastColumn = Math.max(dateColumn, priceColumn);
+
+			for (int i = start; i <= end && field <= lastColumn; i++)
+			{
+				if (i == end || buffer.get(i) == ',')
+				{
+					if (field == dateColumn)
+					{
+						dateStart = fieldStart;
+						dateEnd = i;
+					}
+					else if (field == priceColumn)
+					{
+						priceStart = fieldStart;
+						priceEnd = i;
+					}
+					field++;
+					fieldStart = i + 1;
+				}
+			}
+
+			if (dateStart < 0 || priceStart < 0)
+			{
+				return false;
+			}
+
+			int rowDate = parseDate(dateStart, dateEnd);
+			if (rowDate < date)
+			{
+				throw new IOException("The dates of " + file + " go backwards at " + rowDate + " on line " + lineNumber);
+			}
+			if (rowDate == date)
+			{
+				return false;
+			}
+
+			try
+			{
+				price = StockDataLoader.parseDouble(buffer, priceStart, priceEnd);
+			}
+			catch (NumberFormatException missingPrice)
+			{
+				//Finance sites write "null" on days without a price
+				return false;
+			}
+
+			date = rowDate;
+			return true;
+		}
+
+		/**
+		 * Parses a date written yyyy-MM-dd, optionally in double quotes, into the number yyyymmdd, which sorts the
+		 * same way. Other orders such as MM/dd/yyyy, and dates that do not exist such as 2023-02-31, are refused
+		 * rather than read as a wrong date.
+		 *
+		 * @param start
+		 * @param end
+		 * @return
+		 * @throws IOException-When the date is not written yyyy-MM-dd
+		 */
+		private int parseDate(int start, int end) throws IOException
+		{
+			if (end - start == 12 && buffer.get(start) == '"' && buffer.get(end - 1) == '"')
+			{
+				start++;
+				end--;
+			}
+
+			int value = 0;
+			boolean isReadable = end - start == 10;
+
+			for (int i = 0; i < 10 && isReadable; i++)
+			{
+				byte b = buffer.get(start + i);
+				if (i == 4 || i == 7)
+				{
+					isReadable = b == '-';
+				}
+				else
+				{
+					isReadable = b >= '0' && b <= '9';
+					value = value * 10 + (b - '0');
+				}
+			}
+
+			LocalDate parsedDate = null;
+			if (isReadable)
+			{
+				try
+				{
+					parsedDate = LocalDate.of(value / 10000, value / 100 % 100, value % 100);
+				}
+				catch (DateTimeException impossibleDate)
+				{
+					//Such as 2023-02-31
+				}
+			}
+			if (parsedDate == null)
+			{
+				throw new IOException("Unreadable date on line " + lineNumber + " of " + file + ", expected yyyy-MM-dd");
+			}
+
+			return parsedDate.getYear() * 10000 + parsedDate.getMonthValue() * 100 + parsedDate.getDayOfMonth();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package financeproject2;
+
+/**
+ * Turns another Gaussian source into antithetic pairs: paths 2k and 2k + 1 both use the stream of path k of the
+ * underlying source, and the second one flips the sign of every sample.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class AntitheticGaussianSource implements GaussianSource
+{
+	GaussianSource underlyingSource;
+
+	/**
+	 * Sets up the source
+	 *
+	 * @param underlyingSource-Source whose streams are shared by the two paths of each pair
+	 */
+	public AntitheticGaussianSource(GaussianSource underlyingSource)
+	{
+		this.underlyingSource = underlyingSource;
+	}
+
+	@Override
+	public GaussianStream forPath(long pathIndex)
+	{
+		GaussianStream stream = underlyingSource.forPath(pathIndex / 2);
+
+		if (pathIndex % 2 == 1)
+		{
+			return new NegatedGaussianStream(stream);
+		}
+
+		return stream;
+	}
+
+	/**
+	 * Stream whose samples are those of another stream with the sign flipped
+	 */
+	private static class NegatedGaussianStream implements GaussianStream
+	{
+		GaussianStream stream;
+
+		NegatedGaussianStream(GaussianStream stream)
+		{
+			this.stream = stream;
+		}
+
+		@Override
+		public void nextGaussians(double[] sample)
+		{
+			stream.nextGaussians(sample);
+
+			for (int i = 0; i < sample.length; i++)
+			{
+				sample[i] = -sample[i];
+			}
+		}
+	}
+}
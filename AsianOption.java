@@ -0,0 +1,70 @@
+package financeproject2;
+
+/**
+ * An arithmetic average price option on one stock, paid on the mean of its prices on days 1 to maturity
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class AsianOption implements Payoff
+{
+	int stock;
+
+	double strike;
+
+	int maturityDay;
+
+	OptionType type;
+
+	/**
+	 * Sets up the option
+	 *
+	 * @param stock-Index of the underlying stock
+	 * @param strike
+	 * @param maturityDay-Last day of the average, at least 1
+	 * @param type-Call or put
+	 */
+	public AsianOption(int stock, double strike, int maturityDay, OptionType type)
+	{
+		if (maturityDay < 1)
+		{
+			throw new IllegalArgumentException("An average needs at least one day");
+		}
+
+		this.stock = stock;
+		this.strike = strike;
+		this.maturityDay = maturityDay;
+		this.type = type;
+	}
+
+	@Override
+	public int getMaturityDay()
+	{
+		return maturityDay;
+	}
+
+	@Override
+	public boolean needsRunningSums()
+	{
+		return true;
+	}
+
+	@Override
+	public void evaluate(int numberOfPaths, double[][] prices, double[][] runningSums, double[] payoffs)
+	{
+		double[] sums = runningSums[stock];
+		double sign = type.sign;
+		double inverseDays = 1.0 / maturityDay;
+
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			payoffs[p] = Math.max(sign * (sums[p] * inverseDays - strike), 0.0);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Asian " + type + " on stock " + stock + " at " + strike;
+	}
+}
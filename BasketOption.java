@@ -0,0 +1,82 @@
+package financeproject2;
+
+/**
+ * A European option on a weighted basket of the stocks, paid on the value of the basket at maturity
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class BasketOption implements Payoff
+{
+	double[] weights;
+
+	double strike;
+
+	int maturityDay;
+
+	OptionType type;
+
+	/**
+	 * Sets up the option
+	 *
+	 * @param weights-Number of shares of each stock in the basket
+	 * @param strike
+	 * @param maturityDay
+	 * @param type-Call or put
+	 */
+	public BasketOption(double[] weights, double strike, int maturityDay, OptionType type)
+	{
+		this.weights = weights;
+		this.strike = strike;
+		this.maturityDay = maturityDay;
+		this.type = type;
+	}
+
+	@Override
+	public int getMaturityDay()
+	{
+		return maturityDay;
+	}
+
+	@Override
+	public boolean needsRunningSums()
+	{
+		return false;
+	}
+
+	@Override
+	public void evaluate(int numberOfPaths, double[][] prices, double[][] runningSums, double[] payoffs)
+	{
+		//Reuses the payoff buffer for the value of the basket, stock by stock along the contiguous prices
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			payoffs[p] = 0.0;
+		}
+		for (int i = 0; i < weights.length; i++)
+		{
+			double weight = weights[i];
+			if (weight == 0.0)
+			{
+				continue;
+			}
+
+			double[] S = prices[i];
+			for (int p = 0; p < numberOfPaths; p++)
+			{
+				payoffs[p] += weight * S[p];
+			}
+		}
+
+		double sign = type.sign;
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			payoffs[p] = Math.max(sign * (payoffs[p] - strike), 0.0);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Basket " + type + " at " + strike;
+	}
+}
@@ -0,0 +1,354 @@
+package financeproject2;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Simulates the paths of a MonteCarloPathEngine in blocks that are advanced together. A block keeps its prices,
+ * noise and correlated noise as one array per stock (or noise dimension) running along the paths, so correlating
+ * the noise is a matrix-matrix product and the price update is a loop over contiguous arrays, both of which the
+ * JIT compiles into SIMD instructions. The loadings are read once per block and step instead of once per path
+ * and step.
+ *
+ * The paths are the same, bit for bit, as those of the engine, as long as it uses the Euler-Maruyama, Milstein or
+ * exact log-normal scheme.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class BatchedPathEngine
+{
+	//Paths advanced together unless asked otherwise; enough to fill the vector lanes many times over while a 
+	//block of noise still fits in the L2 cache for a few hundred stocks
+	static final int DEFAULT_PATHS_PER_BLOCK = 64;
+
+	//Paths given to one observer by observePaths. It is fixed, so the observers are merged the same way however
+	//many threads the pool has.
+	static final int PATHS_PER_OBSERVER = 4096;
+
+	MonteCarloPathEngine engine;
+
+	int pathsPerBlock;
+
+	int numberOfStocks;
+
+	CovolatilityFactor covolatilityFactor;
+
+	//Which update is applied to the prices
+	SteppingScheme steppingScheme;
+
+	double timeStep;
+	double diffusionScale;
+
+	//Values that stay the same for every step
+	double[] growthRates;
+	double[] variances;
+	double[] logDrifts;
+
+	/**
+	 * Sets up a batched engine with blocks of the default size
+	 *
+	 * @param engine-Engine whose system, Gaussian source, stepping scheme and pool are used
+	 */
+	public BatchedPathEngine(MonteCarloPathEngine engine)
+	{
+		this(engine, DEFAULT_PATHS_PER_BLOCK);
+	}
+
+	/**
+	 * Sets up a batched engine
+	 *
+	 * @param engine-Engine whose system, Gaussian source, stepping scheme and pool are used
+	 * @param pathsPerBlock-Number of paths advanced together
+	 */
+	public BatchedPathEngine(MonteCarloPathEngine engine, int pathsPerBlock)
+	{
+		this.engine = engine;
+		this.pathsPerBlock = pathsPerBlock;
+
+		SDESystem SDESystemForStocks = engine.SDESystemForStocks;
+		this.numberOfStocks = SDESystemForStocks.getNumberOfStocks();
+		this.covolatilityFactor = SDESystemForStocks.getCovolatilityFactor();
+
+		this.steppingScheme = engine.steppingScheme;
+		if (steppingScheme != SteppingScheme.EULER_MARUYAMA && steppingScheme != SteppingScheme.MILSTEIN
+				&& steppingScheme != SteppingScheme.EXACT_LOG_NORMAL)
+		{
+			throw new IllegalArgumentException(
+					"Only the Euler-Maruyama, Milstein and exact log-normal schemes can be batched");
+		}
+
+		this.timeStep = NumericalSDESolution.timeStepOf(engine.upSampleFactor);
+		this.diffusionScale = Math.sqrt(timeStep);
+
+		this.growthRates = EulerMaruyamaStepper.growthRatesOf(SDESystemForStocks);
+		this.variances = covolatilityFactor.getVariances();
+		this.logDrifts = new double[numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			logDrifts[i] = growthRates[i] - 0.5 * variances[i];
+		}
+	}
+
+	/**
+	 * Simulates one path for every entry of simulatedPaths, like MonteCarloPathEngine.simulatePaths, spreading the
+	 * blocks across the pool of the engine
+	 *
+	 * @param simulatedPaths-Preallocated buffers indexed by [path][stock][step]
+	 * @param firstPath-Index of the path written into simulatedPaths[0]
+	 */
+	public void simulatePaths(double[][][] simulatedPaths, long firstPath)
+	{
+		int numberOfBlocks = (simulatedPaths.length + pathsPerBlock - 1) / pathsPerBlock;
+
+		engine.pool.invoke(new BlockRangeTask(simulatedPaths, firstPath, 0, numberOfBlocks));
+	}
+
+	/**
+	 * Simulates the paths with indices firstPath to firstPath + numberOfPaths - 1 across the pool of the engine
+	 * without storing them. Every range of PATHS_PER_OBSERVER paths is shown, block by block, to a new observer,
+	 * and the observers are merged pairwise in order of their ranges into the one returned.
+	 *
+	 * @param firstPath
+	 * @param numberOfPaths
+	 * @param newObserver-Makes an empty observer
+	 * @param merge-Merges the second observer into the first and returns the result
+	 * @return-The observer of all the paths
+	 */
+	public <T extends PathBlockObserver> T observePaths(long firstPath, long numberOfPaths, Supplier<T> newObserver,
+			BinaryOperator<T> merge)
+	{
+		long numberOfRanges = Math.max(1, (numberOfPaths + PATHS_PER_OBSERVER - 1) / PATHS_PER_OBSERVER);
+
+		return engine.pool.invoke(new ObserverRangeTask<T>(firstPath, firstPath + numberOfPaths, 0, numberOfRanges,
+				newObserver, merge));
+	}
+
+	/**
+	 * Simulates a block of paths on the calling thread, showing the prices after every step to an observer
+	 *
+	 * @param firstPath-Index of the first path of the block
+	 * @param numberOfPaths-Number of paths in the block, at most pathsPerBlock
+	 * @param observer
+	 */
+	public void simulateBlock(long firstPath, int numberOfPaths, PathBlockObserver observer)
+	{
+		int noiseDimension = covolatilityFactor.getNoiseDimension();
+
+		double[][] prices = new double[numberOfStocks][pathsPerBlock];
+		double[][] noise = new double[noiseDimension][pathsPerBlock];
+		double[][] correlatedNoise = new double[numberOfStocks][pathsPerBlock];
+		double[] sample = new double[noiseDimension];
+
+		GaussianStream[] streams = new GaussianStream[numberOfPaths];
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			streams[p] = engine.pathGaussianSource.forPath(firstPath + p);
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int p = 0; p < numberOfPaths; p++)
+			{
+				prices[i][p] = engine.initialPrices[i];
+			}
+		}
+		observer.observeStep(firstPath, numberOfPaths, 0, prices);
+
+		for (int step = 1; step < engine.numberOfSteps; step++)
+		{
+			//Brownian increments of every path, transposed into one row per noise dimension
+			for (int p = 0; p < numberOfPaths; p++)
+			{
+				streams[p].nextGaussians(sample);
+				for (int k = 0; k < noiseDimension; k++)
+				{
+					noise[k][p] = diffusionScale * sample[k];
+				}
+			}
+
+			advanceBlock(prices, noise, correlatedNoise, numberOfPaths);
+
+			observer.observeStep(firstPath, numberOfPaths, step, prices);
+		}
+
+		SimulationMetrics.countPaths(numberOfPaths, engine.numberOfSteps - 1);
+	}
+
+	/**
+	 * Advances the prices of a block by one step from Brownian increments that were already drawn and scaled by
+	 * the square root of the time step. The increments are only read, so ScenarioRunner can advance the blocks of
+	 * several systems from the same draws.
+	 *
+	 * @param prices-Prices indexed by [stock][path], updated in place
+	 * @param noise-Brownian increments indexed by [noise dimension][path]
+	 * @param correlatedNoise-Work buffer indexed by [stock][path]
+	 * @param numberOfPaths
+	 */
+	void advanceBlock(double[][] prices, double[][] noise, double[][] correlatedNoise, int numberOfPaths)
+	{
+		covolatilityFactor.correlateBlock(noise, correlatedNoise, numberOfPaths);
+
+		updatePrices(prices, correlatedNoise, numberOfPaths);
+	}
+
+	/**
+	 * Applies the update of the stepping scheme to every path of the block. The expressions match those of the
+	 * steppers term for term so that the results agree bit for bit.
+	 *
+	 * @param prices
+	 * @param correlatedNoise
+	 * @param numberOfPaths
+	 */
+	private void updatePrices(double[][] prices, double[][] correlatedNoise, int numberOfPaths)
+	{
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double[] S = prices[i];
+			double[] X = correlatedNoise[i];
+
+			if (steppingScheme == SteppingScheme.EXACT_LOG_NORMAL)
+			{
+				double logDriftTerm = logDrifts[i] * timeStep;
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					S[p] = S[p] * Math.exp(logDriftTerm + X[p]);
+				}
+			}
+			else if (steppingScheme == SteppingScheme.MILSTEIN)
+			{
+				double driftTerm = growthRates[i] * timeStep;
+				double varianceTerm = variances[i] * timeStep;
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					double Sj = S[p];
+					S[p] = Sj + driftTerm * Sj + Sj * X[p] + 0.5 * Sj * (X[p] * X[p] - varianceTerm);
+				}
+			}
+			else
+			{
+				double driftTerm = growthRates[i] * timeStep;
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					double Sj = S[p];
+					S[p] = Sj + driftTerm * Sj + Sj * X[p];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Getter for the number of paths advanced together
+	 *
+	 * @return
+	 */
+	public int getPathsPerBlock()
+	{
+		return pathsPerBlock;
+	}
+
+	/**
+	 * Splits a range of observer ranges in half until one is left, whose paths are simulated block by block into
+	 * a new observer, and merges the observers of the two halves
+	 */
+	private class ObserverRangeTask<T extends PathBlockObserver> extends RecursiveTask<T>
+	{
+		private static final long serialVersionUID = 1L;
+
+		long firstPath;
+		long endPath;
+		long startRange;
+		long endRange;
+		Supplier<T> newObserver;
+		BinaryOperator<T> merge;
+
+		ObserverRangeTask(long firstPath, long endPath, long startRange, long endRange, Supplier<T> newObserver,
+				BinaryOperator<T> merge)
+		{
+			this.firstPath = firstPath;
+			this.endPath = endPath;
+			this.startRange = startRange;
+			this.endRange = endRange;
+			this.newObserver = newObserver;
+			this.merge = merge;
+		}
+
+		@Override
+		protected T compute()
+		{
+			if (endRange - startRange == 1)
+			{
+				T observer = newObserver.get();
+
+				long start = firstPath + startRange * PATHS_PER_OBSERVER;
+				long end = Math.min(start + PATHS_PER_OBSERVER, endPath);
+				for (long blockStart = start; blockStart < end; blockStart += pathsPerBlock)
+				{
+					simulateBlock(blockStart, (int) Math.min(pathsPerBlock, end - blockStart), observer);
+				}
+
+				return observer;
+			}
+
+			long middle = (startRange + endRange) >>> 1;
+			ObserverRangeTask<T> left = new ObserverRangeTask<T>(firstPath, endPath, startRange, middle, newObserver,
+					merge);
+			ObserverRangeTask<T> right = new ObserverRangeTask<T>(firstPath, endPath, middle, endRange, newObserver,
+					merge);
+			invokeAll(left, right);
+
+			return merge.apply(left.join(), right.join());
+		}
+	}
+
+	/**
+	 * Splits a range of blocks in half until a single block is left, which is simulated into the path buffers
+	 */
+	private class BlockRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		double[][][] simulatedPaths;
+		long firstPath;
+		int startBlock;
+		int endBlock;
+
+		BlockRangeTask(double[][][] simulatedPaths, long firstPath, int startBlock, int endBlock)
+		{
+			this.simulatedPaths = simulatedPaths;
+			this.firstPath = firstPath;
+			this.startBlock = startBlock;
+			this.endBlock = endBlock;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (endBlock - startBlock == 1)
+			{
+				int start = startBlock * pathsPerBlock;
+				int numberOfPaths = Math.min(pathsPerBlock, simulatedPaths.length - start);
+
+				simulateBlock(firstPath + start, numberOfPaths, (blockStart, blockSize, step, blockPrices) ->
+				{
+					for (int p = 0; p < blockSize; p++)
+					{
+						double[][] path = simulatedPaths[start + p];
+						for (int i = 0; i < numberOfStocks; i++)
+						{
+							path[i][step] = blockPrices[i][p];
+						}
+					}
+				});
+			}
+			else if (endBlock > startBlock)
+			{
+				int middle = (startBlock + endBlock) >>> 1;
+				invokeAll(new BlockRangeTask(simulatedPaths, firstPath, startBlock, middle),
+						new BlockRangeTask(simulatedPaths, firstPath, middle, endBlock));
+			}
+		}
+	}
+}
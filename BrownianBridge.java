@@ -0,0 +1,247 @@
+package financeproject2;
+
+/**
+ * Builds a discretely sampled Brownian motion from independent Gaussian samples in bridge order: the first sample
+ * fixes the end point, the second the midpoint, and later samples fill in ever finer detail between points that
+ * are already known. With quasi-random samples this puts the best distributed coordinates on the large scale
+ * movements of the path, which are what smooth payoffs mostly depend on.
+ *
+ * The Brownian motion is sampled at the unit spaced times 1 to numberOfSteps, so the increments it returns are
+ * again independent standard Gaussians.
+ *
+ * transform builds a whole path at once. A Walk builds the same points forward in time, one step at a time. It
+ * keeps only the last point and the points already fixed ahead of it, which are at most about log2(numberOfSteps).
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class BrownianBridge
+{
+	int numberOfSteps;
+
+	//For the i-th sample: the point it sets, its known neighbours and the conditional mean and deviation
+	int[] bridgeIndex;
+	int[] leftIndex;
+	int[] rightIndex;
+	double[] leftWeight;
+	double[] rightWeight;
+	double[] standardDeviation;
+
+	//Sample setting each point, the inverse of bridgeIndex
+	int[] sampleOfPoint;
+
+	//Most points fixed ahead of the last point of a Walk
+	int maximumPending;
+
+	/**
+	 * Works out the construction order
+	 *
+	 * @param numberOfSteps-Number of increments in a path
+	 */
+	public BrownianBridge(int numberOfSteps)
+	{
+		this.numberOfSteps = numberOfSteps;
+
+		this.bridgeIndex = new int[numberOfSteps];
+		this.leftIndex = new int[numberOfSteps];
+		this.rightIndex = new int[numberOfSteps];
+		this.leftWeight = new double[numberOfSteps];
+		this.rightWeight = new double[numberOfSteps];
+		this.standardDeviation = new double[numberOfSteps];
+		this.sampleOfPoint = new int[numberOfSteps];
+
+		//The end point, then one point for each halving of the gap before it
+		this.maximumPending = 34 - Integer.numberOfLeadingZeros(numberOfSteps);
+
+		if (numberOfSteps == 0)
+		{
+			return;
+		}
+
+		//Point k is at time k + 1; isSet marks the points already fixed
+		boolean[] isSet = new boolean[numberOfSteps];
+
+		isSet[numberOfSteps - 1] = true;
+		bridgeIndex[0] = numberOfSteps - 1;
+		standardDeviation[0] = Math.sqrt(numberOfSteps);
+
+		int j = 0;
+		for (int i = 1; i < numberOfSteps; i++)
+		{
+			//Find the next gap of unset points, j to k - 1, with k the first set point after it
+			while (isSet[j])
+			{
+				j++;
+			}
+			int k = j;
+			while (!isSet[k])
+			{
+				k++;
+			}
+
+			int middle = j + ((k - 1 - j) >> 1);
+			isSet[middle] = true;
+
+			bridgeIndex[i] = middle;
+			leftIndex[i] = j;
+			rightIndex[i] = k;
+
+			//Time of the left neighbour is j (0 when the gap starts at the origin), of the right one k + 1
+			double leftTime = j;
+			double middleTime = middle + 1;
+			double rightTime = k + 1;
+
+			leftWeight[i] = (rightTime - middleTime) / (rightTime - leftTime);
+			rightWeight[i] = (middleTime - leftTime) / (rightTime - leftTime);
+			standardDeviation[i] = Math.sqrt((middleTime - leftTime) * (rightTime - middleTime) / (rightTime - leftTime));
+
+			j = k + 1;
+			if (j >= numberOfSteps)
+			{
+				j = 0;
+			}
+		}
+
+		for (int i = 0; i < numberOfSteps; i++)
+		{
+			sampleOfPoint[bridgeIndex[i]] = i;
+		}
+	}
+
+	/**
+	 * Turns samples in bridge order into the increments of the Brownian motion
+	 *
+	 * @param samples-numberOfSteps independent standard Gaussians, read at samples[offset + i * stride]
+	 * @param increments-Receives the increments at increments[offset + step * stride]
+	 * @param offset
+	 * @param stride
+	 * @param path-Scratch space of length numberOfSteps
+	 */
+	public void transform(double[] samples, double[] increments, int offset, int stride, double[] path)
+	{
+		if (numberOfSteps == 0)
+		{
+			return;
+		}
+
+		path[numberOfSteps - 1] = standardDeviation[0] * samples[offset];
+
+		for (int i = 1; i < numberOfSteps; i++)
+		{
+			int j = leftIndex[i];
+			double leftValue = j == 0 ? 0.0 : path[j - 1];
+
+			path[bridgeIndex[i]] = leftWeight[i] * leftValue + rightWeight[i] * path[rightIndex[i]]
+					+ standardDeviation[i] * samples[offset + i * stride];
+		}
+
+		increments[offset] = path[0];
+		for (int step = 1; step < numberOfSteps; step++)
+		{
+			increments[offset + step * stride] = path[step] - path[step - 1];
+		}
+	}
+
+	/**
+	 * Getter for the number of increments in a path
+	 *
+	 * @return
+	 */
+	public int getNumberOfSteps()
+	{
+		return numberOfSteps;
+	}
+
+	/**
+	 * Samples of several independent Brownian motions, asked for in the order a Walk needs them
+	 */
+	interface Samples
+	{
+		/**
+		 * The sample of one motion at a position in bridge order. Every pair is asked for exactly once.
+		 *
+		 * @param i-Position in bridge order
+		 * @param dimension-Motion the sample belongs to
+		 * @return-A standard Gaussian
+		 */
+		double sample(int i, int dimension);
+	}
+
+	/**
+	 * Walks several independent Brownian motions forward in time, giving the same increments as transform on the
+	 * same samples. A point is built from its neighbours when the walk first needs it.
+	 */
+	class Walk
+	{
+		int numberOfDimensions;
+		Samples samples;
+
+		//Points fixed ahead of the last point of each motion, nearest last, maximumPending slots per motion
+		int[] pendingPoints;
+		double[] pendingValues;
+		int[] numberPending;
+
+		//Value of the last point of each motion, 0 at the origin
+		double[] lastValues;
+
+		int nextPoint;
+
+		/**
+		 * Starts the walk at the origin
+		 *
+		 * @param numberOfDimensions-Number of motions
+		 * @param samples
+		 */
+		Walk(int numberOfDimensions, Samples samples)
+		{
+			this.numberOfDimensions = numberOfDimensions;
+			this.samples = samples;
+			this.pendingPoints = new int[numberOfDimensions * maximumPending];
+			this.pendingValues = new double[numberOfDimensions * maximumPending];
+			this.numberPending = new int[numberOfDimensions];
+			this.lastValues = new double[numberOfDimensions];
+		}
+
+		/**
+		 * Moves every motion to the next point
+		 *
+		 * @param increments-Receives the increment of each motion over the step
+		 */
+		void nextIncrements(double[] increments)
+		{
+			for (int k = 0; k < numberOfDimensions; k++)
+			{
+				int start = k * maximumPending;
+
+				//The first sample fixes the end point
+				if (nextPoint == 0)
+				{
+					pendingPoints[start] = numberOfSteps - 1;
+					pendingValues[start] = standardDeviation[0] * samples.sample(0, k);
+					numberPending[k] = 1;
+				}
+
+				//Halve the gap between the last point and the nearest fixed one until the next point is fixed
+				int top = start + numberPending[k] - 1;
+				while (pendingPoints[top] != nextPoint)
+				{
+					int middle = nextPoint + ((pendingPoints[top] - 1 - nextPoint) >> 1);
+					int i = sampleOfPoint[middle];
+
+					double value = leftWeight[i] * lastValues[k] + rightWeight[i] * pendingValues[top]
+							+ standardDeviation[i] * samples.sample(i, k);
+
+					top++;
+					pendingPoints[top] = middle;
+					pendingValues[top] = value;
+				}
+
+				increments[k] = pendingValues[top] - lastValues[k];
+				lastValues[k] = pendingValues[top];
+				numberPending[k] = top - start;
+			}
+
+			nextPoint++;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package financeproject2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A calibrated SDE system saved to disk together with the SHA-256 hash of the data it was calibrated from, so that
+ * a later run on unchanged data skips parsing, calibration and the factorization of the covolatility matrix.
+ *
+ * Layout, all big-endian as written by DataOutputStream:
+ *
+ * MAGIC, VERSION, upsample factor, length and bytes of the hash of the source, number of days, number of stocks,
+ * initial prices, the SDE system (see SDESystem.writeTo), and last a CRC32 of everything before it.
+ *
+ * A snapshot of another version, for other data or another upsample factor, or that fails its CRC is never used;
+ * the caller calibrates again and overwrites it.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class CalibrationSnapshot
+{
+	static final int MAGIC = 0x53444543;
+
+	static final int VERSION = 1;
+
+	SDESystem SDESystemForStocks;
+
+	double[] initialPrices;
+
+	int numberOfDays;
+
+	int upSampleFactor;
+
+	//SHA-256 hash of the data file the system was calibrated from
+	byte[] sourceHash;
+
+	/**
+	 * Sets up a snapshot
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfDays-Number of days in the data
+	 * @param upSampleFactor-Upsample factor the system was calibrated for
+	 * @param sourceHash-Hash of the data file, from hashOf
+	 */
+	public CalibrationSnapshot(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfDays,
+			int upSampleFactor, byte[] sourceHash)
+	{
+		this.SDESystemForStocks = SDESystemForStocks;
+		this.initialPrices = initialPrices;
+		this.numberOfDays = numberOfDays;
+		this.upSampleFactor = upSampleFactor;
+		this.sourceHash = sourceHash;
+	}
+
+	/**
+	 * Computes the SHA-256 hash of a file
+	 *
+	 * @param source
+	 * @return-The hash
+	 * @throws IOException
+	 */
+	public static byte[] hashOf(Path source) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			//Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(source))
+		{
+			int read;
+			while ((read = in.read(buffer)) > 0)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Writes the snapshot. It is written to a temporary file first and moved into place, so a run that is stopped
+	 * halfway never leaves a damaged snapshot behind.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(upSampleFactor);
+
+		out.writeInt(sourceHash.length);
+		out.write(sourceHash);
+
+		out.writeInt(numberOfDays);
+		out.writeInt(initialPrices.length);
+		for (double price : initialPrices)
+		{
+			out.writeDouble(price);
+		}
+
+		SDESystemForStocks.writeTo(out);
+
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes.toByteArray());
+		out.writeInt((int) checksum.getValue());
+		out.flush();
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temporary, bytes.toByteArray());
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot if it was taken of the given data with the given upsample factor
+	 *
+	 * @param file-Snapshot file
+	 * @param sourceHash-Hash of the data file as it is now, from hashOf
+	 * @param upSampleFactor
+	 * @return-The snapshot, or null when there is none or it cannot be used
+	 * @throws IOException-When the snapshot exists but cannot be read
+	 */
+	public static CalibrationSnapshot readIfCurrent(Path file, byte[] sourceHash, int upSampleFactor)
+			throws IOException
+	{
+		byte[] bytes;
+		try
+		{
+			bytes = Files.readAllBytes(file);
+		}
+		catch (NoSuchFileException e)
+		{
+			return null;
+		}
+
+		if (bytes.length < 16)
+		{
+			return null;
+		}
+
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes, 0, bytes.length - 4);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		in.skipBytes(bytes.length - 4);
+		if (in.readInt() != (int) checksum.getValue())
+		{
+			return null;
+		}
+
+		in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != upSampleFactor)
+		{
+			return null;
+		}
+
+		byte[] hash = new byte[in.readInt()];
+		in.readFully(hash);
+		if (!Arrays.equals(hash, sourceHash))
+		{
+			return null;
+		}
+
+		int numberOfDays = in.readInt();
+		double[] initialPrices = new double[in.readInt()];
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = in.readDouble();
+		}
+
+		SDESystem SDESystemForStocks = SDESystem.readFrom(in);
+
+		return new CalibrationSnapshot(SDESystemForStocks, initialPrices, numberOfDays, upSampleFactor, hash);
+	}
+
+	/**
+	 * Getter for the calibrated system
+	 *
+	 * @return
+	 */
+	public SDESystem getSDESystem()
+	{
+		return SDESystemForStocks;
+	}
+
+	/**
+	 * Getter for the price of each stock on the first day
+	 *
+	 * @return
+	 */
+	public double[] getInitialPrices()
+	{
+		return initialPrices;
+	}
+
+	/**
+	 * Getter for the number of days in the data
+	 *
+	 * @return
+	 */
+	public int getNumberOfDays()
+	{
+		return numberOfDays;
+	}
+}
@@ -0,0 +1,28 @@
+package financeproject2;
+
+import Jama.CholeskyDecomposition;
+import Jama.Matrix;
+
+/**
+ * Factors the covolatility matrix as L times L transposed with L lower triangular. This is the cheapest exact
+ * factorization. Sample covolatility matrices can come out slightly indefinite, in which case the factorization 
+ * falls back on SymmetricEigenFactorization rather than producing NaN.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class CholeskyFactorization implements CovolatilityFactorization 
+{
+	@Override
+	public CovolatilityFactor factor(double[][] covolatilityMatrix) 
+	{
+		CholeskyDecomposition cholesky = new CholeskyDecomposition(new Matrix(covolatilityMatrix));
+		
+		if (!cholesky.isSPD())
+		{
+			return new SymmetricEigenFactorization().factor(covolatilityMatrix);
+		}
+		
+		return CovolatilityFactor.ofSquareMatrix(cholesky.getL().getArray());
+	}
+}
@@ -0,0 +1,396 @@
+package financeproject2;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+/**
+ * Estimates the expectation of a path functional with control variates. The controls are the simulated prices of
+ * the stocks at a fixed step, whose expectations are known in closed form from the SDE system. The estimate is
+ * the plain Monte Carlo mean corrected by how far the controls landed from their expectations,
+ *
+ * estimate = mean(Y) - beta . (mean(X) - E[X]),
+ *
+ * where beta is the least squares regression of Y on X. When Y is strongly correlated with the prices, as the
+ * value of a portfolio or an option is, the standard error falls by a factor of 1 / sqrt(1 - R^2).
+ *
+ * When the engine runs with antithetic pairs, each pair is averaged into a single observation so that the standard
+ * error accounts for the two paths being dependent. Paths must then arrive in order, as StreamingSimulation
+ * delivers them, and an unpaired last path is left out.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class ControlVariateEstimator implements TrajectorySink
+{
+	PathFunctional target;
+
+	int numberOfControls;
+
+	//Step whose prices are used as controls
+	int controlStep;
+
+	//Known expectation of each control
+	double[] expectedControls;
+
+	boolean antitheticPairs;
+
+	long numberOfObservations;
+
+	//Running means and co-moments of the observation (Y, X1, ..., Xm), co-moments row-major and upper triangular
+	double[] means;
+	double[] coMoments;
+
+	//Regression coefficients, null until they are asked for after the observations last changed
+	double[] coefficients;
+
+	//Buffers reused for every path
+	double[] observation;
+	double[] pendingObservation;
+	boolean hasPendingObservation;
+	double[] deviations;
+
+	/**
+	 * Sets up an estimator using the prices of every stock at one step as the controls
+	 *
+	 * @param target-Functional whose expectation is estimated
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param controlStep-Step of the path whose prices are the controls, usually the last one
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param varianceReduction-Mode of the engine producing the paths
+	 */
+	public ControlVariateEstimator(PathFunctional target, SDESystem SDESystemForStocks, double[] initialPrices,
+			int controlStep, int upSampleFactor, VarianceReduction varianceReduction)
+	{
+		this(target, SDESystemForStocks, initialPrices, controlStep, upSampleFactor, varianceReduction,
+				SteppingScheme.EULER_MARUYAMA);
+	}
+
+	/**
+	 * Sets up an estimator for paths simulated with any stepping scheme
+	 *
+	 * @param target-Functional whose expectation is estimated
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param controlStep-Step of the path whose prices are the controls, usually the last one
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param varianceReduction-Mode of the engine producing the paths
+	 * @param steppingScheme-Scheme the paths are simulated with, which fixes the expectations of the controls
+	 */
+	public ControlVariateEstimator(PathFunctional target, SDESystem SDESystemForStocks, double[] initialPrices,
+			int controlStep, int upSampleFactor, VarianceReduction varianceReduction, SteppingScheme steppingScheme)
+	{
+		this.target = target;
+		this.numberOfControls = initialPrices.length;
+		this.controlStep = controlStep;
+		this.antitheticPairs = varianceReduction == VarianceReduction.ANTITHETIC;
+
+		//The noise has mean zero, so each step multiplies the expected price by the expected growth of the scheme
+		SDEStepper stepper = steppingScheme.stepperFor(SDESystemForStocks, 0);
+		double timeStep = NumericalSDESolution.timeStepOf(upSampleFactor);
+
+		this.expectedControls = new double[numberOfControls];
+		for (int i = 0; i < numberOfControls; i++)
+		{
+			expectedControls[i] = initialPrices[i] * Math.pow(stepper.expectedGrowthFactor(i, timeStep), controlStep);
+		}
+
+		int dimension = numberOfControls + 1;
+		this.means = new double[dimension];
+		this.coMoments = new double[dimension * dimension];
+		this.observation = new double[dimension];
+		this.pendingObservation = new double[dimension];
+		this.deviations = new double[dimension];
+	}
+
+	/**
+	 * Sets up an estimator for the paths of an engine, using the prices on the last step as the controls
+	 *
+	 * @param target-Functional whose expectation is estimated
+	 * @param engine-Engine producing the paths
+	 * @return-The estimator
+	 */
+	public static ControlVariateEstimator forEngine(PathFunctional target, MonteCarloPathEngine engine)
+	{
+		return new ControlVariateEstimator(target, engine.SDESystemForStocks, engine.initialPrices,
+				engine.numberOfSteps - 1, engine.upSampleFactor, engine.varianceReduction, engine.steppingScheme);
+	}
+
+	@Override
+	public void acceptPath(long path, double[][] simulatedPrices)
+	{
+		observation[0] = target.evaluate(simulatedPrices);
+		for (int i = 0; i < numberOfControls; i++)
+		{
+			observation[i + 1] = simulatedPrices[i][controlStep];
+		}
+
+		if (!antitheticPairs)
+		{
+			addObservation(observation);
+		}
+		else if (path % 2 == 0)
+		{
+			System.arraycopy(observation, 0, pendingObservation, 0, observation.length);
+			hasPendingObservation = true;
+		}
+		else if (hasPendingObservation)
+		{
+			for (int i = 0; i < observation.length; i++)
+			{
+				observation[i] = 0.5 * (observation[i] + pendingObservation[i]);
+			}
+			hasPendingObservation = false;
+
+			addObservation(observation);
+		}
+	}
+
+	/**
+	 * Welford update of the means and co-moments with one observation
+	 *
+	 * @param values-Observation (Y, X1, ..., Xm)
+	 */
+	private void addObservation(double[] values)
+	{
+		int dimension = means.length;
+
+		numberOfObservations++;
+		coefficients = null;
+
+		for (int i = 0; i < dimension; i++)
+		{
+			deviations[i] = values[i] - means[i];
+			means[i] += deviations[i] / numberOfObservations;
+		}
+
+		for (int r = 0; r < dimension; r++)
+		{
+			double updatedDeviation = values[r] - means[r];
+			int rowStart = r * dimension;
+			for (int c = r; c < dimension; c++)
+			{
+				coMoments[rowStart + c] += updatedDeviation * deviations[c];
+			}
+		}
+	}
+
+	/**
+	 * Adds the observations of another estimator, combining the moments with Chan's formula
+	 *
+	 * @param other-Estimator for the same functional and controls
+	 */
+	public void merge(ControlVariateEstimator other)
+	{
+		if (other.numberOfObservations == 0)
+		{
+			return;
+		}
+
+		int dimension = means.length;
+		long combinedObservations = numberOfObservations + other.numberOfObservations;
+		double weight = (double) numberOfObservations * other.numberOfObservations / combinedObservations;
+
+		for (int i = 0; i < dimension; i++)
+		{
+			deviations[i] = other.means[i] - means[i];
+		}
+
+		for (int r = 0; r < dimension; r++)
+		{
+			int rowStart = r * dimension;
+			for (int c = r; c < dimension; c++)
+			{
+				coMoments[rowStart + c] += other.coMoments[rowStart + c] + deviations[r] * deviations[c] * weight;
+			}
+		}
+
+		for (int i = 0; i < dimension; i++)
+		{
+			means[i] += deviations[i] * other.numberOfObservations / combinedObservations;
+		}
+
+		numberOfObservations = combinedObservations;
+		coefficients = null;
+	}
+
+	/**
+	 * Regression coefficients of the functional on the controls. Controls that are (nearly) linear combinations of
+	 * the others are handled with a pseudo-inverse, so a single stock or perfectly correlated stocks do not fail.
+	 *
+	 * @return-One coefficient per control
+	 */
+	public double[] getCoefficients()
+	{
+		return coefficients().clone();
+	}
+
+	/**
+	 * Regression coefficients, solved for once after the observations change and reused by every estimate
+	 *
+	 * @return
+	 */
+	private double[] coefficients()
+	{
+		if (coefficients == null)
+		{
+			coefficients = solveCoefficients();
+		}
+
+		return coefficients;
+	}
+
+	/**
+	 * Solves for the regression coefficients from the co-moments with an eigendecomposition
+	 *
+	 * @return
+	 */
+	private double[] solveCoefficients()
+	{
+		int dimension = means.length;
+
+		Matrix controlCoMoments = new Matrix(numberOfControls, numberOfControls);
+		Matrix targetCoMoments = new Matrix(numberOfControls, 1);
+		for (int r = 0; r < numberOfControls; r++)
+		{
+			targetCoMoments.set(r, 0, coMoments[r + 1]);
+			for (int c = r; c < numberOfControls; c++)
+			{
+				double value = coMoments[(r + 1) * dimension + c + 1];
+				controlCoMoments.set(r, c, value);
+				controlCoMoments.set(c, r, value);
+			}
+		}
+
+		EigenvalueDecomposition eigen = controlCoMoments.eig();
+		double[] eigenvalues = eigen.getRealEigenvalues();
+		Matrix eigenvectors = eigen.getV();
+
+		double largest = 0.0;
+		for (double eigenvalue : eigenvalues)
+		{
+			largest = Math.max(largest, eigenvalue);
+		}
+		double cutoff = 1e-12 * largest * numberOfControls;
+
+		//beta = V D^+ V^T Sxy
+		Matrix projected = eigenvectors.transpose().times(targetCoMoments);
+		for (int k = 0; k < numberOfControls; k++)
+		{
+			projected.set(k, 0, eigenvalues[k] > cutoff ? projected.get(k, 0) / eigenvalues[k] : 0.0);
+		}
+
+		return eigenvectors.times(projected).getColumnPackedCopy();
+	}
+
+	/**
+	 * Control variate estimate of the expectation of the functional
+	 *
+	 * @return
+	 */
+	public double getEstimate()
+	{
+		double[] coefficients = coefficients();
+
+		double estimate = means[0];
+		for (int i = 0; i < numberOfControls; i++)
+		{
+			estimate -= coefficients[i] * (means[i + 1] - expectedControls[i]);
+		}
+
+		return estimate;
+	}
+
+	/**
+	 * Standard error of the control variate estimate, from the variance left after the regression
+	 *
+	 * @return
+	 */
+	public double getStandardError()
+	{
+		long degreesOfFreedom = numberOfObservations - 1 - numberOfControls;
+		if (degreesOfFreedom < 1)
+		{
+			return Double.NaN;
+		}
+
+		return Math.sqrt(Math.max(residualSumOfSquares(), 0.0) / degreesOfFreedom / numberOfObservations);
+	}
+
+	/**
+	 * Plain Monte Carlo estimate of the expectation of the functional, ignoring the controls
+	 *
+	 * @return
+	 */
+	public double getPlainEstimate()
+	{
+		return means[0];
+	}
+
+	/**
+	 * Standard error of the plain Monte Carlo estimate
+	 *
+	 * @return
+	 */
+	public double getPlainStandardError()
+	{
+		if (numberOfObservations < 2)
+		{
+			return Double.NaN;
+		}
+
+		return Math.sqrt(coMoments[0] / (numberOfObservations - 1) / numberOfObservations);
+	}
+
+	/**
+	 * Ratio of the variance of the plain estimate to that of the control variate estimate, the factor by which the
+	 * controls cut the number of observations needed for the same confidence interval
+	 *
+	 * @return
+	 */
+	public double getVarianceReductionFactor()
+	{
+		double plainError = getPlainStandardError();
+		double controlledError = getStandardError();
+
+		return plainError * plainError / (controlledError * controlledError);
+	}
+
+	/**
+	 * Getter for the number of observations, which is the number of pairs in antithetic mode
+	 *
+	 * @return
+	 */
+	public long getNumberOfObservations()
+	{
+		return numberOfObservations;
+	}
+
+	/**
+	 * Getter for the known expectations of the controls
+	 *
+	 * @return
+	 */
+	public double[] getExpectedControls()
+	{
+		return expectedControls;
+	}
+
+	/**
+	 * Sum of squares of Y left unexplained by the controls, Syy - Sxy . beta
+	 *
+	 * @return
+	 */
+	private double residualSumOfSquares()
+	{
+		double[] coefficients = coefficients();
+
+		double residual = coMoments[0];
+		for (int i = 0; i < numberOfControls; i++)
+		{
+			residual -= coMoments[i + 1] * coefficients[i];
+		}
+
+		return residual;
+	}
+}
@@ -0,0 +1,396 @@
+package financeproject2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the covariance matrix of the returns of many stocks, C = X^T X / T for the centered returns X, in
+ * O(n^2 T) work spread across a fork-join pool.
+ *
+ * The stocks are cut into panels of TILE_SIZE stocks. Each panel is copied once into a contiguous array,
+ * day-major, so that a tile of the matrix (one pair of panels) reads two arrays front to back, a few days at a
+ * time, while its sums are built up in 4 x 4 blocks held in registers. Only the tiles on and above the diagonal are computed; each is
+ * mirrored into the lower triangle. The tiles are independent and are handed out to the pool in halves.
+ *
+ * Missing returns are marked with NaN, as for a stock that has a shorter history than the others. The covariance
+ * of two stocks is then taken over the days both have a return for (pairwise-complete), with the mean of each
+ * stock taken over those same days:
+ *
+ * C_ij = (sum x_i x_j - sum x_i sum x_j / n_ij) / n_ij, all sums over the n_ij shared days.
+ *
+ * The covariance is the population one, divided by the number of days, as in GatherDriftsAndVolatilities. Two
+ * stocks without a shared day get NaN.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class CovarianceEngine
+{
+	//Stocks per panel. A tile of sums takes TILE_SIZE^2 doubles, 32 kB.
+	static final int TILE_SIZE = 64;
+
+	//Days summed in registers before the sums are written back, so that a piece of each panel fits in cache
+	private static final int DAYS_PER_PASS = 128;
+
+	//Ranges with at most this many tiles are computed by a single task
+	private static final int TILES_PER_TASK = 1;
+
+	ForkJoinPool pool;
+
+	/**
+	 * Sets up an engine that runs on the common fork-join pool
+	 */
+	public CovarianceEngine()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sets up an engine that runs on the given fork-join pool
+	 *
+	 * @param pool
+	 */
+	public CovarianceEngine(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the covariance matrix of the returns
+	 *
+	 * @param returns-Returns indexed by [day][stock], NaN where a stock has no return on a day
+	 * @return-Covariances, row-major n x n
+	 */
+	public double[] covariance(double[][] returns)
+	{
+		int numberOfDays = returns.length;
+		int numberOfStocks = numberOfDays == 0 ? 0 : returns[0].length;
+
+		double[] covariances = new double[numberOfStocks * numberOfStocks];
+		if (numberOfStocks == 0)
+		{
+			return covariances;
+		}
+
+		Panels panels = new Panels(returns, numberOfStocks, numberOfDays);
+
+		int numberOfPanels = panels.values.length;
+		int numberOfTiles = numberOfPanels * (numberOfPanels + 1) / 2;
+
+		pool.invoke(new TileRangeTask(panels, covariances, 0, numberOfTiles));
+
+		return covariances;
+	}
+
+	/**
+	 * Lays out ragged histories, such as the log returns of stocks listed on different days, as a [day][stock]
+	 * matrix. Every history starts on day 0 and the days past its end are NaN.
+	 *
+	 * @param returnsOfStocks-Returns indexed by [stock][day]
+	 * @return-Returns indexed by [day][stock]
+	 */
+	public static double[][] toDayMajor(double[][] returnsOfStocks)
+	{
+		int numberOfDays = 0;
+		for (double[] returnsOfStock : returnsOfStocks)
+		{
+			numberOfDays = Math.max(numberOfDays, returnsOfStock.length);
+		}
+
+		double[][] returns = new double[numberOfDays][returnsOfStocks.length];
+		for (int day = 0; day < numberOfDays; day++)
+		{
+			for (int stock = 0; stock < returnsOfStocks.length; stock++)
+			{
+				returns[day][stock] = day < returnsOfStocks[stock].length ? returnsOfStocks[stock][day] : Double.NaN;
+			}
+		}
+
+		return returns;
+	}
+
+	/**
+	 * Centered returns cut into panels of TILE_SIZE stocks, each stored day-major in one array
+	 */
+	private static class Panels
+	{
+		int numberOfStocks;
+		int numberOfDays;
+
+		//Centered returns indexed by [panel][day * TILE_SIZE + stock in panel], 0 where missing
+		double[][] values;
+
+		//1 where a return is present and 0 where missing, null when nothing is missing
+		double[][] presence;
+
+		Panels(double[][] returns, int numberOfStocks, int numberOfDays)
+		{
+			this.numberOfStocks = numberOfStocks;
+			this.numberOfDays = numberOfDays;
+
+			//Mean of each stock over the days it has a return for
+			double[] sums = new double[numberOfStocks];
+			int[] counts = new int[numberOfStocks];
+			for (double[] returnsOnDay : returns)
+			{
+				for (int stock = 0; stock < numberOfStocks; stock++)
+				{
+					double value = returnsOnDay[stock];
+					if (!Double.isNaN(value))
+					{
+						sums[stock] += value;
+						counts[stock]++;
+					}
+				}
+			}
+
+			boolean hasMissingReturns = false;
+			double[] means = new double[numberOfStocks];
+			for (int stock = 0; stock < numberOfStocks; stock++)
+			{
+				means[stock] = counts[stock] == 0 ? 0.0 : sums[stock] / counts[stock];
+				hasMissingReturns |= counts[stock] < numberOfDays;
+			}
+
+			//Centering first keeps the sums of products small, so the pairwise correction below loses no precision
+			int numberOfPanels = (numberOfStocks + TILE_SIZE - 1) / TILE_SIZE;
+			this.values = new double[numberOfPanels][numberOfDays * TILE_SIZE];
+			this.presence = hasMissingReturns ? new double[numberOfPanels][numberOfDays * TILE_SIZE] : null;
+
+			for (int day = 0; day < numberOfDays; day++)
+			{
+				double[] returnsOnDay = returns[day];
+				for (int stock = 0; stock < numberOfStocks; stock++)
+				{
+					int index = day * TILE_SIZE + stock % TILE_SIZE;
+					double value = returnsOnDay[stock];
+
+					if (!Double.isNaN(value))
+					{
+						values[stock / TILE_SIZE][index] = value - means[stock];
+						if (hasMissingReturns)
+						{
+							presence[stock / TILE_SIZE][index] = 1.0;
+						}
+					}
+				}
+			}
+		}
+
+		int stocksIn(int panel)
+		{
+			return Math.min(TILE_SIZE, numberOfStocks - panel * TILE_SIZE);
+		}
+	}
+
+	/**
+	 * Splits a range of tiles of the upper triangle in half until it is small enough to compute directly. Tile k
+	 * is the k-th pair (rowPanel, columnPanel) with rowPanel <= columnPanel in row order.
+	 */
+	private static class TileRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		Panels panels;
+		double[] covariances;
+		int start;
+		int end;
+
+		TileRangeTask(Panels panels, double[] covariances, int start, int end)
+		{
+			this.panels = panels;
+			this.covariances = covariances;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (end - start <= TILES_PER_TASK)
+			{
+				int numberOfPanels = panels.values.length;
+
+				//Find the panels of the first tile, then walk the row
+				int rowPanel = 0;
+				int tilesBeforeRow = 0;
+				while (tilesBeforeRow + numberOfPanels - rowPanel <= start)
+				{
+					tilesBeforeRow += numberOfPanels - rowPanel;
+					rowPanel++;
+				}
+				int columnPanel = rowPanel + start - tilesBeforeRow;
+
+				double[] sums = new double[TILE_SIZE * TILE_SIZE];
+				double[][] pairwiseSums = panels.presence == null ? null : new double[3][TILE_SIZE * TILE_SIZE];
+
+				for (int tile = start; tile < end; tile++)
+				{
+					computeTile(rowPanel, columnPanel, sums, pairwiseSums);
+
+					columnPanel++;
+					if (columnPanel == numberOfPanels)
+					{
+						rowPanel++;
+						columnPanel = rowPanel;
+					}
+				}
+			}
+			else
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new TileRangeTask(panels, covariances, start, middle),
+						new TileRangeTask(panels, covariances, middle, end));
+			}
+		}
+
+		/**
+		 * Computes one tile and writes it into both triangles
+		 *
+		 * @param rowPanel
+		 * @param columnPanel
+		 * @param sums-Buffer for the sums of products
+		 * @param pairwiseSums-Buffers for the sums used by the pairwise correction, null when nothing is missing
+		 */
+		private void computeTile(int rowPanel, int columnPanel, double[] sums, double[][] pairwiseSums)
+		{
+			boolean isDiagonal = rowPanel == columnPanel;
+
+			Arrays.fill(sums, 0.0);
+			accumulateProducts(panels.values[rowPanel], panels.values[columnPanel], isDiagonal, sums);
+
+			if (pairwiseSums != null)
+			{
+				double[] rowPresence = panels.presence[rowPanel];
+				double[] columnPresence = panels.presence[columnPanel];
+
+				for (double[] buffer : pairwiseSums)
+				{
+					Arrays.fill(buffer, 0.0);
+				}
+
+				//Sum of x_i over the days j is present, of x_j over the days i is present, and the shared days
+				accumulateProducts(panels.values[rowPanel], columnPresence, isDiagonal, pairwiseSums[0]);
+				accumulateProducts(rowPresence, panels.values[columnPanel], isDiagonal, pairwiseSums[1]);
+				accumulateProducts(rowPresence, columnPresence, isDiagonal, pairwiseSums[2]);
+			}
+
+			int numberOfStocks = panels.numberOfStocks;
+			int rows = panels.stocksIn(rowPanel);
+			int columns = panels.stocksIn(columnPanel);
+			int firstRow = rowPanel * TILE_SIZE;
+			int firstColumn = columnPanel * TILE_SIZE;
+
+			for (int r = 0; r < rows; r++)
+			{
+				//A tile on the diagonal only holds its upper triangle
+				for (int c = isDiagonal ? r : 0; c < columns; c++)
+				{
+					int index = r * TILE_SIZE + c;
+
+					double covariance;
+					if (pairwiseSums == null)
+					{
+						covariance = sums[index] / panels.numberOfDays;
+					}
+					else
+					{
+						double sharedDays = pairwiseSums[2][index];
+						covariance = sharedDays == 0 ? Double.NaN
+								: (sums[index] - pairwiseSums[0][index] * pairwiseSums[1][index] / sharedDays)
+										/ sharedDays;
+					}
+
+					covariances[(firstRow + r) * numberOfStocks + firstColumn + c] = covariance;
+					covariances[(firstColumn + c) * numberOfStocks + firstRow + r] = covariance;
+				}
+			}
+		}
+
+		/**
+		 * Adds a[day][r] * b[day][c] over every day into sums[r][c]. The tile is cut into 4 x 4 blocks whose
+		 * sixteen sums are kept in registers over a run of DAYS_PER_PASS days, so each pass loads eight values for
+		 * sixteen products and the two pieces of panel it reads stay in cache for all the blocks.
+		 *
+		 * The panels are padded with zeros to TILE_SIZE stocks, so every block is complete.
+		 *
+		 * @param a-Row panel, day-major
+		 * @param b-Column panel, day-major
+		 * @param isDiagonal-Whether a and b are the same panel, in which case the blocks below the diagonal are
+		 * skipped
+		 * @param sums-Indexed by r * TILE_SIZE + c
+		 */
+		private void accumulateProducts(double[] a, double[] b, boolean isDiagonal, double[] sums)
+		{
+			int numberOfDays = panels.numberOfDays;
+
+			for (int firstDay = 0; firstDay < numberOfDays; firstDay += DAYS_PER_PASS)
+			{
+				int end = Math.min(numberOfDays, firstDay + DAYS_PER_PASS) * TILE_SIZE;
+
+				for (int r = 0; r < TILE_SIZE; r += 4)
+				{
+					for (int c = isDiagonal ? r : 0; c < TILE_SIZE; c += 4)
+					{
+						double s00 = 0, s01 = 0, s02 = 0, s03 = 0;
+						double s10 = 0, s11 = 0, s12 = 0, s13 = 0;
+						double s20 = 0, s21 = 0, s22 = 0, s23 = 0;
+						double s30 = 0, s31 = 0, s32 = 0, s33 = 0;
+
+						for (int offset = firstDay * TILE_SIZE; offset < end; offset += TILE_SIZE)
+						{
+							double a0 = a[offset + r];
+							double a1 = a[offset + r + 1];
+							double a2 = a[offset + r + 2];
+							double a3 = a[offset + r + 3];
+
+							double b0 = b[offset + c];
+							double b1 = b[offset + c + 1];
+							double b2 = b[offset + c + 2];
+							double b3 = b[offset + c + 3];
+
+							s00 += a0 * b0;
+							s01 += a0 * b1;
+							s02 += a0 * b2;
+							s03 += a0 * b3;
+							s10 += a1 * b0;
+							s11 += a1 * b1;
+							s12 += a1 * b2;
+							s13 += a1 * b3;
+							s20 += a2 * b0;
+							s21 += a2 * b1;
+							s22 += a2 * b2;
+							s23 += a2 * b3;
+							s30 += a3 * b0;
+							s31 += a3 * b1;
+							s32 += a3 * b2;
+							s33 += a3 * b3;
+						}
+
+						int index = r * TILE_SIZE + c;
+						sums[index] += s00;
+						sums[index + 1] += s01;
+						sums[index + 2] += s02;
+						sums[index + 3] += s03;
+						index += TILE_SIZE;
+						sums[index] += s10;
+						sums[index + 1] += s11;
+						sums[index + 2] += s12;
+						sums[index + 3] += s13;
+						index += TILE_SIZE;
+						sums[index] += s20;
+						sums[index + 1] += s21;
+						sums[index + 2] += s22;
+						sums[index + 3] += s23;
+						index += TILE_SIZE;
+						sums[index] += s30;
+						sums[index + 1] += s31;
+						sums[index + 2] += s32;
+						sums[index + 3] += s33;
+					}
+				}
+			}
+		}
+	}
+}
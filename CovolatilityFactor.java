@@ -0,0 +1,299 @@
+package financeproject2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The result of a CovolatilityFactorization. The correlated sample of stock i is
+ * 
+ *     sum over j of loadings[i][j] * z[j]  +  residualVolatilities[i] * z[rank + i]
+ * 
+ * where z is a vector of independent standard Gaussian samples. Exact factorizations have no residual part and 
+ * only use the first rank entries of z. A factor model keeps the rank small and puts the variance the factors 
+ * miss into the residual part, which turns the O(stocks^2) product into an O(stocks * rank) one.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class CovolatilityFactor 
+{
+	int numberOfStocks;
+	
+	int rank;
+	
+	//Loadings stored row-major, entry (stock, factor) at stock * rank + factor
+	double[] loadings;
+	
+	//Null when the loadings reproduce the covolatility matrix on their own
+	double[] residualVolatilities;
+	
+	/**
+	 * Wraps factor loadings
+	 * 
+	 * @param numberOfStocks
+	 * @param rank-Number of factors
+	 * @param loadings-Row-major loadings of size numberOfStocks * rank
+	 * @param residualVolatilities-Idiosyncratic volatility of each stock, or null
+	 */
+	public CovolatilityFactor(int numberOfStocks, int rank, double[] loadings, double[] residualVolatilities) 
+	{
+		this.numberOfStocks = numberOfStocks;
+		this.rank = rank;
+		this.loadings = loadings;
+		this.residualVolatilities = residualVolatilities;
+	}
+	
+	/**
+	 * Wraps a full square factor such as a Cholesky factor or a matrix square root
+	 * 
+	 * @param squareFactor
+	 * @return-The factor with rank equal to the number of stocks
+	 */
+	public static CovolatilityFactor ofSquareMatrix(double[][] squareFactor) 
+	{
+		int numberOfStocks = squareFactor.length;
+		double[] loadings = new double[numberOfStocks * numberOfStocks];
+		
+		for (int row = 0; row < numberOfStocks; row++)
+		{
+			System.arraycopy(squareFactor[row], 0, loadings, row * numberOfStocks, numberOfStocks);
+		}
+		
+		return new CovolatilityFactor(numberOfStocks, numberOfStocks, loadings, null);
+	}
+	
+	/**
+	 * Turns independent Gaussian samples into correlated ones without allocating
+	 * 
+	 * @param gaussianSample-Independent samples, of length getNoiseDimension()
+	 * @param correlatedSample-Receives one correlated sample per stock
+	 */
+	public void correlate(double[] gaussianSample, double[] correlatedSample) 
+	{
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double sum = 0.0;
+			int rowStart = i * rank;
+			for (int j = 0; j < rank; j++)
+			{
+				sum += loadings[rowStart + j] * gaussianSample[j];
+			}
+			
+			if (residualVolatilities != null)
+			{
+				sum += residualVolatilities[i] * gaussianSample[rank + i];
+			}
+			
+			correlatedSample[i] = sum;
+		}
+	}
+	
+	/**
+	 * Correlates the samples of a block of paths at once, a matrix-matrix product of the loadings with the block.
+	 * The innermost loop runs along the paths over contiguous arrays, so the JIT compiles it into SIMD 
+	 * instructions. Each path gets exactly the same result as correlate would give it.
+	 * 
+	 * @param gaussianSamples-Independent samples indexed by [noise dimension][path]
+	 * @param correlatedSamples-Receives the correlated samples indexed by [stock][path]
+	 * @param numberOfPaths-Number of paths in the block, at most the length of the rows
+	 */
+	public void correlateBlock(double[][] gaussianSamples, double[][] correlatedSamples, int numberOfPaths) 
+	{
+		//Four stocks at a time, so every sample loaded feeds four multiply-adds
+		int i = 0;
+		for (; i + 3 < numberOfStocks; i += 4)
+		{
+			double[] correlated0 = correlatedSamples[i];
+			double[] correlated1 = correlatedSamples[i + 1];
+			double[] correlated2 = correlatedSamples[i + 2];
+			double[] correlated3 = correlatedSamples[i + 3];
+			Arrays.fill(correlated0, 0, numberOfPaths, 0.0);
+			Arrays.fill(correlated1, 0, numberOfPaths, 0.0);
+			Arrays.fill(correlated2, 0, numberOfPaths, 0.0);
+			Arrays.fill(correlated3, 0, numberOfPaths, 0.0);
+			
+			for (int j = 0; j < rank; j++)
+			{
+				double loading0 = loadings[i * rank + j];
+				double loading1 = loadings[(i + 1) * rank + j];
+				double loading2 = loadings[(i + 2) * rank + j];
+				double loading3 = loadings[(i + 3) * rank + j];
+				double[] samples = gaussianSamples[j];
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					double sample = samples[p];
+					correlated0[p] += loading0 * sample;
+					correlated1[p] += loading1 * sample;
+					correlated2[p] += loading2 * sample;
+					correlated3[p] += loading3 * sample;
+				}
+			}
+		}
+		
+		for (; i < numberOfStocks; i++)
+		{
+			double[] correlated = correlatedSamples[i];
+			Arrays.fill(correlated, 0, numberOfPaths, 0.0);
+			
+			int rowStart = i * rank;
+			for (int j = 0; j < rank; j++)
+			{
+				double loading = loadings[rowStart + j];
+				double[] samples = gaussianSamples[j];
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					correlated[p] += loading * samples[p];
+				}
+			}
+		}
+		
+		if (residualVolatilities != null)
+		{
+			for (i = 0; i < numberOfStocks; i++)
+			{
+				double[] correlated = correlatedSamples[i];
+				double residualVolatility = residualVolatilities[i];
+				double[] samples = gaussianSamples[rank + i];
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					correlated[p] += residualVolatility * samples[p];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Number of independent Gaussian samples needed for one correlated sample
+	 * 
+	 * @return
+	 */
+	public int getNoiseDimension() 
+	{
+		return residualVolatilities == null ? rank : rank + numberOfStocks;
+	}
+	
+	/**
+	 * Getter for the number of factors
+	 * 
+	 * @return
+	 */
+	public int getRank() 
+	{
+		return rank;
+	}
+	
+	/**
+	 * Getter for the number of stocks
+	 * 
+	 * @return
+	 */
+	public int getNumberOfStocks() 
+	{
+		return numberOfStocks;
+	}
+	
+	/**
+	 * Getter for the row-major loadings
+	 * 
+	 * @return
+	 */
+	public double[] getLoadings() 
+	{
+		return loadings;
+	}
+	
+	/**
+	 * Getter for the residual volatilities, null when there is no residual part
+	 * 
+	 * @return
+	 */
+	public double[] getResidualVolatilities() 
+	{
+		return residualVolatilities;
+	}
+	
+	/**
+	 * The variance each stock gets from this factor, which is the diagonal of the covolatility matrix it 
+	 * reproduces
+	 * 
+	 * @return-One variance per stock
+	 */
+	public double[] getVariances() 
+	{
+		double[] variances = new double[numberOfStocks];
+		
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int j = 0; j < rank; j++)
+			{
+				double loading = loadings[i * rank + j];
+				variances[i] += loading * loading;
+			}
+			
+			if (residualVolatilities != null)
+			{
+				variances[i] += residualVolatilities[i] * residualVolatilities[i];
+			}
+		}
+		
+		return variances;
+	}
+	
+	/**
+	 * Writes the factor in a compact binary form, read back by readFrom
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException 
+	{
+		out.writeInt(numberOfStocks);
+		out.writeInt(rank);
+		for (double loading : loadings)
+		{
+			out.writeDouble(loading);
+		}
+		
+		out.writeBoolean(residualVolatilities != null);
+		if (residualVolatilities != null)
+		{
+			for (double residualVolatility : residualVolatilities)
+			{
+				out.writeDouble(residualVolatility);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a factor written by writeTo
+	 * 
+	 * @param in
+	 * @return-The factor
+	 * @throws IOException
+	 */
+	public static CovolatilityFactor readFrom(DataInput in) throws IOException 
+	{
+		int numberOfStocks = in.readInt();
+		int rank = in.readInt();
+		
+		double[] loadings = new double[numberOfStocks * rank];
+		for (int i = 0; i < loadings.length; i++)
+		{
+			loadings[i] = in.readDouble();
+		}
+		
+		double[] residualVolatilities = null;
+		if (in.readBoolean())
+		{
+			residualVolatilities = new double[numberOfStocks];
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				residualVolatilities[i] = in.readDouble();
+			}
+		}
+		
+		return new CovolatilityFactor(numberOfStocks, rank, loadings, residualVolatilities);
+	}
+}
@@ -0,0 +1,19 @@
+package financeproject2;
+
+/**
+ * A way of factoring the covolatility matrix into the loadings that turn independent Gaussian samples into
+ * correlated ones. The factorization is chosen when the SDE system is set up and its result is cached there.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface CovolatilityFactorization 
+{
+	/**
+	 * Factors a covolatility matrix
+	 * 
+	 * @param covolatilityMatrix-Symmetric covolatility matrix of the stocks
+	 * @return-Factor F (plus residual volatilities) with F times F transposed close to the covolatility matrix
+	 */
+	CovolatilityFactor factor(double[][] covolatilityMatrix);
+}
@@ -0,0 +1,60 @@
+package financeproject2;
+
+import java.util.ArrayList;
+
+/**
+ * Computes the covolatility matrix of a system of stocks from the log returns of their daily prices. The
+ * covolatility of two stocks is 250 times the covariance of their log returns, the same yearly scaling as the
+ * volatilities of GatherDriftsAndVolatilities, so the diagonal of the matrix holds the volatilities.
+ *
+ * The covariances come from CovarianceEngine, which spreads the O(n^2 T) work over all processors. When the stocks
+ * have histories of different lengths, each pair is taken over the days both have a return for.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class CovolatilityMatrixCalculator 
+{
+	private static final CovarianceEngine covarianceEngine = new CovarianceEngine();
+	
+	/**
+	 * Generates the covolatility matrix of the stocks
+	 * 
+	 * @param dailyPricesOfStocks-Data read from the input txt file of daily stock prices
+	 * @param driftsAndVolatilities-Statistics of the stocks from GatherDriftsAndVolatilities
+	 * @param logReturnsOfStocks-Log returns of each stock from GatherDriftsAndVolatilities
+	 * @return-Covolatility matrix, one row per stock
+	 */
+	public static ArrayList<ArrayList<Double>> generateCovolatilityMatrix(ArrayList<ArrayList<Double>> dailyPricesOfStocks,
+			ArrayList<ArrayList<Double>> driftsAndVolatilities, ArrayList<ArrayList<Double>> logReturnsOfStocks) 
+	{
+		double[][] returnsOfStocks = new double[logReturnsOfStocks.size()][];
+		for (int i = 0; i < returnsOfStocks.length; i++)
+		{
+			returnsOfStocks[i] = SDESystem.convertToBasicArray(logReturnsOfStocks.get(i));
+		}
+		
+		int numberOfStocks = returnsOfStocks.length;
+		
+		return SDESystem.convertRowMajorToArrayListMatrix(generateCovolatilityMatrix(returnsOfStocks), 
+				numberOfStocks, numberOfStocks);
+	}
+	
+	/**
+	 * Generates the covolatility matrix of the stocks from log returns in basic arrays
+	 * 
+	 * @param logReturnsOfStocks-Log returns indexed by [stock][day], every history starting on the same day
+	 * @return-Covolatility matrix, row-major
+	 */
+	public static double[] generateCovolatilityMatrix(double[][] logReturnsOfStocks) 
+	{
+		double[] covolatilities = covarianceEngine.covariance(CovarianceEngine.toDayMajor(logReturnsOfStocks));
+		
+		for (int i = 0; i < covolatilities.length; i++)
+		{
+			covolatilities[i] *= 250.0;
+		}
+		
+		return covolatilities;
+	}
+}
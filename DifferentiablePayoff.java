@@ -0,0 +1,68 @@
+package financeproject2;
+
+/**
+ * A payoff on the prices of the stocks at the end of a path together with its gradient, which
+ * PathwiseSensitivities carries back through the simulation. The payoff has to be continuous in the prices for the
+ * pathwise derivatives to be unbiased; kinks such as that of a call are fine, jumps such as that of a digital
+ * option are not.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface DifferentiablePayoff 
+{
+	/**
+	 * Evaluates the payoff and its gradient
+	 * 
+	 * @param prices-Price of each stock at the end of the path
+	 * @param gradient-Receives the derivative of the payoff by the price of each stock
+	 * @return-The payoff
+	 */
+	double evaluate(double[] prices, double[] gradient);
+	
+	/**
+	 * The value of a portfolio
+	 * 
+	 * @param holdings-Number of shares of each stock
+	 * @return-The payoff
+	 */
+	static DifferentiablePayoff portfolioValue(double[] holdings)
+	{
+		return (prices, gradient) -> 
+		{
+			double value = 0.0;
+			for (int i = 0; i < prices.length; i++)
+			{
+				value += holdings[i] * prices[i];
+				gradient[i] = holdings[i];
+			}
+			return value;
+		};
+	}
+	
+	/**
+	 * A call on a weighted basket of the stocks
+	 * 
+	 * @param weights-Number of shares of each stock in the basket
+	 * @param strike
+	 * @return-The payoff
+	 */
+	static DifferentiablePayoff basketCall(double[] weights, double strike)
+	{
+		return (prices, gradient) -> 
+		{
+			double basketValue = 0.0;
+			for (int i = 0; i < prices.length; i++)
+			{
+				basketValue += weights[i] * prices[i];
+			}
+			
+			boolean isInTheMoney = basketValue > strike;
+			for (int i = 0; i < prices.length; i++)
+			{
+				gradient[i] = isInTheMoney ? weights[i] : 0.0;
+			}
+			return Math.max(basketValue - strike, 0.0);
+		};
+	}
+}
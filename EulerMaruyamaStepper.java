@@ -0,0 +1,69 @@
+package financeproject2;
+
+/**
+ * The Euler-Maruyama step S + a S dt + S (F dW), the scheme the project started with
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class EulerMaruyamaStepper implements SDEStepper
+{
+	//Drift plus half the volatility of each stock
+	double[] growthRates;
+
+	CovolatilityFactor covolatilityFactor;
+
+	//Buffer reused by every step
+	double[] correlatedIncrement;
+
+	/**
+	 * Sets up the stepper
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 */
+	public EulerMaruyamaStepper(SDESystem SDESystemForStocks)
+	{
+		this.growthRates = growthRatesOf(SDESystemForStocks);
+		this.covolatilityFactor = SDESystemForStocks.getCovolatilityFactor();
+		this.correlatedIncrement = new double[growthRates.length];
+	}
+
+	@Override
+	public void step(double[] currentPrices, double[] nextPrices, double timeStep, double[] brownianIncrement)
+	{
+		covolatilityFactor.correlate(brownianIncrement, correlatedIncrement);
+
+		for (int i = 0; i < currentPrices.length; i++)
+		{
+			double Sj = currentPrices[i];
+
+			nextPrices[i] = Sj + growthRates[i] * timeStep * Sj + Sj * correlatedIncrement[i];
+		}
+	}
+
+	@Override
+	public double expectedGrowthFactor(int stock, double timeStep)
+	{
+		return 1 + growthRates[stock] * timeStep;
+	}
+
+	/**
+	 * Drift plus half the volatility of each stock, the rate a in dS = a S dt + S (F dW)
+	 *
+	 * @param SDESystemForStocks
+	 * @return
+	 */
+	static double[] growthRatesOf(SDESystem SDESystemForStocks)
+	{
+		double[] drifts = SDESystemForStocks.getBasicDriftsOfStocks();
+		double[] squareVolatilities = SDESystemForStocks.getBasicVolatilitiesOfStocks();
+
+		double[] growthRates = new double[drifts.length];
+		for (int i = 0; i < drifts.length; i++)
+		{
+			growthRates[i] = drifts[i] + 0.5 * squareVolatilities[i];
+		}
+
+		return growthRates;
+	}
+}
@@ -0,0 +1,64 @@
+package financeproject2;
+
+/**
+ * A European option on one stock, paid on the price at maturity
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class EuropeanOption implements Payoff
+{
+	int stock;
+
+	double strike;
+
+	int maturityDay;
+
+	OptionType type;
+
+	/**
+	 * Sets up the option
+	 *
+	 * @param stock-Index of the underlying stock
+	 * @param strike
+	 * @param maturityDay
+	 * @param type-Call or put
+	 */
+	public EuropeanOption(int stock, double strike, int maturityDay, OptionType type)
+	{
+		this.stock = stock;
+		this.strike = strike;
+		this.maturityDay = maturityDay;
+		this.type = type;
+	}
+
+	@Override
+	public int getMaturityDay()
+	{
+		return maturityDay;
+	}
+
+	@Override
+	public boolean needsRunningSums()
+	{
+		return false;
+	}
+
+	@Override
+	public void evaluate(int numberOfPaths, double[][] prices, double[][] runningSums, double[] payoffs)
+	{
+		double[] S = prices[stock];
+		double sign = type.sign;
+
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			payoffs[p] = Math.max(sign * (S[p] - strike), 0.0);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "European " + type + " on stock " + stock + " at " + strike;
+	}
+}
@@ -0,0 +1,62 @@
+package financeproject2;
+
+/**
+ * Steps the system with its exact solution. The stocks follow correlated geometric Brownian motions, so over any
+ * step
+ *
+ * S(t + dt) = S(t) exp((a - sigma_i^2 / 2) dt + (F dW)_i),
+ *
+ * with sigma_i^2 the variance of row i of F. The distribution of the prices on the simulated days is exact
+ * whatever the step, so no upsampling is needed.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class ExactLogNormalStepper implements SDEStepper
+{
+	double[] growthRates;
+
+	//Drift of the logarithm of each price, a - sigma_i^2 / 2
+	double[] logDrifts;
+
+	CovolatilityFactor covolatilityFactor;
+
+	double[] correlatedIncrement;
+
+	/**
+	 * Sets up the stepper
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 */
+	public ExactLogNormalStepper(SDESystem SDESystemForStocks)
+	{
+		this.growthRates = EulerMaruyamaStepper.growthRatesOf(SDESystemForStocks);
+		this.covolatilityFactor = SDESystemForStocks.getCovolatilityFactor();
+
+		double[] variances = covolatilityFactor.getVariances();
+		this.logDrifts = new double[growthRates.length];
+		for (int i = 0; i < logDrifts.length; i++)
+		{
+			logDrifts[i] = growthRates[i] - 0.5 * variances[i];
+		}
+
+		this.correlatedIncrement = new double[growthRates.length];
+	}
+
+	@Override
+	public void step(double[] currentPrices, double[] nextPrices, double timeStep, double[] brownianIncrement)
+	{
+		covolatilityFactor.correlate(brownianIncrement, correlatedIncrement);
+
+		for (int i = 0; i < currentPrices.length; i++)
+		{
+			nextPrices[i] = currentPrices[i] * Math.exp(logDrifts[i] * timeStep + correlatedIncrement[i]);
+		}
+	}
+
+	@Override
+	public double expectedGrowthFactor(int stock, double timeStep)
+	{
+		return Math.exp(growthRates[stock] * timeStep);
+	}
+}
@@ -0,0 +1,28 @@
+package financeproject2;
+
+/**
+ * What AlignedPriceIngestion does on a trading day that some stocks have no price for
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public enum GapPolicy 
+{
+	/**
+	 * A stock without a price on a day keeps its price of the last day it had one. Days before every stock has 
+	 * started trading, and days after the first stock has stopped, are dropped, so no price is ever carried 
+	 * forward from before the history of a stock or past its end.
+	 */
+	FORWARD_FILL,
+	
+	/**
+	 * Only the days that every stock has a price for are kept
+	 */
+	DROP,
+	
+	/**
+	 * Every day that any stock has a price for is kept, with NaN for the stocks that have none. 
+	 * CovarianceEngine uses the days each pair of stocks has in common.
+	 */
+	MISSING
+}
@@ -10,8 +10,28 @@ import java.lang.Math;
  */
 public class GatherDriftsAndVolatilities 
 {
+	/**
+	 * Gathers the drift and volatility of each stock. The statistics are those of the daily log returns, so the 
+	 * upsample factor does not enter them.
+	 * 
+	 * @param LogReturnsOfStocks
+	 * @param upSampleFactor-Not used
+	 * @return-One list of {drift, volatility} per stock
+	 */
 	public static ArrayList<ArrayList<Double>> gatherStatisticsForStocks(ArrayList<ArrayList<Double>> LogReturnsOfStocks,
 			int upSampleFactor)
+	{
+		return gatherStatisticsForStocks(LogReturnsOfStocks);
+	}
+	
+	/**
+	 * Gathers the drift and volatility of each stock. Each list of log returns is read once; the mean and the
+	 * variance are accumulated together with Welford's method instead of building centered and squared copies.
+	 * 
+	 * @param LogReturnsOfStocks
+	 * @return-One list of {drift, volatility} per stock
+	 */
+	public static ArrayList<ArrayList<Double>> gatherStatisticsForStocks(ArrayList<ArrayList<Double>> LogReturnsOfStocks)
 	{
 		ArrayList<ArrayList<Double>> driftsAndVolatilitiesOfStocks = new ArrayList<ArrayList<Double>>();
 		
@@ -19,8 +39,10 @@ public class GatherDriftsAndVolatilities
 		{
 			ArrayList<Double> logReturnsOfStock = LogReturnsOfStocks.get(i);
 			
-			Double driftOfStock = computeDriftOfStock(logReturnsOfStock);
-			Double volatilityOfStock = computeVolatilityOfStock(logReturnsOfStock, driftOfStock);
+			double[] meanAndVariance = meanAndVariance(logReturnsOfStock);
+			
+			double driftOfStock = 250.0 * meanAndVariance[0];
+			double volatilityOfStock = 250.0 * meanAndVariance[1];
 
 			
 			//Collect statistics into one arraylist for easier use in calculations 
@@ -34,6 +56,17 @@ public class GatherDriftsAndVolatilities
 		return driftsAndVolatilitiesOfStocks;
 	}
 	
+	/**
+	 * Gathers the drift and volatility of each stock from statistics that were streamed in from the prices
+	 * 
+	 * @param statistics
+	 * @return-One list of {drift, volatility} per stock
+	 */
+	public static ArrayList<ArrayList<Double>> gatherStatisticsForStocks(OnlineStockStatistics statistics)
+	{
+		return statistics.getDriftsAndVolatilities();
+	}
+	
 	/**
 	 * Calculates log return of stocks for calculations of drift and volatility by subtracting 
 	 * consecutive prices and then taking the logarithm of those.
@@ -54,31 +87,6 @@ public class GatherDriftsAndVolatilities
 		return LogReturnsOfStock;
 	}
 	
-	/**
-	 * Calculates drift of the stock from the log returns of stock
-	 * 
-	 * @param logReturnsOfStock
-	 * @return-Double representing yearly drift of a stock
-	 */
-	private static Double computeDriftOfStock(ArrayList<Double> logReturnsOfStock) 
-	{
-		Double drift = 250.0 * (sum(logReturnsOfStock)) / logReturnsOfStock.size();
-		return drift;
-	}
-
-	/**
-	 * Calculates volatility of the stock from the log returns of stock and drifts of a stock
-	 * 
-	 * @param logReturnsOfStock
-	 * @return-Double representing yearly volatility of a stock
-	 */
-	private static Double computeVolatilityOfStock(ArrayList<Double> logReturnsOfStock, Double driftOfStock) 
-	{
-		Double volatilityOfStock = 250 * variance(logReturnsOfStock, driftOfStock / 250);
-		
-		return volatilityOfStock;
-	}
-
 	/**
 	 * Computes the sum of an ArrayList
 	 * 
@@ -97,59 +105,28 @@ public class GatherDriftsAndVolatilities
 	}
 	
 	/**
-	 * Computes the variance of an ArrayList as the average of the squared and centered data
-	 * 
-	 * @param data
-	 * @param mean
-	 * @return-variance of an ArrayList
-	 */
-	private static Double variance(ArrayList<Double> data, Double mean) 
-	{
-		ArrayList<Double> centeredData = center(data, mean);
-		
-		ArrayList<Double> squaredCenteredData = squareElements(centeredData);
-		
-		Double variance = sum(squaredCenteredData) / data.size();
-		
-		return variance;
-	}
-
-	/**
-	 * Centers the data according to the mean
+	 * Computes the mean and the variance of an ArrayList in a single pass with Welford's method. The variance is
+	 * the average of the squared and centered data.
 	 * 
 	 * @param data
-	 * @param mean
-	 * @return-ArrayList containing the centered data
+	 * @return-{mean, variance} of an ArrayList
 	 */
-	private static ArrayList<Double> center(ArrayList<Double> data, Double mean) 
+	private static double[] meanAndVariance(ArrayList<Double> data) 
 	{
-		ArrayList<Double> centeredData = new ArrayList<Double>();
+		double mean = 0.0;
+		double sumOfSquaredDeviations = 0.0;
 		
-		for(int i = 0; i < data.size(); i++)
+		for (int i = 0; i < data.size(); i++)
 		{
-			centeredData.add(data.get(i) - mean);
+			double d = data.get(i);
+			double deviation = d - mean;
+			mean += deviation / (i + 1);
+			sumOfSquaredDeviations += deviation * (d - mean);
 		}
 		
-		return centeredData;
+		return new double[] {mean, sumOfSquaredDeviations / data.size()};
 	}
 
-	/**
-	 * Squares each element of an ArrayList
-	 * 
-	 * @param data
-	 * @return
-	 */
-	private static ArrayList<Double> squareElements(ArrayList<Double> data) 
-	{
-		ArrayList<Double> dataSquared = new ArrayList<Double>();
-		for (Double d : data)
-		{
-			dataSquared.add(Math.pow(d,2));
-		}
-		
-		return dataSquared;
-	}
-	
 	/**
 	 * Helper to generate the log returns
 	 * 
@@ -160,6 +137,7 @@ public class GatherDriftsAndVolatilities
 	{
 		ArrayList<ArrayList<Double>> logReturnsOfStocks = new ArrayList<ArrayList<Double>>();
 		
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.LOG_RETURNS);
 		for (int i = 0; i < dailyPricesOfStocks.size(); i++)
 		{
 			ArrayList<Double> dailyPricesOfStock = dailyPricesOfStocks.get(i);
@@ -167,6 +145,7 @@ public class GatherDriftsAndVolatilities
 			
 			logReturnsOfStocks.add(logReturnsOfStock);
 		}
+		timer.stop();
 		
 		return logReturnsOfStocks;
 	}
@@ -0,0 +1,20 @@
+package financeproject2;
+
+/**
+ * Where the simulator gets its standard Gaussian samples from. A source hands out one stream per path, and the
+ * stream of a path only depends on the source and the index of the path, so runs stay reproducible however the
+ * paths are spread across threads.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface GaussianSource 
+{
+	/**
+	 * Creates the stream of Gaussian samples belonging to one path
+	 * 
+	 * @param pathIndex-Index of the path, starting at 0
+	 * @return-Stream giving the samples of the path step by step
+	 */
+	GaussianStream forPath(long pathIndex);
+}
@@ -0,0 +1,17 @@
+package financeproject2;
+
+/**
+ * The standard Gaussian samples driving one simulated path, handed out one step at a time
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface GaussianStream 
+{
+	/**
+	 * Fills a buffer with the samples of the next step of the path
+	 * 
+	 * @param sample-Buffer to fill, its length is the noise dimension of the covolatility factor
+	 */
+	void nextGaussians(double[] sample);
+}
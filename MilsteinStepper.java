@@ -0,0 +1,58 @@
+package financeproject2;
+
+/**
+ * The Milstein step. The diffusion of stock i only depends on S_i, so the noise is commutative and the Milstein
+ * correction needs no iterated integrals: with X = (F dW)_i and sigma_i^2 the variance of row i of F,
+ *
+ * S + a S dt + S X + S (X^2 - sigma_i^2 dt) / 2.
+ *
+ * The correction has mean zero, so the expected price is that of Euler-Maruyama, but each path is first order
+ * accurate instead of one half.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class MilsteinStepper implements SDEStepper
+{
+	double[] growthRates;
+
+	//Variance of each stock through the covolatility factor
+	double[] variances;
+
+	CovolatilityFactor covolatilityFactor;
+
+	double[] correlatedIncrement;
+
+	/**
+	 * Sets up the stepper
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 */
+	public MilsteinStepper(SDESystem SDESystemForStocks)
+	{
+		this.growthRates = EulerMaruyamaStepper.growthRatesOf(SDESystemForStocks);
+		this.covolatilityFactor = SDESystemForStocks.getCovolatilityFactor();
+		this.variances = covolatilityFactor.getVariances();
+		this.correlatedIncrement = new double[growthRates.length];
+	}
+
+	@Override
+	public void step(double[] currentPrices, double[] nextPrices, double timeStep, double[] brownianIncrement)
+	{
+		covolatilityFactor.correlate(brownianIncrement, correlatedIncrement);
+
+		for (int i = 0; i < currentPrices.length; i++)
+		{
+			double Sj = currentPrices[i];
+			double X = correlatedIncrement[i];
+
+			nextPrices[i] = Sj + growthRates[i] * timeStep * Sj + Sj * X + 0.5 * Sj * (X * X - variances[i] * timeStep);
+		}
+	}
+
+	@Override
+	public double expectedGrowthFactor(int stock, double timeStep)
+	{
+		return 1 + growthRates[stock] * timeStep;
+	}
+}
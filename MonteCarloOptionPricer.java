@@ -0,0 +1,385 @@
+package financeproject2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prices a batch of options on the stocks of an SDE system by Monte Carlo, evaluating every payoff on the same
+ * paths so that the cost of simulating them is shared by all the instruments. The paths are simulated in blocks by
+ * BatchedPathEngine and never stored: the pricer only keeps, for the block being simulated, the sums of the daily
+ * prices when an Asian payoff needs them, evaluates each payoff on the step of its maturity, and folds the block
+ * into a running mean and variance per payoff. The paths stop at the last maturity.
+ *
+ * Options are priced under the risk-neutral measure: the drift of every stock is replaced so that it grows at the
+ * risk-free rate, and the paths use the exact log-normal scheme so that the time step adds no bias. The price is
+ * the discounted mean payoff and the standard error is the discounted standard deviation over the square root of
+ * the number of paths.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class MonteCarloOptionPricer implements PathBlockObserver
+{
+	//Trading days per year, as in the calibration and the time step
+	static final double DAYS_PER_YEAR = 250;
+
+	List<Payoff> payoffs;
+
+	int upSampleFactor;
+
+	double riskFreeRate;
+
+	//Step at which each payoff is evaluated
+	int[] maturitySteps;
+
+	int lastStep;
+
+	//Last step whose prices are summed, -1 when no payoff needs running sums
+	int lastSummedStep = -1;
+
+	long numberOfPaths;
+
+	//Paths observed before the block being simulated
+	long pathsBeforeBlock;
+
+	//Running moments of the payoff, indexed like payoffs
+	double[] means;
+	double[] sumsOfSquaredDeviations;
+
+	//Buffers of the block being simulated
+	double[][] runningSums;
+	double[] payoffValues = new double[0];
+
+	/**
+	 * Sets up a pricer for a batch of payoffs
+	 *
+	 * @param payoffs
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param riskFreeRate-Continuously compounded yearly rate
+	 */
+	public MonteCarloOptionPricer(List<Payoff> payoffs, int upSampleFactor, double riskFreeRate)
+	{
+		this.payoffs = new ArrayList<Payoff>(payoffs);
+		this.upSampleFactor = upSampleFactor;
+		this.riskFreeRate = riskFreeRate;
+
+		this.maturitySteps = new int[payoffs.size()];
+		for (int k = 0; k < maturitySteps.length; k++)
+		{
+			Payoff payoff = payoffs.get(k);
+			maturitySteps[k] = payoff.getMaturityDay() * upSampleFactor;
+			lastStep = Math.max(lastStep, maturitySteps[k]);
+			if (payoff.needsRunningSums())
+			{
+				lastSummedStep = Math.max(lastSummedStep, maturitySteps[k]);
+			}
+		}
+
+		this.means = new double[maturitySteps.length];
+		this.sumsOfSquaredDeviations = new double[maturitySteps.length];
+	}
+
+	/**
+	 * Copy of a system in which every stock grows at the risk-free rate, with the same covolatilities
+	 *
+	 * @param SDESystemForStocks-Calibrated system
+	 * @param riskFreeRate
+	 * @return-The risk-neutral system
+	 */
+	public static SDESystem riskNeutral(SDESystem SDESystemForStocks, double riskFreeRate)
+	{
+		double[] squareVolatilities = SDESystemForStocks.getBasicVolatilitiesOfStocks();
+
+		//The growth rate of a stock is its drift plus half its volatility
+		double[] drifts = new double[squareVolatilities.length];
+		for (int i = 0; i < drifts.length; i++)
+		{
+			drifts[i] = riskFreeRate - 0.5 * squareVolatilities[i];
+		}
+
+		return SDESystemForStocks.withDrifts(drifts);
+	}
+
+	/**
+	 * Simulates paths of the risk-neutral version of a system up to the last maturity on the common pool and adds
+	 * them to the prices
+	 *
+	 * @param SDESystemForStocks-Calibrated system
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param seed
+	 * @param numberOfPaths
+	 */
+	public void simulate(SDESystem SDESystemForStocks, double[] initialPrices, long seed, long numberOfPaths)
+	{
+		MonteCarloPathEngine engine = new MonteCarloPathEngine(riskNeutral(SDESystemForStocks, riskFreeRate),
+				initialPrices, lastStep + 1, upSampleFactor, seed, VarianceReduction.NONE);
+		engine.setSteppingScheme(SteppingScheme.EXACT_LOG_NORMAL);
+
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.SIMULATION);
+		merge(new BatchedPathEngine(engine).observePaths(0, numberOfPaths, this::newEmptyCopy, (a, b) ->
+		{
+			a.merge(b);
+			return a;
+		}));
+		timer.stop();
+	}
+
+	/**
+	 * Makes an empty pricer for the same payoffs, to be merged into this one
+	 *
+	 * @return
+	 */
+	public MonteCarloOptionPricer newEmptyCopy()
+	{
+		return new MonteCarloOptionPricer(payoffs, upSampleFactor, riskFreeRate);
+	}
+
+	@Override
+	public void observeStep(long firstPath, int numberOfPathsInBlock, int step, double[][] blockPrices)
+	{
+		if (step == 0)
+		{
+			startBlock(numberOfPathsInBlock, blockPrices.length);
+		}
+		else if (step <= lastSummedStep && step % upSampleFactor == 0)
+		{
+			for (int i = 0; i < runningSums.length; i++)
+			{
+				double[] sums = runningSums[i];
+				double[] prices = blockPrices[i];
+				for (int p = 0; p < numberOfPathsInBlock; p++)
+				{
+					sums[p] += prices[p];
+				}
+			}
+		}
+
+		for (int k = 0; k < maturitySteps.length; k++)
+		{
+			if (maturitySteps[k] == step)
+			{
+				payoffs.get(k).evaluate(numberOfPathsInBlock, blockPrices, runningSums, payoffValues);
+				addBlock(k, numberOfPathsInBlock);
+			}
+		}
+	}
+
+	/**
+	 * Adds the prices of another pricer for the same payoffs, combining the moments with Chan's formula
+	 *
+	 * @param other
+	 */
+	public void merge(MonteCarloOptionPricer other)
+	{
+		if (other.numberOfPaths == 0)
+		{
+			return;
+		}
+
+		long combinedPaths = numberOfPaths + other.numberOfPaths;
+
+		for (int k = 0; k < means.length; k++)
+		{
+			double deviation = other.means[k] - means[k];
+
+			means[k] += deviation * other.numberOfPaths / combinedPaths;
+			sumsOfSquaredDeviations[k] += other.sumsOfSquaredDeviations[k]
+					+ deviation * deviation * ((double) numberOfPaths * other.numberOfPaths / combinedPaths);
+		}
+
+		numberOfPaths = combinedPaths;
+		pathsBeforeBlock = combinedPaths;
+	}
+
+	/**
+	 * Monte Carlo price of a payoff
+	 *
+	 * @param payoff-Index of the payoff in the batch
+	 * @return-Discounted mean payoff
+	 */
+	public double getPrice(int payoff)
+	{
+		return discountFactor(payoff) * means[payoff];
+	}
+
+	/**
+	 * Standard error of the price of a payoff
+	 *
+	 * @param payoff-Index of the payoff in the batch
+	 * @return
+	 */
+	public double getStandardError(int payoff)
+	{
+		if (numberOfPaths < 2)
+		{
+			return Double.NaN;
+		}
+
+		double variance = sumsOfSquaredDeviations[payoff] / (numberOfPaths - 1);
+
+		return discountFactor(payoff) * Math.sqrt(variance / numberOfPaths);
+	}
+
+	/**
+	 * Getter for the number of paths simulated
+	 *
+	 * @return
+	 */
+	public long getNumberOfPaths()
+	{
+		return numberOfPaths;
+	}
+
+	/**
+	 * Writes the price and standard error of every payoff as tab separated rows
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSummary(Writer out) throws IOException
+	{
+		out.write("payoff\tmaturityDay\tprice\tstandardError\n");
+
+		StringBuilder row = new StringBuilder();
+		for (int k = 0; k < means.length; k++)
+		{
+			row.setLength(0);
+			row.append(payoffs.get(k)).append('\t').append(payoffs.get(k).getMaturityDay()).append('\t')
+					.append(getPrice(k)).append('\t')
+					.append(getStandardError(k)).append('\n');
+			out.write(row.toString());
+		}
+	}
+
+	/**
+	 * Resets the block buffers for a new block
+	 *
+	 * @param numberOfPathsInBlock
+	 * @param numberOfStocks
+	 */
+	private void startBlock(int numberOfPathsInBlock, int numberOfStocks)
+	{
+		pathsBeforeBlock = numberOfPaths;
+		numberOfPaths += numberOfPathsInBlock;
+
+		if (payoffValues.length < numberOfPathsInBlock)
+		{
+			payoffValues = new double[numberOfPathsInBlock];
+			runningSums = null;
+		}
+
+		if (lastSummedStep > 0)
+		{
+			if (runningSums == null)
+			{
+				runningSums = new double[numberOfStocks][payoffValues.length];
+			}
+			for (double[] sums : runningSums)
+			{
+				Arrays.fill(sums, 0, numberOfPathsInBlock, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Folds the payoffs of a block into the running moments of a payoff
+	 *
+	 * @param k-Index of the payoff
+	 * @param numberOfPathsInBlock
+	 */
+	private void addBlock(int k, int numberOfPathsInBlock)
+	{
+		double sum = 0.0;
+		for (int p = 0; p < numberOfPathsInBlock; p++)
+		{
+			sum += payoffValues[p];
+		}
+		double blockMean = sum / numberOfPathsInBlock;
+
+		double blockSumOfSquaredDeviations = 0.0;
+		for (int p = 0; p < numberOfPathsInBlock; p++)
+		{
+			double deviation = payoffValues[p] - blockMean;
+			blockSumOfSquaredDeviations += deviation * deviation;
+		}
+
+		long combinedPaths = pathsBeforeBlock + numberOfPathsInBlock;
+		double deviation = blockMean - means[k];
+
+		means[k] += deviation * numberOfPathsInBlock / combinedPaths;
+		sumsOfSquaredDeviations[k] += blockSumOfSquaredDeviations
+				+ deviation * deviation * ((double) pathsBeforeBlock * numberOfPathsInBlock / combinedPaths);
+	}
+
+	private double discountFactor(int payoff)
+	{
+		return Math.exp(-riskFreeRate * payoffs.get(payoff).getMaturityDay() / DAYS_PER_YEAR);
+	}
+
+	/**
+	 * Calibrates the system from StockData.txt and prices European and Asian calls and puts on every stock at
+	 * three strikes and three maturities, and calls on an equally weighted basket, all on one set of paths
+	 *
+	 * @param args-Number of paths and the risk-free rate
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long numberOfPaths = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		double riskFreeRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.05;
+
+		int upSampleFactor = 5;
+
+		long seed = 5760;
+
+		double[][] dailyPricesOfStocks = StockDataLoader.load(new File("StockData.txt").toPath());
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		SDESystem SDESystemForStocks = new SDESystem(statistics.getDriftsAndVolatilities(),
+				statistics.getCovolatilityMatrix());
+
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+		double[] basketWeights = new double[dailyPricesOfStocks.length];
+		double basketValue = 0.0;
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = dailyPricesOfStocks[i][0];
+			basketWeights[i] = 1.0 / initialPrices.length;
+			basketValue += basketWeights[i] * initialPrices[i];
+		}
+
+		int[] maturityDays = {21, 63, 125};
+		double[] moneyness = {0.9, 1.0, 1.1};
+
+		List<Payoff> payoffs = new ArrayList<Payoff>();
+		for (int maturityDay : maturityDays)
+		{
+			for (double strikeFraction : moneyness)
+			{
+				for (int i = 0; i < initialPrices.length; i++)
+				{
+					double strike = strikeFraction * initialPrices[i];
+					payoffs.add(new EuropeanOption(i, strike, maturityDay, OptionType.CALL));
+					payoffs.add(new EuropeanOption(i, strike, maturityDay, OptionType.PUT));
+					payoffs.add(new AsianOption(i, strike, maturityDay, OptionType.CALL));
+					payoffs.add(new AsianOption(i, strike, maturityDay, OptionType.PUT));
+				}
+				payoffs.add(new BasketOption(basketWeights, strikeFraction * basketValue, maturityDay,
+						OptionType.CALL));
+			}
+		}
+
+		MonteCarloOptionPricer pricer = new MonteCarloOptionPricer(payoffs, upSampleFactor, riskFreeRate);
+		pricer.simulate(SDESystemForStocks, initialPrices, seed, numberOfPaths);
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		pricer.writeSummary(out);
+		out.flush();
+	}
+}
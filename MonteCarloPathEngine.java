@@ -0,0 +1,237 @@
+package financeproject2;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates many trajectories of an SDE system at once by spreading the paths across a fork-join pool.
+ * Every path draws its Gaussian samples from its own stream of a GaussianSource, so the trajectories only
+ * depend on the source and never on the number of threads.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class MonteCarloPathEngine
+{
+	//Ranges with at most this many paths are simulated by a single task
+	private static final int PATHS_PER_TASK = 16;
+
+	SDESystem SDESystemForStocks;
+
+	double[] initialPrices;
+
+	int numberOfSteps;
+
+	int upSampleFactor;
+
+	GaussianSource gaussianSource;
+
+	VarianceReduction varianceReduction;
+
+	//gaussianSource, wrapped into antithetic pairs when asked for
+	GaussianSource pathGaussianSource;
+
+	SteppingScheme steppingScheme = SteppingScheme.EULER_MARUYAMA;
+
+	ForkJoinPool pool;
+
+	/**
+	 * Sets up an engine that runs on the common fork-join pool
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param masterSeed-Seed every path stream is derived from
+	 */
+	public MonteCarloPathEngine(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, long masterSeed)
+	{
+		this(SDESystemForStocks, initialPrices, numberOfSteps, upSampleFactor, masterSeed, VarianceReduction.NONE);
+	}
+
+	/**
+	 * Sets up an engine that runs on the common fork-join pool with a variance reduction mode
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param masterSeed-Seed every path stream is derived from
+	 * @param varianceReduction-How the Gaussian samples of the paths are drawn
+	 */
+	public MonteCarloPathEngine(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, long masterSeed, VarianceReduction varianceReduction)
+	{
+		this(SDESystemForStocks, initialPrices, numberOfSteps, upSampleFactor,
+				new PseudoRandomGaussianSource(masterSeed), varianceReduction);
+	}
+
+	/**
+	 * Sets up an engine that runs on the common fork-join pool with any Gaussian source
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param gaussianSource-Source of the Gaussian samples of every path
+	 * @param varianceReduction-How the Gaussian samples of the paths are drawn
+	 */
+	public MonteCarloPathEngine(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, GaussianSource gaussianSource, VarianceReduction varianceReduction)
+	{
+		this(SDESystemForStocks, initialPrices, numberOfSteps, upSampleFactor, gaussianSource, varianceReduction,
+				ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sets up an engine that runs on the given fork-join pool
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param gaussianSource-Source of the Gaussian samples of every path
+	 * @param varianceReduction-How the Gaussian samples of the paths are drawn
+	 * @param pool-Pool the paths are simulated on
+	 */
+	public MonteCarloPathEngine(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, GaussianSource gaussianSource, VarianceReduction varianceReduction, ForkJoinPool pool)
+	{
+		this.SDESystemForStocks = SDESystemForStocks;
+		this.initialPrices = initialPrices;
+		this.numberOfSteps = numberOfSteps;
+		this.upSampleFactor = upSampleFactor;
+		this.gaussianSource = gaussianSource;
+		this.varianceReduction = varianceReduction;
+		this.pool = pool;
+
+		if (varianceReduction == VarianceReduction.ANTITHETIC)
+		{
+			this.pathGaussianSource = new AntitheticGaussianSource(gaussianSource);
+		}
+		else
+		{
+			this.pathGaussianSource = gaussianSource;
+		}
+	}
+
+	/**
+	 * Simulates a number of paths into newly allocated arrays
+	 *
+	 * @param numberOfPaths
+	 * @return-Simulated prices indexed by [path][stock][step]
+	 */
+	public double[][][] simulatePaths(int numberOfPaths)
+	{
+		double[][][] simulatedPaths = new double[numberOfPaths][initialPrices.length][numberOfSteps];
+
+		simulatePaths(simulatedPaths, 0);
+
+		return simulatedPaths;
+	}
+
+	/**
+	 * Simulates one path for every entry of simulatedPaths. Entry p receives the path with index firstPath + p,
+	 * which lets a large run be filled in pieces while staying identical to a run done in one go.
+	 *
+	 * @param simulatedPaths-Preallocated buffers indexed by [path][stock][step]
+	 * @param firstPath-Index of the path written into simulatedPaths[0]
+	 */
+	public void simulatePaths(double[][][] simulatedPaths, long firstPath)
+	{
+		pool.invoke(new PathRangeTask(simulatedPaths, firstPath, 0, simulatedPaths.length));
+	}
+
+	/**
+	 * Simulates a single path into a preallocated buffer
+	 *
+	 * @param simulatedPrices-Buffer indexed by [stock][step]
+	 * @param pathIndex-Index of the path, which selects its random stream
+	 */
+	public void simulatePath(double[][] simulatedPrices, long pathIndex)
+	{
+		new NumericalSDESolution(SDESystemForStocks, initialPrices, simulatedPrices, upSampleFactor,
+				pathGaussianSource.forPath(pathIndex), steppingScheme.stepperFor(SDESystemForStocks, pathIndex));
+	}
+
+	/**
+	 * Chooses the scheme the paths are stepped with, Euler-Maruyama unless set. With the exact log-normal scheme
+	 * an upsample factor of 1 simulates the days without any discretization error.
+	 *
+	 * @param steppingScheme
+	 */
+	public void setSteppingScheme(SteppingScheme steppingScheme)
+	{
+		this.steppingScheme = steppingScheme;
+	}
+
+	/**
+	 * Getter for the stepping scheme
+	 *
+	 * @return
+	 */
+	public SteppingScheme getSteppingScheme()
+	{
+		return steppingScheme;
+	}
+
+	/**
+	 * Getter for the variance reduction mode
+	 *
+	 * @return
+	 */
+	public VarianceReduction getVarianceReduction()
+	{
+		return varianceReduction;
+	}
+
+	/**
+	 * Getter for the Gaussian source
+	 *
+	 * @return
+	 */
+	public GaussianSource getGaussianSource()
+	{
+		return gaussianSource;
+	}
+
+	/**
+	 * Splits a range of paths in half until it is small enough to simulate directly
+	 */
+	private class PathRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		double[][][] simulatedPaths;
+		long firstPath;
+		int start;
+		int end;
+
+		PathRangeTask(double[][][] simulatedPaths, long firstPath, int start, int end)
+		{
+			this.simulatedPaths = simulatedPaths;
+			this.firstPath = firstPath;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (end - start <= PATHS_PER_TASK)
+			{
+				for (int path = start; path < end; path++)
+				{
+					simulatePath(simulatedPaths[path], firstPath + path);
+				}
+			}
+			else
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new PathRangeTask(simulatedPaths, firstPath, start, middle),
+						new PathRangeTask(simulatedPaths, firstPath, middle, end));
+			}
+		}
+	}
+}
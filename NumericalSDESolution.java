@@ -1,272 +1,280 @@
 package financeproject2;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
-import Jama.Matrix;
 /**
  * This class utilizes the gathered data to run the SDE simulation.
- * 
+ *
+ * The simulation state is kept in basic arrays. Everything that does not change between steps is computed once
+ * in the constructor, so a step does not allocate. The steps use the Euler-Maruyama method unless another
+ * SDEStepper is given.
+ *
  * @author Zach Archibald and Evan Turner
  * @version 2023-12-12
  */
-public class NumericalSDESolution 
+public class NumericalSDESolution
 {
-	// Create variables 
-	
-	Random gaussianSampler;
-	
+	// Create variables
+
+	GaussianStream gaussianStream;
+
 	SDESystem SDESystemForStocks;
-	
+
+	//Simulated prices indexed by [stock][step]
+	double[][] simulatedPrices;
+
+	//ArrayList view of simulatedPrices, only built when it is asked for
 	ArrayList<ArrayList<Double>> dailyPrices;
-	
+
+	//Scheme advancing the prices from one step to the next
+	SDEStepper stepper;
+
+	//Values that stay the same for every step
+	double timeStep;
+	double diffusionScale;
+
+	//Buffers reused by every step
+	double[] nDimensionalGaussianSample;
+	double[] brownianIncrement;
+	double[] currentPrices;
+	double[] nextPrices;
+
 	/**
 	 * Runs the simulation returning daily price simulations for each of the stocks.
-	 * 
+	 *
 	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
 	 * @param dailyPricesOfStocks-Data read from the input txt file of daily stock prices
-	 * @param upSampleFactor-Upsample factor taken as an integer 
+	 * @param upSampleFactor-Upsample factor taken as an integer
 	 */
 	public NumericalSDESolution(SDESystem SDESystemForStocks, ArrayList<ArrayList<Double>> dailyPricesOfStocks,
-			int upSampleFactor) 
+			int upSampleFactor)
+	{
+		this(SDESystemForStocks, initialPricesOf(dailyPricesOfStocks),
+				new double[dailyPricesOfStocks.size()][dailyPricesOfStocks.get(0).size() * upSampleFactor],
+				upSampleFactor, new SplittableRandom());
+	}
+
+	/**
+	 * Runs the simulation into a buffer supplied by the caller so that many paths can share preallocated storage.
+	 * The number of steps simulated is the length of the rows of simulatedPrices.
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param simulatedPrices-Buffer indexed by [stock][step] that receives the simulated prices
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param gaussianSampler-Source of the Gaussian samples, normally a stream from PathRandomStreams
+	 */
+	public NumericalSDESolution(SDESystem SDESystemForStocks, double[] initialPrices, double[][] simulatedPrices,
+			int upSampleFactor, RandomGenerator gaussianSampler)
+	{
+		this(SDESystemForStocks, initialPrices, simulatedPrices, upSampleFactor,
+				PseudoRandomGaussianSource.streamOf(gaussianSampler));
+	}
+
+	/**
+	 * Runs the simulation into a buffer supplied by the caller, drawing the Gaussian samples from a stream of a
+	 * GaussianSource
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param simulatedPrices-Buffer indexed by [stock][step] that receives the simulated prices
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param gaussianStream-Gaussian samples of this path
+	 */
+	public NumericalSDESolution(SDESystem SDESystemForStocks, double[] initialPrices, double[][] simulatedPrices,
+			int upSampleFactor, GaussianStream gaussianStream)
+	{
+		this(SDESystemForStocks, initialPrices, simulatedPrices, upSampleFactor, gaussianStream,
+				new EulerMaruyamaStepper(SDESystemForStocks));
+	}
+
+	/**
+	 * Runs the simulation into a buffer supplied by the caller with any stepping scheme
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param simulatedPrices-Buffer indexed by [stock][step] that receives the simulated prices
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param gaussianStream-Gaussian samples of this path
+	 * @param stepper-Scheme advancing the prices from one step to the next
+	 */
+	public NumericalSDESolution(SDESystem SDESystemForStocks, double[] initialPrices, double[][] simulatedPrices,
+			int upSampleFactor, GaussianStream gaussianStream, SDEStepper stepper)
 	{
 		this.SDESystemForStocks = SDESystemForStocks;
-		
-		this.gaussianSampler = new Random();
-		
-		this.dailyPrices = new ArrayList<ArrayList<Double>>();
-		
-		//Adds the right number of ArrayLists into the dailyPricesOfStocks structure
-		for (int i = 0; i < dailyPricesOfStocks.size(); i++)
+
+		this.gaussianStream = gaussianStream;
+
+		this.stepper = stepper;
+
+		this.simulatedPrices = simulatedPrices;
+
+		//The first step of each stock is the first price in the data
+		for (int i = 0; i < initialPrices.length; i++)
 		{
-			this.dailyPrices.add(new ArrayList<Double>());
-			this.dailyPrices.get(i).add(dailyPricesOfStocks.get(i).get(0));
+			this.simulatedPrices[i][0] = initialPrices[i];
 		}
-	
+
+		precomputeStepTerms(upSampleFactor);
+
 		//Simulates each daily price
-		for (int i = 1; i < dailyPricesOfStocks.get(0).size() * upSampleFactor; i++)
+		for (int i = 1; i < simulatedPrices[0].length; i++)
 		{
-			ArrayList<Double> nextValues = simulateDay(i, upSampleFactor);
-			
-			addToDailyPrices(nextValues);
+			simulateDay(i);
 		}
+
+		SimulationMetrics.countPaths(1, simulatedPrices[0].length - 1);
 	}
-	
+
 	/**
-	 * Helper method to add an ArrayList representing a single days price of each stock
-	 * 
-	 * @param nextValues-A single days price of each stock
+	 * Collects the first price of every stock
+	 *
+	 * @param dailyPricesOfStocks-Data read from the input txt file of daily stock prices
+	 * @return-The price of each stock on the first day
 	 */
-	private void addToDailyPrices(ArrayList<Double> nextValues)
+	public static double[] initialPricesOf(ArrayList<ArrayList<Double>> dailyPricesOfStocks)
 	{
-		for (int i = 0; i < nextValues.size(); i++)
+		double[] initialPrices = new double[dailyPricesOfStocks.size()];
+
+		for (int i = 0; i < initialPrices.length; i++)
 		{
-			dailyPrices.get(i).add(nextValues.get(i));
+			initialPrices[i] = dailyPricesOfStocks.get(i).get(0);
 		}
+
+		return initialPrices;
 	}
-	
+
 	/**
-	 * Uses the Euler-Maruyama method to approximate a day of stock data using the previous day
-	 * 
-	 * @param day-The next day in the system
-	 * @param upSampleFactor
-	 * @return-A list of one day's stock prices
+	 * Collects the first price of every stock
+	 *
+	 * @param dailyPricesOfStocks-Daily prices indexed by [stock][day]
+	 * @return-The price of each stock on the first day
 	 */
-	
-	private ArrayList<Double> simulateDay(int day, int upSampleFactor) 
+	public static double[] initialPricesOf(double[][] dailyPricesOfStocks)
 	{
-		
-		ArrayList<Double> yesterdaysStockPrices = new ArrayList<Double>();
-		for (int i = 0; i < dailyPrices.size(); i++)
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+
+		for (int i = 0; i < initialPrices.length; i++)
 		{
-			yesterdaysStockPrices.add(this.dailyPrices.get(i).get(day-1));
+			initialPrices[i] = dailyPricesOfStocks[i][0];
 		}
-		
-		
-		ArrayList<Double> todaysStockPrices = eulerMaruyamaIteration(yesterdaysStockPrices, upSampleFactor);
-			
-		return todaysStockPrices;
+
+		return initialPrices;
 	}
-	
+
 	/**
-	 * Runs the Euler-Maruyama method
-	 * 
-	 * @param Sj-ArrayList containing information for the previous step in the simulation
+	 * Length of a step in years
+	 *
 	 * @param upSampleFactor
-	 * @return-ArrayList containing information for the current step in the simulation
+	 * @return
 	 */
-	private ArrayList<Double> eulerMaruyamaIteration(ArrayList<Double> Sj, int upSampleFactor) 
+	public static double timeStepOf(int upSampleFactor)
 	{
-		ArrayList<Double> Sjplus1 = new ArrayList<Double>();
-		
-		//Gathers statistics for the data
-		ArrayList<Double> drifts = SDESystemForStocks.getDriftsOfStocks();
-		
-		ArrayList<Double> squareVolatilities = SDESystemForStocks.getDriftsOfStocks();
-		
-		ArrayList<ArrayList<Double>> covolatilityMatrixSqrt = SDESystemForStocks.getCovolatilityMatrixSqrt();
-		
-		//Simulates a step of Brownian motion across the stocks passing the number of stocks in Sj as a parameter
-		ArrayList<Double> nDimensionalGaussianSample = generateNDimensionalGaussionSample(Sj.size());
-		
-		Sjplus1 = vectorAdd(vectorAdd(Sj, scaleVector(hadamardProduct(vectorAdd(drifts, scaleVector(squareVolatilities, 0.5)), Sj), 1.0/(250 * upSampleFactor))), 
-				hadamardProduct(scaleVector(Sj, 1.0 / Math.sqrt((250 * upSampleFactor))), matrixVectorProduct(covolatilityMatrixSqrt, nDimensionalGaussianSample)));
-		
-		return Sjplus1;
+		return 1.0 / (250 * upSampleFactor);
 	}
-	
+
 	/**
-	 * Simulates a step of Brownian motion using functionality built into Java.
-	 * 
-	 * @param dimensionality-should match the number of stocks in the original data
-	 * @return
+	 * Computes the values that only depend on the SDE system and the time step and sets up the step buffers
+	 *
+	 * @param upSampleFactor
 	 */
-	private ArrayList<Double> generateNDimensionalGaussionSample(int dimensionality) 
+	private void precomputeStepTerms(int upSampleFactor)
 	{
-		ArrayList<Double> nDimensionalGaussianSample = new ArrayList<Double>();
-		
-		for (int i = 0; i < dimensionality; i++)
-		{
-			nDimensionalGaussianSample.add(this.gaussianSampler.nextGaussian());
-		}
-		
-		return nDimensionalGaussianSample;
+		this.timeStep = timeStepOf(upSampleFactor);
+
+		this.diffusionScale = Math.sqrt(timeStep);
+
+		int noiseDimension = SDESystemForStocks.getCovolatilityFactor().getNoiseDimension();
+		this.nDimensionalGaussianSample = new double[noiseDimension];
+		this.brownianIncrement = new double[noiseDimension];
+
+		this.currentPrices = new double[simulatedPrices.length];
+		this.nextPrices = new double[simulatedPrices.length];
 	}
 
 	/**
-	 * Adds vectors elementwise
-	 * 
-	 * @param leftVector
-	 * @param rightVector
-	 * @return-Vector representing the sum of vectors
+	 * Approximates a day of stock data using the previous day
+	 *
+	 * @param day-The next day in the system
 	 */
-	private ArrayList<Double> vectorAdd(ArrayList<Double> leftVector, ArrayList<Double> rightVector) 
+	private void simulateDay(int day)
 	{
-		ArrayList<Double> sum = new ArrayList<Double>();
-		
-		for(int i = 0; i < leftVector.size(); i++)
-		{
-			sum.add(leftVector.get(i) + rightVector.get(i));
-		}
-		
-		return sum;
+		//Simulates a step of Brownian motion across the stocks
+		generateNDimensionalGaussionSample(nDimensionalGaussianSample);
+
+		iterate(day);
 	}
 
 	/**
-	 * Scales vectors elementwise
-	 * 
-	 * @param vector
-	 * @param scaleFactor
-	 * @return-Vector representing the scaled vector
+	 * Runs one step of the stepping scheme, writing the prices of step day from the prices of step day - 1.
+	 * Uses the Gaussian sample currently held in nDimensionalGaussianSample.
+	 *
+	 * @param day-The step being computed
 	 */
-	private ArrayList<Double> scaleVector(ArrayList<Double> vector, Double scaleFactor) 
+	void iterate(int day)
 	{
-		ArrayList<Double> scaled = new ArrayList<Double>();
-		
-		for(int i = 0; i < vector.size(); i++)
+		for (int k = 0; k < brownianIncrement.length; k++)
 		{
-			scaled.add(vector.get(i) * scaleFactor);
+			brownianIncrement[k] = diffusionScale * nDimensionalGaussianSample[k];
 		}
-		
-		return scaled;
-	}
-	
-	/**
-	 * Scales each element of a matrix by a factor
-	 * 
-	 * @param vector
-	 * @param scaleFactor
-	 * @return-scaled matrix
-	 */
-	private ArrayList<ArrayList<Double>> scaleMatrix(ArrayList<ArrayList<Double>> vector, Double scaleFactor) 
-	{
-		ArrayList<ArrayList<Double>> scaled = new ArrayList<ArrayList<Double>>();
-		
-		for(int j = 0; j < vector.size(); j++)
+
+		for (int i = 0; i < simulatedPrices.length; i++)
 		{
-			scaled.add(new ArrayList<Double>());
-			for(int i = 0; i < vector.get(j).size(); i++)
-			{
-				scaled.get(j).add(vector.get(j).get(i) * scaleFactor);
-			}
+			currentPrices[i] = simulatedPrices[i][day - 1];
 		}
-		
-		return scaled;
-	}
 
-	/**
-	 * Computes the Hadamard product of two vectors
-	 * 
-	 * @param leftVector
-	 * @param rightVector
-	 * @return
-	 */
-	public ArrayList<Double> hadamardProduct(ArrayList<Double> leftVector, ArrayList<Double> rightVector)
-	{
-		ArrayList<Double> hadamardProduct = new ArrayList<Double>();
-		
-		for(int i = 0; i < leftVector.size(); i++)
+		stepper.step(currentPrices, nextPrices, timeStep, brownianIncrement);
+
+		for (int i = 0; i < simulatedPrices.length; i++)
 		{
-			hadamardProduct.add(leftVector.get(i) * rightVector.get(i));
+			simulatedPrices[i][day] = nextPrices[i];
 		}
-		
-		return hadamardProduct;
 	}
-	
+
 	/**
-	 * Computes the matrix product using Jama after converting the ArrayLists to matrices
-	 * 
-	 * @param m1-Matrix one
-	 * @param m2-Matrix two
-	 * @return-The product converted back to an ArrayList
+	 * Simulates a step of Brownian motion with the Gaussian stream of the path.
+	 *
+	 * @param sample-Buffer to fill, its length is the noise dimension of the covolatility factor
 	 */
-	private ArrayList<ArrayList<Double>> matrixProduct(ArrayList<ArrayList<Double>> m1,
-			ArrayList<ArrayList<Double>> m2) 
+	private void generateNDimensionalGaussionSample(double[] sample)
 	{
-		double[][] basicM1 = SDESystem.convertToBasicArrayMatrix(m1);
-		double[][] basicM2 = SDESystem.convertToBasicArrayMatrix(m2);
-		
-		//Matrix operations use the Jama library
-		Matrix matrixM1 = new Matrix(basicM1);
-		Matrix matrixM2 = new Matrix(basicM2);
-		
-		Matrix product = matrixM1.times(matrixM2);
-		
-		ArrayList<ArrayList<Double>> productAsArrayList = SDESystem.convertToArrayListMatrix(product);
-		
-		return productAsArrayList;
+		this.gaussianStream.nextGaussians(sample);
 	}
-	
+
 	/**
-	 * Takes the vector product of two matrices
-	 * 
-	 * @param m1
-	 * @param m2
-	 * @return-
+	 * Getter method for the simulated prices as basic arrays indexed by [stock][day]
+	 *
+	 * @return
 	 */
-	private ArrayList<Double> matrixVectorProduct(ArrayList<ArrayList<Double>> m1,
-	ArrayList<Double> m2)
+	public double[][] getSimulatedPrices()
 	{
-		double[][] basicM1 = SDESystem.convertToBasicArrayMatrix(m1);
-		double[][] basicM2 = new double[][] {SDESystem.convertToBasicArray(m2)};
-		
-		Matrix matrixM1 = new Matrix(basicM1);
-		Matrix matrixM2 = new Matrix(basicM2);
-		
-		Matrix product = matrixM2.times(matrixM1);
-		
-		ArrayList<Double> productAsArrayList = SDESystem.convertToArrayList(product);
-		
-		return productAsArrayList;
+		return simulatedPrices;
 	}
 
 	/**
 	 * Getter method for daily price list
-	 * 
+	 *
 	 * @return
 	 */
-	public ArrayList<ArrayList<Double>> getDailyPrices() 
+	public ArrayList<ArrayList<Double>> getDailyPrices()
 	{
+		if (dailyPrices == null)
+		{
+			dailyPrices = new ArrayList<ArrayList<Double>>();
+
+			for (int i = 0; i < simulatedPrices.length; i++)
+			{
+				ArrayList<Double> dailyPricesOfStock = new ArrayList<Double>(simulatedPrices[i].length);
+				for (double price : simulatedPrices[i])
+				{
+					dailyPricesOfStock.add(price);
+				}
+				dailyPrices.add(dailyPricesOfStock);
+			}
+		}
+
 		return dailyPrices;
 	}
 }
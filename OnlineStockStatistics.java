@@ -0,0 +1,277 @@
+package financeproject2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Gathers the drifts, volatilities and covolatilities of a system of stocks in a single pass over the daily
+ * prices. The log returns are folded into running means and co-moments with Welford's method as they arrive,
+ * so the memory used only depends on the number of stocks and never on the length of the history.
+ *
+ * The statistics are annualized the same way as in GatherDriftsAndVolatilities: the drift is 250 times the mean
+ * log return and the (co)volatilities are 250 times the (co)variance of the log returns.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class OnlineStockStatistics
+{
+	int numberOfStocks;
+
+	long numberOfObservations;
+
+	//Prices of the last day added through addPrices, null before the first day
+	double[] previousPrices;
+
+	double[] meanLogReturns;
+
+	//Sums of products of deviations from the mean, row-major. Only the upper triangle (column >= row) is kept.
+	double[] coMoments;
+
+	//Buffers reused by every update
+	double[] logReturns;
+	double[] deviations;
+
+	/**
+	 * Sets up empty statistics
+	 *
+	 * @param numberOfStocks
+	 */
+	public OnlineStockStatistics(int numberOfStocks)
+	{
+		this.numberOfStocks = numberOfStocks;
+		this.meanLogReturns = new double[numberOfStocks];
+		this.coMoments = new double[numberOfStocks * numberOfStocks];
+		this.logReturns = new double[numberOfStocks];
+		this.deviations = new double[numberOfStocks];
+	}
+
+	/**
+	 * Streams daily prices indexed by [stock][day] into new statistics one day at a time. Only the days that
+	 * every stock has a price for are used.
+	 *
+	 * @param dailyPricesOfStocks
+	 * @return-Statistics of the log returns of the stocks
+	 */
+	public static OnlineStockStatistics fromDailyPrices(double[][] dailyPricesOfStocks)
+	{
+		OnlineStockStatistics statistics = new OnlineStockStatistics(dailyPricesOfStocks.length);
+
+		int numberOfDays = Integer.MAX_VALUE;
+		for (double[] dailyPricesOfStock : dailyPricesOfStocks)
+		{
+			numberOfDays = Math.min(numberOfDays, dailyPricesOfStock.length);
+		}
+
+		double[] pricesOnDay = new double[dailyPricesOfStocks.length];
+		for (int day = 0; day < numberOfDays; day++)
+		{
+			for (int stock = 0; stock < pricesOnDay.length; stock++)
+			{
+				pricesOnDay[stock] = dailyPricesOfStocks[stock][day];
+			}
+			statistics.addPrices(pricesOnDay);
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Adds the prices of the next day. From the second day on, the log return against the previous day is
+	 * added to the statistics.
+	 *
+	 * @param pricesOnDay-Price of each stock on the day
+	 */
+	public void addPrices(double[] pricesOnDay)
+	{
+		if (previousPrices == null)
+		{
+			previousPrices = pricesOnDay.clone();
+			return;
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			logReturns[i] = Math.log(pricesOnDay[i] / previousPrices[i]);
+			previousPrices[i] = pricesOnDay[i];
+		}
+
+		addLogReturns(logReturns);
+	}
+
+	/**
+	 * Adds one day of log returns using Welford's update of the mean and the co-moments
+	 *
+	 * @param logReturnsOnDay-Log return of each stock on the day
+	 */
+	public void addLogReturns(double[] logReturnsOnDay)
+	{
+		numberOfObservations++;
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double deviation = logReturnsOnDay[i] - meanLogReturns[i];
+			meanLogReturns[i] += deviation / numberOfObservations;
+
+			//The co-moment update pairs the deviation from the old mean with the deviation from the new mean
+			deviations[i] = deviation;
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double deviation = deviations[i];
+			int rowStart = i * numberOfStocks;
+			for (int j = i; j < numberOfStocks; j++)
+			{
+				coMoments[rowStart + j] += deviation * (logReturnsOnDay[j] - meanLogReturns[j]);
+			}
+		}
+	}
+
+	/**
+	 * Removes one day of log returns that was added earlier, reversing Welford's update. This is what lets the
+	 * statistics follow a sliding window without going over the window again.
+	 *
+	 * @param logReturnsOnDay-Log return of each stock on the day being removed
+	 */
+	public void removeLogReturns(double[] logReturnsOnDay)
+	{
+		if (numberOfObservations <= 1)
+		{
+			clear();
+			return;
+		}
+
+		numberOfObservations--;
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double deviation = logReturnsOnDay[i] - meanLogReturns[i];
+			meanLogReturns[i] -= deviation / numberOfObservations;
+
+			//Deviation from the mean without the day, paired below with the deviation from the old mean
+			deviations[i] = logReturnsOnDay[i] - meanLogReturns[i];
+			logReturns[i] = deviation;
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double deviation = deviations[i];
+			int rowStart = i * numberOfStocks;
+			for (int j = i; j < numberOfStocks; j++)
+			{
+				coMoments[rowStart + j] -= deviation * logReturns[j];
+			}
+		}
+	}
+
+	/**
+	 * Removes every log return, keeping the prices of the last day added through addPrices
+	 */
+	void clear()
+	{
+		numberOfObservations = 0;
+		Arrays.fill(meanLogReturns, 0.0);
+		Arrays.fill(coMoments, 0.0);
+	}
+
+	/**
+	 * Getter for the number of log returns added so far
+	 *
+	 * @return
+	 */
+	public long getNumberOfObservations()
+	{
+		return numberOfObservations;
+	}
+
+	/**
+	 * Getter for the number of stocks
+	 *
+	 * @return
+	 */
+	public int getNumberOfStocks()
+	{
+		return numberOfStocks;
+	}
+
+	/**
+	 * Yearly drift of a stock
+	 *
+	 * @param stock
+	 * @return-250 times the mean log return
+	 */
+	public double getDriftOfStock(int stock)
+	{
+		return 250.0 * meanLogReturns[stock];
+	}
+
+	/**
+	 * Yearly volatility of a stock
+	 *
+	 * @param stock
+	 * @return-250 times the variance of the log returns
+	 */
+	public double getVolatilityOfStock(int stock)
+	{
+		return getCovolatility(stock, stock);
+	}
+
+	/**
+	 * Yearly covolatility of two stocks
+	 *
+	 * @param row
+	 * @param column
+	 * @return-250 times the covariance of the log returns of the two stocks
+	 */
+	public double getCovolatility(int row, int column)
+	{
+		int upper = Math.min(row, column) * numberOfStocks + Math.max(row, column);
+
+		return 250.0 * coMoments[upper] / numberOfObservations;
+	}
+
+	/**
+	 * Collects the drift and volatility of each stock in the same layout as
+	 * GatherDriftsAndVolatilities.gatherStatisticsForStocks
+	 *
+	 * @return-One list of {drift, volatility} per stock
+	 */
+	public ArrayList<ArrayList<Double>> getDriftsAndVolatilities()
+	{
+		ArrayList<ArrayList<Double>> driftsAndVolatilitiesOfStocks = new ArrayList<ArrayList<Double>>();
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			ArrayList<Double> driftsAndVolatilitiesOfStock = new ArrayList<Double>();
+			driftsAndVolatilitiesOfStock.add(getDriftOfStock(i));
+			driftsAndVolatilitiesOfStock.add(getVolatilityOfStock(i));
+
+			driftsAndVolatilitiesOfStocks.add(driftsAndVolatilitiesOfStock);
+		}
+
+		return driftsAndVolatilitiesOfStocks;
+	}
+
+	/**
+	 * Builds the full (symmetric) covolatility matrix
+	 *
+	 * @return-The covolatility matrix as an ArrayList of rows
+	 */
+	public ArrayList<ArrayList<Double>> getCovolatilityMatrix()
+	{
+		ArrayList<ArrayList<Double>> covolatilityMatrix = new ArrayList<ArrayList<Double>>();
+
+		for (int row = 0; row < numberOfStocks; row++)
+		{
+			ArrayList<Double> covolatilityRow = new ArrayList<Double>();
+			for (int column = 0; column < numberOfStocks; column++)
+			{
+				covolatilityRow.add(getCovolatility(row, column));
+			}
+			covolatilityMatrix.add(covolatilityRow);
+		}
+
+		return covolatilityMatrix;
+	}
+}
@@ -0,0 +1,28 @@
+package financeproject2;
+
+/**
+ * Whether an option pays when the underlying ends above or below the strike
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public enum OptionType 
+{
+	/**
+	 * Pays max(S - K, 0)
+	 */
+	CALL(1.0),
+	
+	/**
+	 * Pays max(K - S, 0)
+	 */
+	PUT(-1.0);
+	
+	//The payoff is max(sign (S - K), 0)
+	final double sign;
+	
+	OptionType(double sign)
+	{
+		this.sign = sign;
+	}
+}
@@ -0,0 +1,23 @@
+package financeproject2;
+
+/**
+ * Watches a block of paths being simulated together by BatchedPathEngine, one step at a time. It sees the prices
+ * of every path of the block after each step, so it can keep running quantities such as averages or maxima
+ * without the paths ever being stored.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface PathBlockObserver 
+{
+	/**
+	 * Takes in the prices of a block of paths after a step. The array is overwritten by the next step.
+	 * 
+	 * @param firstPath-Index of the first path of the block
+	 * @param numberOfPaths-Number of paths in the block
+	 * @param step-The step just computed, 0 for the initial prices
+	 * @param blockPrices-Prices indexed by [stock][path - firstPath]; only the first numberOfPaths entries of each 
+	 * row belong to the block
+	 */
+	void observeStep(long firstPath, int numberOfPaths, int step, double[][] blockPrices);
+}
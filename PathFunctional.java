@@ -0,0 +1,19 @@
+package financeproject2;
+
+/**
+ * A number computed from one simulated path, such as the price of a stock on the last day or the payoff of an 
+ * option, whose expectation is estimated by Monte Carlo
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface PathFunctional 
+{
+	/**
+	 * Evaluates the functional on a path
+	 * 
+	 * @param simulatedPrices-Simulated prices of the path indexed by [stock][step]
+	 * @return-The value for this path
+	 */
+	double evaluate(double[][] simulatedPrices);
+}
@@ -0,0 +1,60 @@
+package financeproject2;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Hands out a separate random stream for every simulated path. The stream of a path only depends on the
+ * master seed and the index of the path, so a run can be reproduced exactly no matter how many threads
+ * (or machines) the paths are spread across or in which order they are simulated.
+ *
+ * Every stream is a SplittableRandom with the default gamma, so all of them walk the same 2^64 cycle from
+ * different, scattered starting points. Two streams overlapping is unlikely for any realistic number of paths and
+ * draws, but it is not ruled out.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PathRandomStreams
+{
+	//Odd constant used by SplittableRandom to space out its seeds
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Creates the random stream belonging to one path
+	 *
+	 * @param masterSeed-Seed of the whole run
+	 * @param pathIndex-Index of the path, starting at 0
+	 * @return-A SplittableRandom seeded for that path
+	 */
+	public static RandomGenerator forPath(long masterSeed, long pathIndex)
+	{
+		return new SplittableRandom(seedForPath(masterSeed, pathIndex));
+	}
+
+	/**
+	 * Mixes the master seed and the path index into the seed of a path. Consecutive path indices are spread
+	 * through the whole 64 bit space so the streams of neighbouring paths start far apart on the cycle.
+	 *
+	 * @param masterSeed
+	 * @param pathIndex
+	 * @return-Seed of the path
+	 */
+	public static long seedForPath(long masterSeed, long pathIndex)
+	{
+		return mix64(mix64(masterSeed) + GOLDEN_GAMMA * (pathIndex + 1));
+	}
+
+	/**
+	 * Stafford's Mix13 finalizer, the output mix of SplitMix64
+	 *
+	 * @param z
+	 * @return-The mixed value
+	 */
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
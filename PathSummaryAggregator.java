@@ -0,0 +1,252 @@
+package financeproject2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Summarizes simulated paths day by day as they stream past: the mean and standard deviation of the price of each
+ * stock on each day, and percentile bands from a t-digest. Only a few kilobytes are kept per stock and day however
+ * many paths are simulated. Aggregators built on different threads or machines can be merged.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PathSummaryAggregator implements TrajectorySink
+{
+	//Compression of the t-digests, enough for the 5th and 95th percentiles
+	static final double DEFAULT_COMPRESSION = 100;
+
+	int numberOfStocks;
+
+	int numberOfDays;
+
+	//Number of simulation steps between two summarized days
+	int stepStride;
+
+	long numberOfPaths;
+
+	//Running moments indexed by stock * numberOfDays + day
+	double[] means;
+	double[] sumsOfSquaredDeviations;
+
+	TDigest[] digests;
+
+	/**
+	 * Sets up an empty summary
+	 *
+	 * @param numberOfStocks
+	 * @param numberOfDays-Number of days summarized per path
+	 * @param stepStride-Number of simulation steps between two days, usually the upsample factor
+	 */
+	public PathSummaryAggregator(int numberOfStocks, int numberOfDays, int stepStride)
+	{
+		this.numberOfStocks = numberOfStocks;
+		this.numberOfDays = numberOfDays;
+		this.stepStride = stepStride;
+
+		this.means = new double[numberOfStocks * numberOfDays];
+		this.sumsOfSquaredDeviations = new double[numberOfStocks * numberOfDays];
+
+		this.digests = new TDigest[numberOfStocks * numberOfDays];
+		for (int i = 0; i < digests.length; i++)
+		{
+			digests[i] = new TDigest(DEFAULT_COMPRESSION);
+		}
+	}
+
+	@Override
+	public void acceptPath(long path, double[][] simulatedPrices)
+	{
+		numberOfPaths++;
+
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			double[] pricesOfStock = simulatedPrices[stock];
+			int index = stock * numberOfDays;
+
+			for (int day = 0; day < numberOfDays; day++, index++)
+			{
+				double price = pricesOfStock[day * stepStride];
+
+				double deviation = price - means[index];
+				means[index] += deviation / numberOfPaths;
+				sumsOfSquaredDeviations[index] += deviation * (price - means[index]);
+
+				digests[index].add(price);
+			}
+		}
+	}
+
+	/**
+	 * Adds the paths summarized by another aggregator, combining the moments with Chan's formula
+	 *
+	 * @param other-Aggregator over the same stocks and days
+	 */
+	public void merge(PathSummaryAggregator other)
+	{
+		if (other.numberOfPaths == 0)
+		{
+			return;
+		}
+
+		long combinedPaths = numberOfPaths + other.numberOfPaths;
+
+		for (int index = 0; index < means.length; index++)
+		{
+			double deviation = other.means[index] - means[index];
+
+			means[index] += deviation * other.numberOfPaths / combinedPaths;
+			sumsOfSquaredDeviations[index] += other.sumsOfSquaredDeviations[index]
+					+ deviation * deviation * ((double) numberOfPaths * other.numberOfPaths / combinedPaths);
+
+			digests[index].merge(other.digests[index]);
+		}
+
+		numberOfPaths = combinedPaths;
+	}
+
+	/**
+	 * Writes the summary in a compact binary form, read back by readFrom, so that summaries built on other
+	 * machines can be sent over and merged
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException
+	{
+		out.writeInt(numberOfStocks);
+		out.writeInt(numberOfDays);
+		out.writeInt(stepStride);
+		out.writeLong(numberOfPaths);
+
+		for (int index = 0; index < means.length; index++)
+		{
+			out.writeDouble(means[index]);
+			out.writeDouble(sumsOfSquaredDeviations[index]);
+			digests[index].writeTo(out);
+		}
+	}
+
+	/**
+	 * Reads a summary written by writeTo, checking that it has the layout expected before anything is allocated,
+	 * since the summary may come from another machine
+	 *
+	 * @param in
+	 * @param numberOfStocks-Expected number of stocks
+	 * @param numberOfDays-Expected number of days
+	 * @param stepStride-Expected step stride
+	 * @return-The summary
+	 * @throws IOException-When the layout differs
+	 */
+	public static PathSummaryAggregator readFrom(DataInput in, int numberOfStocks, int numberOfDays, int stepStride)
+			throws IOException
+	{
+		int readStocks = in.readInt();
+		int readDays = in.readInt();
+		int readStride = in.readInt();
+		if (readStocks != numberOfStocks || readDays != numberOfDays || readStride != stepStride)
+		{
+			throw new IOException("Summary of " + readStocks + " stocks, " + readDays + " days and stride "
+					+ readStride + " where " + numberOfStocks + ", " + numberOfDays + " and " + stepStride
+					+ " were expected");
+		}
+
+		PathSummaryAggregator summary = new PathSummaryAggregator(numberOfStocks, numberOfDays, stepStride);
+		summary.numberOfPaths = in.readLong();
+		if (summary.numberOfPaths < 0)
+		{
+			throw new IOException("Summary of " + summary.numberOfPaths + " paths");
+		}
+
+		for (int index = 0; index < summary.means.length; index++)
+		{
+			summary.means[index] = in.readDouble();
+			summary.sumsOfSquaredDeviations[index] = in.readDouble();
+			summary.digests[index] = TDigest.readFrom(in);
+		}
+
+		return summary;
+	}
+
+	/**
+	 * Mean simulated price
+	 *
+	 * @param stock
+	 * @param day
+	 * @return
+	 */
+	public double getMean(int stock, int day)
+	{
+		return means[stock * numberOfDays + day];
+	}
+
+	/**
+	 * Sample standard deviation of the simulated price
+	 *
+	 * @param stock
+	 * @param day
+	 * @return
+	 */
+	public double getStandardDeviation(int stock, int day)
+	{
+		if (numberOfPaths < 2)
+		{
+			return 0.0;
+		}
+
+		return Math.sqrt(sumsOfSquaredDeviations[stock * numberOfDays + day] / (numberOfPaths - 1));
+	}
+
+	/**
+	 * Estimated percentile of the simulated price
+	 *
+	 * @param stock
+	 * @param day
+	 * @param quantile-Between 0 and 1
+	 * @return
+	 */
+	public double getPercentile(int stock, int day, double quantile)
+	{
+		return digests[stock * numberOfDays + day].quantile(quantile);
+	}
+
+	/**
+	 * Getter for the number of paths summarized
+	 *
+	 * @return
+	 */
+	public long getNumberOfPaths()
+	{
+		return numberOfPaths;
+	}
+
+	/**
+	 * Writes the summary as tab separated rows of stock, day, mean, standard deviation and the 5th, 50th and 95th
+	 * percentiles
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSummary(Writer out) throws IOException
+	{
+		out.write("stock\tday\tmean\tstandardDeviation\tpercentile5\tpercentile50\tpercentile95\n");
+
+		StringBuilder row = new StringBuilder();
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			for (int day = 0; day < numberOfDays; day++)
+			{
+				row.setLength(0);
+				row.append(stock).append('\t').append(day).append('\t')
+						.append(getMean(stock, day)).append('\t')
+						.append(getStandardDeviation(stock, day)).append('\t')
+						.append(getPercentile(stock, day, 0.05)).append('\t')
+						.append(getPercentile(stock, day, 0.50)).append('\t')
+						.append(getPercentile(stock, day, 0.95)).append('\n');
+				out.write(row.toString());
+			}
+		}
+	}
+}
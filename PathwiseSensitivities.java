@@ -0,0 +1,899 @@
+package financeproject2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sensitivities of the mean of a payoff on the final prices to the inputs of an SDE system, computed by pathwise
+ * differentiation of the Euler-Maruyama step on the same paths as MonteCarloPathEngine. Writing a for the growth
+ * rate (drift plus half the volatility), L for the Cholesky factor of the covolatility matrix and xi for the
+ * Brownian increment, a step is
+ *
+ *     S[t+1] = S[t] * g[t]    where g[t] = 1 + a dt + (L xi[t])
+ *
+ * stock by stock, so its derivatives only need the prices, the increments and g of the path.
+ *
+ * The forward mode carries the derivative of the prices along each asked direction with the path and costs about
+ * one extra step per direction. The adjoint mode runs the path forward, keeps it, and carries the gradient of the
+ * payoff back through the steps, which gives the sensitivity to every initial price, drift, volatility and
+ * covolatility for about the cost of two more steps. Each path only adds up the adjoint of L; the sums are turned
+ * into sensitivities to the covolatility matrix once at the end, since that map is linear.
+ *
+ * The volatility is the variance of the log returns and only enters the growth rate, while the covolatility
+ * matrix only enters the factor, so a change of the variance of a stock moves both its volatility and the
+ * diagonal entry of the covolatility matrix. The sensitivities are those of the undiscounted mean payoff.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PathwiseSensitivities
+{
+	//Ranges with at most this many paths are differentiated by a single task
+	private static final int PATHS_PER_TASK = 256;
+
+	SDESystem SDESystemForStocks;
+
+	double[] initialPrices;
+
+	int numberOfSteps;
+
+	int numberOfStocks;
+
+	double timeStep;
+
+	double diffusionScale;
+
+	double[] growthRates;
+
+	CovolatilityFactor covolatilityFactor;
+
+	//Lower-triangular Cholesky factor of the covolatility matrix and its inverse
+	double[][] choleskyFactor;
+	double[][] inverseCholeskyFactor;
+
+	//Gives the Gaussian draws and the pool of the paths
+	MonteCarloPathEngine engine;
+
+	/**
+	 * Sets up the sensitivities of a system with a Cholesky factor of its covolatility matrix
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param masterSeed-Seed every path stream is derived from
+	 */
+	public PathwiseSensitivities(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, long masterSeed)
+	{
+		this(SDESystemForStocks, initialPrices, numberOfSteps, upSampleFactor, masterSeed, VarianceReduction.NONE);
+	}
+
+	/**
+	 * Sets up the sensitivities of a system with a Cholesky factor of its covolatility matrix and a variance
+	 * reduction mode
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param masterSeed-Seed every path stream is derived from
+	 * @param varianceReduction-How the Gaussian samples of the paths are drawn
+	 */
+	public PathwiseSensitivities(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, long masterSeed, VarianceReduction varianceReduction)
+	{
+		this.SDESystemForStocks = SDESystemForStocks;
+		this.initialPrices = initialPrices;
+		this.numberOfSteps = numberOfSteps;
+		this.numberOfStocks = SDESystemForStocks.getNumberOfStocks();
+		this.timeStep = NumericalSDESolution.timeStepOf(upSampleFactor);
+		this.diffusionScale = Math.sqrt(timeStep);
+		this.growthRates = EulerMaruyamaStepper.growthRatesOf(SDESystemForStocks);
+		this.covolatilityFactor = SDESystemForStocks.getCovolatilityFactor();
+
+		this.choleskyFactor = choleskyFactorOf(covolatilityFactor);
+		this.inverseCholeskyFactor = invertLowerTriangular(choleskyFactor);
+
+		this.engine = new MonteCarloPathEngine(SDESystemForStocks, initialPrices, numberOfSteps, upSampleFactor,
+				masterSeed, varianceReduction);
+	}
+
+	/**
+	 * Differentiates the mean payoff by every input of the system in one adjoint pass over the paths
+	 *
+	 * @param payoff-Payoff on the prices of the last step
+	 * @param numberOfPaths
+	 * @return-The mean payoff and its sensitivities
+	 */
+	public Sensitivities adjoint(DifferentiablePayoff payoff, long numberOfPaths)
+	{
+		PathSums sums = engine.pool.invoke(new PathRangeTask(payoff, null, 0, numberOfPaths));
+
+		double[] driftSensitivities = new double[numberOfStocks];
+		double[] volatilitySensitivities = new double[numberOfStocks];
+		double[] initialPriceSensitivities = new double[numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			driftSensitivities[i] = sums.growthRateAdjoints[i] / numberOfPaths;
+			volatilitySensitivities[i] = 0.5 * driftSensitivities[i];
+			initialPriceSensitivities[i] = sums.priceAdjoints[i] / numberOfPaths;
+		}
+
+		double[][] factorAdjoint = new double[numberOfStocks][numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int j = 0; j <= i; j++)
+			{
+				factorAdjoint[i][j] = sums.factorAdjoints[i][j] / numberOfPaths;
+			}
+		}
+
+		return new Sensitivities(sums.numberOfPaths, sums.mean(), sums.standardError(), initialPriceSensitivities,
+				driftSensitivities, volatilitySensitivities, covolatilityAdjointOf(factorAdjoint));
+	}
+
+	/**
+	 * Differentiates the mean payoff along a few directions in one forward pass over the paths
+	 *
+	 * @param payoff-Payoff on the prices of the last step
+	 * @param directions-Changes of the inputs to differentiate along
+	 * @param numberOfPaths
+	 * @return-The derivative of the mean payoff along each direction
+	 */
+	public double[] forward(DifferentiablePayoff payoff, List<Direction> directions, long numberOfPaths)
+	{
+		Tangent[] tangents = new Tangent[directions.size()];
+		for (int d = 0; d < tangents.length; d++)
+		{
+			tangents[d] = new Tangent(directions.get(d));
+		}
+
+		PathSums sums = engine.pool.invoke(new PathRangeTask(payoff, tangents, 0, numberOfPaths));
+
+		double[] derivatives = new double[tangents.length];
+		for (int d = 0; d < tangents.length; d++)
+		{
+			derivatives[d] = sums.tangentSums[d] / numberOfPaths;
+		}
+
+		return derivatives;
+	}
+
+	/**
+	 * Turns the adjoint of the Cholesky factor into the sensitivity to each covolatility. With dL = L Phi(L^-1 dC
+	 * L^-T), where Phi keeps the lower triangle and halves the diagonal, the adjoint of the matrix is
+	 * G = L^-T Phi(L^T Lbar) L^-1. Moving the covolatility of a pair moves both of its entries, so the sensitivity
+	 * to it is G[j][k] + G[k][j].
+	 *
+	 * @param factorAdjoint-Mean adjoint of the lower triangle of the factor
+	 * @return-Symmetric sensitivities to the covolatility matrix
+	 */
+	double[][] covolatilityAdjointOf(double[][] factorAdjoint)
+	{
+		double[][] projected = lowerHalfOf(multiply(transpose(choleskyFactor), factorAdjoint));
+		double[][] adjoint = multiply(multiply(transpose(inverseCholeskyFactor), projected), inverseCholeskyFactor);
+
+		double[][] sensitivities = new double[numberOfStocks][numberOfStocks];
+		for (int j = 0; j < numberOfStocks; j++)
+		{
+			for (int k = 0; k < numberOfStocks; k++)
+			{
+				sensitivities[j][k] = j == k ? adjoint[j][j] : adjoint[j][k] + adjoint[k][j];
+			}
+		}
+
+		return sensitivities;
+	}
+
+	/**
+	 * Change of the Cholesky factor for a change of the covolatility matrix, L Phi(L^-1 dC L^-T)
+	 *
+	 * @param covolatilityChange-Symmetric change of the matrix
+	 * @return-Lower-triangular change of the factor
+	 */
+	double[][] factorChangeOf(double[][] covolatilityChange)
+	{
+		double[][] whitened = multiply(multiply(inverseCholeskyFactor, covolatilityChange),
+				transpose(inverseCholeskyFactor));
+
+		return multiply(choleskyFactor, lowerHalfOf(whitened));
+	}
+
+	/**
+	 * Runs one path forward and then, when there are no tangents, back again
+	 *
+	 * @param path
+	 * @param payoff
+	 * @param tangents-Directions of the forward mode, null for the adjoint mode
+	 * @param buffers
+	 * @param sums-Receives the payoff and the derivatives of the path
+	 */
+	private void differentiatePath(long path, DifferentiablePayoff payoff, Tangent[] tangents, PathBuffers buffers,
+			PathSums sums)
+	{
+		int lastStep = numberOfSteps - 1;
+		double[][] prices = buffers.prices;
+		double[][] noise = buffers.noise;
+		double[][] growthFactors = buffers.growthFactors;
+		double[] sample = buffers.sample;
+
+		GaussianStream gaussianStream = engine.pathGaussianSource.forPath(path);
+
+		System.arraycopy(initialPrices, 0, prices[0], 0, numberOfStocks);
+		if (tangents != null)
+		{
+			for (int d = 0; d < tangents.length; d++)
+			{
+				tangents[d].start(buffers.tangentPrices[d]);
+			}
+		}
+
+		for (int t = 0; t < lastStep; t++)
+		{
+			gaussianStream.nextGaussians(sample);
+
+			//The noise and the step are those of EulerMaruyamaStepper, so the paths are the engine's
+			double[] stepNoise = noise[tangents == null ? t : 0];
+			double[] increment = growthFactors[tangents == null ? t : 0];
+			for (int k = 0; k < sample.length; k++)
+			{
+				stepNoise[k] = diffusionScale * sample[k];
+			}
+			covolatilityFactor.correlate(stepNoise, increment);
+
+			double[] current = prices[tangents == null ? t : 0];
+			double[] next = prices[tangents == null ? t + 1 : 1];
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				double Sj = current[i];
+				next[i] = Sj + growthRates[i] * timeStep * Sj + Sj * increment[i];
+				increment[i] = 1 + growthRates[i] * timeStep + increment[i];
+			}
+
+			if (tangents != null)
+			{
+				for (int d = 0; d < tangents.length; d++)
+				{
+					tangents[d].step(buffers.tangentPrices[d], current, increment, stepNoise);
+				}
+				System.arraycopy(next, 0, current, 0, numberOfStocks);
+			}
+		}
+
+		double[] finalPrices = prices[tangents == null ? lastStep : 0];
+		double[] gradient = buffers.gradient;
+		sums.addPayoff(payoff.evaluate(finalPrices, gradient));
+
+		if (tangents != null)
+		{
+			for (int d = 0; d < tangents.length; d++)
+			{
+				double[] tangentPrices = buffers.tangentPrices[d];
+				double derivative = 0.0;
+				for (int i = 0; i < numberOfStocks; i++)
+				{
+					derivative += gradient[i] * tangentPrices[i];
+				}
+				sums.tangentSums[d] += derivative;
+			}
+			return;
+		}
+
+		//Carries the gradient back through the steps, S[t+1] = S[t] * g[t]
+		double[] priceAdjoint = gradient;
+		double[] growthRateAdjoints = sums.growthRateAdjoints;
+		double[][] factorAdjoints = sums.factorAdjoints;
+		for (int t = lastStep - 1; t >= 0; t--)
+		{
+			double[] current = prices[t];
+			double[] stepNoise = noise[t];
+			double[] growthFactor = growthFactors[t];
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				double incrementAdjoint = priceAdjoint[i] * current[i];
+				growthRateAdjoints[i] += incrementAdjoint * timeStep;
+
+				double[] factorAdjointRow = factorAdjoints[i];
+				for (int j = 0; j <= i; j++)
+				{
+					factorAdjointRow[j] += incrementAdjoint * stepNoise[j];
+				}
+
+				priceAdjoint[i] *= growthFactor[i];
+			}
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			sums.priceAdjoints[i] += priceAdjoint[i];
+		}
+	}
+
+	/**
+	 * Reads the lower-triangular factor out of an exact Cholesky factorization
+	 *
+	 * @param covolatilityFactor
+	 * @return-The factor as a square matrix
+	 */
+	private static double[][] choleskyFactorOf(CovolatilityFactor covolatilityFactor)
+	{
+		int numberOfStocks = covolatilityFactor.getNumberOfStocks();
+		double[] loadings = covolatilityFactor.getLoadings();
+
+		if (covolatilityFactor.getResidualVolatilities() != null || covolatilityFactor.getRank() != numberOfStocks)
+		{
+			throw new IllegalArgumentException("Pathwise sensitivities need a full Cholesky factor of the "
+					+ "covolatility matrix");
+		}
+
+		double[][] factor = new double[numberOfStocks][numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				factor[i][j] = loadings[i * numberOfStocks + j];
+				if (j > i && factor[i][j] != 0.0)
+				{
+					throw new IllegalArgumentException("Pathwise sensitivities need a lower-triangular Cholesky "
+							+ "factor of the covolatility matrix");
+				}
+			}
+			if (!(factor[i][i] > 0.0))
+			{
+				throw new IllegalArgumentException("The covolatility matrix is not positive definite at stock " + i);
+			}
+		}
+
+		return factor;
+	}
+
+	private static double[][] invertLowerTriangular(double[][] lower)
+	{
+		int n = lower.length;
+		double[][] inverse = new double[n][n];
+
+		for (int column = 0; column < n; column++)
+		{
+			inverse[column][column] = 1.0 / lower[column][column];
+			for (int i = column + 1; i < n; i++)
+			{
+				double sum = 0.0;
+				for (int j = column; j < i; j++)
+				{
+					sum += lower[i][j] * inverse[j][column];
+				}
+				inverse[i][column] = -sum / lower[i][i];
+			}
+		}
+
+		return inverse;
+	}
+
+	//Phi: the lower triangle with half the diagonal
+	private static double[][] lowerHalfOf(double[][] matrix)
+	{
+		int n = matrix.length;
+		double[][] lower = new double[n][n];
+
+		for (int i = 0; i < n; i++)
+		{
+			for (int j = 0; j < i; j++)
+			{
+				lower[i][j] = matrix[i][j];
+			}
+			lower[i][i] = 0.5 * matrix[i][i];
+		}
+
+		return lower;
+	}
+
+	private static double[][] multiply(double[][] left, double[][] right)
+	{
+		int n = left.length;
+		int m = right[0].length;
+		double[][] product = new double[n][m];
+
+		for (int i = 0; i < n; i++)
+		{
+			for (int k = 0; k < right.length; k++)
+			{
+				double entry = left[i][k];
+				if (entry == 0.0)
+				{
+					continue;
+				}
+				for (int j = 0; j < m; j++)
+				{
+					product[i][j] += entry * right[k][j];
+				}
+			}
+		}
+
+		return product;
+	}
+
+	private static double[][] transpose(double[][] matrix)
+	{
+		double[][] transposed = new double[matrix[0].length][matrix.length];
+
+		for (int i = 0; i < matrix.length; i++)
+		{
+			for (int j = 0; j < matrix[0].length; j++)
+			{
+				transposed[j][i] = matrix[i][j];
+			}
+		}
+
+		return transposed;
+	}
+
+	/**
+	 * A change of the inputs of the system to differentiate along in the forward mode
+	 */
+	public static class Direction
+	{
+		String name;
+
+		//Null entries leave that input unchanged
+		double[] initialPriceChanges;
+		double[] driftChanges;
+		double[] volatilityChanges;
+		double[][] covolatilityChanges;
+
+		/**
+		 * Sets up a direction
+		 *
+		 * @param name
+		 * @param initialPriceChanges-Change of the price of each stock on the first day, or null
+		 * @param driftChanges-Change of the drift of each stock, or null
+		 * @param volatilityChanges-Change of the volatility of each stock, or null
+		 * @param covolatilityChanges-Symmetric change of the covolatility matrix, or null
+		 */
+		public Direction(String name, double[] initialPriceChanges, double[] driftChanges, double[] volatilityChanges,
+				double[][] covolatilityChanges)
+		{
+			this.name = name;
+			this.initialPriceChanges = initialPriceChanges;
+			this.driftChanges = driftChanges;
+			this.volatilityChanges = volatilityChanges;
+			this.covolatilityChanges = covolatilityChanges;
+		}
+
+		/**
+		 * Direction of the price of one stock on the first day
+		 *
+		 * @param numberOfStocks
+		 * @param stock
+		 * @return
+		 */
+		public static Direction initialPrice(int numberOfStocks, int stock)
+		{
+			return new Direction("initialPrice " + stock, unit(numberOfStocks, stock), null, null, null);
+		}
+
+		/**
+		 * Direction of the drift of one stock
+		 *
+		 * @param numberOfStocks
+		 * @param stock
+		 * @return
+		 */
+		public static Direction drift(int numberOfStocks, int stock)
+		{
+			return new Direction("drift " + stock, null, unit(numberOfStocks, stock), null, null);
+		}
+
+		/**
+		 * Direction of the volatility of one stock
+		 *
+		 * @param numberOfStocks
+		 * @param stock
+		 * @return
+		 */
+		public static Direction volatility(int numberOfStocks, int stock)
+		{
+			return new Direction("volatility " + stock, null, null, unit(numberOfStocks, stock), null);
+		}
+
+		/**
+		 * Direction of the covolatility of a pair of stocks, moving both of its entries of the matrix
+		 *
+		 * @param numberOfStocks
+		 * @param first
+		 * @param second
+		 * @return
+		 */
+		public static Direction covolatility(int numberOfStocks, int first, int second)
+		{
+			double[][] changes = new double[numberOfStocks][numberOfStocks];
+			changes[first][second] = 1.0;
+			changes[second][first] = 1.0;
+
+			return new Direction("covolatility " + first + " " + second, null, null, null, changes);
+		}
+
+		private static double[] unit(int numberOfStocks, int stock)
+		{
+			double[] unit = new double[numberOfStocks];
+			unit[stock] = 1.0;
+			return unit;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	/**
+	 * Sensitivities of the mean payoff to every input of the system
+	 */
+	public static class Sensitivities
+	{
+		long numberOfPaths;
+		double value;
+		double standardError;
+		double[] initialPriceSensitivities;
+		double[] driftSensitivities;
+		double[] volatilitySensitivities;
+		double[][] covolatilitySensitivities;
+
+		Sensitivities(long numberOfPaths, double value, double standardError, double[] initialPriceSensitivities,
+				double[] driftSensitivities, double[] volatilitySensitivities, double[][] covolatilitySensitivities)
+		{
+			this.numberOfPaths = numberOfPaths;
+			this.value = value;
+			this.standardError = standardError;
+			this.initialPriceSensitivities = initialPriceSensitivities;
+			this.driftSensitivities = driftSensitivities;
+			this.volatilitySensitivities = volatilitySensitivities;
+			this.covolatilitySensitivities = covolatilitySensitivities;
+		}
+
+		/**
+		 * Getter for the mean payoff
+		 *
+		 * @return
+		 */
+		public double getValue()
+		{
+			return value;
+		}
+
+		/**
+		 * Getter for the standard error of the mean payoff
+		 *
+		 * @return
+		 */
+		public double getStandardError()
+		{
+			return standardError;
+		}
+
+		/**
+		 * Getter for the sensitivity to the price of each stock on the first day
+		 *
+		 * @return
+		 */
+		public double[] getInitialPriceSensitivities()
+		{
+			return initialPriceSensitivities;
+		}
+
+		/**
+		 * Getter for the sensitivity to the drift of each stock
+		 *
+		 * @return
+		 */
+		public double[] getDriftSensitivities()
+		{
+			return driftSensitivities;
+		}
+
+		/**
+		 * Getter for the sensitivity to the volatility of each stock
+		 *
+		 * @return
+		 */
+		public double[] getVolatilitySensitivities()
+		{
+			return volatilitySensitivities;
+		}
+
+		/**
+		 * Getter for the sensitivity to the covolatility of each pair of stocks, symmetric
+		 *
+		 * @return
+		 */
+		public double[][] getCovolatilitySensitivities()
+		{
+			return covolatilitySensitivities;
+		}
+
+		/**
+		 * Writes the value and every sensitivity as tab separated rows
+		 *
+		 * @param out
+		 * @throws IOException
+		 */
+		public void writeSummary(Writer out) throws IOException
+		{
+			out.write("input\tfirstStock\tsecondStock\tsensitivity\n");
+			out.write("value\t\t\t" + value + "\n");
+			out.write("standardError\t\t\t" + standardError + "\n");
+
+			StringBuilder row = new StringBuilder();
+			for (int i = 0; i < driftSensitivities.length; i++)
+			{
+				row.setLength(0);
+				row.append("initialPrice\t").append(i).append("\t\t").append(initialPriceSensitivities[i]).append('\n');
+				row.append("drift\t").append(i).append("\t\t").append(driftSensitivities[i]).append('\n');
+				row.append("volatility\t").append(i).append("\t\t").append(volatilitySensitivities[i]).append('\n');
+				out.write(row.toString());
+			}
+			for (int j = 0; j < covolatilitySensitivities.length; j++)
+			{
+				for (int k = 0; k <= j; k++)
+				{
+					row.setLength(0);
+					row.append("covolatility\t").append(j).append('\t').append(k).append('\t')
+							.append(covolatilitySensitivities[j][k]).append('\n');
+					out.write(row.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * A direction of the forward mode with its changes of the growth rates and of the factor worked out
+	 */
+	private class Tangent
+	{
+		double[] initialPriceChanges;
+
+		//Change of the growth rate times the time step
+		double[] growthChanges = new double[numberOfStocks];
+
+		//Lower-triangular, null when the covolatilities do not change
+		double[][] factorChanges;
+
+		Tangent(Direction direction)
+		{
+			this.initialPriceChanges = direction.initialPriceChanges;
+
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				double driftChange = direction.driftChanges == null ? 0.0 : direction.driftChanges[i];
+				double volatilityChange = direction.volatilityChanges == null ? 0.0 : direction.volatilityChanges[i];
+				growthChanges[i] = (driftChange + 0.5 * volatilityChange) * timeStep;
+			}
+
+			if (direction.covolatilityChanges != null)
+			{
+				this.factorChanges = factorChangeOf(direction.covolatilityChanges);
+			}
+		}
+
+		void start(double[] tangentPrices)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				tangentPrices[i] = initialPriceChanges == null ? 0.0 : initialPriceChanges[i];
+			}
+		}
+
+		/**
+		 * Advances the derivative of the prices, dS[t+1] = dS[t] * g[t] + S[t] * (da dt + dL xi[t])
+		 */
+		void step(double[] tangentPrices, double[] prices, double[] growthFactors, double[] stepNoise)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				double incrementChange = growthChanges[i];
+				if (factorChanges != null)
+				{
+					double[] factorChangeRow = factorChanges[i];
+					for (int j = 0; j <= i; j++)
+					{
+						incrementChange += factorChangeRow[j] * stepNoise[j];
+					}
+				}
+				tangentPrices[i] = tangentPrices[i] * growthFactors[i] + prices[i] * incrementChange;
+			}
+		}
+	}
+
+	/**
+	 * Buffers of the task differentiating a range of paths. The adjoint mode keeps the whole path, the forward
+	 * mode only the step being taken.
+	 */
+	private class PathBuffers
+	{
+		double[][] prices;
+		double[][] noise;
+		double[][] growthFactors;
+		double[][] tangentPrices;
+		double[] sample = new double[covolatilityFactor.getNoiseDimension()];
+		double[] gradient = new double[numberOfStocks];
+
+		PathBuffers(Tangent[] tangents)
+		{
+			int storedSteps = tangents == null ? numberOfSteps : 2;
+			this.prices = new double[storedSteps][numberOfStocks];
+			this.noise = new double[storedSteps][sample.length];
+			this.growthFactors = new double[storedSteps][numberOfStocks];
+			this.tangentPrices = new double[tangents == null ? 0 : tangents.length][numberOfStocks];
+		}
+	}
+
+	/**
+	 * Sums over paths of the derivatives of the payoff, added together across tasks. The payoff itself is kept as
+	 * a running mean and sum of squared deviations (Welford), merged across tasks as by Chan et al., so its
+	 * standard error does not come from the difference of two large sums.
+	 */
+	private class PathSums
+	{
+		long numberOfPaths;
+		double payoffMean;
+		double payoffSumOfSquaredDeviations;
+		double[] priceAdjoints = new double[numberOfStocks];
+		double[] growthRateAdjoints = new double[numberOfStocks];
+		double[][] factorAdjoints;
+		double[] tangentSums;
+
+		PathSums(Tangent[] tangents)
+		{
+			this.factorAdjoints = new double[tangents == null ? numberOfStocks : 0][numberOfStocks];
+			this.tangentSums = new double[tangents == null ? 0 : tangents.length];
+		}
+
+		void addPayoff(double payoff)
+		{
+			numberOfPaths++;
+			double deviation = payoff - payoffMean;
+			payoffMean += deviation / numberOfPaths;
+			payoffSumOfSquaredDeviations += deviation * (payoff - payoffMean);
+		}
+
+		void add(PathSums other)
+		{
+			if (other.numberOfPaths > 0)
+			{
+				long mergedPaths = numberOfPaths + other.numberOfPaths;
+				double deviation = other.payoffMean - payoffMean;
+				payoffMean += deviation * other.numberOfPaths / mergedPaths;
+				payoffSumOfSquaredDeviations += other.payoffSumOfSquaredDeviations
+						+ deviation * deviation * numberOfPaths / mergedPaths * other.numberOfPaths;
+				numberOfPaths = mergedPaths;
+			}
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				priceAdjoints[i] += other.priceAdjoints[i];
+				growthRateAdjoints[i] += other.growthRateAdjoints[i];
+			}
+			for (int i = 0; i < factorAdjoints.length; i++)
+			{
+				for (int j = 0; j <= i; j++)
+				{
+					factorAdjoints[i][j] += other.factorAdjoints[i][j];
+				}
+			}
+			for (int d = 0; d < tangentSums.length; d++)
+			{
+				tangentSums[d] += other.tangentSums[d];
+			}
+		}
+
+		double mean()
+		{
+			return numberOfPaths == 0 ? Double.NaN : payoffMean;
+		}
+
+		double standardError()
+		{
+			if (numberOfPaths < 2)
+			{
+				return Double.NaN;
+			}
+
+			double variance = payoffSumOfSquaredDeviations / (numberOfPaths - 1);
+			return Math.sqrt(variance / numberOfPaths);
+		}
+	}
+
+	/**
+	 * Splits a range of paths in half until it is small enough to differentiate directly. The split only depends
+	 * on the range, so the sums are added in the same order on any number of threads.
+	 */
+	private class PathRangeTask extends RecursiveTask<PathSums>
+	{
+		private static final long serialVersionUID = 1L;
+
+		DifferentiablePayoff payoff;
+		Tangent[] tangents;
+		long start;
+		long end;
+
+		PathRangeTask(DifferentiablePayoff payoff, Tangent[] tangents, long start, long end)
+		{
+			this.payoff = payoff;
+			this.tangents = tangents;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected PathSums compute()
+		{
+			if (end - start <= PATHS_PER_TASK)
+			{
+				PathSums sums = new PathSums(tangents);
+				PathBuffers buffers = new PathBuffers(tangents);
+				for (long path = start; path < end; path++)
+				{
+					differentiatePath(path, payoff, tangents, buffers, sums);
+				}
+				return sums;
+			}
+
+			long middle = (start + end) >>> 1;
+			PathRangeTask left = new PathRangeTask(payoff, tangents, start, middle);
+			PathRangeTask right = new PathRangeTask(payoff, tangents, middle, end);
+			invokeAll(left, right);
+
+			PathSums sums = left.join();
+			sums.add(right.join());
+			return sums;
+		}
+	}
+
+	/**
+	 * Calibrates the system from StockData.txt and writes the sensitivities of an at the money call on an equally
+	 * weighted basket of the stocks under the risk-neutral system
+	 *
+	 * @param args-Number of paths, maturity in days and the risk-free rate
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long numberOfPaths = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int maturityDay = args.length > 1 ? Integer.parseInt(args[1]) : 63;
+		double riskFreeRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+
+		int upSampleFactor = 5;
+
+		long seed = 5760;
+
+		double[][] dailyPricesOfStocks = StockDataLoader.load(new File("StockData.txt").toPath());
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		SDESystem SDESystemForStocks = MonteCarloOptionPricer.riskNeutral(new SDESystem(
+				statistics.getDriftsAndVolatilities(), statistics.getCovolatilityMatrix()), riskFreeRate);
+
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+		double[] basketWeights = new double[dailyPricesOfStocks.length];
+		double basketValue = 0.0;
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = dailyPricesOfStocks[i][0];
+			basketWeights[i] = 1.0 / initialPrices.length;
+			basketValue += basketWeights[i] * initialPrices[i];
+		}
+
+		PathwiseSensitivities sensitivities = new PathwiseSensitivities(SDESystemForStocks, initialPrices,
+				maturityDay * upSampleFactor + 1, upSampleFactor, seed);
+		Sensitivities basketCall = sensitivities.adjoint(DifferentiablePayoff.basketCall(basketWeights, basketValue),
+				numberOfPaths);
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		basketCall.writeSummary(out);
+		out.flush();
+	}
+}
@@ -0,0 +1,37 @@
+package financeproject2;
+
+/**
+ * The payoff of an instrument on the stocks, priced by MonteCarloOptionPricer. A payoff is evaluated once, at its 
+ * maturity, on a whole block of paths, from the prices on that day and, when it asks for them, the sums of the 
+ * prices of each stock over the days up to it. Nothing else about the paths is kept.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface Payoff 
+{
+	/**
+	 * Getter for the day the payoff is paid on, counted from the first day of the paths
+	 * 
+	 * @return
+	 */
+	int getMaturityDay();
+	
+	/**
+	 * Whether the payoff depends on the prices before maturity through their sums
+	 * 
+	 * @return
+	 */
+	boolean needsRunningSums();
+	
+	/**
+	 * Evaluates the payoff on a block of paths
+	 * 
+	 * @param numberOfPaths-Number of paths in the block
+	 * @param prices-Prices on the maturity day indexed by [stock][path]
+	 * @param runningSums-Sums of the prices on days 1 to the maturity day indexed by [stock][path], or null when 
+	 * needsRunningSums is false
+	 * @param payoffs-Receives the payoff of each path
+	 */
+	void evaluate(int numberOfPaths, double[][] prices, double[][] runningSums, double[] payoffs);
+}
@@ -0,0 +1,491 @@
+package financeproject2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Measures the risk of a portfolio of the stocks from simulated paths as they stream past: the profit and loss
+ * (P&L) of the portfolio from the first day to a horizon, and its value at risk (VaR) and expected shortfall (ES)
+ * at several confidence levels. The paths are never stored.
+ *
+ * The mean and standard deviation of the P&L are kept with Welford's method and its distribution with a t-digest.
+ * VaR and ES need the worst losses exactly, so those are selected as they arrive: a min-heap holds the largest
+ * (1 - lowest confidence level) fraction of the losses of the expected number of paths, and a new loss only goes
+ * in when it beats the smallest one held. Only that tail is sorted when the measures are asked for.
+ *
+ * With n paths and a confidence level a, k = ceil((1 - a) n). The VaR is the k-th largest loss and the ES is the
+ * mean of the k largest losses. Losses are positive, so a VaR of 100 means the portfolio loses 100 or more in
+ * 1 - a of the paths.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PortfolioRiskEngine implements TrajectorySink, PathBlockObserver
+{
+	static final double[] DEFAULT_CONFIDENCE_LEVELS = {0.95, 0.975, 0.99};
+
+	//Number of shares of each stock held
+	double[] holdings;
+
+	int horizonDays;
+
+	//Step of a path at the horizon, horizonDays times the upsample factor
+	int horizonStep;
+
+	double[] confidenceLevels;
+
+	//Most losses the tail can hold, enough for the lowest confidence level over the expected number of paths
+	int tailCapacity;
+
+	long numberOfPaths;
+
+	double meanProfitAndLoss;
+	double sumOfSquaredDeviations;
+
+	TDigest profitAndLossDigest = new TDigest(PathSummaryAggregator.DEFAULT_COMPRESSION);
+
+	//Min-heap of the largest losses seen, grown as needed up to tailCapacity
+	double[] tail = new double[16];
+	int tailSize;
+
+	//Value of the portfolio on the first day of the block being observed, and the value of each of its paths
+	double initialValueOfBlock;
+	double[] blockValues = new double[0];
+
+	/**
+	 * Sets up an empty risk measurement
+	 *
+	 * @param holdings-Number of shares held of each stock, see holdingsOf
+	 * @param horizonDays-Number of days from the first day to the horizon
+	 * @param stepStride-Number of simulation steps per day, usually the upsample factor
+	 * @param confidenceLevels-Levels to report, each between 0 and 1
+	 * @param expectedPaths-Number of paths the measures will be asked for over, which sets the size of the tail
+	 */
+	public PortfolioRiskEngine(double[] holdings, int horizonDays, int stepStride, double[] confidenceLevels,
+			long expectedPaths)
+	{
+		this.holdings = holdings;
+		this.horizonDays = horizonDays;
+		this.horizonStep = horizonDays * stepStride;
+		this.confidenceLevels = confidenceLevels.clone();
+		Arrays.sort(this.confidenceLevels);
+
+		if (this.confidenceLevels.length == 0 || this.confidenceLevels[0] <= 0
+				|| this.confidenceLevels[this.confidenceLevels.length - 1] >= 1)
+		{
+			throw new IllegalArgumentException("Confidence levels have to be between 0 and 1");
+		}
+
+		long capacity = tailLength(this.confidenceLevels[0], expectedPaths);
+		if (capacity > Integer.MAX_VALUE - 8)
+		{
+			throw new IllegalArgumentException("Too many paths for the tail of the lowest confidence level");
+		}
+		this.tailCapacity = (int) Math.max(1, capacity);
+	}
+
+	/**
+	 * Converts portfolio weights into numbers of shares
+	 *
+	 * @param weights-Fraction of the value of the portfolio in each stock
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param portfolioValue-Value of the portfolio on the first day
+	 * @return-Number of shares of each stock
+	 */
+	public static double[] holdingsOf(double[] weights, double[] initialPrices, double portfolioValue)
+	{
+		double[] holdings = new double[weights.length];
+
+		for (int i = 0; i < weights.length; i++)
+		{
+			holdings[i] = weights[i] * portfolioValue / initialPrices[i];
+		}
+
+		return holdings;
+	}
+
+	/**
+	 * Makes an empty risk measurement for the same portfolio, horizon and levels, to be merged into this one
+	 *
+	 * @return
+	 */
+	public PortfolioRiskEngine newEmptyCopy()
+	{
+		PortfolioRiskEngine copy = new PortfolioRiskEngine(holdings, horizonDays, 1, confidenceLevels, 0);
+		copy.horizonStep = horizonStep;
+		copy.tailCapacity = tailCapacity;
+		return copy;
+	}
+
+	@Override
+	public void acceptPath(long path, double[][] simulatedPrices)
+	{
+		double initialValue = 0.0;
+		double value = 0.0;
+
+		for (int i = 0; i < holdings.length; i++)
+		{
+			initialValue += holdings[i] * simulatedPrices[i][0];
+			value += holdings[i] * simulatedPrices[i][horizonStep];
+		}
+
+		addProfitAndLoss(value - initialValue);
+	}
+
+	@Override
+	public void observeStep(long firstPath, int numberOfPaths, int step, double[][] blockPrices)
+	{
+		if (step == 0)
+		{
+			//Every path of a block starts from the same prices
+			initialValueOfBlock = 0.0;
+			for (int i = 0; i < holdings.length; i++)
+			{
+				initialValueOfBlock += holdings[i] * blockPrices[i][0];
+			}
+		}
+
+		if (step != horizonStep)
+		{
+			return;
+		}
+
+		if (blockValues.length < numberOfPaths)
+		{
+			blockValues = new double[numberOfPaths];
+		}
+		Arrays.fill(blockValues, 0, numberOfPaths, 0.0);
+
+		//Stock by stock, so the inner loop runs along the contiguous prices of the block
+		for (int i = 0; i < holdings.length; i++)
+		{
+			double shares = holdings[i];
+			double[] prices = blockPrices[i];
+			for (int p = 0; p < numberOfPaths; p++)
+			{
+				blockValues[p] += shares * prices[p];
+			}
+		}
+
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			addProfitAndLoss(blockValues[p] - initialValueOfBlock);
+		}
+	}
+
+	/**
+	 * Adds the P&L of one path
+	 *
+	 * @param profitAndLoss
+	 */
+	public void addProfitAndLoss(double profitAndLoss)
+	{
+		numberOfPaths++;
+
+		double deviation = profitAndLoss - meanProfitAndLoss;
+		meanProfitAndLoss += deviation / numberOfPaths;
+		sumOfSquaredDeviations += deviation * (profitAndLoss - meanProfitAndLoss);
+
+		profitAndLossDigest.add(profitAndLoss);
+
+		offerLoss(-profitAndLoss);
+	}
+
+	/**
+	 * Adds the paths measured by another engine for the same portfolio. The tail of the union is the largest
+	 * losses of the two tails, so the VaR and ES stay exact.
+	 *
+	 * @param other
+	 */
+	public void merge(PortfolioRiskEngine other)
+	{
+		if (other.numberOfPaths == 0)
+		{
+			return;
+		}
+
+		long combinedPaths = numberOfPaths + other.numberOfPaths;
+		double deviation = other.meanProfitAndLoss - meanProfitAndLoss;
+
+		meanProfitAndLoss += deviation * other.numberOfPaths / combinedPaths;
+		sumOfSquaredDeviations += other.sumOfSquaredDeviations
+				+ deviation * deviation * ((double) numberOfPaths * other.numberOfPaths / combinedPaths);
+		numberOfPaths = combinedPaths;
+
+		profitAndLossDigest.merge(other.profitAndLossDigest);
+
+		for (int j = 0; j < other.tailSize; j++)
+		{
+			offerLoss(other.tail[j]);
+		}
+	}
+
+	/**
+	 * Value at risk: the loss exceeded in no more than 1 - confidenceLevel of the paths
+	 *
+	 * @param confidenceLevel-Between 0 and 1, at least the lowest level the engine was set up with
+	 * @return
+	 */
+	public double getValueAtRisk(double confidenceLevel)
+	{
+		double[] sortedTail = sortedTail();
+		int k = lossesBeyond(confidenceLevel);
+
+		return sortedTail[sortedTail.length - k];
+	}
+
+	/**
+	 * Expected shortfall: the mean loss over the worst 1 - confidenceLevel of the paths
+	 *
+	 * @param confidenceLevel-Between 0 and 1, at least the lowest level the engine was set up with
+	 * @return
+	 */
+	public double getExpectedShortfall(double confidenceLevel)
+	{
+		double[] sortedTail = sortedTail();
+		int k = lossesBeyond(confidenceLevel);
+
+		double sum = 0.0;
+		for (int j = sortedTail.length - k; j < sortedTail.length; j++)
+		{
+			sum += sortedTail[j];
+		}
+
+		return sum / k;
+	}
+
+	/**
+	 * Estimated quantile of the P&L, from the t-digest
+	 *
+	 * @param quantile-Between 0 and 1
+	 * @return
+	 */
+	public double getProfitAndLossQuantile(double quantile)
+	{
+		return profitAndLossDigest.quantile(quantile);
+	}
+
+	/**
+	 * Getter for the mean P&L
+	 *
+	 * @return
+	 */
+	public double getMeanProfitAndLoss()
+	{
+		return meanProfitAndLoss;
+	}
+
+	/**
+	 * Sample standard deviation of the P&L
+	 *
+	 * @return
+	 */
+	public double getStandardDeviation()
+	{
+		if (numberOfPaths < 2)
+		{
+			return 0.0;
+		}
+
+		return Math.sqrt(sumOfSquaredDeviations / (numberOfPaths - 1));
+	}
+
+	/**
+	 * Getter for the number of paths measured
+	 *
+	 * @return
+	 */
+	public long getNumberOfPaths()
+	{
+		return numberOfPaths;
+	}
+
+	/**
+	 * Writes the P&L distribution and the VaR and ES at every confidence level as tab separated rows
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSummary(Writer out) throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+
+		text.append("paths\thorizonDays\tmean\tstandardDeviation\tpercentile1\tpercentile5\tpercentile50"
+				+ "\tpercentile95\tpercentile99\n");
+		text.append(numberOfPaths).append('\t').append(horizonDays).append('\t')
+				.append(getMeanProfitAndLoss()).append('\t')
+				.append(getStandardDeviation()).append('\t')
+				.append(getProfitAndLossQuantile(0.01)).append('\t')
+				.append(getProfitAndLossQuantile(0.05)).append('\t')
+				.append(getProfitAndLossQuantile(0.50)).append('\t')
+				.append(getProfitAndLossQuantile(0.95)).append('\t')
+				.append(getProfitAndLossQuantile(0.99)).append('\n');
+
+		text.append("confidenceLevel\tvalueAtRisk\texpectedShortfall\n");
+		for (double confidenceLevel : confidenceLevels)
+		{
+			text.append(confidenceLevel).append('\t')
+					.append(getValueAtRisk(confidenceLevel)).append('\t')
+					.append(getExpectedShortfall(confidenceLevel)).append('\n');
+		}
+
+		out.write(text.toString());
+	}
+
+	/**
+	 * Keeps a loss if it is among the largest tailCapacity seen
+	 *
+	 * @param loss
+	 */
+	private void offerLoss(double loss)
+	{
+		if (Double.isNaN(loss))
+		{
+			return;
+		}
+
+		if (tailSize < tailCapacity)
+		{
+			if (tailSize == tail.length)
+			{
+				tail = Arrays.copyOf(tail, (int) Math.min(tailCapacity, 2L * tail.length));
+			}
+
+			//Sift up
+			int j = tailSize++;
+			while (j > 0)
+			{
+				int parent = (j - 1) >>> 1;
+				if (tail[parent] <= loss)
+				{
+					break;
+				}
+				tail[j] = tail[parent];
+				j = parent;
+			}
+			tail[j] = loss;
+		}
+		else if (loss > tail[0])
+		{
+			//Replace the smallest loss held and sift down
+			int j = 0;
+			while (true)
+			{
+				int child = 2 * j + 1;
+				if (child >= tailSize)
+				{
+					break;
+				}
+				if (child + 1 < tailSize && tail[child + 1] < tail[child])
+				{
+					child++;
+				}
+				if (tail[child] >= loss)
+				{
+					break;
+				}
+				tail[j] = tail[child];
+				j = child;
+			}
+			tail[j] = loss;
+		}
+	}
+
+	/**
+	 * Number of losses at or beyond the VaR of a confidence level
+	 *
+	 * @param confidenceLevel
+	 * @return
+	 */
+	private int lossesBeyond(double confidenceLevel)
+	{
+		if (numberOfPaths == 0)
+		{
+			throw new IllegalStateException("No paths have been measured");
+		}
+
+		long k = Math.max(1, tailLength(confidenceLevel, numberOfPaths));
+		if (k > tailSize)
+		{
+			throw new IllegalStateException("The tail kept covers " + tailSize + " losses but confidence level "
+					+ confidenceLevel + " over " + numberOfPaths + " paths needs " + k
+					+ "; set up the engine with more expected paths or a lower confidence level");
+		}
+
+		return (int) k;
+	}
+
+	/**
+	 * ceil((1 - confidenceLevel) numberOfPaths), without the rounding error of 1 - confidenceLevel adding a loss
+	 * when the product is a whole number
+	 *
+	 * @param confidenceLevel
+	 * @param numberOfPaths
+	 * @return
+	 */
+	private static long tailLength(double confidenceLevel, long numberOfPaths)
+	{
+		return (long) Math.ceil((1 - confidenceLevel) * numberOfPaths - 1e-9);
+	}
+
+	private double[] sortedTail()
+	{
+		double[] sortedTail = Arrays.copyOf(tail, tailSize);
+		Arrays.sort(sortedTail);
+		return sortedTail;
+	}
+
+	/**
+	 * Calibrates the system from StockData.txt and measures the risk of an equally weighted portfolio of the
+	 * stocks worth 1,000,000 on the first day
+	 *
+	 * @param args-Number of paths and horizon in days
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long numberOfPaths = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int horizonDays = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		int upSampleFactor = 5;
+
+		long seed = 5760;
+
+		double[][] dailyPricesOfStocks = StockDataLoader.load(new File("StockData.txt").toPath());
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		SDESystem SDESystemForStocks = new SDESystem(statistics.getDriftsAndVolatilities(),
+				statistics.getCovolatilityMatrix());
+
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+		double[] weights = new double[dailyPricesOfStocks.length];
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = dailyPricesOfStocks[i][0];
+			weights[i] = 1.0 / weights.length;
+		}
+
+		//Only the steps up to the horizon are simulated
+		MonteCarloPathEngine engine = new MonteCarloPathEngine(SDESystemForStocks, initialPrices,
+				horizonDays * upSampleFactor + 1, upSampleFactor, seed, VarianceReduction.NONE);
+
+		PortfolioRiskEngine risk = new PortfolioRiskEngine(holdingsOf(weights, initialPrices, 1000000),
+				horizonDays, upSampleFactor, DEFAULT_CONFIDENCE_LEVELS, numberOfPaths);
+
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.SIMULATION);
+		risk = new BatchedPathEngine(engine).observePaths(0, numberOfPaths, risk::newEmptyCopy, (a, b) ->
+		{
+			a.merge(b);
+			return a;
+		});
+		timer.stop();
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		risk.writeSummary(out);
+		out.flush();
+	}
+}
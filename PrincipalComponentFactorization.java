@@ -0,0 +1,66 @@
+package financeproject2;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+/**
+ * Low-rank factor model for large universes. The covolatility matrix is approximated by its k largest principal 
+ * components, and whatever variance of a stock those components miss is kept as an independent residual so that 
+ * the volatility of each stock is unchanged. Correlating a sample then costs O(stocks * k) instead of 
+ * O(stocks^2).
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PrincipalComponentFactorization implements CovolatilityFactorization 
+{
+	int numberOfFactors;
+	
+	/**
+	 * Sets up a factor model
+	 * 
+	 * @param numberOfFactors-Number of principal components kept
+	 */
+	public PrincipalComponentFactorization(int numberOfFactors) 
+	{
+		this.numberOfFactors = numberOfFactors;
+	}
+	
+	@Override
+	public CovolatilityFactor factor(double[][] covolatilityMatrix) 
+	{
+		int numberOfStocks = covolatilityMatrix.length;
+		int rank = Math.min(numberOfFactors, numberOfStocks);
+		
+		EigenvalueDecomposition evd = 
+				new EigenvalueDecomposition(new Matrix(SymmetricEigenFactorization.symmetrize(covolatilityMatrix)));
+		
+		double[][] V = evd.getV().getArray();
+		double[] eigenvalues = evd.getRealEigenvalues();
+		
+		//The symmetric eigenvalues come out in ascending order, so the largest components are the last columns
+		double[] loadings = new double[numberOfStocks * rank];
+		for (int factor = 0; factor < rank; factor++)
+		{
+			int column = numberOfStocks - 1 - factor;
+			double sqrtEigenvalue = Math.sqrt(Math.max(eigenvalues[column], 0.0));
+			for (int row = 0; row < numberOfStocks; row++)
+			{
+				loadings[row * rank + factor] = V[row][column] * sqrtEigenvalue;
+			}
+		}
+		
+		double[] residualVolatilities = new double[numberOfStocks];
+		for (int row = 0; row < numberOfStocks; row++)
+		{
+			double explainedVariance = 0.0;
+			for (int factor = 0; factor < rank; factor++)
+			{
+				explainedVariance += loadings[row * rank + factor] * loadings[row * rank + factor];
+			}
+			residualVolatilities[row] = Math.sqrt(Math.max(covolatilityMatrix[row][row] - explainedVariance, 0.0));
+		}
+		
+		return new CovolatilityFactor(numberOfStocks, rank, loadings, residualVolatilities);
+	}
+}
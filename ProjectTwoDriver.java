@@ -2,19 +2,21 @@ package financeproject2;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.SplittableRandom;
 /**
  * This program parses stock data from a txt file and simulates an SDE system. In doing so, it generates predictions 
  * of the trends of a system of stocks during the same time interval as the original data.
  * The program is equipped to upsample the data by a factor of 5 in order to better simulate the daily fluctuations of stocks.
  *
- * The program prints the stock data into a txt file called SimulatedTrajectories.txt
+ * The program writes the simulated trajectories into a binary file called SimulatedTrajectories.bin. With 
+ * -Dfinanceproject2.metrics=true it also writes the time spent in each stage to SimulationMetrics.prom.
  * 
  * The class acts as the driver for the program. It first prints the statistics for the stocks to the console and then 
  * prints the simulation system.
@@ -24,154 +26,223 @@ import java.util.Scanner;
  */
 public class ProjectTwoDriver 
 {
+	/**
+	 * Runs the program. Startup is split in two so the JVM can be saved once the expensive work is done:
+	 * 
+	 * --prepare loads or builds the calibration snapshot, simulates one short path so that every class of the 
+	 * simulation is loaded, and exits. Run this way with -XX:ArchiveClassesAtExit to record an AppCDS archive.
+	 * 
+	 * --checkpoint prepares, then waits for a line on the standard input before simulating. No file is held open 
+	 * while waiting, so a CRaC JVM can be checkpointed at that point with jcmd <pid> JDK.checkpoint and every 
+	 * restore starts straight at the simulation.
+	 * 
+	 * @param args-Optionally --prepare or --checkpoint
+	 * @throws IOException
+	 */
 	public static void main(String[] args) throws IOException
 	{
 		int upSampleFactor = 5;
 		
-		File stockData = new File("StockData.txt");
+		int numberOfPaths = 10;
 		
-		//Create the lists that will hold important elements of the equation
-		ArrayList<ArrayList<Double>> dailyPricesOfStocks = formatStockData(stockData);
+		long seed = 5760;
 		
-		ArrayList<ArrayList<Double>> logReturnsOfStocks = 
-				GatherDriftsAndVolatilities.generateLogReturnsOfStocks(dailyPricesOfStocks);
+		boolean prepareOnly = args.length > 0 && args[0].equals("--prepare");
+		boolean checkpoint = args.length > 0 && args[0].equals("--checkpoint");
 		
-		ArrayList<ArrayList<Double>> driftsAndVolatilities = 
-				GatherDriftsAndVolatilities.gatherStatisticsForStocks(logReturnsOfStocks, upSampleFactor);
+		CalibrationSnapshot calibration = prepare(new File("StockData.txt"), upSampleFactor);
 		
-		ArrayList<ArrayList<Double>> covolatilityMatrix =
-		CovolatilityMatrixCalculator.generateCovolatilityMatrix(dailyPricesOfStocks, driftsAndVolatilities, logReturnsOfStocks);
+		if (prepareOnly)
+		{
+			return;
+		}
 		
-		//Create the SDE system using stock statistics
-		SDESystem SDESystemForStocks = new SDESystem(driftsAndVolatilities, covolatilityMatrix);
+		if (checkpoint)
+		{
+			System.out.println("Prepared, press enter to simulate");
+			System.in.read();
+		}
+		
+		SDESystem SDESystemForStocks = calibration.getSDESystem();
 		
 		//Uncomment the line below and the helper method printSDEComponents() found in SDESystem 
 		//to print statistics for the stocks to the console
 		//SDESystemForStocks.printSDEComponents();
 		
 		//Simulate trajectories using the SDE system
-		simulateTenTrajectories(SDESystemForStocks, dailyPricesOfStocks, upSampleFactor);
+		simulateTrajectories(SDESystemForStocks, calibration.getInitialPrices(), calibration.getNumberOfDays(), 
+				upSampleFactor, numberOfPaths, seed);
 		
-		NumericalSDESolution simulation = new NumericalSDESolution(SDESystemForStocks, dailyPricesOfStocks,
-				upSampleFactor);
+		NumericalSDESolution simulation = new NumericalSDESolution(SDESystemForStocks, calibration.getInitialPrices(), 
+				new double[calibration.getInitialPrices().length][calibration.getNumberOfDays() * upSampleFactor], 
+				upSampleFactor, new SplittableRandom());
+		
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.OUTPUT);
+		formattedPrint(simulation.getSimulatedPrices(), upSampleFactor);
+		timer.stop();
 		
-		formattedPrint(simulation.getDailyPrices(), upSampleFactor);
+		//Run with -Dfinanceproject2.metrics=true to see where the time of the run went
+		if (SimulationMetrics.ENABLED)
+		{
+			try (BufferedWriter metricsWriter = Files.newBufferedWriter(Paths.get("SimulationMetrics.prom")))
+			{
+				SimulationMetrics.writePrometheus(metricsWriter);
+			}
+		}
 	}
-
+	
 	/**
-	 * Read through the txt file and retrieve information. The txt file must be formatted in a manner similar to the
-	 * csv file that can be downloaded from the majority of finance websites.
+	 * Loads the calibration snapshot of the stock data, or calibrates and saves a new one when the data has changed 
+	 * since the snapshot was taken. The snapshot is kept next to the data with the extension .calibration. A short 
+	 * path is then simulated so that the classes of the simulation are loaded and linked.
 	 * 
 	 * @param stockData-File containing stock data
-	 * @return-Daily prices of the stocks
-	 * @throws FileNotFoundException
+	 * @param upSampleFactor
+	 * @return-The calibration
+	 * @throws IOException
 	 */
-	private static ArrayList<ArrayList<Double>> formatStockData(File stockData) throws FileNotFoundException 
+	static CalibrationSnapshot prepare(File stockData, int upSampleFactor) throws IOException 
 	{
-		ArrayList<ArrayList<Double>> dailyPricesOfStocks = new ArrayList<ArrayList<Double>>();
+		String name = stockData.getName();
+		int extension = name.lastIndexOf('.');
+		Path snapshotFile = stockData.toPath().resolveSibling(
+				(extension > 0 ? name.substring(0, extension) : name) + ".calibration");
 		
-		Scanner fileScanner = new Scanner(stockData);
+		byte[] sourceHash = CalibrationSnapshot.hashOf(stockData.toPath());
 		
-		while (fileScanner.hasNextLine())
+		CalibrationSnapshot calibration = CalibrationSnapshot.readIfCurrent(snapshotFile, sourceHash, upSampleFactor);
+		if (calibration == null)
 		{
-			String currentLine = new String(fileScanner.nextLine());
-			
-			if (currentLine.length() > 0 && currentLine.charAt(0)=='{') 
-			{
-				addStockToDailyPricesOfStocks(fileScanner, dailyPricesOfStocks);
-			}
+			calibration = calibrate(stockData, upSampleFactor, sourceHash);
+			calibration.write(snapshotFile);
 		}
 		
-		fileScanner.close();
+		MonteCarloPathEngine warmUp = new MonteCarloPathEngine(calibration.getSDESystem(), 
+				calibration.getInitialPrices(), 2, upSampleFactor, 0);
+		StreamingSimulation.forEngine(warmUp).run(0, 1, (path, simulatedPrices) -> {});
 		
-		return dailyPricesOfStocks;
+		return calibration;
 	}
-
+	
 	/**
-	 * Adds one day to the ArrayList dailyPricesOfStocks
+	 * Parses the stock data and gathers the statistics of the SDE system
 	 * 
-	 * @param fileScanner-The scanner from formatStockData
-	 * @param dailyPricesOfStocks-The ArrayList containing daily prices of stocks
+	 * @param stockData-File containing stock data
+	 * @param upSampleFactor
+	 * @param sourceHash-Hash of the file, stored with the calibration
+	 * @return-The calibration
+	 * @throws IOException
 	 */
-	private static void addStockToDailyPricesOfStocks(Scanner fileScanner, ArrayList<ArrayList<Double>> dailyPricesOfStocks) 
+	private static CalibrationSnapshot calibrate(File stockData, int upSampleFactor, byte[] sourceHash) 
+			throws IOException 
 	{
-		ArrayList<Double> dailyPricesOfStock = new ArrayList<Double>();
+		double[][] dailyPricesOfStocks = formatStockData(stockData);
 		
-		while (fileScanner.hasNext())
-		{
-			String currentString = fileScanner.next();
-			
-			if (currentString.charAt(0) == '}')
-					break;
-			
-			else 
-			{
-				dailyPricesOfStock.add(Double.parseDouble(currentString));
-			}
-		}
+		//The prices are streamed in one day at a time, so only the statistics are kept and never the log returns
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.CALIBRATION);
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = statistics.getDriftsAndVolatilities();
+		ArrayList<ArrayList<Double>> covolatilityMatrix = statistics.getCovolatilityMatrix();
+		timer.stop();
+		
+		//Create the SDE system using stock statistics, whose factorization is timed as a stage of its own
+		SDESystem SDESystemForStocks = new SDESystem(driftsAndVolatilities, covolatilityMatrix);
 		
-		dailyPricesOfStocks.add(dailyPricesOfStock);
+		return new CalibrationSnapshot(SDESystemForStocks, NumericalSDESolution.initialPricesOf(dailyPricesOfStocks), 
+				dailyPricesOfStocks[0].length, upSampleFactor, sourceHash);
+	}
+
+	/**
+	 * Read through the txt file and retrieve information. The file can either be in the block format of 
+	 * StockData.txt or be the csv file that can be downloaded from the majority of finance websites.
+	 * 
+	 * @param stockData-File containing stock data
+	 * @return-Daily prices of the stocks, indexed by [stock][day]
+	 * @throws IOException
+	 */
+	private static double[][] formatStockData(File stockData) throws IOException 
+	{
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.PARSE);
+		double[][] dailyPricesOfStocks = StockDataLoader.load(stockData.toPath());
+		timer.stop();
+		
+		return dailyPricesOfStocks;
 	}
 	
-	private static void formattedPrint(ArrayList<ArrayList<Double>> dailyPrices, int upSampleFactor) 
+	/**
+	 * Prints the simulated prices to the console, one row per day. The rows are collected in a buffer and written 
+	 * in large pieces instead of one cell at a time.
+	 * 
+	 * @param dailyPrices
+	 * @param upSampleFactor
+	 */
+	private static void formattedPrint(double[][] dailyPrices, int upSampleFactor) 
 	{
-		for (int day = 0; day < (dailyPrices.get(0).size()); day++)
+		PrintWriter console = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+		
+		StringBuilder row = new StringBuilder();
+		for (int day = 0; day < dailyPrices[0].length; day++)
 		{
-			for (int stock = 0; stock < dailyPrices.size(); stock++)
+			row.setLength(0);
+			for (int stock = 0; stock < dailyPrices.length; stock++)
 			{
-				System.out.print(dailyPrices.get(stock).get(day) + "\t");
+				row.append(dailyPrices[stock][day]).append('\t');
 			}
-			System.out.print("\n");
+			row.append('\n');
+			console.write(row.toString());
 		}
+		
+		console.flush();
 	}
 	
 	/**
-	 * Writes the data for ten trajectories of the system and prints it to the file SimulatedTrajectories.txt
+	 * Writes the data for a number of trajectories of the system to the binary file SimulatedTrajectories.bin 
+	 * (see TrajectoryFile for the layout), mapped as a SharedTrajectoryStore so other processes can read the paths 
+	 * while they are simulated, and a per-day summary (mean, standard deviation and 5/50/95 percentile 
+	 * bands of each stock) to SimulatedSummary.txt. Every path stores the simulated price of each stock on each real 
+	 * day, the step day * upSampleFactor; the observed prices are not stored with them. The trajectories are 
+	 * simulated in parallel, streamed to the file and are the same on every run with the same seed.
 	 * 
 	 * @param SDESystem
-	 * @param dailyPricesOfStocks
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfDays-Number of real days in every path
 	 * @param upSampleFactor
+	 * @param numberOfPaths
+	 * @param seed
 	 * @throws IOException
 	 */
-	private static void simulateTenTrajectories(SDESystem SDESystem, 
-			ArrayList<ArrayList<Double>> dailyPricesOfStocks, int upSampleFactor) throws IOException 
+	private static void simulateTrajectories(SDESystem SDESystem, double[] initialPrices, int numberOfDays, 
+			int upSampleFactor, int numberOfPaths, long seed) throws IOException 
 	{
-		BufferedWriter evilShadowSkull = new BufferedWriter(new OutputStreamWriter(
-			new FileOutputStream("SimulatedTrajectories.txt")));
+		MonteCarloPathEngine engine = new MonteCarloPathEngine(SDESystem, initialPrices, 
+				numberOfDays * upSampleFactor, upSampleFactor, seed);
+		
+		TrajectoryFile layout = new TrajectoryFile(initialPrices.length, numberOfDays, numberOfPaths, seed, 
+				8, upSampleFactor);
 		
-		ArrayList<ArrayList<ArrayList<Double>>> simulatedData = new ArrayList<ArrayList<ArrayList<Double>>>();
+		PathSummaryAggregator summary = new PathSummaryAggregator(initialPrices.length, numberOfDays, 
+				upSampleFactor);
 		
-		//build simlatedData
-		for(int simulation = 0; simulation < 10; simulation++)
+		//Each path is written and summarized as soon as it is simulated, so only a few paths are ever in memory. 
+		//The simulation stage therefore includes the writes into the store, and the output stage only the summary.
+		SimulationMetrics.StageTimer simulationTimer = SimulationMetrics.time(SimulationMetrics.Stage.SIMULATION);
+		try (SharedTrajectoryStore store = SharedTrajectoryStore.create(Paths.get("SimulatedTrajectories.bin"), 
+						layout))
 		{
-			NumericalSDESolution simI = new NumericalSDESolution(SDESystem, dailyPricesOfStocks, upSampleFactor);
-			
-			simulatedData.add(simI.getDailyPrices());
+			StreamingSimulation.forEngine(engine).run(0, numberOfPaths, (path, simulatedPrices) -> 
+			{
+				store.acceptPath(path, simulatedPrices);
+				summary.acceptPath(path, simulatedPrices);
+			});
 		}
+		simulationTimer.stop();
 		
-		//Gather each stocks data from simulated data and print
-		for(int stock = 0; stock < dailyPricesOfStocks.size(); stock++)
+		SimulationMetrics.StageTimer outputTimer = SimulationMetrics.time(SimulationMetrics.Stage.OUTPUT);
+		try (BufferedWriter summaryWriter = Files.newBufferedWriter(Paths.get("SimulatedSummary.txt")))
 		{
-			evilShadowSkull.newLine();
-			evilShadowSkull.write("Stock " + stock);
-			evilShadowSkull.newLine();
-			
-			for(int day = 0; day < dailyPricesOfStocks.get(0).size(); day++)
-			{
-				for(int sim = 0; sim < 10; sim++)
-				{
-					evilShadowSkull.write(simulatedData.get(sim).get(stock).get(day) + "\t");
-				}
-				evilShadowSkull.write(dailyPricesOfStocks.get(stock).get(day) + "\t");
-				evilShadowSkull.newLine();
-			}
-			
-			evilShadowSkull.newLine();
-
+			summary.writeSummary(summaryWriter);
 		}
-		evilShadowSkull.close();
-		File file = new File("SimulatedTrajectories.txt");
-		file.createNewFile();
+		outputTimer.stop();
 	}
 	
 }
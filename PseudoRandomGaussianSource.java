@@ -0,0 +1,76 @@
+package financeproject2;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Independent pseudo-random Gaussian samples. Every path gets its own SplittableRandom from PathRandomStreams,
+ * whose nextGaussian uses the modified ziggurat algorithm of McFarland: most samples cost one random long and
+ * a table lookup, without the locking of java.util.Random or the rejection loop of the polar method.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class PseudoRandomGaussianSource implements GaussianSource
+{
+	long masterSeed;
+
+	/**
+	 * Sets up the source
+	 *
+	 * @param masterSeed-Seed every path stream is derived from
+	 */
+	public PseudoRandomGaussianSource(long masterSeed)
+	{
+		this.masterSeed = masterSeed;
+	}
+
+	@Override
+	public GaussianStream forPath(long pathIndex)
+	{
+		return streamOf(PathRandomStreams.forPath(masterSeed, pathIndex));
+	}
+
+	/**
+	 * Wraps a random generator into a stream of Gaussian samples
+	 *
+	 * @param gaussianSampler
+	 * @return-Stream drawing every sample from nextGaussian of the generator
+	 */
+	public static GaussianStream streamOf(RandomGenerator gaussianSampler)
+	{
+		return new RandomGaussianStream(gaussianSampler);
+	}
+
+	/**
+	 * Getter for the master seed
+	 *
+	 * @return
+	 */
+	public long getMasterSeed()
+	{
+		return masterSeed;
+	}
+
+	/**
+	 * Stream drawing its samples from a random generator
+	 */
+	private static class RandomGaussianStream implements GaussianStream
+	{
+		RandomGenerator gaussianSampler;
+
+		RandomGaussianStream(RandomGenerator gaussianSampler)
+		{
+			this.gaussianSampler = gaussianSampler;
+		}
+
+		@Override
+		public void nextGaussians(double[] sample)
+		{
+			for (int i = 0; i < sample.length; i++)
+			{
+				sample[i] = gaussianSampler.nextGaussian();
+			}
+			SimulationMetrics.countGaussianDraws(sample.length);
+		}
+	}
+}
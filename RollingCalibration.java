@@ -0,0 +1,205 @@
+package financeproject2;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps an SDE system calibrated on a sliding window of daily prices. Each new day adds its log returns to the
+ * statistics and removes the day that falls out of the window, which costs O(stocks^2) instead of going over the
+ * whole window again. Removing a day reverses Welford's update, which lets rounding errors build up, so every
+ * windowLength days the statistics are recomputed from the log returns held in the window. That keeps the cost at
+ * O(stocks^2) per day on average.
+ *
+ * The covolatility factor is only recomputed once the covolatility matrix has moved away from the one it was last
+ * computed for by more than a tolerance. While an older factor is reused, the diffusion of the simulated paths
+ * follows the covolatility matrix the factor was computed from, but the volatilities in the drift term are those
+ * of the current window, so the two disagree by up to the tolerance.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class RollingCalibration
+{
+	int numberOfStocks;
+
+	//Number of log returns in a full window
+	int windowLength;
+
+	//Largest relative (Frobenius norm) change of the covolatility matrix that keeps the old factor
+	double tolerance;
+
+	OnlineStockStatistics statistics;
+
+	//Ring buffer holding the log returns currently in the window
+	double[][] windowOfLogReturns;
+	int oldestInWindow;
+
+	//Days added since the statistics were last recomputed from the window
+	int additionsSinceRecompute;
+
+	double[] previousPrices;
+	double[] logReturnsOnDay;
+
+	CovolatilityFactorization factorization;
+
+	//Covolatility matrix the current factor was computed from
+	double[] factoredCovolatilityMatrix;
+	CovolatilityFactor covolatilityFactor;
+
+	int numberOfFactorizations;
+
+	/**
+	 * Sets up an empty window
+	 *
+	 * @param numberOfStocks
+	 * @param windowLength-Number of log returns (one less than the number of days of prices) kept in the window
+	 * @param tolerance-Relative change of the covolatility matrix before the factor is recomputed
+	 */
+	public RollingCalibration(int numberOfStocks, int windowLength, double tolerance)
+	{
+		this(numberOfStocks, windowLength, tolerance, new CholeskyFactorization());
+	}
+
+	/**
+	 * Sets up an empty window that factors the covolatility matrix with the given strategy
+	 *
+	 * @param numberOfStocks
+	 * @param windowLength-Number of log returns (one less than the number of days of prices) kept in the window
+	 * @param tolerance-Relative change of the covolatility matrix before the factor is recomputed
+	 * @param factorization
+	 */
+	public RollingCalibration(int numberOfStocks, int windowLength, double tolerance,
+			CovolatilityFactorization factorization)
+	{
+		this.factorization = factorization;
+		this.numberOfStocks = numberOfStocks;
+		this.windowLength = windowLength;
+		this.tolerance = tolerance;
+		this.statistics = new OnlineStockStatistics(numberOfStocks);
+		this.windowOfLogReturns = new double[windowLength][numberOfStocks];
+		this.logReturnsOnDay = new double[numberOfStocks];
+	}
+
+	/**
+	 * Appends the prices of the next day to the window, dropping the oldest day once the window is full
+	 *
+	 * @param pricesOnDay-Price of each stock on the day
+	 */
+	public void addPrices(double[] pricesOnDay)
+	{
+		if (previousPrices == null)
+		{
+			previousPrices = pricesOnDay.clone();
+			return;
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			logReturnsOnDay[i] = Math.log(pricesOnDay[i] / previousPrices[i]);
+			previousPrices[i] = pricesOnDay[i];
+		}
+
+		if (statistics.getNumberOfObservations() == windowLength)
+		{
+			statistics.removeLogReturns(windowOfLogReturns[oldestInWindow]);
+		}
+
+		System.arraycopy(logReturnsOnDay, 0, windowOfLogReturns[oldestInWindow], 0, numberOfStocks);
+		oldestInWindow = (oldestInWindow + 1) % windowLength;
+
+		statistics.addLogReturns(logReturnsOnDay);
+
+		additionsSinceRecompute++;
+		if (additionsSinceRecompute == windowLength)
+		{
+			recomputeStatistics();
+		}
+	}
+
+	/**
+	 * Recomputes the statistics from the log returns in the window, oldest first, dropping the rounding errors
+	 * left by removing days
+	 */
+	private void recomputeStatistics()
+	{
+		int numberOfDays = (int) statistics.getNumberOfObservations();
+		int oldest = numberOfDays == windowLength ? oldestInWindow : 0;
+
+		statistics.clear();
+		for (int k = 0; k < numberOfDays; k++)
+		{
+			statistics.addLogReturns(windowOfLogReturns[(oldest + k) % windowLength]);
+		}
+
+		additionsSinceRecompute = 0;
+	}
+
+	/**
+	 * Builds the SDE system for the current window. The drifts, volatilities and covolatilities are always up to
+	 * date; the factor of the covolatility matrix from an earlier call is reused while the matrix has not
+	 * moved past the tolerance.
+	 *
+	 * @return-The SDE system for the window
+	 */
+	public SDESystem getSDESystem()
+	{
+		ArrayList<ArrayList<Double>> covolatilityMatrix = statistics.getCovolatilityMatrix();
+
+		if (covolatilityFactor == null || hasMovedPastTolerance())
+		{
+			covolatilityFactor = factorization.factor(SDESystem.convertToBasicArrayMatrix(covolatilityMatrix));
+			factoredCovolatilityMatrix = SDESystem.convertToRowMajorArray(covolatilityMatrix);
+			numberOfFactorizations++;
+		}
+
+		SDESystem SDESystemForWindow = new SDESystem(statistics.getDriftsAndVolatilities(), covolatilityMatrix,
+				covolatilityFactor);
+		SDESystemForWindow.factorization = factorization;
+
+		return SDESystemForWindow;
+	}
+
+	/**
+	 * Compares the current covolatility matrix with the one the factor was computed from
+	 *
+	 * @return-Whether the relative difference in the Frobenius norm is larger than the tolerance
+	 */
+	private boolean hasMovedPastTolerance()
+	{
+		double squaredDifference = 0.0;
+		double squaredNorm = 0.0;
+
+		for (int row = 0; row < numberOfStocks; row++)
+		{
+			for (int column = 0; column < numberOfStocks; column++)
+			{
+				double factored = factoredCovolatilityMatrix[row * numberOfStocks + column];
+				double difference = statistics.getCovolatility(row, column) - factored;
+
+				squaredDifference += difference * difference;
+				squaredNorm += factored * factored;
+			}
+		}
+
+		return squaredDifference > tolerance * tolerance * squaredNorm;
+	}
+
+	/**
+	 * Getter for the statistics of the current window
+	 *
+	 * @return
+	 */
+	public OnlineStockStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Getter for the number of times the covolatility matrix has been factored
+	 *
+	 * @return
+	 */
+	public int getNumberOfFactorizations()
+	{
+		return numberOfFactorizations;
+	}
+}
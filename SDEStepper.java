@@ -0,0 +1,33 @@
+package financeproject2;
+
+/**
+ * A time stepping scheme for the SDE system dS_i = a_i S_i dt + S_i (F dW)_i, where a_i is the drift plus half
+ * the volatility of stock i and F is the covolatility factor. A stepper keeps its own buffers, so each path (or
+ * thread) needs its own instance; they are handed out by a SteppingScheme.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface SDEStepper 
+{
+	/**
+	 * Advances the prices of all stocks over one time step
+	 * 
+	 * @param currentPrices-Prices at the start of the step
+	 * @param nextPrices-Receives the prices at the end of the step, a different array from currentPrices
+	 * @param timeStep-Length of the step in years
+	 * @param brownianIncrement-Increment of the independent Brownian motions over the step, with variance timeStep, 
+	 * one per noise dimension of the covolatility factor
+	 */
+	void step(double[] currentPrices, double[] nextPrices, double timeStep, double[] brownianIncrement);
+	
+	/**
+	 * Expected ratio of the price of a stock at the end of a step to its price at the start. Used for control 
+	 * variates, where the expectation of the scheme itself (not of the exact solution) keeps them unbiased.
+	 * 
+	 * @param stock
+	 * @param timeStep-Length of the step in years
+	 * @return
+	 */
+	double expectedGrowthFactor(int stock, double timeStep);
+}
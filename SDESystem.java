@@ -1,5 +1,8 @@
 package financeproject2;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 
 
@@ -19,13 +22,72 @@ public class SDESystem
 	ArrayList<ArrayList<Double>> covolatilityMatrix;
 	ArrayList<ArrayList<Double>> covolatilityMatrixSqrt;
 	
+	//Factor of the covolatility matrix that the simulation uses to correlate its samples
+	CovolatilityFactor covolatilityFactor;
+	
+	//Strategy the factor was computed with, null when the factor was handed in ready made
+	CovolatilityFactorization factorization;
+	
+	//Primitive copies used by the simulation hot loop
+	double[] basicDriftsOfStocks;
+	double[] basicVolatilitiesOfStocks;
+	double[] covolatilityMatrixSqrtRowMajor;
+	
 	/**
-	 * Uses stock statistics in order to set up the SDE system
+	 * Uses stock statistics in order to set up the SDE system. The covolatility matrix is factored with a Cholesky
+	 * decomposition.
 	 * 
 	 * @param driftsAndVolatilities
 	 * @param covolatilityMatrix
 	 */
 	public SDESystem(ArrayList<ArrayList<Double>> driftsAndVolatilities, ArrayList<ArrayList<Double>> covolatilityMatrix) 
+	{
+		this(driftsAndVolatilities, covolatilityMatrix, new CholeskyFactorization());
+	}
+	
+	/**
+	 * Uses stock statistics in order to set up the SDE system, factoring the covolatility matrix with the given 
+	 * strategy. The factor is computed once here and reused by every simulation of the system.
+	 * 
+	 * @param driftsAndVolatilities
+	 * @param covolatilityMatrix
+	 * @param factorization-Cholesky, symmetric eigenvalue or principal component factorization
+	 */
+	public SDESystem(ArrayList<ArrayList<Double>> driftsAndVolatilities, ArrayList<ArrayList<Double>> covolatilityMatrix,
+			CovolatilityFactorization factorization) 
+	{
+		this(driftsAndVolatilities, covolatilityMatrix, factor(factorization, covolatilityMatrix));
+		
+		this.factorization = factorization;
+	}
+	
+	/**
+	 * Factors the covolatility matrix, timed as the factorization stage of SimulationMetrics
+	 * 
+	 * @param factorization
+	 * @param covolatilityMatrix
+	 * @return-The factor
+	 */
+	private static CovolatilityFactor factor(CovolatilityFactorization factorization, 
+			ArrayList<ArrayList<Double>> covolatilityMatrix) 
+	{
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.FACTORIZATION);
+		CovolatilityFactor covolatilityFactor = factorization.factor(convertToBasicArrayMatrix(covolatilityMatrix));
+		timer.stop();
+		
+		return covolatilityFactor;
+	}
+	
+	/**
+	 * Sets up the SDE system with a covolatility factor that was already computed, for example one that is 
+	 * reused by RollingCalibration while the covolatilities have barely moved
+	 * 
+	 * @param driftsAndVolatilities
+	 * @param covolatilityMatrix
+	 * @param covolatilityFactor
+	 */
+	public SDESystem(ArrayList<ArrayList<Double>> driftsAndVolatilities, ArrayList<ArrayList<Double>> covolatilityMatrix,
+			CovolatilityFactor covolatilityFactor) 
 	{
 		this.driftsOfStocks = new ArrayList<Double>();
 		this.volatilitiesOfStocks = new ArrayList<Double>();
@@ -37,7 +99,77 @@ public class SDESystem
 		
 		this.covolatilityMatrix = covolatilityMatrix;
 		
-		this.covolatilityMatrixSqrt = MatrixSquareRoot(covolatilityMatrix);
+		this.covolatilityFactor = covolatilityFactor;
+		
+		this.covolatilityMatrixSqrt = convertRowMajorToArrayListMatrix(covolatilityFactor.getLoadings(), 
+				covolatilityFactor.getNumberOfStocks(), covolatilityFactor.getRank());
+		
+		this.basicDriftsOfStocks = convertToBasicArray(driftsOfStocks);
+		this.basicVolatilitiesOfStocks = convertToBasicArray(volatilitiesOfStocks);
+		this.covolatilityMatrixSqrtRowMajor = covolatilityFactor.getLoadings();
+	}
+	
+	/**
+	 * Writes the system in a compact binary form, read back by readFrom. The factor of the covolatility matrix is 
+	 * written as well, so the reader does not factor the matrix again and simulates exactly the same paths.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException 
+	{
+		int numberOfStocks = getNumberOfStocks();
+		
+		out.writeInt(numberOfStocks);
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			out.writeDouble(basicDriftsOfStocks[i]);
+			out.writeDouble(basicVolatilitiesOfStocks[i]);
+		}
+		
+		for (ArrayList<Double> row : covolatilityMatrix)
+		{
+			for (int c = 0; c < numberOfStocks; c++)
+			{
+				out.writeDouble(row.get(c));
+			}
+		}
+		
+		covolatilityFactor.writeTo(out);
+	}
+	
+	/**
+	 * Reads a system written by writeTo
+	 * 
+	 * @param in
+	 * @return-The system
+	 * @throws IOException
+	 */
+	public static SDESystem readFrom(DataInput in) throws IOException 
+	{
+		int numberOfStocks = in.readInt();
+		
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			ArrayList<Double> driftAndVolatility = new ArrayList<Double>();
+			driftAndVolatility.add(in.readDouble());
+			driftAndVolatility.add(in.readDouble());
+			driftsAndVolatilities.add(driftAndVolatility);
+		}
+		
+		ArrayList<ArrayList<Double>> covolatilityMatrix = new ArrayList<ArrayList<Double>>();
+		for (int r = 0; r < numberOfStocks; r++)
+		{
+			ArrayList<Double> row = new ArrayList<Double>();
+			for (int c = 0; c < numberOfStocks; c++)
+			{
+				row.add(in.readDouble());
+			}
+			covolatilityMatrix.add(row);
+		}
+		
+		return new SDESystem(driftsAndVolatilities, covolatilityMatrix, CovolatilityFactor.readFrom(in));
 	}
 	
 	/**
@@ -111,6 +243,54 @@ public class SDESystem
 		return basicArray;
 	}
 	
+	/**
+	 * Flattens an ArrayList matrix into a single row-major array so that entry (row, column) is found at
+	 * row * columns + column
+	 * 
+	 * @param arrayListMatrix
+	 * @return-The row-major array
+	 */
+	public static double[] convertToRowMajorArray(ArrayList<ArrayList<Double>> arrayListMatrix) 
+	{
+		int columns = arrayListMatrix.get(0).size();
+		double[] rowMajorArray = new double[arrayListMatrix.size() * columns];
+		
+		for(int row = 0; row < arrayListMatrix.size(); row++)
+		{
+			for(int column = 0; column < columns; column++)
+			{
+				rowMajorArray[row * columns + column] = arrayListMatrix.get(row).get(column);
+			}
+		}
+		
+		return rowMajorArray;
+	}
+	
+	/**
+	 * Converts a row-major array back into an ArrayList matrix
+	 * 
+	 * @param rowMajorArray
+	 * @param rows
+	 * @param columns
+	 * @return-The ArrayList matrix
+	 */
+	public static ArrayList<ArrayList<Double>> convertRowMajorToArrayListMatrix(double[] rowMajorArray, int rows, 
+			int columns) 
+	{
+		ArrayList<ArrayList<Double>> arrayListMatrix = new ArrayList<ArrayList<Double>>();
+		
+		for(int row = 0; row < rows; row++)
+		{
+			arrayListMatrix.add(new ArrayList<Double>());
+			for(int column = 0; column < columns; column++)
+			{
+				arrayListMatrix.get(row).add(rowMajorArray[row * columns + column]);
+			}
+		}
+		
+		return arrayListMatrix;
+	}
+	
 	/**
 	 * Converts a matrix into an ArrayList of Matrices
 	 * 
@@ -173,7 +353,8 @@ public class SDESystem
 	}
 
 	/**
-	 * Getter for the covolatilities
+	 * Getter for the loadings of the covolatility factor. For a factor model this has one column per factor and 
+	 * leaves out the residual volatilities, see getCovolatilityFactor().
 	 * 
 	 * @return
 	 */
@@ -182,6 +363,128 @@ public class SDESystem
 		return covolatilityMatrixSqrt;
 	}
 	
+	/**
+	 * Getter for the covolatilities
+	 * 
+	 * @return
+	 */
+	public ArrayList<ArrayList<Double>> getCovolatilityMatrix() 
+	{
+		return covolatilityMatrix;
+	}
+	
+	/**
+	 * Getter for the factor of the covolatility matrix
+	 * 
+	 * @return
+	 */
+	public CovolatilityFactor getCovolatilityFactor() 
+	{
+		return covolatilityFactor;
+	}
+	
+	/**
+	 * Getter for the strategy the covolatility matrix was factored with. When the factor was handed in ready made, 
+	 * as when the system was read back by readFrom, a strategy giving a factor of the same shape is returned: a 
+	 * principal component factorization of the same rank for a factor model, Cholesky otherwise.
+	 * 
+	 * @return
+	 */
+	public CovolatilityFactorization getCovolatilityFactorization() 
+	{
+		if (factorization != null)
+		{
+			return factorization;
+		}
+		
+		if (covolatilityFactor.getResidualVolatilities() != null)
+		{
+			return new PrincipalComponentFactorization(covolatilityFactor.getRank());
+		}
+		
+		return new CholeskyFactorization();
+	}
+	
+	/**
+	 * Getter for the drifts as a basic array
+	 * 
+	 * @return
+	 */
+	public double[] getBasicDriftsOfStocks() 
+	{
+		return basicDriftsOfStocks;
+	}
+
+	/**
+	 * Getter for the volatilities as a basic array
+	 * 
+	 * @return
+	 */
+	public double[] getBasicVolatilitiesOfStocks() 
+	{
+		return basicVolatilitiesOfStocks;
+	}
+
+	/**
+	 * Getter for the covolatility factor loadings flattened in row-major order. They are computed once with the 
+	 * system so the simulation never has to convert the ArrayList matrix again.
+	 * 
+	 * @return
+	 */
+	public double[] getCovolatilityMatrixSqrtRowMajor() 
+	{
+		return covolatilityMatrixSqrtRowMajor;
+	}
+	
+	/**
+	 * Getter for the number of stocks in the system
+	 * 
+	 * @return
+	 */
+	public int getNumberOfStocks() 
+	{
+		return basicDriftsOfStocks.length;
+	}
+	
+	/**
+	 * Copy of the system with other drifts, sharing the volatilities, the covolatility matrix and its factor, so 
+	 * nothing is factored again
+	 * 
+	 * @param drifts-Drift of each stock
+	 * @return-The new system
+	 */
+	public SDESystem withDrifts(double[] drifts) 
+	{
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < drifts.length; i++)
+		{
+			ArrayList<Double> driftAndVolatility = new ArrayList<Double>();
+			driftAndVolatility.add(drifts[i]);
+			driftAndVolatility.add(basicVolatilitiesOfStocks[i]);
+			driftsAndVolatilities.add(driftAndVolatility);
+		}
+		
+		SDESystem system = new SDESystem(driftsAndVolatilities, covolatilityMatrix, covolatilityFactor);
+		system.factorization = factorization;
+		
+		return system;
+	}
+	
+	/**
+	 * Copy of the system with other statistics, whose covolatility matrix is factored with the same strategy as 
+	 * the one of this system. The noise dimension of a factor model stays the same, so both systems can be driven 
+	 * by the same Gaussian samples.
+	 * 
+	 * @param driftsAndVolatilities
+	 * @param covolatilityMatrix
+	 * @return-The new system
+	 */
+	public SDESystem withCovolatilities(ArrayList<ArrayList<Double>> driftsAndVolatilities, 
+			ArrayList<ArrayList<Double>> covolatilityMatrix) 
+	{
+		return new SDESystem(driftsAndVolatilities, covolatilityMatrix, getCovolatilityFactorization());
+	}
+	
 //	/**
 //	 * Prints all of the statistics to the console
 //	 * 
@@ -0,0 +1,209 @@
+package financeproject2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A perturbation of a calibrated SDE system for a stress test: drifts shifted, volatilities scaled, correlations
+ * set to one value or the whole covolatility matrix replaced. A scenario with no perturbation gives back the
+ * system itself, and a changed covolatility matrix is factored with the same strategy as the calibrated one. The
+ * changes are applied in the order: covolatility matrix, correlation, volatility scale, drift shift.
+ *
+ * Scenarios are set up with chained calls, for example new Scenario("crash").withDriftShift(-0.3).withCorrelation(0.9).
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class Scenario
+{
+	String name;
+
+	//Added to the drift of each stock, null for none
+	double[] driftShifts;
+	double uniformDriftShift;
+
+	//Multiplies the volatility (the square root of the variance) of each stock, null for none
+	double[] volatilityScales;
+	double uniformVolatilityScale = 1.0;
+
+	//Correlation between every pair of stocks, NaN to keep the calibrated ones
+	double correlation = Double.NaN;
+
+	//Replaces the calibrated covolatility matrix, null to keep it
+	double[][] covolatilityMatrix;
+
+	/**
+	 * Sets up a scenario that changes nothing
+	 *
+	 * @param name
+	 */
+	public Scenario(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Adds the same amount to the yearly drift of every stock
+	 *
+	 * @param driftShift
+	 * @return-This scenario
+	 */
+	public Scenario withDriftShift(double driftShift)
+	{
+		this.uniformDriftShift = driftShift;
+		return this;
+	}
+
+	/**
+	 * Adds an amount to the yearly drift of each stock, on top of any uniform shift
+	 *
+	 * @param driftShifts-Shift of each stock
+	 * @return-This scenario
+	 */
+	public Scenario withDriftShifts(double[] driftShifts)
+	{
+		this.driftShifts = driftShifts.clone();
+		return this;
+	}
+
+	/**
+	 * Multiplies the volatility of every stock by the same factor, keeping the correlations
+	 *
+	 * @param volatilityScale
+	 * @return-This scenario
+	 */
+	public Scenario withVolatilityScale(double volatilityScale)
+	{
+		this.uniformVolatilityScale = volatilityScale;
+		return this;
+	}
+
+	/**
+	 * Multiplies the volatility of each stock by a factor, on top of any uniform scale
+	 *
+	 * @param volatilityScales-Factor of each stock
+	 * @return-This scenario
+	 */
+	public Scenario withVolatilityScales(double[] volatilityScales)
+	{
+		this.volatilityScales = volatilityScales.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the correlation between every pair of stocks, keeping the volatilities
+	 *
+	 * @param correlation-Between -1 / (number of stocks - 1) and 1 for the matrix to stay positive definite
+	 * @return-This scenario
+	 */
+	public Scenario withCorrelation(double correlation)
+	{
+		this.correlation = correlation;
+		return this;
+	}
+
+	/**
+	 * Replaces the covolatility matrix
+	 *
+	 * @param covolatilityMatrix-Yearly covariances of the log returns
+	 * @return-This scenario
+	 */
+	public Scenario withCovolatilityMatrix(double[][] covolatilityMatrix)
+	{
+		this.covolatilityMatrix = new double[covolatilityMatrix.length][];
+		for (int i = 0; i < covolatilityMatrix.length; i++)
+		{
+			this.covolatilityMatrix[i] = covolatilityMatrix[i].clone();
+		}
+		return this;
+	}
+
+	/**
+	 * Getter for the name
+	 *
+	 * @return
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Whether the scenario changes the covolatility matrix, which then has to be factored again
+	 *
+	 * @return
+	 */
+	public boolean changesCovolatilities()
+	{
+		return covolatilityMatrix != null || !Double.isNaN(correlation) || uniformVolatilityScale != 1.0
+				|| volatilityScales != null;
+	}
+
+	/**
+	 * Applies the scenario to a system
+	 *
+	 * @param SDESystemForStocks-Calibrated system
+	 * @return-The perturbed system, sharing the factor of the covolatility matrix when it is unchanged
+	 */
+	public SDESystem apply(SDESystem SDESystemForStocks)
+	{
+		if (!changesCovolatilities() && uniformDriftShift == 0.0 && driftShifts == null)
+		{
+			return SDESystemForStocks;
+		}
+
+		int numberOfStocks = SDESystemForStocks.getNumberOfStocks();
+
+		double[] drifts = SDESystemForStocks.getBasicDriftsOfStocks().clone();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			drifts[i] += uniformDriftShift + (driftShifts == null ? 0.0 : driftShifts[i]);
+		}
+
+		if (!changesCovolatilities())
+		{
+			return SDESystemForStocks.withDrifts(drifts);
+		}
+
+		double[][] covolatilities = covolatilityMatrix != null ? covolatilityMatrix
+				: SDESystem.convertToBasicArrayMatrix(SDESystemForStocks.getCovolatilityMatrix());
+
+		double[] scales = new double[numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			scales[i] = uniformVolatilityScale * (volatilityScales == null ? 1.0 : volatilityScales[i]);
+		}
+
+		ArrayList<ArrayList<Double>> perturbedMatrix = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			ArrayList<Double> row = new ArrayList<Double>();
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				double covolatility = covolatilities[i][j];
+				if (i != j && !Double.isNaN(correlation))
+				{
+					covolatility = correlation * Math.sqrt(covolatilities[i][i] * covolatilities[j][j]);
+				}
+				row.add(scales[i] * scales[j] * covolatility);
+			}
+			perturbedMatrix.add(row);
+		}
+
+		//The volatility of a stock is its variance, the diagonal of the covolatility matrix
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			driftsAndVolatilities.add(new ArrayList<Double>(Arrays.asList(drifts[i], perturbedMatrix.get(i).get(i))));
+		}
+
+		//Refactoring with the strategy of the base keeps the noise dimension, so the scenarios share their draws
+		return SDESystemForStocks.withCovolatilities(driftsAndVolatilities, perturbedMatrix);
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,302 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The mean of a payoff in each scenario of a ScenarioRunner and the paired difference from the base scenario,
+ * path by path. The scenarios share their Gaussian draws, so the difference has a much smaller standard error
+ * than the two means it is the difference of.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class ScenarioComparison
+{
+	List<Scenario> scenarios;
+
+	long numberOfPaths;
+
+	//Running moments of the payoff and of its difference from the base, indexed by scenario
+	double[] means;
+	double[] sumsOfSquaredDeviations;
+	double[] differenceMeans;
+	double[] differenceSumsOfSquaredDeviations;
+
+	//Payoff of each scenario on each path of the block being simulated, indexed by [scenario][path]
+	double[][] blockPayoffs = new double[0][];
+
+	/**
+	 * Sets up an empty comparison
+	 *
+	 * @param scenarios-The scenarios, the first of which is the base
+	 */
+	ScenarioComparison(List<Scenario> scenarios)
+	{
+		this.scenarios = new ArrayList<Scenario>(scenarios);
+
+		int numberOfScenarios = scenarios.size();
+		this.means = new double[numberOfScenarios];
+		this.sumsOfSquaredDeviations = new double[numberOfScenarios];
+		this.differenceMeans = new double[numberOfScenarios];
+		this.differenceSumsOfSquaredDeviations = new double[numberOfScenarios];
+	}
+
+	/**
+	 * Makes the observer of one scenario. The observers of a comparison fill in its block of payoffs, and the
+	 * observer of the last scenario adds the block once every scenario has been evaluated.
+	 *
+	 * @param scenario
+	 * @param measure
+	 * @param stepsPerDay-Upsample factor of the paths
+	 * @return
+	 */
+	MeasureObserver observerOf(int scenario, Payoff measure, int stepsPerDay)
+	{
+		return new MeasureObserver(scenario, measure, stepsPerDay);
+	}
+
+	/**
+	 * Adds the comparison of other paths of the same scenarios, combining the moments with Chan's formula
+	 *
+	 * @param other
+	 */
+	public void merge(ScenarioComparison other)
+	{
+		if (other.numberOfPaths == 0)
+		{
+			return;
+		}
+
+		mergeMoments(means, sumsOfSquaredDeviations, numberOfPaths, other.means, other.sumsOfSquaredDeviations,
+				other.numberOfPaths);
+		mergeMoments(differenceMeans, differenceSumsOfSquaredDeviations, numberOfPaths, other.differenceMeans,
+				other.differenceSumsOfSquaredDeviations, other.numberOfPaths);
+
+		numberOfPaths += other.numberOfPaths;
+	}
+
+	/**
+	 * Mean payoff of a scenario
+	 *
+	 * @param scenario
+	 * @return
+	 */
+	public double getMean(int scenario)
+	{
+		return means[scenario];
+	}
+
+	/**
+	 * Standard error of the mean payoff of a scenario
+	 *
+	 * @param scenario
+	 * @return
+	 */
+	public double getStandardError(int scenario)
+	{
+		return standardErrorOf(sumsOfSquaredDeviations[scenario]);
+	}
+
+	/**
+	 * Mean of the payoff of a scenario minus that of the base on the same path
+	 *
+	 * @param scenario
+	 * @return
+	 */
+	public double getDifferenceFromBase(int scenario)
+	{
+		return differenceMeans[scenario];
+	}
+
+	/**
+	 * Standard error of the paired difference from the base
+	 *
+	 * @param scenario
+	 * @return
+	 */
+	public double getDifferenceStandardError(int scenario)
+	{
+		return standardErrorOf(differenceSumsOfSquaredDeviations[scenario]);
+	}
+
+	/**
+	 * Getter for the number of paths compared
+	 *
+	 * @return
+	 */
+	public long getNumberOfPaths()
+	{
+		return numberOfPaths;
+	}
+
+	/**
+	 * Writes the mean and the difference from the base of every scenario with their standard errors as tab
+	 * separated rows
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSummary(Writer out) throws IOException
+	{
+		out.write("scenario\tmean\tstandardError\tdifferenceFromBase\tdifferenceStandardError\n");
+
+		StringBuilder row = new StringBuilder();
+		for (int s = 0; s < scenarios.size(); s++)
+		{
+			row.setLength(0);
+			row.append(scenarios.get(s)).append('\t')
+					.append(getMean(s)).append('\t')
+					.append(getStandardError(s)).append('\t')
+					.append(getDifferenceFromBase(s)).append('\t')
+					.append(getDifferenceStandardError(s)).append('\n');
+			out.write(row.toString());
+		}
+	}
+
+	/**
+	 * Folds the payoffs of a block into the moments
+	 *
+	 * @param numberOfPathsInBlock
+	 */
+	private void addBlock(int numberOfPathsInBlock)
+	{
+		int numberOfScenarios = means.length;
+
+		double[] blockMeans = new double[numberOfScenarios];
+		double[] blockSums = new double[numberOfScenarios];
+		double[] blockDifferenceMeans = new double[numberOfScenarios];
+		double[] blockDifferenceSums = new double[numberOfScenarios];
+
+		double[] base = blockPayoffs[0];
+		for (int s = 0; s < numberOfScenarios; s++)
+		{
+			double[] payoffs = blockPayoffs[s];
+
+			double sum = 0.0;
+			double differenceSum = 0.0;
+			for (int p = 0; p < numberOfPathsInBlock; p++)
+			{
+				sum += payoffs[p];
+				differenceSum += payoffs[p] - base[p];
+			}
+			blockMeans[s] = sum / numberOfPathsInBlock;
+			blockDifferenceMeans[s] = differenceSum / numberOfPathsInBlock;
+
+			for (int p = 0; p < numberOfPathsInBlock; p++)
+			{
+				double deviation = payoffs[p] - blockMeans[s];
+				double differenceDeviation = payoffs[p] - base[p] - blockDifferenceMeans[s];
+				blockSums[s] += deviation * deviation;
+				blockDifferenceSums[s] += differenceDeviation * differenceDeviation;
+			}
+		}
+
+		mergeMoments(means, sumsOfSquaredDeviations, numberOfPaths, blockMeans, blockSums, numberOfPathsInBlock);
+		mergeMoments(differenceMeans, differenceSumsOfSquaredDeviations, numberOfPaths, blockDifferenceMeans,
+				blockDifferenceSums, numberOfPathsInBlock);
+
+		numberOfPaths += numberOfPathsInBlock;
+	}
+
+	private static void mergeMoments(double[] means, double[] sumsOfSquaredDeviations, long numberOfPaths,
+			double[] otherMeans, double[] otherSumsOfSquaredDeviations, long otherNumberOfPaths)
+	{
+		long combinedPaths = numberOfPaths + otherNumberOfPaths;
+
+		for (int s = 0; s < means.length; s++)
+		{
+			double deviation = otherMeans[s] - means[s];
+
+			means[s] += deviation * otherNumberOfPaths / combinedPaths;
+			sumsOfSquaredDeviations[s] += otherSumsOfSquaredDeviations[s]
+					+ deviation * deviation * ((double) numberOfPaths * otherNumberOfPaths / combinedPaths);
+		}
+	}
+
+	private double standardErrorOf(double sumOfSquaredDeviations)
+	{
+		if (numberOfPaths < 2)
+		{
+			return Double.NaN;
+		}
+
+		return Math.sqrt(sumOfSquaredDeviations / (numberOfPaths - 1) / numberOfPaths);
+	}
+
+	/**
+	 * Evaluates the payoff on the paths of one scenario at its maturity
+	 */
+	class MeasureObserver implements PathBlockObserver
+	{
+		int scenario;
+		Payoff measure;
+		int stepsPerDay;
+		int maturityStep;
+
+		//Sums of the daily prices of the block, only when the payoff needs them
+		double[][] runningSums;
+
+		MeasureObserver(int scenario, Payoff measure, int stepsPerDay)
+		{
+			this.scenario = scenario;
+			this.measure = measure;
+			this.stepsPerDay = stepsPerDay;
+			this.maturityStep = measure.getMaturityDay() * stepsPerDay;
+		}
+
+		@Override
+		public void observeStep(long firstPath, int numberOfPaths, int step, double[][] blockPrices)
+		{
+			if (measure.needsRunningSums())
+			{
+				if (step == 0)
+				{
+					if (runningSums == null || runningSums[0].length < numberOfPaths)
+					{
+						runningSums = new double[blockPrices.length][numberOfPaths];
+					}
+					for (double[] sums : runningSums)
+					{
+						Arrays.fill(sums, 0, numberOfPaths, 0.0);
+					}
+				}
+				else if (step <= maturityStep && step % stepsPerDay == 0)
+				{
+					for (int i = 0; i < runningSums.length; i++)
+					{
+						for (int p = 0; p < numberOfPaths; p++)
+						{
+							runningSums[i][p] += blockPrices[i][p];
+						}
+					}
+				}
+			}
+
+			if (step != maturityStep)
+			{
+				return;
+			}
+
+			if (blockPayoffs.length == 0 || blockPayoffs[0].length < numberOfPaths)
+			{
+				blockPayoffs = new double[means.length][numberOfPaths];
+			}
+
+			measure.evaluate(numberOfPaths, blockPrices, runningSums, blockPayoffs[scenario]);
+
+			if (scenario == means.length - 1)
+			{
+				addBlock(numberOfPaths);
+			}
+		}
+
+		ScenarioComparison getComparison()
+		{
+			return ScenarioComparison.this;
+		}
+	}
+}
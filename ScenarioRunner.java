@@ -0,0 +1,360 @@
+package financeproject2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs a batch of stress scenarios on one calibrated SDE system with common random numbers. Path p of every
+ * scenario is driven by the same Gaussian draws, which are made once per block and step and then used by every
+ * scenario in turn: each scenario only correlates them with its own covolatility factor and applies its own
+ * drifts. Nothing is parsed or calibrated again, and a covolatility matrix is only factored again when a scenario
+ * changes it.
+ *
+ * Because the scenarios share their randomness, the difference between a scenario and the base (the first
+ * scenario) is measured path by path, and its standard error is far smaller than that of two independent runs.
+ * compare reports those paired differences. The paths of each scenario are the same, bit for bit, as those of a
+ * separate run of its system with the same seed.
+ *
+ * Ranges of paths are spread across the fork-join pool as in BatchedPathEngine.observePaths.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class ScenarioRunner
+{
+	List<Scenario> scenarios;
+
+	//Batched engine of each scenario, all with the same seed and number of steps
+	BatchedPathEngine[] scenarioEngines;
+
+	//Engine of the first scenario, whose pool and Gaussian source are used
+	MonteCarloPathEngine baseEngine;
+
+	int numberOfStocks;
+
+	int noiseDimension;
+
+	int pathsPerBlock = BatchedPathEngine.DEFAULT_PATHS_PER_BLOCK;
+
+	/**
+	 * Sets up the systems of the scenarios
+	 *
+	 * @param SDESystemForStocks-Calibrated system
+	 * @param scenarios-Scenarios to run, the first of which is the base the others are compared with
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param seed
+	 */
+	public ScenarioRunner(SDESystem SDESystemForStocks, List<Scenario> scenarios, double[] initialPrices,
+			int numberOfSteps, int upSampleFactor, long seed)
+	{
+		if (scenarios.isEmpty())
+		{
+			throw new IllegalArgumentException("At least one scenario is needed");
+		}
+
+		this.scenarios = new ArrayList<Scenario>(scenarios);
+		this.numberOfStocks = initialPrices.length;
+		this.scenarioEngines = new BatchedPathEngine[scenarios.size()];
+
+		for (int s = 0; s < scenarioEngines.length; s++)
+		{
+			MonteCarloPathEngine engine = new MonteCarloPathEngine(scenarios.get(s).apply(SDESystemForStocks),
+					initialPrices, numberOfSteps, upSampleFactor, seed, VarianceReduction.NONE);
+			if (s == 0)
+			{
+				baseEngine = engine;
+			}
+			scenarioEngines[s] = new BatchedPathEngine(engine, pathsPerBlock);
+		}
+
+		this.noiseDimension = scenarioEngines[0].covolatilityFactor.getNoiseDimension();
+		for (BatchedPathEngine scenarioEngine : scenarioEngines)
+		{
+			if (scenarioEngine.covolatilityFactor.getNoiseDimension() != noiseDimension)
+			{
+				throw new IllegalArgumentException("Every scenario has to need the same number of Gaussian samples");
+			}
+		}
+	}
+
+	/**
+	 * Simulates paths 0 to numberOfPaths - 1 of every scenario, showing each scenario to its own observer
+	 *
+	 * @param numberOfPaths
+	 * @param newObserver-Makes an empty observer
+	 * @param merge-Merges the second observer into the first and returns the result
+	 * @return-The observer of each scenario, in the order of the scenarios
+	 */
+	public <T extends PathBlockObserver> List<T> run(long numberOfPaths, Supplier<T> newObserver,
+			BinaryOperator<T> merge)
+	{
+		PathBlockObserver[] observers = simulate(numberOfPaths, () ->
+		{
+			PathBlockObserver[] rangeObservers = new PathBlockObserver[scenarioEngines.length];
+			for (int s = 0; s < rangeObservers.length; s++)
+			{
+				rangeObservers[s] = newObserver.get();
+			}
+			return rangeObservers;
+		}, (left, right) ->
+		{
+			for (int s = 0; s < left.length; s++)
+			{
+				left[s] = merge.apply(cast(left[s]), cast(right[s]));
+			}
+			return left;
+		});
+
+		List<T> results = new ArrayList<T>();
+		for (PathBlockObserver observer : observers)
+		{
+			results.add(cast(observer));
+		}
+		return results;
+	}
+
+	/**
+	 * Measures the mean of a payoff in every scenario and its paired difference from the base scenario
+	 *
+	 * @param measure-Payoff evaluated on each path at its maturity, undiscounted
+	 * @param numberOfPaths
+	 * @return-The comparison
+	 */
+	public ScenarioComparison compare(Payoff measure, long numberOfPaths)
+	{
+		int maturityStep = measure.getMaturityDay() * baseEngine.upSampleFactor;
+		if (maturityStep >= baseEngine.numberOfSteps)
+		{
+			throw new IllegalArgumentException("The measure matures after the last step of the paths");
+		}
+
+		PathBlockObserver[] observers = simulate(numberOfPaths, () ->
+		{
+			ScenarioComparison comparison = new ScenarioComparison(scenarios);
+			PathBlockObserver[] rangeObservers = new PathBlockObserver[scenarioEngines.length];
+			for (int s = 0; s < rangeObservers.length; s++)
+			{
+				rangeObservers[s] = comparison.observerOf(s, measure, baseEngine.upSampleFactor);
+			}
+			return rangeObservers;
+		}, (left, right) ->
+		{
+			comparisonOf(left).merge(comparisonOf(right));
+			return left;
+		});
+
+		return comparisonOf(observers);
+	}
+
+	/**
+	 * Simulates the paths across the pool, one set of observers per range of paths, merged in order
+	 *
+	 * @param numberOfPaths
+	 * @param newObservers
+	 * @param merge
+	 * @return-The merged observers
+	 */
+	private PathBlockObserver[] simulate(long numberOfPaths, Supplier<PathBlockObserver[]> newObservers,
+			BinaryOperator<PathBlockObserver[]> merge)
+	{
+		long numberOfRanges = Math.max(1,
+				(numberOfPaths + BatchedPathEngine.PATHS_PER_OBSERVER - 1) / BatchedPathEngine.PATHS_PER_OBSERVER);
+
+		SimulationMetrics.StageTimer timer = SimulationMetrics.time(SimulationMetrics.Stage.SIMULATION);
+		PathBlockObserver[] merged = baseEngine.pool.invoke(new ScenarioRangeTask(numberOfPaths, 0, numberOfRanges, newObservers,
+				merge));
+		timer.stop();
+
+		return merged;
+	}
+
+	/**
+	 * Simulates a block of paths of every scenario from one set of Gaussian draws
+	 *
+	 * @param firstPath
+	 * @param numberOfPaths
+	 * @param observers-Observer of each scenario
+	 */
+	private void simulateBlock(long firstPath, int numberOfPaths, PathBlockObserver[] observers)
+	{
+		double[][][] prices = new double[scenarioEngines.length][numberOfStocks][pathsPerBlock];
+		double[][] noise = new double[noiseDimension][pathsPerBlock];
+		double[][] correlatedNoise = new double[numberOfStocks][pathsPerBlock];
+		double[] sample = new double[noiseDimension];
+
+		GaussianStream[] streams = new GaussianStream[numberOfPaths];
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			streams[p] = baseEngine.pathGaussianSource.forPath(firstPath + p);
+		}
+
+		for (int s = 0; s < scenarioEngines.length; s++)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				for (int p = 0; p < numberOfPaths; p++)
+				{
+					prices[s][i][p] = baseEngine.initialPrices[i];
+				}
+			}
+			observers[s].observeStep(firstPath, numberOfPaths, 0, prices[s]);
+		}
+
+		double diffusionScale = scenarioEngines[0].diffusionScale;
+		for (int step = 1; step < baseEngine.numberOfSteps; step++)
+		{
+			//Drawn once and shared by every scenario
+			for (int p = 0; p < numberOfPaths; p++)
+			{
+				streams[p].nextGaussians(sample);
+				for (int k = 0; k < noiseDimension; k++)
+				{
+					noise[k][p] = diffusionScale * sample[k];
+				}
+			}
+
+			for (int s = 0; s < scenarioEngines.length; s++)
+			{
+				scenarioEngines[s].advanceBlock(prices[s], noise, correlatedNoise, numberOfPaths);
+				observers[s].observeStep(firstPath, numberOfPaths, step, prices[s]);
+			}
+		}
+
+		SimulationMetrics.countPaths(numberOfPaths, baseEngine.numberOfSteps - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(PathBlockObserver observer)
+	{
+		return (T) observer;
+	}
+
+	private static ScenarioComparison comparisonOf(PathBlockObserver[] observers)
+	{
+		return ((ScenarioComparison.MeasureObserver) observers[0]).getComparison();
+	}
+
+	/**
+	 * Splits a range of path ranges in half until one is left, whose blocks are simulated into a new set of
+	 * observers, and merges the observers of the two halves
+	 */
+	private class ScenarioRangeTask extends RecursiveTask<PathBlockObserver[]>
+	{
+		private static final long serialVersionUID = 1L;
+
+		long numberOfPaths;
+		long startRange;
+		long endRange;
+		Supplier<PathBlockObserver[]> newObservers;
+		BinaryOperator<PathBlockObserver[]> merge;
+
+		ScenarioRangeTask(long numberOfPaths, long startRange, long endRange,
+				Supplier<PathBlockObserver[]> newObservers, BinaryOperator<PathBlockObserver[]> merge)
+		{
+			this.numberOfPaths = numberOfPaths;
+			this.startRange = startRange;
+			this.endRange = endRange;
+			this.newObservers = newObservers;
+			this.merge = merge;
+		}
+
+		@Override
+		protected PathBlockObserver[] compute()
+		{
+			if (endRange - startRange == 1)
+			{
+				PathBlockObserver[] observers = newObservers.get();
+
+				long start = startRange * BatchedPathEngine.PATHS_PER_OBSERVER;
+				long end = Math.min(start + BatchedPathEngine.PATHS_PER_OBSERVER, numberOfPaths);
+				for (long blockStart = start; blockStart < end; blockStart += pathsPerBlock)
+				{
+					simulateBlock(blockStart, (int) Math.min(pathsPerBlock, end - blockStart), observers);
+				}
+
+				return observers;
+			}
+
+			long middle = (startRange + endRange) >>> 1;
+			ScenarioRangeTask left = new ScenarioRangeTask(numberOfPaths, startRange, middle, newObservers, merge);
+			ScenarioRangeTask right = new ScenarioRangeTask(numberOfPaths, middle, endRange, newObservers, merge);
+			invokeAll(left, right);
+
+			return merge.apply(left.join(), right.join());
+		}
+	}
+
+	/**
+	 * Calibrates the system from StockData.txt and compares stress scenarios on an equally weighted portfolio of
+	 * the stocks worth 1,000,000: the mean value of a put on the portfolio struck at its first value, and the 99%
+	 * value at risk, after the horizon
+	 *
+	 * @param args-Number of paths and horizon in days
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long numberOfPaths = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int horizonDays = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		int upSampleFactor = 5;
+
+		long seed = 5760;
+
+		double[][] dailyPricesOfStocks = StockDataLoader.load(new File("StockData.txt").toPath());
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		SDESystem SDESystemForStocks = new SDESystem(statistics.getDriftsAndVolatilities(),
+				statistics.getCovolatilityMatrix());
+
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+		double[] weights = new double[dailyPricesOfStocks.length];
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = dailyPricesOfStocks[i][0];
+			weights[i] = 1.0 / weights.length;
+		}
+		double[] holdings = PortfolioRiskEngine.holdingsOf(weights, initialPrices, 1000000);
+
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		scenarios.add(new Scenario("base"));
+		scenarios.add(new Scenario("drift -20%").withDriftShift(-0.2));
+		scenarios.add(new Scenario("volatility x1.5").withVolatilityScale(1.5));
+		scenarios.add(new Scenario("correlation 0.9").withCorrelation(0.9));
+		scenarios.add(new Scenario("crash").withDriftShift(-0.5).withVolatilityScale(2).withCorrelation(0.9));
+
+		ScenarioRunner runner = new ScenarioRunner(SDESystemForStocks, scenarios, initialPrices,
+				horizonDays * upSampleFactor + 1, upSampleFactor, seed);
+
+		ScenarioComparison comparison = runner.compare(new BasketOption(holdings, 1000000, horizonDays,
+				OptionType.PUT), numberOfPaths);
+
+		PortfolioRiskEngine risk = new PortfolioRiskEngine(holdings, horizonDays, upSampleFactor,
+				new double[] {0.99}, numberOfPaths);
+		List<PortfolioRiskEngine> risks = runner.run(numberOfPaths, risk::newEmptyCopy, (a, b) ->
+		{
+			a.merge(b);
+			return a;
+		});
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		comparison.writeSummary(out);
+		out.write("scenario\tvalueAtRisk99\texpectedShortfall99\n");
+		for (int s = 0; s < scenarios.size(); s++)
+		{
+			out.write(scenarios.get(s) + "\t" + risks.get(s).getValueAtRisk(0.99) + "\t"
+					+ risks.get(s).getExpectedShortfall(0.99) + "\n");
+		}
+		out.flush();
+	}
+}
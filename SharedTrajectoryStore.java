@@ -0,0 +1,411 @@
+package financeproject2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A trajectory file (see TrajectoryFile) that is memory-mapped by the simulation and written in place, so that
+ * other processes can map the same file and read paths while they are still being simulated. The prices never
+ * pass through the Java heap on either side: the writer puts them straight into the mapped pages and readers get
+ * them from their own mapping of the same pages, which the operating system shares between the processes.
+ *
+ * After the column blocks the file holds one int per path that is set to 1 once the path is complete, and the
+ * header has a 1 at byte 40 to say the flags are there. The writer sets a flag with release semantics after the
+ * prices of its path, and readers check it with acquire semantics before reading them, so a reader that sees a
+ * path as ready also sees all of its prices. Since the column blocks are unchanged, TrajectoryFileReader reads a
+ * finished store like any other trajectory file (see TrajectoryFile for why byte 40 did not need a new version).
+ *
+ * A new store is built under a temporary name in the same directory and renamed over the old file once it is sized
+ * and has its header. A process still mapping the old file keeps reading the old file, which is never truncated
+ * under it, and a process opening the name finds either the old store or the complete new one.
+ *
+ * Mapped buffers are only unmapped when they are garbage collected, so close only releases the file channel.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SharedTrajectoryStore implements TrajectorySink, Closeable
+{
+	//Largest part of a column block mapped at once
+	private static final long MAXIMUM_SEGMENT_SIZE = 1L << 30;
+
+	private static final int BYTES_PER_FLAG = 4;
+
+	//Reads and writes the ready flags as ints with memory ordering
+	private static final VarHandle READY_FLAG = MethodHandles.byteBufferViewVarHandle(int[].class,
+			TrajectoryFile.BYTE_ORDER);
+
+	TrajectoryFile layout;
+
+	FileChannel channel;
+
+	boolean isWritable;
+
+	long pathsPerSegment;
+
+	//Mapped segments indexed by [stock][segment]
+	MappedByteBuffer[][] segments;
+
+	MappedByteBuffer readyFlags;
+
+	/**
+	 * Maps every segment of a file whose header has been read or is about to be written
+	 *
+	 * @param channel
+	 * @param layout
+	 * @param isWritable-Whether the store is mapped for writing
+	 * @throws IOException
+	 */
+	private SharedTrajectoryStore(FileChannel channel, TrajectoryFile layout, boolean isWritable) throws IOException
+	{
+		this.channel = channel;
+		this.layout = layout;
+		this.isWritable = isWritable;
+
+		if (layout.numberOfPaths > Integer.MAX_VALUE / BYTES_PER_FLAG)
+		{
+			throw new IllegalArgumentException("A shared trajectory store holds at most "
+					+ Integer.MAX_VALUE / BYTES_PER_FLAG + " paths");
+		}
+
+		FileChannel.MapMode mode = isWritable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+
+		long bytesPerPath = (long) layout.numberOfDays * layout.bytesPerValue;
+		this.pathsPerSegment = Math.max(1, MAXIMUM_SEGMENT_SIZE / Math.max(1, bytesPerPath));
+
+		int segmentsPerStock = (int) ((layout.numberOfPaths + pathsPerSegment - 1) / pathsPerSegment);
+		this.segments = new MappedByteBuffer[layout.numberOfStocks][segmentsPerStock];
+
+		//Mapping only reserves the addresses, the pages are read or written when they are first touched
+		for (int stock = 0; stock < layout.numberOfStocks; stock++)
+		{
+			for (int segmentIndex = 0; segmentIndex < segmentsPerStock; segmentIndex++)
+			{
+				long firstPath = segmentIndex * pathsPerSegment;
+				long pathsInSegment = Math.min(pathsPerSegment, layout.numberOfPaths - firstPath);
+
+				segments[stock][segmentIndex] = channel.map(mode, layout.offsetOf(stock, firstPath),
+						pathsInSegment * bytesPerPath);
+				segments[stock][segmentIndex].order(TrajectoryFile.BYTE_ORDER);
+			}
+		}
+
+		this.readyFlags = channel.map(mode, layout.fileSize(), layout.numberOfPaths * BYTES_PER_FLAG);
+	}
+
+	/**
+	 * Creates a store for a simulation, replacing any file at the path by an atomic rename, so readers of the old
+	 * file are not cut off
+	 *
+	 * @param file
+	 * @param layout-Stocks, days, paths, seed and precision of the file
+	 * @return-The store, with no path ready
+	 * @throws IOException
+	 */
+	public static SharedTrajectoryStore create(Path file, TrajectoryFile layout) throws IOException
+	{
+		//Created like the file itself would be, so other users can read it as before
+		Path temporaryFile = file.toAbsolutePath().resolveSibling(file.getFileName() + "."
+				+ ProcessHandle.current().pid() + "." + System.nanoTime() + ".tmp");
+
+		FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try
+		{
+			SharedTrajectoryStore store = new SharedTrajectoryStore(channel, layout, true);
+
+			ByteBuffer header = layout.writeHeader();
+			header.putInt(TrajectoryFile.READY_FLAGS_POSITION, 1);
+			while (header.hasRemaining())
+			{
+				channel.write(header, header.position());
+			}
+
+			//The mappings follow the file, which keeps its contents under the new name
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			return store;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			Files.deleteIfExists(temporaryFile);
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a store written by another process, or by this one, for reading
+	 *
+	 * @param file
+	 * @return-The store
+	 * @throws IOException
+	 */
+	public static SharedTrajectoryStore open(Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(TrajectoryFile.HEADER_SIZE);
+			while (header.hasRemaining())
+			{
+				if (channel.read(header, header.position()) < 0)
+				{
+					throw new IOException("Trajectory store " + file + " is shorter than its header");
+				}
+			}
+
+			TrajectoryFile layout = TrajectoryFile.readHeader(header);
+			if (!layout.hasReadyFlags)
+			{
+				throw new IllegalArgumentException(file + " is a trajectory file without ready flags");
+			}
+			if (channel.size() < layout.fileSize() + layout.numberOfPaths * BYTES_PER_FLAG)
+			{
+				throw new IOException("Trajectory store " + file + " is shorter than its layout");
+			}
+
+			return new SharedTrajectoryStore(channel, layout, false);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Getter for the layout of the store
+	 *
+	 * @return
+	 */
+	public TrajectoryFile getLayout()
+	{
+		return layout;
+	}
+
+	/**
+	 * Writes one simulated path into the mapped file and marks it ready. Day d of a stock is taken from step
+	 * d * stepStride of the simulation. Different paths can be written from different threads at the same time.
+	 *
+	 * @param path-Index of the path
+	 * @param simulatedPrices-Simulated prices of the path indexed by [stock][step]
+	 */
+	public void writePath(long path, double[][] simulatedPrices)
+	{
+		if (!isWritable)
+		{
+			throw new IllegalStateException("The trajectory store was opened for reading");
+		}
+
+		for (int stock = 0; stock < layout.numberOfStocks; stock++)
+		{
+			double[] pricesOfStock = simulatedPrices[stock];
+			MappedByteBuffer segment = segmentOf(stock, path);
+			int index = positionInSegment(path);
+
+			for (int day = 0; day < layout.numberOfDays; day++)
+			{
+				double price = pricesOfStock[day * layout.stepStride];
+				if (layout.bytesPerValue == 8)
+				{
+					segment.putDouble(index, price);
+				}
+				else
+				{
+					segment.putFloat(index, (float) price);
+				}
+				index += layout.bytesPerValue;
+			}
+		}
+
+		READY_FLAG.setRelease(readyFlags, flagPositionOf(path), 1);
+	}
+
+	@Override
+	public void acceptPath(long path, double[][] simulatedPrices)
+	{
+		writePath(path, simulatedPrices);
+	}
+
+	/**
+	 * Whether every price of a path has been written
+	 *
+	 * @param path
+	 * @return
+	 */
+	public boolean isReady(long path)
+	{
+		return (int) READY_FLAG.getAcquire(readyFlags, flagPositionOf(path)) != 0;
+	}
+
+	/**
+	 * Waits until a path has been written, spinning briefly and then checking every few hundred microseconds
+	 *
+	 * @param path
+	 * @throws InterruptedException
+	 */
+	public void awaitPath(long path) throws InterruptedException
+	{
+		for (int spins = 0; !isReady(path); spins++)
+		{
+			if (Thread.interrupted())
+			{
+				throw new InterruptedException();
+			}
+			if (spins < 100)
+			{
+				Thread.onSpinWait();
+			}
+			else
+			{
+				LockSupport.parkNanos(200_000);
+			}
+		}
+	}
+
+	/**
+	 * Reads one price of a path that is ready
+	 *
+	 * @param stock
+	 * @param path
+	 * @param day
+	 * @return-The simulated price
+	 */
+	public double getPrice(int stock, long path, int day)
+	{
+		MappedByteBuffer segment = segmentOf(stock, path);
+		int index = positionInSegment(path) + day * layout.bytesPerValue;
+
+		return layout.bytesPerValue == 8 ? segment.getDouble(index) : segment.getFloat(index);
+	}
+
+	/**
+	 * Reads every day of one path of one stock that is ready
+	 *
+	 * @param stock
+	 * @param path
+	 * @param destination-Receives numberOfDays prices
+	 */
+	public void readPath(int stock, long path, double[] destination)
+	{
+		MappedByteBuffer segment = segmentOf(stock, path);
+		int index = positionInSegment(path);
+
+		for (int day = 0; day < layout.numberOfDays; day++)
+		{
+			destination[day] = layout.bytesPerValue == 8 ? segment.getDouble(index) : segment.getFloat(index);
+			index += layout.bytesPerValue;
+		}
+	}
+
+	/**
+	 * View of the days of one path of one stock in the mapped file, without copying them
+	 *
+	 * @param stock
+	 * @param path
+	 * @return-Read-only little-endian buffer of numberOfDays values of bytesPerValue bytes
+	 */
+	public ByteBuffer getPathView(int stock, long path)
+	{
+		int length = layout.numberOfDays * layout.bytesPerValue;
+
+		return segmentOf(stock, path).slice(positionInSegment(path), length).asReadOnlyBuffer()
+				.order(TrajectoryFile.BYTE_ORDER);
+	}
+
+	/**
+	 * Writes the mapped pages to the storage device, only needed for the file to survive a crash of the machine
+	 */
+	public void force()
+	{
+		for (MappedByteBuffer[] segmentsOfStock : segments)
+		{
+			for (MappedByteBuffer segment : segmentsOfStock)
+			{
+				segment.force();
+			}
+		}
+		readyFlags.force();
+	}
+
+	private MappedByteBuffer segmentOf(int stock, long path)
+	{
+		return segments[stock][(int) (path / pathsPerSegment)];
+	}
+
+	/**
+	 * Byte position of the first day of a path inside its segment
+	 *
+	 * @param path
+	 * @return
+	 */
+	private int positionInSegment(long path)
+	{
+		return (int) ((path % pathsPerSegment) * layout.numberOfDays * layout.bytesPerValue);
+	}
+
+	private int flagPositionOf(long path)
+	{
+		if (path < 0 || path >= layout.numberOfPaths)
+		{
+			throw new IndexOutOfBoundsException("Path " + path + " of " + layout.numberOfPaths);
+		}
+
+		return (int) path * BYTES_PER_FLAG;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Follows a store while another process writes it, waiting for each path in turn, and prints the mean
+	 * price of every stock on the last day
+	 *
+	 * @param args-The store file, SimulatedTrajectories.bin unless given
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		Path file = Paths.get(args.length > 0 ? args[0] : "SimulatedTrajectories.bin");
+
+		try (SharedTrajectoryStore store = open(file))
+		{
+			TrajectoryFile layout = store.getLayout();
+			int lastDay = layout.numberOfDays - 1;
+
+			double[] sums = new double[layout.numberOfStocks];
+			for (long path = 0; path < layout.numberOfPaths; path++)
+			{
+				store.awaitPath(path);
+				for (int stock = 0; stock < sums.length; stock++)
+				{
+					sums[stock] += store.getPrice(stock, path, lastDay);
+				}
+			}
+
+			StringBuilder row = new StringBuilder("stock\tmeanLastDayPrice\n");
+			for (int stock = 0; stock < sums.length; stock++)
+			{
+				row.append(stock).append('\t').append(sums[stock] / layout.numberOfPaths).append('\n');
+			}
+			System.out.print(row);
+		}
+	}
+}
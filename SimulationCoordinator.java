@@ -0,0 +1,465 @@
+package financeproject2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the paths of a simulation over worker JVMs, on this machine or others. The coordinator listens on a
+ * socket, sends each worker that connects the SimulationJob once, then hands out ranges of paths (chunks) until
+ * none are left. A worker simulates a chunk into a PathSummaryAggregator and sends back only that summary, never
+ * the paths.
+ *
+ * The chunks have a fixed length, each starts from an empty summary, and the coordinator merges the summaries in
+ * order of the chunks. The answer therefore depends only on the job and the chunk length, and is the same with
+ * one worker or many. A chunk whose worker disconnects, or takes longer than the progress timeout to answer, is
+ * handed to another worker. When no chunk at all comes back within the progress timeout, because no worker has
+ * connected or all of them have died, the run fails instead of waiting forever.
+ *
+ * Connections are not authenticated, so the coordinator listens on the loopback address unless it is given the
+ * address of a private network the workers share. Summaries coming back are checked against the layout of the
+ * job before they are read.
+ *
+ * Every run has its own generation, sent with each chunk and echoed with its summary. A summary from an earlier
+ * run, such as one that failed on the progress timeout while a worker was still busy, is dropped instead of being
+ * merged into the current run.
+ *
+ * The protocol over each connection is made of DataOutputStream values:
+ *
+ * worker: MAGIC, VERSION
+ * coordinator: MAGIC, VERSION, job
+ * then, until the coordinator sends DONE,
+ * coordinator: CHUNK, generation, chunk index, first path, number of paths
+ * worker: RESULT, generation, chunk index, summary
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SimulationCoordinator implements Closeable
+{
+	static final int MAGIC = 0x53444557;
+	static final int VERSION = 2;
+
+	//Messages following the handshake
+	static final byte CHUNK = 1;
+	static final byte RESULT = 2;
+	static final byte DONE = 3;
+
+	//Paths per chunk unless asked otherwise
+	static final long DEFAULT_PATHS_PER_CHUNK = 4096;
+
+	//How often an idle connection checks whether the run has finished
+	private static final long IDLE_POLL_MILLISECONDS = 100;
+
+	//Longest wait for any chunk to come back unless asked otherwise
+	static final long DEFAULT_PROGRESS_TIMEOUT_MILLISECONDS = 10 * 60 * 1000;
+
+	SimulationJob job;
+
+	long pathsPerChunk;
+
+	ServerSocket serverSocket;
+
+	//Chunks waiting for a worker, each {generation, chunk index, first path, number of paths}
+	BlockingQueue<long[]> pendingChunks = new LinkedBlockingQueue<long[]>();
+
+	//Summaries received ahead of the next chunk to merge, by chunk index
+	TreeMap<Integer, PathSummaryAggregator> receivedSummaries = new TreeMap<Integer, PathSummaryAggregator>();
+
+	int numberOfChunks;
+
+	//Run the chunks handed out belong to, counted from 0
+	int generation = -1;
+
+	int nextChunkToMerge;
+
+	//Chunks received so far in the run, whether merged yet or not
+	int numberOfChunksReceived;
+
+	long progressTimeoutMilliseconds = DEFAULT_PROGRESS_TIMEOUT_MILLISECONDS;
+
+	PathSummaryAggregator summary;
+
+	/**
+	 * Sets up a coordinator listening on the loopback address, for workers on this machine
+	 *
+	 * @param job-Job every worker receives
+	 * @param port-Port to listen on, 0 for any free port
+	 * @param pathsPerChunk-Number of paths in a chunk, which the answer depends on
+	 * @throws IOException-When the port cannot be opened
+	 */
+	public SimulationCoordinator(SimulationJob job, int port, long pathsPerChunk) throws IOException
+	{
+		this(job, InetAddress.getLoopbackAddress(), port, pathsPerChunk);
+	}
+
+	/**
+	 * Sets up a coordinator listening on one address, such as that of a private network the workers share
+	 *
+	 * @param job-Job every worker receives
+	 * @param bindAddress-Address to listen on
+	 * @param port-Port to listen on, 0 for any free port
+	 * @param pathsPerChunk-Number of paths in a chunk, which the answer depends on
+	 * @throws IOException-When the port cannot be opened
+	 */
+	public SimulationCoordinator(SimulationJob job, InetAddress bindAddress, int port, long pathsPerChunk)
+			throws IOException
+	{
+		this.job = job;
+		this.pathsPerChunk = pathsPerChunk;
+		this.serverSocket = new ServerSocket(port, 0, bindAddress);
+
+		Thread acceptor = new Thread(this::acceptWorkers, "simulation-coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Simulates paths 0 to numberOfPaths - 1 on the workers that are connected or connect later, and waits for
+	 * all of them
+	 *
+	 * @param numberOfPaths
+	 * @return-Summary of all the paths
+	 * @throws IOException-When no chunk comes back within the progress timeout, or when interrupted while waiting
+	 */
+	public PathSummaryAggregator run(long numberOfPaths) throws IOException
+	{
+		synchronized (this)
+		{
+			generation++;
+			summary = job.createAggregator();
+			pendingChunks.clear();
+			receivedSummaries.clear();
+			nextChunkToMerge = 0;
+			numberOfChunksReceived = 0;
+			numberOfChunks = (int) ((numberOfPaths + pathsPerChunk - 1) / pathsPerChunk);
+		}
+
+		for (int chunk = 0; chunk < numberOfChunks; chunk++)
+		{
+			long firstPath = chunk * pathsPerChunk;
+			pendingChunks.add(new long[] {generation, chunk, firstPath,
+					Math.min(pathsPerChunk, numberOfPaths - firstPath)});
+		}
+
+		synchronized (this)
+		{
+			try
+			{
+				int chunksReceivedBefore = numberOfChunksReceived;
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(progressTimeoutMilliseconds);
+				while (nextChunkToMerge < numberOfChunks)
+				{
+					if (numberOfChunksReceived != chunksReceivedBefore)
+					{
+						chunksReceivedBefore = numberOfChunksReceived;
+						deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(progressTimeoutMilliseconds);
+					}
+
+					long remainingMilliseconds = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remainingMilliseconds <= 0)
+					{
+						pendingChunks.clear();
+						throw new IOException("No worker returned a chunk in " + progressTimeoutMilliseconds
+								+ " ms, " + (numberOfChunks - nextChunkToMerge) + " of " + numberOfChunks
+								+ " chunks are missing");
+					}
+					wait(remainingMilliseconds);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				pendingChunks.clear();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the workers");
+			}
+
+			return summary;
+		}
+	}
+
+	/**
+	 * Sets how long the coordinator waits for any chunk to come back before failing the run, which is also the
+	 * longest a worker may take over one chunk before the chunk is handed to another worker
+	 *
+	 * @param progressTimeoutMilliseconds
+	 */
+	public void setProgressTimeout(long progressTimeoutMilliseconds)
+	{
+		this.progressTimeoutMilliseconds = progressTimeoutMilliseconds;
+	}
+
+	/**
+	 * Starts worker JVMs on this machine with the class path of this JVM, connecting back to the coordinator
+	 *
+	 * @param numberOfWorkers
+	 * @return-The worker processes
+	 * @throws IOException-When a process cannot be started
+	 */
+	public List<Process> launchLocalWorkers(int numberOfWorkers) throws IOException
+	{
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+		List<Process> workers = new ArrayList<Process>();
+		for (int i = 0; i < numberOfWorkers; i++)
+		{
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					SimulationWorker.class.getName(), getAddress().getHostAddress(), Integer.toString(getPort()));
+			builder.inheritIO();
+
+			workers.add(builder.start());
+		}
+
+		return workers;
+	}
+
+	/**
+	 * Getter for the port the coordinator listens on
+	 *
+	 * @return
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Getter for the address the coordinator listens on
+	 *
+	 * @return
+	 */
+	public InetAddress getAddress()
+	{
+		return serverSocket.getInetAddress();
+	}
+
+	/**
+	 * Stops listening. Connected workers are told they are done the next time they ask for a chunk.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		serverSocket.close();
+	}
+
+	/**
+	 * Accepts workers until the coordinator is closed, serving each on its own thread
+	 */
+	private void acceptWorkers()
+	{
+		while (!serverSocket.isClosed())
+		{
+			try
+			{
+				Socket socket = serverSocket.accept();
+
+				Thread connection = new Thread(() -> serveWorker(socket), "simulation-worker-" + socket.getPort());
+				connection.setDaemon(true);
+				connection.start();
+			}
+			catch (IOException e)
+			{
+				//The server socket was closed
+			}
+		}
+	}
+
+	/**
+	 * Hands chunks to one worker until the run is over or the worker goes away
+	 *
+	 * @param socket
+	 */
+	private void serveWorker(Socket socket)
+	{
+		long[] chunk = null;
+
+		try (socket)
+		{
+			//A worker that stops answering is treated as gone
+			socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, progressTimeoutMilliseconds));
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				return;
+			}
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			job.writeTo(out);
+			out.flush();
+
+			while (true)
+			{
+				chunk = pendingChunks.poll(IDLE_POLL_MILLISECONDS, TimeUnit.MILLISECONDS);
+				if (chunk == null)
+				{
+					if (serverSocket.isClosed())
+					{
+						out.writeByte(DONE);
+						out.flush();
+						return;
+					}
+					continue;
+				}
+
+				out.writeByte(CHUNK);
+				out.writeInt((int) chunk[0]);
+				out.writeInt((int) chunk[1]);
+				out.writeLong(chunk[2]);
+				out.writeLong(chunk[3]);
+				out.flush();
+
+				if (in.readByte() != RESULT || in.readInt() != (int) chunk[0] || in.readInt() != (int) chunk[1])
+				{
+					throw new IOException("Unexpected reply from worker " + socket.getRemoteSocketAddress());
+				}
+				PathSummaryAggregator chunkSummary = job.readAggregator(in);
+
+				receiveSummary((int) chunk[0], (int) chunk[1], chunkSummary);
+				chunk = null;
+			}
+		}
+		catch (IOException | InterruptedException e)
+		{
+			//The worker went away, so its chunk is handed to another one
+			if (chunk != null)
+			{
+				requeueChunk(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Hands a chunk whose worker went away to another worker, unless its run is over
+	 *
+	 * @param chunk
+	 */
+	private synchronized void requeueChunk(long[] chunk)
+	{
+		if (chunk[0] == generation)
+		{
+			pendingChunks.add(chunk);
+		}
+	}
+
+	/**
+	 * Merges the summaries of the chunks in order, holding back those that arrive early
+	 *
+	 * @param chunkGeneration-Run the chunk was handed out in
+	 * @param chunk
+	 * @param chunkSummary
+	 */
+	synchronized void receiveSummary(int chunkGeneration, int chunk, PathSummaryAggregator chunkSummary)
+	{
+		if (chunkGeneration != generation)
+		{
+			//A worker still busy when an earlier run failed
+			return;
+		}
+
+		if (chunk < nextChunkToMerge || receivedSummaries.containsKey(chunk))
+		{
+			//A chunk handed out again after a timeout came back twice
+			return;
+		}
+
+		receivedSummaries.put(chunk, chunkSummary);
+		numberOfChunksReceived++;
+
+		while (receivedSummaries.containsKey(nextChunkToMerge))
+		{
+			summary.merge(receivedSummaries.remove(nextChunkToMerge));
+			nextChunkToMerge++;
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Calibrates the system from StockData.txt, simulates the paths on local worker processes and writes the
+	 * per-day summary to SimulatedSummary.txt. Workers on other machines can join by running SimulationWorker with
+	 * the address and port printed, when the coordinator is given the address of a network they share.
+	 *
+	 * @param args-Number of paths, number of local workers, and optionally the port and the address to listen on
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long numberOfPaths = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int numberOfLocalWorkers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		InetAddress bindAddress = args.length > 3 ? InetAddress.getByName(args[3]) : InetAddress.getLoopbackAddress();
+
+		int upSampleFactor = 5;
+
+		long seed = 5760;
+
+		double[][] dailyPricesOfStocks = StockDataLoader.load(new File("StockData.txt").toPath());
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPricesOfStocks);
+		SDESystem SDESystemForStocks = new SDESystem(statistics.getDriftsAndVolatilities(),
+				statistics.getCovolatilityMatrix());
+
+		double[] initialPrices = new double[dailyPricesOfStocks.length];
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = dailyPricesOfStocks[i][0];
+		}
+
+		SimulationJob job = new SimulationJob(SDESystemForStocks, initialPrices, dailyPricesOfStocks[0].length,
+				upSampleFactor, seed, VarianceReduction.NONE);
+
+		List<Process> workers;
+		PathSummaryAggregator summary;
+
+		try (SimulationCoordinator coordinator = new SimulationCoordinator(job, bindAddress, port,
+				DEFAULT_PATHS_PER_CHUNK))
+		{
+			System.out.println("Coordinator listening on " + coordinator.getAddress().getHostAddress() + ":"
+					+ coordinator.getPort());
+
+			workers = coordinator.launchLocalWorkers(numberOfLocalWorkers);
+
+			summary = coordinator.run(numberOfPaths);
+		}
+
+		try (BufferedWriter summaryWriter = Files.newBufferedWriter(Paths.get("SimulatedSummary.txt")))
+		{
+			summary.writeSummary(summaryWriter);
+		}
+
+		//Closing the coordinator tells the workers to exit
+		for (Process worker : workers)
+		{
+			try
+			{
+				worker.waitFor();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
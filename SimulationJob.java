@@ -0,0 +1,151 @@
+package financeproject2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Everything a worker needs to simulate any range of paths of a run: the calibrated SDE system, the initial prices,
+ * the path length and the seed. The coordinator sends it once to each worker, after which a range of paths is
+ * fully described by its first index and its length. Because every path draws from its own stream of the seed,
+ * a range gives the same paths on whichever worker simulates it.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SimulationJob
+{
+	SDESystem SDESystemForStocks;
+
+	double[] initialPrices;
+
+	int numberOfDays;
+
+	int upSampleFactor;
+
+	long seed;
+
+	VarianceReduction varianceReduction;
+
+	/**
+	 * Sets up a job
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param initialPrices-Price of each stock on the first day
+	 * @param numberOfDays-Number of days in every path
+	 * @param upSampleFactor-Upsample factor taken as an integer
+	 * @param seed-Seed every path stream is derived from
+	 * @param varianceReduction-How the Gaussian samples of the paths are drawn
+	 */
+	public SimulationJob(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfDays, int upSampleFactor,
+			long seed, VarianceReduction varianceReduction)
+	{
+		this.SDESystemForStocks = SDESystemForStocks;
+		this.initialPrices = initialPrices;
+		this.numberOfDays = numberOfDays;
+		this.upSampleFactor = upSampleFactor;
+		this.seed = seed;
+		this.varianceReduction = varianceReduction;
+	}
+
+	/**
+	 * Sets up the engine simulating the paths of the job
+	 *
+	 * @return-The engine
+	 */
+	public MonteCarloPathEngine createEngine()
+	{
+		return new MonteCarloPathEngine(SDESystemForStocks, initialPrices, numberOfDays * upSampleFactor,
+				upSampleFactor, seed, varianceReduction);
+	}
+
+	/**
+	 * Sets up an empty summary of the days of the paths of the job
+	 *
+	 * @return-The summary
+	 */
+	public PathSummaryAggregator createAggregator()
+	{
+		return new PathSummaryAggregator(initialPrices.length, numberOfDays, upSampleFactor);
+	}
+
+	/**
+	 * Reads a summary sent by a worker, which has to have the layout of the summaries of the job
+	 *
+	 * @param in
+	 * @return-The summary
+	 * @throws IOException-When the summary has another layout
+	 */
+	public PathSummaryAggregator readAggregator(DataInput in) throws IOException
+	{
+		return PathSummaryAggregator.readFrom(in, initialPrices.length, numberOfDays, upSampleFactor);
+	}
+
+	/**
+	 * Writes the job in a compact binary form, read back by readFrom
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException
+	{
+		SDESystemForStocks.writeTo(out);
+
+		out.writeInt(initialPrices.length);
+		for (double price : initialPrices)
+		{
+			out.writeDouble(price);
+		}
+
+		out.writeInt(numberOfDays);
+		out.writeInt(upSampleFactor);
+		out.writeLong(seed);
+		out.writeUTF(varianceReduction.name());
+	}
+
+	/**
+	 * Reads a job written by writeTo
+	 *
+	 * @param in
+	 * @return-The job
+	 * @throws IOException
+	 */
+	public static SimulationJob readFrom(DataInput in) throws IOException
+	{
+		SDESystem SDESystemForStocks = SDESystem.readFrom(in);
+
+		double[] initialPrices = new double[in.readInt()];
+		for (int i = 0; i < initialPrices.length; i++)
+		{
+			initialPrices[i] = in.readDouble();
+		}
+
+		int numberOfDays = in.readInt();
+		int upSampleFactor = in.readInt();
+		long seed = in.readLong();
+		VarianceReduction varianceReduction = VarianceReduction.valueOf(in.readUTF());
+
+		return new SimulationJob(SDESystemForStocks, initialPrices, numberOfDays, upSampleFactor, seed,
+				varianceReduction);
+	}
+
+	/**
+	 * Getter for the number of stocks
+	 *
+	 * @return
+	 */
+	public int getNumberOfStocks()
+	{
+		return initialPrices.length;
+	}
+
+	/**
+	 * Getter for the seed
+	 *
+	 * @return
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+}
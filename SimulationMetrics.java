@@ -0,0 +1,382 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Counters and timers for the stages of a run: parsing, log returns, calibration, factorization, simulation and
+ * output. Each stage records its wall time, its number of calls and the bytes allocated by the thread running it.
+ * The simulation also counts the paths and steps made on every thread, and the Gaussian sources count the samples
+ * they draw, so antithetic pairs, Sobol points and the bridge samples of adaptive steps are counted as drawn.
+ *
+ * Metrics are off unless the JVM is started with -Dfinanceproject2.metrics=true. The flag is a static final
+ * constant, so when it is off the JIT removes every call site and the simulation runs exactly as before.
+ *
+ * When on, each stage is also committed as a JFR event (financeproject2.Stage) and the counters as a periodic
+ * event (financeproject2.Throughput), so a recording started with -XX:StartFlightRecording shows them next to
+ * the GC and thread events. writePrometheus gives the same numbers in the Prometheus text format.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SimulationMetrics
+{
+	static final boolean ENABLED = Boolean.getBoolean("financeproject2.metrics");
+
+	/**
+	 * Stages of a run. SIMULATION includes whatever the paths are handed to while they are simulated, such as the
+	 * driver writing them into its mapped SharedTrajectoryStore; OUTPUT is the writing done after the simulation.
+	 */
+	public enum Stage
+	{
+		PARSE, LOG_RETURNS, CALIBRATION, FACTORIZATION, SIMULATION, OUTPUT
+	}
+
+	private static final StageTimer DISABLED_TIMER = new StageTimer(null);
+
+	//Indexed by the ordinal of the stage
+	private static final LongAdder[] stageNanoseconds = newAdders(Stage.values().length);
+	private static final LongAdder[] stageCalls = newAdders(Stage.values().length);
+	private static final LongAdder[] stageAllocatedBytes = newAdders(Stage.values().length);
+
+	private static final LongAdder paths = new LongAdder();
+	private static final LongAdder steps = new LongAdder();
+	private static final LongAdder gaussianDraws = new LongAdder();
+
+	//Null when the JVM cannot report allocations per thread
+	private static final com.sun.management.ThreadMXBean threads = allocationCountingThreads();
+
+	static
+	{
+		if (ENABLED)
+		{
+			FlightRecorder.addPeriodicEvent(ThroughputEvent.class, () ->
+			{
+				ThroughputEvent event = new ThroughputEvent();
+				event.paths = paths.sum();
+				event.steps = steps.sum();
+				event.gaussianDraws = gaussianDraws.sum();
+				event.commit();
+			});
+		}
+	}
+
+	/**
+	 * Starts timing a stage on the calling thread. The stage is recorded when the timer is stopped:
+	 *
+	 * SimulationMetrics.StageTimer timer = SimulationMetrics.time(Stage.PARSE);
+	 * ...
+	 * timer.stop();
+	 *
+	 * A stage left by an exception is stopped in a finally block where its time still matters, and otherwise
+	 * simply not recorded.
+	 *
+	 * @param stage
+	 * @return-The timer, a shared one that does nothing when metrics are off
+	 */
+	public static StageTimer time(Stage stage)
+	{
+		if (!ENABLED)
+		{
+			return DISABLED_TIMER;
+		}
+
+		return new StageTimer(stage);
+	}
+
+	/**
+	 * Counts simulated paths
+	 *
+	 * @param numberOfPaths
+	 * @param stepsPerPath-Number of steps taken in each path
+	 */
+	public static void countPaths(int numberOfPaths, int stepsPerPath)
+	{
+		if (ENABLED)
+		{
+			paths.add(numberOfPaths);
+			steps.add((long) numberOfPaths * stepsPerPath);
+		}
+	}
+
+	/**
+	 * Counts Gaussian samples where they are drawn
+	 *
+	 * @param numberOfDraws
+	 */
+	public static void countGaussianDraws(int numberOfDraws)
+	{
+		if (ENABLED)
+		{
+			gaussianDraws.add(numberOfDraws);
+		}
+	}
+
+	/**
+	 * Getter for the number of paths simulated
+	 *
+	 * @return
+	 */
+	public static long getPaths()
+	{
+		return paths.sum();
+	}
+
+	/**
+	 * Getter for the number of steps simulated
+	 *
+	 * @return
+	 */
+	public static long getSteps()
+	{
+		return steps.sum();
+	}
+
+	/**
+	 * Getter for the number of Gaussian samples drawn
+	 *
+	 * @return
+	 */
+	public static long getGaussianDraws()
+	{
+		return gaussianDraws.sum();
+	}
+
+	/**
+	 * Getter for the time spent in a stage, added over every call
+	 *
+	 * @param stage
+	 * @return-Nanoseconds
+	 */
+	public static long getStageNanoseconds(Stage stage)
+	{
+		return stageNanoseconds[stage.ordinal()].sum();
+	}
+
+	/**
+	 * Sets every counter back to zero
+	 */
+	public static void reset()
+	{
+		for (int i = 0; i < stageNanoseconds.length; i++)
+		{
+			stageNanoseconds[i].reset();
+			stageCalls[i].reset();
+			stageAllocatedBytes[i].reset();
+		}
+
+		paths.reset();
+		steps.reset();
+		gaussianDraws.reset();
+	}
+
+	/**
+	 * Writes the metrics in the Prometheus text exposition format. The rates are over the time spent in the
+	 * simulation stage.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writePrometheus(Writer out) throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+
+		text.append("# HELP financeproject2_stage_seconds_total Wall time spent in each stage.\n");
+		text.append("# TYPE financeproject2_stage_seconds_total counter\n");
+		for (Stage stage : Stage.values())
+		{
+			appendStageSample(text, "financeproject2_stage_seconds_total", stage,
+					stageNanoseconds[stage.ordinal()].sum() / 1e9);
+		}
+
+		text.append("# HELP financeproject2_stage_calls_total Number of times each stage ran.\n");
+		text.append("# TYPE financeproject2_stage_calls_total counter\n");
+		for (Stage stage : Stage.values())
+		{
+			appendStageSample(text, "financeproject2_stage_calls_total", stage, stageCalls[stage.ordinal()].sum());
+		}
+
+		text.append("# HELP financeproject2_stage_allocated_bytes_total Bytes allocated by the thread running each "
+				+ "stage.\n");
+		text.append("# TYPE financeproject2_stage_allocated_bytes_total counter\n");
+		for (Stage stage : Stage.values())
+		{
+			appendStageSample(text, "financeproject2_stage_allocated_bytes_total", stage,
+					stageAllocatedBytes[stage.ordinal()].sum());
+		}
+
+		appendSample(text, "financeproject2_paths_total", "counter", "Paths simulated.", paths.sum());
+		appendSample(text, "financeproject2_steps_total", "counter", "Steps simulated over all paths.", steps.sum());
+		appendSample(text, "financeproject2_gaussian_draws_total", "counter", "Gaussian samples drawn.",
+				gaussianDraws.sum());
+
+		double simulationSeconds = stageNanoseconds[Stage.SIMULATION.ordinal()].sum() / 1e9;
+		appendSample(text, "financeproject2_paths_per_second", "gauge", "Paths simulated per second of simulation.",
+				simulationSeconds > 0 ? paths.sum() / simulationSeconds : 0.0);
+		appendSample(text, "financeproject2_steps_per_second", "gauge", "Steps simulated per second of simulation.",
+				simulationSeconds > 0 ? steps.sum() / simulationSeconds : 0.0);
+
+		out.write(text.toString());
+	}
+
+	private static void appendStageSample(StringBuilder text, String name, Stage stage, double value)
+	{
+		text.append(name).append("{stage=\"").append(stage.name().toLowerCase(Locale.ROOT)).append("\"} ");
+		appendValue(text, value);
+	}
+
+	private static void appendSample(StringBuilder text, String name, String type, String help, double value)
+	{
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		text.append(name).append(' ');
+		appendValue(text, value);
+	}
+
+	/**
+	 * Appends a value and ends the line, counts without a fractional part
+	 *
+	 * @param text
+	 * @param value
+	 */
+	private static void appendValue(StringBuilder text, double value)
+	{
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+		{
+			text.append((long) value).append('\n');
+		}
+		else
+		{
+			text.append(value).append('\n');
+		}
+	}
+
+	private static LongAdder[] newAdders(int count)
+	{
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++)
+		{
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCountingThreads()
+	{
+		if (ENABLED && ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean threads =
+					(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+			{
+				return threads;
+			}
+		}
+
+		return null;
+	}
+
+	private static long allocatedBytesOfThisThread()
+	{
+		return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Times one run of a stage, from its creation to the first call of stop
+	 */
+	public static class StageTimer
+	{
+		Stage stage;
+		StageEvent event;
+		long start;
+		long allocatedBytesAtStart;
+
+		StageTimer(Stage stage)
+		{
+			this.stage = stage;
+
+			if (stage != null)
+			{
+				this.event = new StageEvent();
+				event.stage = stage.name();
+				event.begin();
+
+				this.allocatedBytesAtStart = allocatedBytesOfThisThread();
+				this.start = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Ends the stage and records it. Later calls do nothing.
+		 */
+		public void stop()
+		{
+			if (stage == null)
+			{
+				return;
+			}
+
+			long elapsed = System.nanoTime() - start;
+			long allocatedBytes = allocatedBytesOfThisThread() - allocatedBytesAtStart;
+
+			int index = stage.ordinal();
+			stageNanoseconds[index].add(elapsed);
+			stageCalls[index].increment();
+			stageAllocatedBytes[index].add(allocatedBytes);
+
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.allocatedBytes = allocatedBytes;
+				event.commit();
+			}
+
+			stage = null;
+		}
+	}
+
+	@Name("financeproject2.Stage")
+	@Label("Simulation Stage")
+	@Category("Finance Project")
+	@Description("One run of a stage of the simulation")
+	static class StageEvent extends Event
+	{
+		@Label("Stage")
+		String stage;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocatedBytes;
+	}
+
+	@Name("financeproject2.Throughput")
+	@Label("Simulation Throughput")
+	@Category("Finance Project")
+	@Description("Paths, steps and Gaussian draws simulated since the start")
+	@Period("1 s")
+	@StackTrace(false)
+	static class ThroughputEvent extends Event
+	{
+		@Label("Paths")
+		long paths;
+
+		@Label("Steps")
+		long steps;
+
+		@Label("Gaussian Draws")
+		long gaussianDraws;
+	}
+}
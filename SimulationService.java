@@ -0,0 +1,710 @@
+package financeproject2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Keeps a JVM running with calibrated SDE systems in memory and simulates paths on request over HTTP, so a client
+ * only pays for the paths it asks for. Parsing, calibration and the factorization of the covolatility matrix are
+ * done once per dataset and kept in a least recently used cache, keyed by the SHA-256 hash of the data file, the
+ * calibration window and the upsample factor. A file that changes on disk gets a new hash and is calibrated again.
+ * The hash of a file is remembered with its size and time of modification, so a file that has not changed is not
+ * read again, and a file that is read is hashed and calibrated from the same bytes.
+ *
+ * The service only listens on the loopback address and only reads files inside its data directory. The paths of
+ * all requests are simulated on one pool with a thread per processor.
+ *
+ * Endpoints, all GET:
+ *
+ * /summary - per-day mean, standard deviation and 5/50/95 percentiles of each stock, as in SimulatedSummary.txt
+ * /paths - the simulated price of every stock on every day of each path, one tab separated row per path and day
+ * /status - size of the cache and number of hits and misses
+ * /metrics - SimulationMetrics in the Prometheus text format, all zero unless -Dfinanceproject2.metrics=true
+ *
+ * Parameters of /summary and /paths:
+ *
+ * file - data file, relative to the data directory of the service, StockData.txt by default
+ * window - number of most recent days to calibrate on and simulate, at least 3, or 0 (the default) for the whole
+ * history
+ * upSample - upsample factor, 5 by default
+ * paths - number of paths, 1000 for /summary and 10 for /paths by default
+ * seed - seed of the paths, 5760 by default
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SimulationService
+{
+	//Calibrated systems kept unless asked otherwise
+	static final int DEFAULT_CACHE_CAPACITY = 16;
+
+	static final int DEFAULT_PORT = 8760;
+
+	//Most paths a single request may ask for
+	static final long MAX_PATHS = 10000000;
+
+	//Largest data file the service reads
+	static final long MAX_DATA_FILE_BYTES = 1L << 28;
+
+	//Fewest days a calibration window may hold, which give the two log returns a variance needs
+	static final int MIN_DAYS = 3;
+
+	HttpServer server;
+
+	//Directory the data files of the requests are in, with symbolic links resolved
+	Path dataDirectory;
+
+	//Pool the requests are served on
+	ExecutorService requestPool;
+
+	//Pool every request simulates its paths on
+	ExecutorService workerPool;
+
+	//Hash of each data file read, by path, size and time of modification
+	LinkedHashMap<String, String> fileHashes;
+
+	//Calibrations done or under way, by dataset hash, window and upsample factor, least recently used first
+	LinkedHashMap<String, FutureTask<CalibratedModel>> cache;
+
+	AtomicLong cacheHits = new AtomicLong();
+	AtomicLong cacheMisses = new AtomicLong();
+
+	/**
+	 * Sets up a service. It does not accept requests until started.
+	 *
+	 * @param port-Port to listen on, 0 for any free port
+	 * @param cacheCapacity-Number of calibrated systems kept in memory
+	 * @param numberOfThreads-Number of requests served at once
+	 * @param dataDirectory-Directory the data files of the requests are in
+	 * @throws IOException-When the port cannot be opened or the directory does not exist
+	 */
+	public SimulationService(int port, int cacheCapacity, int numberOfThreads, Path dataDirectory)
+			throws IOException
+	{
+		this.dataDirectory = dataDirectory.toRealPath();
+		if (!Files.isDirectory(this.dataDirectory))
+		{
+			throw new IOException(dataDirectory + " is not a directory");
+		}
+
+		this.cache = new LinkedHashMap<String, FutureTask<CalibratedModel>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FutureTask<CalibratedModel>> eldest)
+			{
+				return size() > cacheCapacity;
+			}
+		};
+
+		this.fileHashes = new LinkedHashMap<String, String>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+			{
+				return size() > cacheCapacity;
+			}
+		};
+
+		this.workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), work ->
+		{
+			Thread worker = new Thread(work, "path-worker");
+			worker.setDaemon(true);
+			return worker;
+		});
+
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.requestPool = Executors.newFixedThreadPool(numberOfThreads);
+		server.setExecutor(requestPool);
+
+		server.createContext("/summary", exchange -> handle(exchange, this::writeSummary));
+		server.createContext("/paths", exchange -> handle(exchange, this::writePaths));
+		server.createContext("/status", exchange -> handle(exchange, this::writeStatus));
+		server.createContext("/metrics", exchange -> handle(exchange, 
+				(parameters, out) -> SimulationMetrics.writePrometheus(out)));
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to a number of seconds for those under way
+	 *
+	 * @param delayInSeconds
+	 */
+	public void stop(int delayInSeconds)
+	{
+		server.stop(delayInSeconds);
+		requestPool.shutdown();
+		workerPool.shutdownNow();
+	}
+
+	/**
+	 * Getter for the port the service listens on
+	 *
+	 * @return
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Finds the calibrated system of a dataset, calibrating it on the first request. Concurrent requests for the
+	 * same dataset wait for a single calibration.
+	 *
+	 * @param file-Data file, as given by dataFileFor
+	 * @param window-Number of most recent days to calibrate on, 0 for all of them
+	 * @param upSampleFactor
+	 * @return-The calibrated system
+	 * @throws IOException-When the file cannot be read or holds no prices
+	 */
+	public CalibratedModel getModel(Path file, int window, int upSampleFactor) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		if (!attributes.isRegularFile() || attributes.size() > MAX_DATA_FILE_BYTES)
+		{
+			throw new IllegalArgumentException(file.getFileName() + " is not a data file of at most "
+					+ MAX_DATA_FILE_BYTES + " bytes");
+		}
+		String fingerprint = file + "/" + attributes.size() + "/" + attributes.lastModifiedTime().toMillis();
+
+		String hash;
+		synchronized (fileHashes)
+		{
+			hash = fileHashes.get(fingerprint);
+		}
+
+		String key = null;
+		FutureTask<CalibratedModel> calibration = null;
+		boolean isNew = false;
+		if (hash != null)
+		{
+			key = hash + "/" + window + "/" + upSampleFactor;
+			synchronized (cache)
+			{
+				calibration = cache.get(key);
+			}
+		}
+
+		if (calibration == null)
+		{
+			//The key is the hash of the very bytes that are calibrated on, even if the file changes meanwhile
+			byte[] data = Files.readAllBytes(file);
+			if (data.length > MAX_DATA_FILE_BYTES)
+			{
+				throw new IllegalArgumentException(file.getFileName() + " is larger than " + MAX_DATA_FILE_BYTES
+						+ " bytes");
+			}
+			hash = hashOf(data);
+			synchronized (fileHashes)
+			{
+				fileHashes.put(fingerprint, hash);
+			}
+
+			key = hash + "/" + window + "/" + upSampleFactor;
+			synchronized (cache)
+			{
+				calibration = cache.get(key);
+				if (calibration == null)
+				{
+					calibration = new FutureTask<CalibratedModel>(
+							() -> CalibratedModel.calibrate(data, file, window));
+					cache.put(key, calibration);
+					isNew = true;
+				}
+			}
+		}
+
+		(isNew ? cacheMisses : cacheHits).incrementAndGet();
+
+		//Only the request that added the calibration runs it, the others wait for it
+		calibration.run();
+
+		try
+		{
+			return calibration.get();
+		}
+		catch (ExecutionException e)
+		{
+			synchronized (cache)
+			{
+				cache.remove(key, calibration);
+			}
+
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof IllegalArgumentException)
+			{
+				throw (IllegalArgumentException) e.getCause();
+			}
+			throw new IOException("Calibration of " + file + " failed", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the calibration of " + file, e);
+		}
+	}
+
+	/**
+	 * Simulates the paths asked for and writes their summary
+	 *
+	 * @param parameters
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeSummary(Map<String, String> parameters, Writer out) throws IOException
+	{
+		SimulationJob job = jobFor(parameters);
+		long numberOfPaths = pathsIn(parameters, 1000);
+
+		PathSummaryAggregator summary = job.createAggregator();
+		StreamingSimulation.forEngine(job.createEngine(), workerPool).run(0, numberOfPaths, summary);
+
+		summary.writeSummary(out);
+	}
+
+	/**
+	 * Simulates the paths asked for and writes the price of every stock on every day of each of them
+	 *
+	 * @param parameters
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writePaths(Map<String, String> parameters, Writer out) throws IOException
+	{
+		SimulationJob job = jobFor(parameters);
+		long numberOfPaths = pathsIn(parameters, 10);
+
+		out.write("path\tday");
+		for (int stock = 0; stock < job.getNumberOfStocks(); stock++)
+		{
+			out.write("\tstock" + stock);
+		}
+		out.write('\n');
+
+		StringBuilder row = new StringBuilder();
+		StreamingSimulation.forEngine(job.createEngine(), workerPool).run(0, numberOfPaths, (path, simulatedPrices) ->
+		{
+			for (int day = 0; day < job.numberOfDays; day++)
+			{
+				row.setLength(0);
+				row.append(path).append('\t').append(day);
+				for (double[] pricesOfStock : simulatedPrices)
+				{
+					row.append('\t').append(pricesOfStock[day * job.upSampleFactor]);
+				}
+				row.append('\n');
+				out.write(row.toString());
+			}
+		});
+	}
+
+	private void writeStatus(Map<String, String> parameters, Writer out) throws IOException
+	{
+		int cachedModels;
+		synchronized (cache)
+		{
+			cachedModels = cache.size();
+		}
+
+		out.write("cachedModels\t" + cachedModels + "\n");
+		out.write("cacheHits\t" + cacheHits.get() + "\n");
+		out.write("cacheMisses\t" + cacheMisses.get() + "\n");
+	}
+
+	/**
+	 * Finds a data file in the data directory. Names that lead out of it, directly or through a symbolic link,
+	 * are refused, so a client can neither read nor probe any other file.
+	 *
+	 * @param name-Name of the file relative to the data directory
+	 * @return-The file, with symbolic links resolved
+	 * @throws IOException-When there is no such file
+	 */
+	Path dataFileFor(String name) throws IOException
+	{
+		Path file = dataDirectory.resolve(name).normalize();
+		if (!file.startsWith(dataDirectory))
+		{
+			throw new IllegalArgumentException("file must be inside the data directory");
+		}
+
+		try
+		{
+			file = file.toRealPath();
+		}
+		catch (NoSuchFileException e)
+		{
+			//Name the file as the client did, without the location of the data directory
+			throw new NoSuchFileException(name);
+		}
+		if (!file.startsWith(dataDirectory))
+		{
+			throw new IllegalArgumentException("file must be inside the data directory");
+		}
+
+		return file;
+	}
+
+	/**
+	 * Builds the job of a request from the cached system of its dataset
+	 *
+	 * @param parameters
+	 * @return-The job
+	 * @throws IOException
+	 */
+	private SimulationJob jobFor(Map<String, String> parameters) throws IOException
+	{
+		Path file = dataFileFor(parameters.getOrDefault("file", "StockData.txt"));
+		int window = Integer.parseInt(parameters.getOrDefault("window", "0"));
+		int upSampleFactor = Integer.parseInt(parameters.getOrDefault("upSample", "5"));
+		long seed = Long.parseLong(parameters.getOrDefault("seed", "5760"));
+
+		if (window < 0 || upSampleFactor < 1)
+		{
+			throw new IllegalArgumentException("window must be at least 0 and upSample at least 1");
+		}
+		if (window != 0 && window < MIN_DAYS)
+		{
+			throw new IllegalArgumentException("window must be 0 or at least " + MIN_DAYS
+					+ " days, which give 2 log returns");
+		}
+
+		CalibratedModel model = getModel(file, window, upSampleFactor);
+
+		return new SimulationJob(model.SDESystemForStocks, model.initialPrices, model.numberOfDays, upSampleFactor,
+				seed, VarianceReduction.NONE);
+	}
+
+	private static long pathsIn(Map<String, String> parameters, long defaultPaths)
+	{
+		long numberOfPaths = Long.parseLong(parameters.getOrDefault("paths", Long.toString(defaultPaths)));
+
+		if (numberOfPaths < 1 || numberOfPaths > MAX_PATHS)
+		{
+			throw new IllegalArgumentException("paths must be between 1 and " + MAX_PATHS);
+		}
+
+		return numberOfPaths;
+	}
+
+	/**
+	 * Runs a handler and sends its output as tab separated text, or the error it ran into
+	 *
+	 * @param exchange
+	 * @param handler
+	 * @throws IOException
+	 */
+	private static void handle(HttpExchange exchange, RequestHandler handler) throws IOException
+	{
+		try
+		{
+			if (!exchange.getRequestMethod().equals("GET"))
+			{
+				sendError(exchange, 405, "Only GET is supported");
+				return;
+			}
+
+			Map<String, String> parameters = parametersOf(exchange.getRequestURI());
+
+			//The headers go out with the first byte of the body, so a bad parameter found before any output is
+			//still answered with its own status
+			exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values; charset=utf-8");
+			Writer out = new BufferedWriter(new OutputStreamWriter(new StreamedBody(exchange), StandardCharsets.UTF_8),
+					1 << 16);
+			handler.handle(parameters, out);
+			out.close();
+		}
+		catch (NumberFormatException e)
+		{
+			sendError(exchange, 400, "Bad number: " + e.getMessage());
+		}
+		catch (IllegalArgumentException e)
+		{
+			sendError(exchange, 400, e.getMessage());
+		}
+		catch (NoSuchFileException e)
+		{
+			sendError(exchange, 404, "No such file: " + e.getMessage());
+		}
+		catch (IOException e)
+		{
+			sendError(exchange, 500, e.getMessage());
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends an error, unless the response has already started
+	 *
+	 * @param exchange
+	 * @param status
+	 * @param message
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message)
+	{
+		if (exchange.getResponseCode() != -1)
+		{
+			return;
+		}
+
+		try
+		{
+			byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(status, body.length);
+			exchange.getResponseBody().write(body);
+		}
+		catch (IOException e)
+		{
+			//The client went away
+		}
+	}
+
+	private static Map<String, String> parametersOf(URI uri)
+	{
+		Map<String, String> parameters = new HashMap<String, String>();
+
+		String query = uri.getRawQuery();
+		if (query == null)
+		{
+			return parameters;
+		}
+
+		for (String pair : query.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			if (equals > 0)
+			{
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+
+		return parameters;
+	}
+
+	private static String hashOf(byte[] data)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest)
+			{
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			//Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Starts a service
+	 *
+	 * @param args-Optionally the port, the number of calibrated systems kept and the data directory, the working
+	 *        directory by default
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int cacheCapacity = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CACHE_CAPACITY;
+		Path dataDirectory = Paths.get(args.length > 2 ? args[2] : "");
+
+		SimulationService service = new SimulationService(port, cacheCapacity,
+				Runtime.getRuntime().availableProcessors(), dataDirectory);
+		service.start();
+
+		System.out.println("Simulation service listening on port " + service.getPort());
+	}
+
+	/**
+	 * Writes the response of one endpoint
+	 */
+	private interface RequestHandler
+	{
+		void handle(Map<String, String> parameters, Writer out) throws IOException;
+	}
+
+	/**
+	 * Response body that sends the headers of a chunked response on the first write, so that errors found before
+	 * any output can still be sent with their own status
+	 */
+	private static class StreamedBody extends OutputStream
+	{
+		HttpExchange exchange;
+		OutputStream body;
+
+		StreamedBody(HttpExchange exchange)
+		{
+			this.exchange = exchange;
+		}
+
+		private OutputStream body() throws IOException
+		{
+			if (body == null)
+			{
+				exchange.sendResponseHeaders(200, 0);
+				body = exchange.getResponseBody();
+			}
+			return body;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			body().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int offset, int length) throws IOException
+		{
+			body().write(b, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			if (body != null)
+			{
+				body.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			body().close();
+		}
+	}
+
+	/**
+	 * A system calibrated on a window of a dataset, with the prices the simulated paths start from
+	 */
+	public static class CalibratedModel
+	{
+		SDESystem SDESystemForStocks;
+
+		double[] initialPrices;
+
+		int numberOfDays;
+
+		CalibratedModel(SDESystem SDESystemForStocks, double[] initialPrices, int numberOfDays)
+		{
+			this.SDESystemForStocks = SDESystemForStocks;
+			this.initialPrices = initialPrices;
+			this.numberOfDays = numberOfDays;
+		}
+
+		/**
+		 * Parses the contents of a data file and calibrates the system on its most recent days. The paths start from
+		 * the prices on the first day of the window and cover as many days as the window, as ProjectTwoDriver does
+		 * for the whole history.
+		 *
+		 * @param data-Contents of the file
+		 * @param file-The file, for messages
+		 * @param window-Number of most recent days, 0 for all of them
+		 * @return-The calibrated system
+		 * @throws IOException
+		 * @throws IllegalArgumentException-When the window holds fewer than MIN_DAYS days
+		 */
+		static CalibratedModel calibrate(byte[] data, Path file, int window) throws IOException
+		{
+			double[][] dailyPricesOfStocks = StockDataLoader.load(data);
+			if (dailyPricesOfStocks.length == 0)
+			{
+				throw new IOException(file + " holds no prices");
+			}
+
+			int numberOfDays = Integer.MAX_VALUE;
+			for (double[] dailyPricesOfStock : dailyPricesOfStocks)
+			{
+				numberOfDays = Math.min(numberOfDays, dailyPricesOfStock.length);
+			}
+			int firstDay = window == 0 ? 0 : Math.max(numberOfDays - window, 0);
+			if (numberOfDays - firstDay < MIN_DAYS)
+			{
+				throw new IllegalArgumentException(file.getFileName() + " holds " + (numberOfDays - firstDay)
+						+ " days, fewer than the " + MIN_DAYS + " a calibration needs");
+			}
+
+			OnlineStockStatistics statistics = new OnlineStockStatistics(dailyPricesOfStocks.length);
+			double[] pricesOnDay = new double[dailyPricesOfStocks.length];
+			for (int day = firstDay; day < numberOfDays; day++)
+			{
+				for (int stock = 0; stock < pricesOnDay.length; stock++)
+				{
+					pricesOnDay[stock] = dailyPricesOfStocks[stock][day];
+				}
+				statistics.addPrices(pricesOnDay);
+			}
+
+			SDESystem SDESystemForStocks = new SDESystem(statistics.getDriftsAndVolatilities(),
+					statistics.getCovolatilityMatrix());
+
+			double[] initialPrices = new double[dailyPricesOfStocks.length];
+			for (int stock = 0; stock < initialPrices.length; stock++)
+			{
+				initialPrices[stock] = dailyPricesOfStocks[stock][firstDay];
+			}
+
+			return new CalibratedModel(SDESystemForStocks, initialPrices, numberOfDays - firstDay);
+		}
+
+		/**
+		 * Getter for the calibrated system
+		 *
+		 * @return
+		 */
+		public SDESystem getSDESystem()
+		{
+			return SDESystemForStocks;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package financeproject2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Worker side of a distributed simulation: connects to a SimulationCoordinator, receives the job, then simulates
+ * every chunk of paths it is handed on all the processors of this machine and sends back the summary of the chunk.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SimulationWorker
+{
+	/**
+	 * Serves one coordinator until it has no more chunks
+	 *
+	 * @param host-Address of the coordinator
+	 * @param port-Port of the coordinator
+	 * @throws IOException-When the connection fails or the coordinator does not speak the protocol
+	 */
+	public static void serve(String host, int port) throws IOException
+	{
+		try (Socket socket = new Socket(host, port))
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			out.writeInt(SimulationCoordinator.MAGIC);
+			out.writeInt(SimulationCoordinator.VERSION);
+			out.flush();
+
+			if (in.readInt() != SimulationCoordinator.MAGIC || in.readInt() != SimulationCoordinator.VERSION)
+			{
+				throw new IOException("Coordinator at " + host + ":" + port + " speaks a different protocol");
+			}
+
+			SimulationJob job = SimulationJob.readFrom(in);
+			StreamingSimulation simulation = StreamingSimulation.forEngine(job.createEngine());
+
+			while (in.readByte() == SimulationCoordinator.CHUNK)
+			{
+				int generation = in.readInt();
+				int chunk = in.readInt();
+				long firstPath = in.readLong();
+				long numberOfPaths = in.readLong();
+
+				PathSummaryAggregator summary = job.createAggregator();
+				simulation.run(firstPath, numberOfPaths, summary);
+
+				out.writeByte(SimulationCoordinator.RESULT);
+				out.writeInt(generation);
+				out.writeInt(chunk);
+				summary.writeTo(out);
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Starts a worker
+	 *
+	 * @param args-Host and port of the coordinator
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		serve(args[0], Integer.parseInt(args[1]));
+	}
+}
@@ -0,0 +1,129 @@
+package financeproject2;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Quasi-random Gaussian samples: path p is driven by point p of a scrambled Sobol sequence, turned into Gaussians
+ * with the inverse normal distribution function and into Brownian increments with a Brownian bridge, one bridge
+ * per noise dimension. On smooth payoffs the error falls close to 1 / N in the number of paths instead of
+ * 1 / sqrt(N).
+ *
+ * A path needs one coordinate per noise dimension and step, which for long paths is far more than a Sobol
+ * sequence spreads well. The bridge puts the coordinates that matter most first, so only the first
+ * numberOfSobolDimensions of them come from the Sobol point and the fine detail of the path is filled in with
+ * pseudo-random samples from the stream of the path.
+ *
+ * The bridges are walked forward in time as the path is simulated (see BrownianBridge.Walk), so a path holds its
+ * Sobol point and O(noiseDimension log steps) values rather than all of its noiseDimension * steps increments.
+ *
+ * The number of paths should be a power of two, where the points of the sequence are balanced best.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SobolGaussianSource implements GaussianSource
+{
+	//Sobol coordinates per path unless asked otherwise
+	static final int DEFAULT_SOBOL_DIMENSIONS = 1024;
+
+	int noiseDimension;
+
+	//Number of increments in a path
+	int numberOfIncrements;
+
+	long seed;
+
+	SobolSequence sequence;
+
+	BrownianBridge bridge;
+
+	/**
+	 * Sets up the source for the paths of an SDE system
+	 *
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param seed-Seed of the scrambling and of the pseudo-random fill
+	 */
+	public SobolGaussianSource(SDESystem SDESystemForStocks, int numberOfSteps, long seed)
+	{
+		this(SDESystemForStocks.getCovolatilityFactor().getNoiseDimension(), numberOfSteps, seed,
+				DEFAULT_SOBOL_DIMENSIONS);
+	}
+
+	/**
+	 * Sets up the source
+	 *
+	 * @param noiseDimension-Number of Gaussian samples per step
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param seed-Seed of the scrambling and of the pseudo-random fill
+	 * @param numberOfSobolDimensions-Most coordinates per path taken from the Sobol sequence
+	 */
+	public SobolGaussianSource(int noiseDimension, int numberOfSteps, long seed, int numberOfSobolDimensions)
+	{
+		this.noiseDimension = noiseDimension;
+		this.numberOfIncrements = Math.max(numberOfSteps - 1, 0);
+		this.seed = seed;
+
+		this.sequence = new SobolSequence(Math.min(noiseDimension * numberOfIncrements, numberOfSobolDimensions),
+				seed);
+		this.bridge = new BrownianBridge(numberOfIncrements);
+	}
+
+	@Override
+	public GaussianStream forPath(long pathIndex)
+	{
+		//Gaussians of the coordinates in bridge order, indexed by bridge position * noiseDimension + noise dimension
+		double[] point = new double[sequence.getDimension()];
+		sequence.point(pathIndex, point);
+		for (int c = 0; c < point.length; c++)
+		{
+			point[c] = NormalDistribution.inverseCumulativeProbability(point[c]);
+		}
+		SimulationMetrics.countGaussianDraws(noiseDimension * numberOfIncrements);
+
+		return new BridgeStream(point, PathRandomStreams.forPath(seed, pathIndex));
+	}
+
+	/**
+	 * Getter for the seed of the scrambling
+	 *
+	 * @return
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * Stream walking the bridges of every noise dimension forward one step at a time, so a path never holds more
+	 * than its Sobol point and a few points ahead of each dimension
+	 */
+	private class BridgeStream implements GaussianStream, BrownianBridge.Samples
+	{
+		double[] point;
+		RandomGenerator fill;
+		BrownianBridge.Walk walk;
+
+		BridgeStream(double[] point, RandomGenerator fill)
+		{
+			this.point = point;
+			this.fill = fill;
+			this.walk = bridge.new Walk(noiseDimension, this);
+		}
+
+		@Override
+		public void nextGaussians(double[] sample)
+		{
+			walk.nextIncrements(sample);
+		}
+
+		@Override
+		public double sample(int i, int dimension)
+		{
+			int coordinate = i * noiseDimension + dimension;
+
+			//Coordinates past the Sobol point are drawn from the stream of the path in the order the walk needs them
+			return coordinate < point.length ? point[coordinate] : fill.nextGaussian();
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package financeproject2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A Sobol low discrepancy sequence in any number of dimensions, randomized with a digital shift. Each dimension
+ * is built from its own primitive polynomial over GF(2), found by search, and from odd initial direction numbers
+ * drawn once from a fixed seed so that the sequence itself never changes between runs. The digital shift XORs
+ * every coordinate with a random word derived from the seed of the run; this keeps the points equally well spread
+ * while making the estimates unbiased, and independent shifts give independent replications of a QMC run.
+ *
+ * Points are computed directly from their index through the Gray code, so any point can be produced on any
+ * thread without walking the sequence.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SobolSequence
+{
+	//Number of bits in a coordinate, which also caps the number of points at 2^32
+	static final int BITS = 32;
+
+	//Seed of the initial direction numbers, fixed so that the sequence is the same in every run
+	private static final long DIRECTION_NUMBER_SEED = 0x536f626f6cL;
+
+	int dimension;
+
+	//Direction numbers indexed by [dimension][bit]
+	int[][] directionNumbers;
+
+	//Digital shift of each dimension
+	int[] shifts;
+
+	/**
+	 * Sets up the sequence
+	 *
+	 * @param dimension-Number of coordinates in a point
+	 * @param seed-Seed of the digital shift
+	 */
+	public SobolSequence(int dimension, long seed)
+	{
+		this.dimension = dimension;
+		this.directionNumbers = new int[dimension][BITS];
+		this.shifts = new int[dimension];
+
+		int[] polynomials = primitivePolynomials(dimension - 1);
+		SplittableRandom initialNumbers = new SplittableRandom(DIRECTION_NUMBER_SEED);
+
+		//The first dimension is the van der Corput sequence
+		for (int k = 0; k < BITS && dimension > 0; k++)
+		{
+			directionNumbers[0][k] = 1 << (BITS - 1 - k);
+		}
+
+		for (int d = 1; d < dimension; d++)
+		{
+			int polynomial = polynomials[d - 1];
+			int degree = degreeOf(polynomial);
+
+			//m[k] is the odd integer below 2^(k + 1) behind direction number k
+			long[] m = new long[BITS];
+			for (int k = 0; k < degree && k < BITS; k++)
+			{
+				m[k] = ((long) initialNumbers.nextInt(1 << k) << 1) | 1;
+			}
+			for (int k = degree; k < BITS; k++)
+			{
+				m[k] = m[k - degree] ^ (m[k - degree] << degree);
+				for (int j = 1; j < degree; j++)
+				{
+					if (((polynomial >>> (degree - j)) & 1) != 0)
+					{
+						m[k] ^= m[k - j] << j;
+					}
+				}
+			}
+
+			for (int k = 0; k < BITS; k++)
+			{
+				directionNumbers[d][k] = (int) (m[k] << (BITS - 1 - k));
+			}
+		}
+
+		SplittableRandom shiftRandom = new SplittableRandom(seed);
+		for (int d = 0; d < dimension; d++)
+		{
+			shifts[d] = shiftRandom.nextInt();
+		}
+	}
+
+	/**
+	 * Computes a point of the sequence
+	 *
+	 * @param index-Index of the point, below 2^32
+	 * @param point-Receives the coordinates, each strictly between 0 and 1
+	 */
+	public void point(long index, double[] point)
+	{
+		if (index < 0 || index >= (1L << BITS))
+		{
+			throw new IllegalArgumentException("Sobol point index " + index + " is outside [0, 2^32)");
+		}
+
+		long grayCode = index ^ (index >>> 1);
+
+		for (int d = 0; d < dimension; d++)
+		{
+			int[] numbers = directionNumbers[d];
+			int coordinate = shifts[d];
+
+			long bits = grayCode;
+			for (int k = 0; bits != 0; k++, bits >>>= 1)
+			{
+				if ((bits & 1) != 0)
+				{
+					coordinate ^= numbers[k];
+				}
+			}
+
+			//Centre the coordinate in its cell of width 2^-32 so that it is never 0 or 1
+			point[d] = ((coordinate & 0xffffffffL) + 0.5) / (1L << BITS);
+		}
+	}
+
+	/**
+	 * Getter for the number of coordinates in a point
+	 *
+	 * @return
+	 */
+	public int getDimension()
+	{
+		return dimension;
+	}
+
+	/**
+	 * Finds the first primitive polynomials over GF(2) in order of degree, then value. A polynomial is stored as
+	 * the bits of its coefficients, x^3 + x + 1 being 0b1011.
+	 *
+	 * @param count
+	 * @return-The polynomials
+	 */
+	static int[] primitivePolynomials(int count)
+	{
+		int[] polynomials = new int[Math.max(count, 0)];
+
+		int found = 0;
+		for (int degree = 1; found < count; degree++)
+		{
+			long order = (1L << degree) - 1;
+			long[] primeFactors = primeFactorsOf(order);
+
+			//Primitive polynomials have a constant term, so only odd values are tried
+			for (int polynomial = (1 << degree) + 1; polynomial < (1 << (degree + 1)) && found < count; polynomial += 2)
+			{
+				if (isPrimitive(polynomial, degree, order, primeFactors))
+				{
+					polynomials[found++] = polynomial;
+				}
+			}
+		}
+
+		return polynomials;
+	}
+
+	/**
+	 * A polynomial of degree s is primitive when x has order exactly 2^s - 1 modulo it
+	 *
+	 * @param polynomial
+	 * @param degree
+	 * @param order-2^degree - 1
+	 * @param primeFactors-Distinct prime factors of the order
+	 * @return
+	 */
+	private static boolean isPrimitive(int polynomial, int degree, long order, long[] primeFactors)
+	{
+		//The polynomial x, which is 1 modulo x + 1
+		int x = degree == 1 ? 1 : 0b10;
+
+		if (powerModulo(x, order, polynomial, degree) != 1)
+		{
+			return false;
+		}
+
+		for (long factor : primeFactors)
+		{
+			if (powerModulo(x, order / factor, polynomial, degree) == 1)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int powerModulo(int base, long exponent, int polynomial, int degree)
+	{
+		int result = 1;
+		int power = base;
+
+		while (exponent > 0)
+		{
+			if ((exponent & 1) != 0)
+			{
+				result = multiplyModulo(result, power, polynomial, degree);
+			}
+			power = multiplyModulo(power, power, polynomial, degree);
+			exponent >>>= 1;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Carry-less product of two polynomials of degree below s, reduced modulo a polynomial of degree s
+	 *
+	 * @param a
+	 * @param b
+	 * @param polynomial
+	 * @param degree
+	 * @return
+	 */
+	private static int multiplyModulo(int a, int b, int polynomial, int degree)
+	{
+		long product = 0;
+		for (int bit = 0; bit < degree; bit++)
+		{
+			if (((b >>> bit) & 1) != 0)
+			{
+				product ^= (long) a << bit;
+			}
+		}
+
+		for (int bit = 2 * degree - 2; bit >= degree; bit--)
+		{
+			if (((product >>> bit) & 1) != 0)
+			{
+				product ^= (long) polynomial << (bit - degree);
+			}
+		}
+
+		return (int) product;
+	}
+
+	private static int degreeOf(int polynomial)
+	{
+		return 31 - Integer.numberOfLeadingZeros(polynomial);
+	}
+
+	private static long[] primeFactorsOf(long value)
+	{
+		long[] factors = new long[64];
+		int count = 0;
+
+		for (long factor = 2; factor * factor <= value; factor++)
+		{
+			if (value % factor == 0)
+			{
+				factors[count++] = factor;
+				while (value % factor == 0)
+				{
+					value /= factor;
+				}
+			}
+		}
+		if (value > 1)
+		{
+			factors[count++] = value;
+		}
+
+		return Arrays.copyOf(factors, count);
+	}
+}
@@ -0,0 +1,50 @@
+package financeproject2;
+
+/**
+ * Hands out the SDEStepper a path is simulated with
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface SteppingScheme 
+{
+	/**
+	 * The Euler-Maruyama method, first order in the mean and one half in the paths
+	 */
+	SteppingScheme EULER_MARUYAMA = (SDESystemForStocks, pathIndex) -> new EulerMaruyamaStepper(SDESystemForStocks);
+	
+	/**
+	 * The Milstein method, first order in the paths
+	 */
+	SteppingScheme MILSTEIN = (SDESystemForStocks, pathIndex) -> new MilsteinStepper(SDESystemForStocks);
+	
+	/**
+	 * The exact solution of the log-normal system, with no error from the time step
+	 */
+	SteppingScheme EXACT_LOG_NORMAL = (SDESystemForStocks, pathIndex) -> new ExactLogNormalStepper(SDESystemForStocks);
+	
+	/**
+	 * Creates the stepper of one path
+	 * 
+	 * @param SDESystemForStocks-Set up of the system contained in class SDESystem
+	 * @param pathIndex-Index of the path, for schemes that draw random numbers of their own
+	 * @return-The stepper
+	 */
+	SDEStepper stepperFor(SDESystem SDESystemForStocks, long pathIndex);
+	
+	/**
+	 * A scheme that refines the steps of another scheme by step doubling wherever they are not accurate enough
+	 * 
+	 * @param baseScheme-Scheme used for every step and substep
+	 * @param tolerance-Largest accepted relative difference between one step and two half steps
+	 * @param maximumDepth-Most times a step is halved
+	 * @param seed-Seed of the Brownian bridge samples that refine the Brownian path
+	 * @return-The scheme
+	 */
+	static SteppingScheme adaptive(SteppingScheme baseScheme, double tolerance, int maximumDepth, long seed)
+	{
+		return (SDESystemForStocks, pathIndex) -> new AdaptiveStepper(SDESystemForStocks, 
+				baseScheme.stepperFor(SDESystemForStocks, pathIndex), tolerance, maximumDepth, 
+				PathRandomStreams.forPath(seed, pathIndex));
+	}
+}
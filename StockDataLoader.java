@@ -0,0 +1,548 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Loads daily stock prices into a columnar array indexed by [stock][day]. The file is memory-mapped and parsed
+ * byte by byte, so no String or boxed Double is created per price.
+ *
+ * Two formats are understood:
+ * <ul>
+ * <li>The block format of StockData.txt, where the prices of each stock are listed one per line between a line
+ * starting with '{' and a line starting with '}'. Everything outside the blocks is ignored.</li>
+ * <li>The csv file that can be downloaded from the majority of finance websites (Date,Open,High,Low,Close,Adj
+ * Close,Volume). Each csv file holds one stock; the Adj Close column is used, or Close when there is none. Rows
+ * with a missing price are skipped.</li>
+ * </ul>
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class StockDataLoader
+{
+	//Files are mapped in pieces of at most this many bytes, cut at the end of a line
+	private static final int MAPPED_CHUNK_SIZE = 1 << 28;
+
+	//10^0 to 10^22 are exactly representable as doubles
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static
+	{
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	ArrayList<DoubleColumn> columns = new ArrayList<DoubleColumn>();
+
+	//State of the block format parser, carried from one line (and one mapped chunk) to the next
+	boolean isCsv;
+	boolean isFirstLine = true;
+	boolean isInsideBlock;
+
+	//Column of the csv file holding the price, found from the header
+	int priceColumn = -1;
+
+	/**
+	 * Loads one file, detecting whether it is in the block format or a csv file
+	 *
+	 * @param file
+	 * @return-Daily prices indexed by [stock][day]
+	 * @throws IOException
+	 */
+	public static double[][] load(Path file) throws IOException
+	{
+		StockDataLoader loader = new StockDataLoader();
+
+		loader.parseFile(file);
+
+		return loader.toColumns();
+	}
+
+	/**
+	 * Loads prices that are already in memory, in either format. Used when the same bytes must also be hashed, so
+	 * the prices cannot come from a later version of the file.
+	 *
+	 * @param data-Contents of a file
+	 * @return-Daily prices indexed by [stock][day]
+	 */
+	public static double[][] load(byte[] data)
+	{
+		StockDataLoader loader = new StockDataLoader();
+
+		loader.parseLines(ByteBuffer.wrap(data), data.length);
+
+		return loader.toColumns();
+	}
+
+	/**
+	 * Loads several files and puts their stocks side by side, in the order of the files
+	 *
+	 * @param files
+	 * @return-Daily prices indexed by [stock][day]
+	 * @throws IOException
+	 */
+	public static double[][] load(Path... files) throws IOException
+	{
+		ArrayList<double[]> stocks = new ArrayList<double[]>();
+
+		for (Path file : files)
+		{
+			stocks.addAll(Arrays.asList(load(file)));
+		}
+
+		return stocks.toArray(new double[stocks.size()][]);
+	}
+
+	/**
+	 * Converts loaded prices to the ArrayList layout used by GatherDriftsAndVolatilities
+	 *
+	 * @param dailyPricesOfStocks-Daily prices indexed by [stock][day]
+	 * @return-The same prices as an ArrayList of stocks
+	 */
+	public static ArrayList<ArrayList<Double>> toArrayListMatrix(double[][] dailyPricesOfStocks)
+	{
+		ArrayList<ArrayList<Double>> arrayListMatrix = new ArrayList<ArrayList<Double>>();
+
+		for (double[] dailyPricesOfStock : dailyPricesOfStocks)
+		{
+			ArrayList<Double> dailyPrices = new ArrayList<Double>(dailyPricesOfStock.length);
+			for (double price : dailyPricesOfStock)
+			{
+				dailyPrices.add(price);
+			}
+			arrayListMatrix.add(dailyPrices);
+		}
+
+		return arrayListMatrix;
+	}
+
+	/**
+	 * Maps the file piece by piece and hands every line to the parser
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	private void parseFile(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			long position = 0;
+
+			while (position < size)
+			{
+				long length = Math.min(MAPPED_CHUNK_SIZE, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				int end = (int) length;
+				if (position + length < size)
+				{
+					//Stop after the last complete line; the rest is mapped again with the next chunk
+					while (end > 0 && buffer.get(end - 1) != '\n')
+					{
+						end--;
+					}
+					if (end == 0)
+					{
+						throw new IOException("Line longer than " + MAPPED_CHUNK_SIZE + " bytes in " + file);
+					}
+				}
+
+				parseLines(buffer, end);
+
+				position += end;
+			}
+		}
+	}
+
+	/**
+	 * Hands every line of the buffer to the parser
+	 *
+	 * @param buffer
+	 * @param end-One past the last byte to parse
+	 */
+	private void parseLines(ByteBuffer buffer, int end)
+	{
+		int lineStart = 0;
+		for (int i = 0; i < end; i++)
+		{
+			if (buffer.get(i) == '\n')
+			{
+				parseLine(buffer, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart < end)
+		{
+			parseLine(buffer, lineStart, end);
+		}
+	}
+
+	/**
+	 * Parses one line of either format
+	 *
+	 * @param buffer
+	 * @param start-First byte of the line
+	 * @param end-One past the last byte of the line, not including the line break
+	 */
+	private void parseLine(ByteBuffer buffer, int start, int end)
+	{
+		while (start < end && isWhitespace(buffer.get(start)))
+		{
+			start++;
+		}
+		while (end > start && isWhitespace(buffer.get(end - 1)))
+		{
+			end--;
+		}
+		if (start == end)
+		{
+			return;
+		}
+
+		if (isFirstLine)
+		{
+			isFirstLine = false;
+			if (startsWith(buffer, start, end, "Date,"))
+			{
+				isCsv = true;
+				priceColumn = findPriceColumn(buffer, start, end);
+				columns.add(new DoubleColumn());
+				return;
+			}
+		}
+
+		if (isCsv)
+		{
+			parseCsvLine(buffer, start, end);
+		}
+		else
+		{
+			parseBlockLine(buffer, start, end);
+		}
+	}
+
+	/**
+	 * Parses a line of the block format. A line starting with '{' opens the block of a new stock, and inside a
+	 * block every whitespace separated token is a price until a token starting with '}'.
+	 *
+	 * @param buffer
+	 * @param start
+	 * @param end
+	 */
+	private void parseBlockLine(ByteBuffer buffer, int start, int end)
+	{
+		if (!isInsideBlock)
+		{
+			if (buffer.get(start) == '{')
+			{
+				isInsideBlock = true;
+				columns.add(new DoubleColumn());
+			}
+			return;
+		}
+
+		DoubleColumn column = columns.get(columns.size() - 1);
+
+		int tokenStart = start;
+		while (tokenStart < end)
+		{
+			int tokenEnd = tokenStart;
+			while (tokenEnd < end && !isWhitespace(buffer.get(tokenEnd)))
+			{
+				tokenEnd++;
+			}
+
+			if (buffer.get(tokenStart) == '}')
+			{
+				isInsideBlock = false;
+				return;
+			}
+
+			column.add(parseDouble(buffer, tokenStart, tokenEnd));
+
+			tokenStart = tokenEnd;
+			while (tokenStart < end && isWhitespace(buffer.get(tokenStart)))
+			{
+				tokenStart++;
+			}
+		}
+	}
+
+	/**
+	 * Parses a data row of a csv file, keeping only the price column
+	 *
+	 * @param buffer
+	 * @param start
+	 * @param end
+	 */
+	private void parseCsvLine(ByteBuffer buffer, int start, int end)
+	{
+		int fieldStart = start;
+		int field = 0;
+
+		for (int i = start; i <= end; i++)
+		{
+			if (i == end || buffer.get(i) == ',')
+			{
+				if (field == priceColumn)
+				{
+					try
+					{
+						columns.get(0).add(parseDouble(buffer, fieldStart, i));
+					}
+					catch (NumberFormatException missingPrice)
+					{
+						//Finance sites write "null" on days without a price
+					}
+					return;
+				}
+				field++;
+				fieldStart = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Finds the Adj Close column in a csv header, or the Close column when there is none
+	 *
+	 * @param buffer
+	 * @param start
+	 * @param end
+	 * @return-Index of the price column
+	 */
+	static int findPriceColumn(ByteBuffer buffer, int start, int end)
+	{
+		int closeColumn = -1;
+		int fieldStart = start;
+		int field = 0;
+
+		for (int i = start; i <= end; i++)
+		{
+			if (i == end || buffer.get(i) == ',')
+			{
+				if (equalsIgnoreCase(buffer, fieldStart, i, "Adj Close"))
+				{
+					return field;
+				}
+				if (equalsIgnoreCase(buffer, fieldStart, i, "Close"))
+				{
+					closeColumn = field;
+				}
+				field++;
+				fieldStart = i + 1;
+			}
+		}
+
+		if (closeColumn < 0)
+		{
+			throw new IllegalArgumentException("The csv header has neither an Adj Close nor a Close column");
+		}
+
+		return closeColumn;
+	}
+
+	/**
+	 * Parses a decimal number without allocating. Numbers with at most 15 significant digits and a small
+	 * exponent, which covers every price, are converted exactly with a single multiplication or division;
+	 * anything else is handed to Double.parseDouble.
+	 *
+	 * @param buffer
+	 * @param start-First byte of the number
+	 * @param end-One past the last byte of the number
+	 * @return-The parsed value
+	 */
+	static double parseDouble(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		boolean isNegative = false;
+
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			isNegative = buffer.get(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+
+		while (i < end && isDigit(buffer.get(i)))
+		{
+			hasDigits = true;
+			if (mantissa != 0 || buffer.get(i) != '0')
+			{
+				digits++;
+			}
+			mantissa = mantissa * 10 + (buffer.get(i) - '0');
+			i++;
+		}
+
+		if (i < end && buffer.get(i) == '.')
+		{
+			i++;
+			while (i < end && isDigit(buffer.get(i)))
+			{
+				hasDigits = true;
+				if (mantissa != 0 || buffer.get(i) != '0')
+				{
+					digits++;
+				}
+				mantissa = mantissa * 10 + (buffer.get(i) - '0');
+				exponent--;
+				i++;
+			}
+		}
+
+		if (hasDigits && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E'))
+		{
+			i++;
+			boolean isExponentNegative = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+			{
+				isExponentNegative = buffer.get(i) == '-';
+				i++;
+			}
+
+			int explicitExponent = 0;
+			boolean hasExponentDigits = false;
+			while (i < end && isDigit(buffer.get(i)) && explicitExponent < 10000)
+			{
+				hasExponentDigits = true;
+				explicitExponent = explicitExponent * 10 + (buffer.get(i) - '0');
+				i++;
+			}
+			if (!hasExponentDigits)
+			{
+				return parseDoubleSlowly(buffer, start, end);
+			}
+			exponent += isExponentNegative ? -explicitExponent : explicitExponent;
+		}
+
+		if (!hasDigits || i != end || digits > 15 || Math.abs(exponent) >= POWERS_OF_TEN.length)
+		{
+			return parseDoubleSlowly(buffer, start, end);
+		}
+
+		//Both the mantissa (below 10^15 < 2^53) and the power of ten are exact, so one rounding gives the answer
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+
+		return isNegative ? -value : value;
+	}
+
+	/**
+	 * Fallback for numbers the fast path cannot convert exactly
+	 *
+	 * @param buffer
+	 * @param start
+	 * @param end
+	 * @return-The parsed value
+	 */
+	private static double parseDoubleSlowly(ByteBuffer buffer, int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		buffer.get(start, bytes);
+
+		return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+	}
+
+	private static boolean isDigit(byte b)
+	{
+		return b >= '0' && b <= '9';
+	}
+
+	private static boolean isWhitespace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int start, int end, String prefix)
+	{
+		if (end - start < prefix.length())
+		{
+			return false;
+		}
+
+		return equalsIgnoreCase(buffer, start, start + prefix.length(), prefix);
+	}
+
+	static boolean equalsIgnoreCase(ByteBuffer buffer, int start, int end, String text)
+	{
+		//Header fields may be quoted or padded
+		while (start < end && (buffer.get(start) == '"' || buffer.get(start) == ' '))
+		{
+			start++;
+		}
+		while (end > start && (buffer.get(end - 1) == '"' || isWhitespace(buffer.get(end - 1))))
+		{
+			end--;
+		}
+
+		if (end - start != text.length())
+		{
+			return false;
+		}
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (Character.toLowerCase((char) buffer.get(start + i)) != Character.toLowerCase(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Trims the columns to their lengths
+	 *
+	 * @return-Daily prices indexed by [stock][day]
+	 */
+	private double[][] toColumns()
+	{
+		double[][] dailyPricesOfStocks = new double[columns.size()][];
+
+		for (int stock = 0; stock < columns.size(); stock++)
+		{
+			dailyPricesOfStocks[stock] = columns.get(stock).toArray();
+		}
+
+		return dailyPricesOfStocks;
+	}
+
+	/**
+	 * Growable column of primitive doubles
+	 */
+	static class DoubleColumn
+	{
+		double[] values = new double[256];
+		int size;
+
+		void add(double value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		double[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates paths on a number of worker threads and streams every path into a TrajectorySink as soon as it is
+ * finished, so the paths are never all held in memory. The workers draw from a fixed pool of path buffers: when
+ * the sink falls behind, the pool runs dry and the workers wait, which bounds the memory to the size of the
+ * pool whatever the number of paths.
+ *
+ * The sink runs on the calling thread and receives the paths in order of their index, so anything it computes
+ * is the same on every run with the same seed.
+ *
+ * The workers are threads of their own, or tasks of a pool when one is given. A pool lets many runs at once, such
+ * as the requests of SimulationService, share a fixed number of threads instead of each starting its own.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class StreamingSimulation
+{
+	MonteCarloPathEngine engine;
+
+	int numberOfStocks;
+
+	int numberOfSteps;
+
+	int numberOfWorkers;
+
+	//Number of path buffers shared by the workers and the sink
+	int numberOfBuffers;
+
+	//Pool the workers run on, or null to start a thread for each of them
+	ExecutorService workerPool;
+
+	/**
+	 * Sets up a streaming simulation
+	 *
+	 * @param engine-Engine that simulates each path
+	 * @param numberOfStocks
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param numberOfWorkers-Number of threads simulating paths
+	 * @param numberOfBuffers-Number of paths that can be in memory at once, at least numberOfWorkers
+	 */
+	public StreamingSimulation(MonteCarloPathEngine engine, int numberOfStocks, int numberOfSteps,
+			int numberOfWorkers, int numberOfBuffers)
+	{
+		this(engine, numberOfStocks, numberOfSteps, numberOfWorkers, numberOfBuffers, null);
+	}
+
+	/**
+	 * Sets up a streaming simulation whose workers run as tasks of a pool. Workers that find no free thread wait
+	 * in the queue of the pool, and the paths are shared among those that do run.
+	 *
+	 * @param engine-Engine that simulates each path
+	 * @param numberOfStocks
+	 * @param numberOfSteps-Number of steps in every path, including the first day
+	 * @param numberOfWorkers-Number of tasks simulating paths
+	 * @param numberOfBuffers-Number of paths that can be in memory at once, at least numberOfWorkers
+	 * @param workerPool-Pool the tasks run on, or null to start a thread for each of them
+	 */
+	public StreamingSimulation(MonteCarloPathEngine engine, int numberOfStocks, int numberOfSteps,
+			int numberOfWorkers, int numberOfBuffers, ExecutorService workerPool)
+	{
+		this.engine = engine;
+		this.numberOfStocks = numberOfStocks;
+		this.numberOfSteps = numberOfSteps;
+		this.numberOfWorkers = numberOfWorkers;
+		this.numberOfBuffers = Math.max(numberOfBuffers, numberOfWorkers);
+		this.workerPool = workerPool;
+	}
+
+	/**
+	 * Sets up a streaming simulation from the settings of an engine, with one worker per processor and four
+	 * buffers per worker
+	 *
+	 * @param engine
+	 * @return-The streaming simulation
+	 */
+	public static StreamingSimulation forEngine(MonteCarloPathEngine engine)
+	{
+		return forEngine(engine, null);
+	}
+
+	/**
+	 * Sets up a streaming simulation from the settings of an engine, with one worker per processor running on a
+	 * pool and four buffers per worker
+	 *
+	 * @param engine
+	 * @param workerPool-Pool the workers run on, or null to start a thread for each of them
+	 * @return-The streaming simulation
+	 */
+	public static StreamingSimulation forEngine(MonteCarloPathEngine engine, ExecutorService workerPool)
+	{
+		int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+
+		return new StreamingSimulation(engine, engine.initialPrices.length, engine.numberOfSteps, numberOfWorkers,
+				4 * numberOfWorkers, workerPool);
+	}
+
+	/**
+	 * Simulates the paths with indices firstPath to firstPath + numberOfPaths - 1 and hands each of them to the
+	 * sink in order
+	 *
+	 * @param firstPath
+	 * @param numberOfPaths
+	 * @param sink
+	 * @throws IOException-When the sink fails, or a worker fails or is interrupted
+	 */
+	public void run(long firstPath, long numberOfPaths, TrajectorySink sink) throws IOException
+	{
+		BlockingQueue<PathBuffer> freeBuffers = new ArrayBlockingQueue<PathBuffer>(numberOfBuffers);
+		BlockingQueue<PathBuffer> finishedPaths = new ArrayBlockingQueue<PathBuffer>(numberOfBuffers + numberOfWorkers);
+
+		for (int i = 0; i < numberOfBuffers; i++)
+		{
+			freeBuffers.add(new PathBuffer(new double[numberOfStocks][numberOfSteps]));
+		}
+
+		AtomicLong nextPathToClaim = new AtomicLong(firstPath);
+		long endPath = firstPath + numberOfPaths;
+
+		Runnable work = () -> simulateUntilDone(nextPathToClaim, endPath, freeBuffers, finishedPaths);
+
+		Thread[] workers = new Thread[workerPool == null ? numberOfWorkers : 0];
+		Future<?>[] tasks = new Future<?>[workerPool == null ? 0 : numberOfWorkers];
+		for (int i = 0; i < numberOfWorkers; i++)
+		{
+			if (workerPool == null)
+			{
+				workers[i] = new Thread(work, "path-worker-" + i);
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+			else
+			{
+				tasks[i] = workerPool.submit(work);
+			}
+		}
+
+		try
+		{
+			deliverInOrder(firstPath, endPath, freeBuffers, finishedPaths, sink);
+		}
+		finally
+		{
+			for (Thread worker : workers)
+			{
+				worker.interrupt();
+			}
+			//Tasks still in the queue of the pool never start, running ones are interrupted like the threads
+			for (Future<?> task : tasks)
+			{
+				task.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Loop run by each worker. A buffer is taken before the next path is claimed, so the lowest path that has not
+	 * been delivered always has a buffer and the sink can never wait on a path that is waiting for a buffer.
+	 *
+	 * @param nextPathToClaim
+	 * @param endPath
+	 * @param freeBuffers
+	 * @param finishedPaths
+	 */
+	private void simulateUntilDone(AtomicLong nextPathToClaim, long endPath, BlockingQueue<PathBuffer> freeBuffers,
+			BlockingQueue<PathBuffer> finishedPaths)
+	{
+		try
+		{
+			while (true)
+			{
+				PathBuffer buffer = freeBuffers.take();
+
+				long path = nextPathToClaim.getAndIncrement();
+				if (path >= endPath)
+				{
+					return;
+				}
+
+				buffer.path = path;
+				try
+				{
+					engine.simulatePath(buffer.simulatedPrices, path);
+				}
+				catch (RuntimeException | Error failure)
+				{
+					buffer.failure = failure;
+				}
+
+				finishedPaths.put(buffer);
+			}
+		}
+		catch (InterruptedException stopped)
+		{
+			//The run is over or has failed
+		}
+	}
+
+	/**
+	 * Hands the finished paths to the sink in order of their index, holding back paths that finish early
+	 *
+	 * @param firstPath
+	 * @param endPath
+	 * @param freeBuffers
+	 * @param finishedPaths
+	 * @param sink
+	 * @throws IOException
+	 */
+	private void deliverInOrder(long firstPath, long endPath, BlockingQueue<PathBuffer> freeBuffers,
+			BlockingQueue<PathBuffer> finishedPaths, TrajectorySink sink) throws IOException
+	{
+		//At most numberOfBuffers paths are claimed but not delivered, so their indices fit in a ring of that size
+		PathBuffer[] waiting = new PathBuffer[numberOfBuffers];
+
+		long nextPathToDeliver = firstPath;
+		while (nextPathToDeliver < endPath)
+		{
+			int slot = (int) ((nextPathToDeliver - firstPath) % numberOfBuffers);
+
+			while (waiting[slot] == null)
+			{
+				PathBuffer finished;
+				try
+				{
+					finished = finishedPaths.take();
+				}
+				catch (InterruptedException interrupted)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for simulated paths");
+				}
+
+				if (finished.failure != null)
+				{
+					throw new IOException("Simulating path " + finished.path + " failed", finished.failure);
+				}
+
+				waiting[(int) ((finished.path - firstPath) % numberOfBuffers)] = finished;
+			}
+
+			PathBuffer buffer = waiting[slot];
+			waiting[slot] = null;
+
+			sink.acceptPath(buffer.path, buffer.simulatedPrices);
+
+			freeBuffers.add(buffer);
+			nextPathToDeliver++;
+		}
+	}
+
+	/**
+	 * A reusable buffer for one path
+	 */
+	private static class PathBuffer
+	{
+		double[][] simulatedPrices;
+		long path;
+		Throwable failure;
+
+		PathBuffer(double[][] simulatedPrices)
+		{
+			this.simulatedPrices = simulatedPrices;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package financeproject2;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+/**
+ * Factors the covolatility matrix through its symmetric eigenvalue decomposition V D V^T, using V times the square 
+ * root of D as the factor. Negative eigenvalues, which only show up through rounding or missing data, are clipped 
+ * to zero so the factor is always real.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SymmetricEigenFactorization implements CovolatilityFactorization 
+{
+	@Override
+	public CovolatilityFactor factor(double[][] covolatilityMatrix) 
+	{
+		int numberOfStocks = covolatilityMatrix.length;
+		
+		EigenvalueDecomposition evd = new EigenvalueDecomposition(new Matrix(symmetrize(covolatilityMatrix)));
+		
+		double[][] V = evd.getV().getArray();
+		double[] eigenvalues = evd.getRealEigenvalues();
+		
+		double[][] factor = new double[numberOfStocks][numberOfStocks];
+		for (int column = 0; column < numberOfStocks; column++)
+		{
+			double sqrtEigenvalue = Math.sqrt(Math.max(eigenvalues[column], 0.0));
+			for (int row = 0; row < numberOfStocks; row++)
+			{
+				factor[row][column] = V[row][column] * sqrtEigenvalue;
+			}
+		}
+		
+		return CovolatilityFactor.ofSquareMatrix(factor);
+	}
+	
+	/**
+	 * Averages a matrix with its transpose. Jama only uses the symmetric eigenvalue algorithm when the matrix is 
+	 * exactly symmetric.
+	 * 
+	 * @param matrix
+	 * @return-The symmetric part of the matrix
+	 */
+	static double[][] symmetrize(double[][] matrix) 
+	{
+		double[][] symmetric = new double[matrix.length][matrix.length];
+		
+		for (int row = 0; row < matrix.length; row++)
+		{
+			for (int column = 0; column < matrix.length; column++)
+			{
+				symmetric[row][column] = 0.5 * (matrix[row][column] + matrix[column][row]);
+			}
+		}
+		
+		return symmetric;
+	}
+}
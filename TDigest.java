@@ -0,0 +1,418 @@
+package financeproject2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A merging t-digest (Dunning and Ertl) for estimating percentiles of a stream of values in a few kilobytes.
+ * Values are collected in a small buffer and periodically merged into a sorted list of centroids. Centroids near
+ * the median may hold many values while those near the tails stay small, which keeps the extreme percentiles
+ * accurate. Two digests can be merged, so digests built on different threads or machines can be combined.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class TDigest
+{
+	//Largest compression readFrom accepts, far above any useful value
+	static final double MAXIMUM_COMPRESSION = 10000;
+
+	double compression;
+
+	//Sorted centroids
+	double[] centroidMeans;
+	double[] centroidWeights;
+	int numberOfCentroids;
+
+	//Values (or centroids of another digest) that have not been merged yet
+	double[] bufferedMeans;
+	double[] bufferedWeights;
+	int numberOfBuffered;
+
+	//Scratch space for compress, kept between calls
+	double[] mergedMeans;
+	double[] mergedWeights;
+
+	double totalWeight;
+	double minimum = Double.POSITIVE_INFINITY;
+	double maximum = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Sets up an empty digest
+	 *
+	 * @param compression-Bounds the number of centroids; 50 to 200 are the usual values
+	 */
+	public TDigest(double compression)
+	{
+		this.compression = compression;
+
+		int capacity = (int) Math.ceil(compression) + 1;
+		this.centroidMeans = new double[capacity];
+		this.centroidWeights = new double[capacity];
+
+		int bufferSize = capacity;
+		this.bufferedMeans = new double[bufferSize];
+		this.bufferedWeights = new double[bufferSize];
+	}
+
+	/**
+	 * Adds one value
+	 *
+	 * @param value
+	 */
+	public void add(double value)
+	{
+		add(value, 1.0);
+	}
+
+	/**
+	 * Adds a value with a weight
+	 *
+	 * @param value
+	 * @param weight
+	 */
+	public void add(double value, double weight)
+	{
+		if (numberOfBuffered == bufferedMeans.length)
+		{
+			compress();
+		}
+
+		bufferedMeans[numberOfBuffered] = value;
+		bufferedWeights[numberOfBuffered] = weight;
+		numberOfBuffered++;
+
+		totalWeight += weight;
+		minimum = Math.min(minimum, value);
+		maximum = Math.max(maximum, value);
+	}
+
+	/**
+	 * Adds everything another digest has seen to this one
+	 *
+	 * @param other
+	 */
+	public void merge(TDigest other)
+	{
+		other.compress();
+
+		for (int i = 0; i < other.numberOfCentroids; i++)
+		{
+			add(other.centroidMeans[i], other.centroidWeights[i]);
+		}
+
+		minimum = Math.min(minimum, other.minimum);
+		maximum = Math.max(maximum, other.maximum);
+	}
+
+	/**
+	 * Merges the buffered values into the centroids. The buffer and the centroids are sorted together, then
+	 * neighbours are combined for as long as the combined centroid spans at most one unit of the scale function
+	 * k(q) = compression / (2 pi) * asin(2q - 1).
+	 */
+	public void compress()
+	{
+		if (numberOfBuffered == 0)
+		{
+			return;
+		}
+
+		sortByMean(bufferedMeans, bufferedWeights, 0, numberOfBuffered - 1);
+
+		//Merge the sorted buffer with the (already sorted) centroids
+		int total = numberOfCentroids + numberOfBuffered;
+		if (mergedMeans == null || mergedMeans.length < total)
+		{
+			mergedMeans = new double[total];
+			mergedWeights = new double[total];
+		}
+		double[] means = mergedMeans;
+		double[] weights = mergedWeights;
+
+		int centroid = 0;
+		int buffered = 0;
+		for (int i = 0; i < total; i++)
+		{
+			if (buffered == numberOfBuffered
+					|| (centroid < numberOfCentroids && centroidMeans[centroid] <= bufferedMeans[buffered]))
+			{
+				means[i] = centroidMeans[centroid];
+				weights[i] = centroidWeights[centroid++];
+			}
+			else
+			{
+				means[i] = bufferedMeans[buffered];
+				weights[i] = bufferedWeights[buffered++];
+			}
+		}
+		numberOfBuffered = 0;
+
+		double weightSoFar = 0.0;
+		double limit = weightAtScale(scaleAt(0.0) + 1.0);
+
+		int merged = 0;
+		double clusterMean = means[0];
+		double clusterWeight = weights[0];
+
+		for (int i = 1; i < total; i++)
+		{
+			if (weightSoFar + clusterWeight + weights[i] <= limit)
+			{
+				clusterWeight += weights[i];
+				clusterMean += (means[i] - clusterMean) * weights[i] / clusterWeight;
+			}
+			else
+			{
+				merged = appendCentroid(merged, clusterMean, clusterWeight);
+				weightSoFar += clusterWeight;
+				limit = weightAtScale(scaleAt(weightSoFar / totalWeight) + 1.0);
+
+				clusterMean = means[i];
+				clusterWeight = weights[i];
+			}
+		}
+		numberOfCentroids = appendCentroid(merged, clusterMean, clusterWeight);
+	}
+
+	/**
+	 * Estimates a percentile
+	 *
+	 * @param quantile-Between 0 and 1, for example 0.05 for the 5th percentile
+	 * @return-Estimated value at the quantile, NaN when the digest is empty
+	 */
+	public double quantile(double quantile)
+	{
+		compress();
+
+		if (numberOfCentroids == 0)
+		{
+			return Double.NaN;
+		}
+		if (numberOfCentroids == 1)
+		{
+			return centroidMeans[0];
+		}
+
+		double index = quantile * totalWeight;
+
+		//Below the middle of the first centroid, interpolate from the minimum
+		if (index < centroidWeights[0] / 2)
+		{
+			return minimum + 2 * index / centroidWeights[0] * (centroidMeans[0] - minimum);
+		}
+
+		double weightSoFar = centroidWeights[0] / 2;
+		for (int i = 0; i < numberOfCentroids - 1; i++)
+		{
+			double gap = (centroidWeights[i] + centroidWeights[i + 1]) / 2;
+			if (weightSoFar + gap > index)
+			{
+				double fraction = (index - weightSoFar) / gap;
+				return centroidMeans[i] + fraction * (centroidMeans[i + 1] - centroidMeans[i]);
+			}
+			weightSoFar += gap;
+		}
+
+		//Above the middle of the last centroid, interpolate towards the maximum
+		int last = numberOfCentroids - 1;
+		double fraction = Math.min(1.0, (index - weightSoFar) / (centroidWeights[last] / 2));
+		return centroidMeans[last] + fraction * (maximum - centroidMeans[last]);
+	}
+
+	/**
+	 * Writes the digest in a compact binary form, read back by readFrom
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException
+	{
+		compress();
+
+		out.writeDouble(compression);
+		out.writeDouble(totalWeight);
+		out.writeDouble(minimum);
+		out.writeDouble(maximum);
+
+		out.writeInt(numberOfCentroids);
+		for (int i = 0; i < numberOfCentroids; i++)
+		{
+			out.writeDouble(centroidMeans[i]);
+			out.writeDouble(centroidWeights[i]);
+		}
+	}
+
+	/**
+	 * Reads a digest written by writeTo. The compression and the number of centroids are checked before anything
+	 * is allocated, since the digest may come from another machine.
+	 *
+	 * @param in
+	 * @return-The digest
+	 * @throws IOException-When the sizes are out of range
+	 */
+	public static TDigest readFrom(DataInput in) throws IOException
+	{
+		double compression = in.readDouble();
+		if (!(compression > 0 && compression <= MAXIMUM_COMPRESSION))
+		{
+			throw new IOException("Digest compression " + compression + " is out of range");
+		}
+
+		TDigest digest = new TDigest(compression);
+
+		digest.totalWeight = in.readDouble();
+		digest.minimum = in.readDouble();
+		digest.maximum = in.readDouble();
+
+		int numberOfCentroids = in.readInt();
+		if (numberOfCentroids < 0 || numberOfCentroids > digest.centroidMeans.length)
+		{
+			throw new IOException("Digest with compression " + compression + " cannot hold " + numberOfCentroids
+					+ " centroids");
+		}
+		for (int i = 0; i < numberOfCentroids; i++)
+		{
+			digest.numberOfCentroids = digest.appendCentroid(i, in.readDouble(), in.readDouble());
+		}
+
+		return digest;
+	}
+
+	/**
+	 * Getter for the total weight of the values added
+	 *
+	 * @return
+	 */
+	public double getTotalWeight()
+	{
+		return totalWeight;
+	}
+
+	/**
+	 * Getter for the smallest value added
+	 *
+	 * @return
+	 */
+	public double getMinimum()
+	{
+		return minimum;
+	}
+
+	/**
+	 * Getter for the largest value added
+	 *
+	 * @return
+	 */
+	public double getMaximum()
+	{
+		return maximum;
+	}
+
+	/**
+	 * Getter for the number of centroids, only up to date after compress()
+	 *
+	 * @return
+	 */
+	public int getNumberOfCentroids()
+	{
+		return numberOfCentroids;
+	}
+
+	private int appendCentroid(int index, double mean, double weight)
+	{
+		if (index == centroidMeans.length)
+		{
+			centroidMeans = Arrays.copyOf(centroidMeans, 2 * index);
+			centroidWeights = Arrays.copyOf(centroidWeights, 2 * index);
+		}
+
+		centroidMeans[index] = mean;
+		centroidWeights[index] = weight;
+
+		return index + 1;
+	}
+
+	private double scaleAt(double quantile)
+	{
+		return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1.0, quantile) - 1);
+	}
+
+	/**
+	 * Inverse of the scale function, in units of weight
+	 *
+	 * @param scale
+	 * @return-Total weight at which the scale function reaches the given value
+	 */
+	private double weightAtScale(double scale)
+	{
+		double limitedScale = Math.min(scale, compression / 4);
+
+		return totalWeight * (Math.sin(limitedScale * 2 * Math.PI / compression) + 1) / 2;
+	}
+
+	/**
+	 * Sorts values and their weights together by value, with a quicksort that finishes small ranges by insertion
+	 *
+	 * @param means
+	 * @param weights
+	 * @param low-First index of the range
+	 * @param high-Last index of the range
+	 */
+	private static void sortByMean(double[] means, double[] weights, int low, int high)
+	{
+		while (high - low > 16)
+		{
+			double pivot = means[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j)
+			{
+				while (means[i] < pivot)
+				{
+					i++;
+				}
+				while (means[j] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					swap(means, weights, i++, j--);
+				}
+			}
+
+			//Recurse into the smaller side and loop on the larger one
+			if (j - low < high - i)
+			{
+				sortByMean(means, weights, low, j);
+				low = i;
+			}
+			else
+			{
+				sortByMean(means, weights, i, high);
+				high = j;
+			}
+		}
+
+		for (int i = low + 1; i <= high; i++)
+		{
+			for (int j = i; j > low && means[j] < means[j - 1]; j--)
+			{
+				swap(means, weights, j, j - 1);
+			}
+		}
+	}
+
+	private static void swap(double[] means, double[] weights, int i, int j)
+	{
+		double mean = means[i];
+		means[i] = means[j];
+		means[j] = mean;
+
+		double weight = weights[i];
+		weights[i] = weights[j];
+		weights[j] = weight;
+	}
+}
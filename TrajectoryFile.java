@@ -0,0 +1,215 @@
+package financeproject2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary trajectory file. The file starts with a 64 byte little-endian header
+ * 
+ * <pre>
+ *  0  int   magic number 0x53444554 ("SDET")
+ *  4  int   format version
+ *  8  int   number of stocks
+ * 12  int   number of days stored per path
+ * 16  long  number of paths
+ * 24  long  seed of the simulation
+ * 32  int   bytes per value, 8 for float64 and 4 for float32
+ * 36  int   step stride, the number of simulation steps between two stored days
+ * 40  int   1 when ready flags follow the column blocks, else 0
+ * </pre>
+ * 
+ * The rest of the header is zero, followed by one column block per stock. The block of a stock holds all of its paths one after the other, and 
+ * every path holds its days in order, so the value for (stock, path, day) is found at
+ * 
+ * <pre>
+ * 64 + ((stock * paths + path) * days + day) * bytesPerValue
+ * </pre>
+ * 
+ * A job that only needs one stock reads one contiguous block and never touches the others.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class TrajectoryFile 
+{
+	static final int MAGIC = 0x53444554;
+	
+	static final int VERSION = 1;
+	
+	static final int HEADER_SIZE = 64;
+	
+	//Position in the header of the int marking a file with ready flags
+	static final int READY_FLAGS_POSITION = 40;
+	
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	
+	int numberOfStocks;
+	int numberOfDays;
+	long numberOfPaths;
+	long seed;
+	int bytesPerValue;
+	int stepStride;
+	
+	//Whether the header read says ready flags follow the column blocks, as in a SharedTrajectoryStore
+	boolean hasReadyFlags;
+	
+	/**
+	 * Describes a trajectory file
+	 * 
+	 * @param numberOfStocks
+	 * @param numberOfDays-Number of days stored per path
+	 * @param numberOfPaths
+	 * @param seed-Seed of the simulation
+	 * @param bytesPerValue-8 for float64 or 4 for float32
+	 * @param stepStride-Number of simulation steps between two stored days, usually the upsample factor
+	 */
+	public TrajectoryFile(int numberOfStocks, int numberOfDays, long numberOfPaths, long seed, int bytesPerValue, 
+			int stepStride) 
+	{
+		if (bytesPerValue != 8 && bytesPerValue != 4)
+		{
+			throw new IllegalArgumentException("Values are stored with 8 or 4 bytes, not " + bytesPerValue);
+		}
+		
+		this.numberOfStocks = numberOfStocks;
+		this.numberOfDays = numberOfDays;
+		this.numberOfPaths = numberOfPaths;
+		this.seed = seed;
+		this.bytesPerValue = bytesPerValue;
+		this.stepStride = stepStride;
+	}
+	
+	/**
+	 * Reads a header
+	 * 
+	 * @param header-Buffer holding the first HEADER_SIZE bytes of a file
+	 * @return-The layout described by the header
+	 */
+	static TrajectoryFile readHeader(ByteBuffer header) 
+	{
+		header.order(BYTE_ORDER);
+		
+		if (header.getInt(0) != MAGIC)
+		{
+			throw new IllegalArgumentException("Not a trajectory file");
+		}
+		if (header.getInt(4) != VERSION)
+		{
+			throw new IllegalArgumentException("Unsupported trajectory file version " + header.getInt(4));
+		}
+		if (header.getInt(READY_FLAGS_POSITION) != 0 && header.getInt(READY_FLAGS_POSITION) != 1)
+		{
+			throw new IllegalArgumentException("Unsupported trajectory file marker " 
+					+ header.getInt(READY_FLAGS_POSITION) + " at byte " + READY_FLAGS_POSITION);
+		}
+		
+		TrajectoryFile layout = new TrajectoryFile(header.getInt(8), header.getInt(12), header.getLong(16), 
+				header.getLong(24), header.getInt(32), header.getInt(36));
+		layout.hasReadyFlags = header.getInt(READY_FLAGS_POSITION) == 1;
+		
+		return layout;
+	}
+	
+	/**
+	 * Writes the header, without ready flags; SharedTrajectoryStore marks its own
+	 * 
+	 * @return-Buffer of HEADER_SIZE bytes ready to be written
+	 */
+	ByteBuffer writeHeader() 
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+		
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, numberOfStocks);
+		header.putInt(12, numberOfDays);
+		header.putLong(16, numberOfPaths);
+		header.putLong(24, seed);
+		header.putInt(32, bytesPerValue);
+		header.putInt(36, stepStride);
+		
+		return header;
+	}
+	
+	/**
+	 * Position of the first day of a path of a stock
+	 * 
+	 * @param stock
+	 * @param path
+	 * @return-Byte offset in the file
+	 */
+	long offsetOf(int stock, long path) 
+	{
+		return HEADER_SIZE + ((stock * numberOfPaths + path) * numberOfDays) * bytesPerValue;
+	}
+	
+	/**
+	 * Total size of a file with this layout
+	 * 
+	 * @return-Size in bytes
+	 */
+	long fileSize() 
+	{
+		return offsetOf(numberOfStocks, 0);
+	}
+	
+	/**
+	 * Getter for the number of stocks
+	 * 
+	 * @return
+	 */
+	public int getNumberOfStocks() 
+	{
+		return numberOfStocks;
+	}
+	
+	/**
+	 * Getter for the number of days stored per path
+	 * 
+	 * @return
+	 */
+	public int getNumberOfDays() 
+	{
+		return numberOfDays;
+	}
+	
+	/**
+	 * Getter for the number of paths
+	 * 
+	 * @return
+	 */
+	public long getNumberOfPaths() 
+	{
+		return numberOfPaths;
+	}
+	
+	/**
+	 * Getter for the seed of the simulation
+	 * 
+	 * @return
+	 */
+	public long getSeed() 
+	{
+		return seed;
+	}
+	
+	/**
+	 * Getter for the bytes per value
+	 * 
+	 * @return
+	 */
+	public int getBytesPerValue() 
+	{
+		return bytesPerValue;
+	}
+	
+	/**
+	 * Getter for the number of simulation steps between two stored days
+	 * 
+	 * @return
+	 */
+	public int getStepStride() 
+	{
+		return stepStride;
+	}
+}
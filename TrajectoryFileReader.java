@@ -0,0 +1,168 @@
+package financeproject2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary trajectory file (see TrajectoryFile) through memory maps. The column blocks are mapped lazily 
+ * in segments of whole paths, so reading one stock only maps the block of that stock.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class TrajectoryFileReader implements Closeable 
+{
+	//Largest part of a column block mapped at once
+	private static final long MAXIMUM_SEGMENT_SIZE = 1L << 30;
+	
+	TrajectoryFile layout;
+	
+	FileChannel channel;
+	
+	long pathsPerSegment;
+	
+	//Mapped segments indexed by [stock][segment], mapped the first time they are read
+	MappedByteBuffer[][] segments;
+	
+	/**
+	 * Opens a trajectory file and reads its header
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public TrajectoryFileReader(Path file) throws IOException 
+	{
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		
+		ByteBuffer header = ByteBuffer.allocate(TrajectoryFile.HEADER_SIZE);
+		while (header.hasRemaining())
+		{
+			if (channel.read(header, header.position()) < 0)
+			{
+				throw new IOException("Trajectory file " + file + " is shorter than its header");
+			}
+		}
+		this.layout = TrajectoryFile.readHeader(header);
+		
+		long bytesPerPath = (long) layout.numberOfDays * layout.bytesPerValue;
+		this.pathsPerSegment = Math.max(1, MAXIMUM_SEGMENT_SIZE / Math.max(1, bytesPerPath));
+		
+		int segmentsPerStock = (int) ((layout.numberOfPaths + pathsPerSegment - 1) / pathsPerSegment);
+		this.segments = new MappedByteBuffer[layout.numberOfStocks][segmentsPerStock];
+	}
+	
+	/**
+	 * Getter for the layout of the file
+	 * 
+	 * @return
+	 */
+	public TrajectoryFile getLayout() 
+	{
+		return layout;
+	}
+	
+	/**
+	 * Reads one price
+	 * 
+	 * @param stock
+	 * @param path
+	 * @param day
+	 * @return-The simulated price
+	 * @throws IOException
+	 */
+	public double getPrice(int stock, long path, int day) throws IOException 
+	{
+		MappedByteBuffer segment = segmentOf(stock, path);
+		int index = positionInSegment(path) + day * layout.bytesPerValue;
+		
+		return layout.bytesPerValue == 8 ? segment.getDouble(index) : segment.getFloat(index);
+	}
+	
+	/**
+	 * Reads every day of one path of one stock
+	 * 
+	 * @param stock
+	 * @param path
+	 * @param destination-Receives numberOfDays prices
+	 * @throws IOException
+	 */
+	public void readPath(int stock, long path, double[] destination) throws IOException 
+	{
+		MappedByteBuffer segment = segmentOf(stock, path);
+		int index = positionInSegment(path);
+		
+		for (int day = 0; day < layout.numberOfDays; day++)
+		{
+			destination[day] = layout.bytesPerValue == 8 ? segment.getDouble(index) : segment.getFloat(index);
+			index += layout.bytesPerValue;
+		}
+	}
+	
+	/**
+	 * Reads all paths of one stock
+	 * 
+	 * @param stock
+	 * @return-Prices of the stock indexed by [path][day]
+	 * @throws IOException
+	 */
+	public double[][] readStock(int stock) throws IOException 
+	{
+		double[][] pricesOfStock = new double[(int) layout.numberOfPaths][layout.numberOfDays];
+		
+		for (int path = 0; path < pricesOfStock.length; path++)
+		{
+			readPath(stock, path, pricesOfStock[path]);
+		}
+		
+		return pricesOfStock;
+	}
+	
+	/**
+	 * Finds (and maps if needed) the segment holding a path of a stock
+	 * 
+	 * @param stock
+	 * @param path
+	 * @return-The mapped segment
+	 * @throws IOException
+	 */
+	private MappedByteBuffer segmentOf(int stock, long path) throws IOException 
+	{
+		int segmentIndex = (int) (path / pathsPerSegment);
+		MappedByteBuffer segment = segments[stock][segmentIndex];
+		
+		if (segment == null)
+		{
+			long firstPath = segmentIndex * pathsPerSegment;
+			long pathsInSegment = Math.min(pathsPerSegment, layout.numberOfPaths - firstPath);
+			long size = pathsInSegment * layout.numberOfDays * layout.bytesPerValue;
+			
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, layout.offsetOf(stock, firstPath), size);
+			segment.order(TrajectoryFile.BYTE_ORDER);
+			segments[stock][segmentIndex] = segment;
+		}
+		
+		return segment;
+	}
+	
+	/**
+	 * Byte position of the first day of a path inside its segment
+	 * 
+	 * @param path
+	 * @return
+	 */
+	private int positionInSegment(long path) 
+	{
+		return (int) ((path % pathsPerSegment) * layout.numberOfDays * layout.bytesPerValue);
+	}
+	
+	@Override
+	public void close() throws IOException 
+	{
+		channel.close();
+	}
+}
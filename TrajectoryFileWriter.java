@@ -0,0 +1,105 @@
+package financeproject2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes simulated paths into a binary trajectory file (see TrajectoryFile) through a FileChannel. Every path is 
+ * written to its own place in the column blocks, so paths can be written in any order as soon as they are 
+ * simulated.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class TrajectoryFileWriter implements TrajectorySink, Closeable 
+{
+	TrajectoryFile layout;
+	
+	FileChannel channel;
+	
+	//Holds the days of one path of one stock while it is written
+	ByteBuffer pathBuffer;
+	
+	/**
+	 * Creates the file and writes its header
+	 * 
+	 * @param file
+	 * @param layout-Stocks, days, paths, seed and precision of the file
+	 * @throws IOException
+	 */
+	public TrajectoryFileWriter(Path file, TrajectoryFile layout) throws IOException 
+	{
+		this.layout = layout;
+		
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING);
+		
+		this.pathBuffer = ByteBuffer.allocateDirect(layout.numberOfDays * layout.bytesPerValue)
+				.order(TrajectoryFile.BYTE_ORDER);
+		
+		writeFully(layout.writeHeader(), 0);
+	}
+	
+	/**
+	 * Writes one simulated path. Day d of a stock is taken from step d * stepStride of the simulation.
+	 * 
+	 * @param path-Index of the path
+	 * @param simulatedPrices-Simulated prices of the path indexed by [stock][step]
+	 * @throws IOException
+	 */
+	public synchronized void writePath(long path, double[][] simulatedPrices) throws IOException 
+	{
+		for (int stock = 0; stock < layout.numberOfStocks; stock++)
+		{
+			double[] pricesOfStock = simulatedPrices[stock];
+			
+			pathBuffer.clear();
+			for (int day = 0; day < layout.numberOfDays; day++)
+			{
+				double price = pricesOfStock[day * layout.stepStride];
+				if (layout.bytesPerValue == 8)
+				{
+					pathBuffer.putDouble(price);
+				}
+				else
+				{
+					pathBuffer.putFloat((float) price);
+				}
+			}
+			pathBuffer.flip();
+			
+			writeFully(pathBuffer, layout.offsetOf(stock, path));
+		}
+	}
+	
+	@Override
+	public void acceptPath(long path, double[][] simulatedPrices) throws IOException 
+	{
+		writePath(path, simulatedPrices);
+	}
+	
+	/**
+	 * Writes a whole buffer at a position of the file
+	 * 
+	 * @param buffer
+	 * @param position
+	 * @throws IOException
+	 */
+	private void writeFully(ByteBuffer buffer, long position) throws IOException 
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException 
+	{
+		channel.close();
+	}
+}
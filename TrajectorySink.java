@@ -0,0 +1,23 @@
+package financeproject2;
+
+import java.io.IOException;
+
+/**
+ * Receives simulated paths one at a time as soon as they are produced, such as a file writer or a statistics 
+ * aggregator. The buffer handed to a sink is reused for later paths once acceptPath returns, so a sink that 
+ * wants to keep a path has to copy it.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public interface TrajectorySink 
+{
+	/**
+	 * Takes in one simulated path
+	 * 
+	 * @param path-Index of the path
+	 * @param simulatedPrices-Simulated prices of the path indexed by [stock][step]
+	 * @throws IOException
+	 */
+	void acceptPath(long path, double[][] simulatedPrices) throws IOException;
+}
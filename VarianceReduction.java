@@ -0,0 +1,21 @@
+package financeproject2;
+
+/**
+ * How the paths of a Monte Carlo run are drawn
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public enum VarianceReduction 
+{
+	/**
+	 * Every path draws independent Gaussian samples
+	 */
+	NONE,
+	
+	/**
+	 * Paths come in pairs (2k, 2k + 1) where the second path reuses the Gaussian samples of the first with their 
+	 * sign flipped. The errors of the two paths partly cancel, and estimates should be made from the pair averages.
+	 */
+	ANTITHETIC
+}
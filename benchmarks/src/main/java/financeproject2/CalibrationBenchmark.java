@@ -0,0 +1,77 @@
+package financeproject2;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calibration of drifts, volatilities and covolatilities from daily prices, through the ArrayList code of
+ * GatherDriftsAndVolatilities, the single pass OnlineStockStatistics and the tiled CovarianceEngine
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalibrationBenchmark
+{
+	@Param({ "6", "100", "1000" })
+	int numberOfStocks;
+
+	@Param({ "250", "2500" })
+	int numberOfDays;
+
+	double[][] dailyPrices;
+
+	ArrayList<ArrayList<Double>> dailyPricesOfStocks;
+
+	ArrayList<ArrayList<Double>> logReturnsOfStocks;
+
+	@Setup(Level.Trial)
+	public void generateStockData()
+	{
+		dailyPrices = SyntheticMarket.dailyPrices(numberOfStocks, numberOfDays, 5760);
+		dailyPricesOfStocks = SyntheticMarket.toArrayLists(dailyPrices);
+		logReturnsOfStocks = GatherDriftsAndVolatilities.generateLogReturnsOfStocks(dailyPricesOfStocks);
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Double>> logReturns()
+	{
+		return GatherDriftsAndVolatilities.generateLogReturnsOfStocks(dailyPricesOfStocks);
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Double>> driftsAndVolatilities()
+	{
+		return GatherDriftsAndVolatilities.gatherStatisticsForStocks(logReturnsOfStocks);
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Double>> onlineCovolatilityMatrix()
+	{
+		return OnlineStockStatistics.fromDailyPrices(dailyPrices).getCovolatilityMatrix();
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Double>> tiledCovolatilityMatrix()
+	{
+		return CovolatilityMatrixCalculator.generateCovolatilityMatrix(dailyPricesOfStocks, null, logReturnsOfStocks);
+	}
+}
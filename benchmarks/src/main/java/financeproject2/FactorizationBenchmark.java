@@ -0,0 +1,82 @@
+package financeproject2;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Factoring the covolatility matrix: the original SDESystem.MatrixSquareRoot and the pluggable factorizations
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FactorizationBenchmark
+{
+	@Param({ "6", "100", "1000" })
+	int numberOfStocks;
+
+	//With fewer days than stocks the covolatility matrix is singular and Cholesky falls back to eigenvalues
+	@Param({ "250", "2500" })
+	int numberOfDays;
+
+	ArrayList<ArrayList<Double>> covolatilityMatrix;
+
+	double[][] basicCovolatilityMatrix;
+
+	CovolatilityFactorization cholesky = new CholeskyFactorization();
+
+	CovolatilityFactorization symmetricEigen = new SymmetricEigenFactorization();
+
+	CovolatilityFactorization principalComponents = new PrincipalComponentFactorization(10);
+
+	@Setup(Level.Trial)
+	public void computeCovolatilityMatrix()
+	{
+		double[][] dailyPrices = SyntheticMarket.dailyPrices(numberOfStocks, numberOfDays, 5760);
+
+		covolatilityMatrix = OnlineStockStatistics.fromDailyPrices(dailyPrices).getCovolatilityMatrix();
+		basicCovolatilityMatrix = SDESystem.convertToBasicArrayMatrix(covolatilityMatrix);
+	}
+
+	@Benchmark
+	public ArrayList<ArrayList<Double>> matrixSquareRoot()
+	{
+		return SDESystem.MatrixSquareRoot(covolatilityMatrix);
+	}
+
+	@Benchmark
+	public CovolatilityFactor choleskyFactor()
+	{
+		return cholesky.factor(basicCovolatilityMatrix);
+	}
+
+	@Benchmark
+	public CovolatilityFactor symmetricEigenFactor()
+	{
+		return symmetricEigen.factor(basicCovolatilityMatrix);
+	}
+
+	@Benchmark
+	public CovolatilityFactor principalComponentFactor()
+	{
+		return principalComponents.factor(basicCovolatilityMatrix);
+	}
+}
@@ -0,0 +1,85 @@
+package financeproject2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing the same prices from a file in the block format of StockData.txt and from one csv file per stock, as
+ * downloaded from finance sites
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark
+{
+	@Param({ "6", "100", "1000" })
+	int numberOfStocks;
+
+	@Param({ "250", "2500" })
+	int numberOfDays;
+
+	Path stockDataFile;
+
+	Path[] csvFiles;
+
+	@Setup(Level.Trial)
+	public void writeStockData() throws IOException
+	{
+		double[][] dailyPrices = SyntheticMarket.dailyPrices(numberOfStocks, numberOfDays, 5760);
+
+		stockDataFile = Files.createTempFile("StockData", ".txt");
+		Files.writeString(stockDataFile, SyntheticMarket.toBlockFormat(dailyPrices), StandardCharsets.US_ASCII);
+
+		csvFiles = new Path[numberOfStocks];
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			csvFiles[stock] = Files.createTempFile("Stock" + stock, ".csv");
+			Files.writeString(csvFiles[stock], SyntheticMarket.toCsv(dailyPrices[stock]), StandardCharsets.US_ASCII);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteStockData() throws IOException
+	{
+		Files.deleteIfExists(stockDataFile);
+		for (Path csvFile : csvFiles)
+		{
+			Files.deleteIfExists(csvFile);
+		}
+	}
+
+	@Benchmark
+	public double[][] parseBlockFormat() throws IOException
+	{
+		return StockDataLoader.load(stockDataFile);
+	}
+
+	@Benchmark
+	public double[][] parseCsv() throws IOException
+	{
+		return StockDataLoader.load(csvFiles);
+	}
+}
@@ -0,0 +1,111 @@
+package financeproject2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A single Euler-Maruyama step and a full simulated path, one path at a time and in blocks of paths
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathSteppingBenchmark
+{
+	@Param({ "6", "100", "1000" })
+	int numberOfStocks;
+
+	//Length of the history the system is calibrated on, which is also the number of days simulated
+	@Param({ "250", "2500" })
+	int numberOfDays;
+
+	@Param({ "1", "5" })
+	int upSampleFactor;
+
+	MonteCarloPathEngine engine;
+
+	double[][] pathBuffer;
+
+	BatchedPathEngine batchedEngine;
+
+	//Keeps the prices of the last block observed, so the batched work cannot be optimized away
+	double[][] lastBlockPrices;
+
+	PathBlockObserver blockObserver = (firstPath, numberOfPaths, step, blockPrices) -> lastBlockPrices = blockPrices;
+
+	long nextPath;
+
+	//A simulation holding two steps, whose second step is recomputed by stepOnce
+	NumericalSDESolution stepSolution;
+
+	GaussianStream stepStream;
+
+	@Setup(Level.Trial)
+	public void calibrate()
+	{
+		double[][] dailyPrices = SyntheticMarket.dailyPrices(numberOfStocks, numberOfDays, 5760);
+		SDESystem system = SyntheticMarket.calibrate(dailyPrices);
+
+		double[] initialPrices = new double[numberOfStocks];
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			initialPrices[stock] = dailyPrices[stock][0];
+		}
+
+		int numberOfSteps = numberOfDays * upSampleFactor;
+		engine = new MonteCarloPathEngine(system, initialPrices, numberOfSteps, upSampleFactor, 5760);
+		pathBuffer = new double[numberOfStocks][numberOfSteps];
+
+		batchedEngine = new BatchedPathEngine(engine);
+
+		stepSolution = new NumericalSDESolution(system, initialPrices, new double[numberOfStocks][2],
+				upSampleFactor, new PseudoRandomGaussianSource(5760).forPath(0));
+		stepStream = new PseudoRandomGaussianSource(5761).forPath(0);
+	}
+
+	@Benchmark
+	public double[][] stepOnce()
+	{
+		stepStream.nextGaussians(stepSolution.nDimensionalGaussianSample);
+		stepSolution.iterate(1);
+
+		return stepSolution.simulatedPrices;
+	}
+
+	@Benchmark
+	public double[][] fullPath()
+	{
+		engine.simulatePath(pathBuffer, nextPath++);
+
+		return pathBuffer;
+	}
+
+	//A block of paths stepped together without storing them, reported per path to compare with fullPath
+	@Benchmark
+	@OperationsPerInvocation(BatchedPathEngine.DEFAULT_PATHS_PER_BLOCK)
+	public double[][] fullPathBatched()
+	{
+		batchedEngine.simulateBlock(nextPath, BatchedPathEngine.DEFAULT_PATHS_PER_BLOCK, blockObserver);
+		nextPath += BatchedPathEngine.DEFAULT_PATHS_PER_BLOCK;
+
+		return lastBlockPrices;
+	}
+}
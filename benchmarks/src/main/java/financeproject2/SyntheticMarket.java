@@ -0,0 +1,136 @@
+package financeproject2;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates stock data of any size for the benchmarks. The log returns follow a one factor model, so the stocks
+ * are correlated the way real stocks of one market are and the covolatility matrix has the usual structure.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+public class SyntheticMarket
+{
+	//Correlation of every stock with the market factor
+	private static final double MARKET_LOADING = 0.6;
+
+	/**
+	 * Simulates daily prices
+	 *
+	 * @param numberOfStocks
+	 * @param numberOfDays
+	 * @param seed
+	 * @return-Daily prices indexed by [stock][day]
+	 */
+	public static double[][] dailyPrices(int numberOfStocks, int numberOfDays, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		double timeStep = 1.0 / 250;
+
+		double[] drifts = new double[numberOfStocks];
+		double[] volatilities = new double[numberOfStocks];
+		double[][] dailyPrices = new double[numberOfStocks][numberOfDays];
+		for (int stock = 0; stock < numberOfStocks; stock++)
+		{
+			drifts[stock] = random.nextDouble(-0.1, 0.2);
+			volatilities[stock] = random.nextDouble(0.15, 0.6);
+			dailyPrices[stock][0] = random.nextDouble(10, 500);
+		}
+
+		double idiosyncraticLoading = Math.sqrt(1 - MARKET_LOADING * MARKET_LOADING);
+		for (int day = 1; day < numberOfDays; day++)
+		{
+			double market = random.nextGaussian();
+			for (int stock = 0; stock < numberOfStocks; stock++)
+			{
+				double shock = MARKET_LOADING * market + idiosyncraticLoading * random.nextGaussian();
+				double logReturn = drifts[stock] * timeStep + volatilities[stock] * Math.sqrt(timeStep) * shock;
+
+				dailyPrices[stock][day] = dailyPrices[stock][day - 1] * Math.exp(logReturn);
+			}
+		}
+
+		return dailyPrices;
+	}
+
+	/**
+	 * Writes daily prices in the block format of StockData.txt
+	 *
+	 * @param dailyPrices-Daily prices indexed by [stock][day]
+	 * @return-Contents of the file
+	 */
+	public static String toBlockFormat(double[][] dailyPrices)
+	{
+		StringBuilder text = new StringBuilder("Order");
+		for (int stock = 0; stock < dailyPrices.length; stock++)
+		{
+			text.append(stock == 0 ? " " : ", ").append("Stock").append(stock);
+		}
+		text.append("\n\n");
+
+		for (int stock = 0; stock < dailyPrices.length; stock++)
+		{
+			text.append("Stock").append(stock).append("\n{\n");
+			for (double price : dailyPrices[stock])
+			{
+				text.append(String.format(Locale.ROOT, "%.6f", price)).append('\n');
+			}
+			text.append("}\n\n");
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Writes the daily prices of one stock as the csv file downloaded from finance sites, one row per weekday
+	 *
+	 * @param dailyPricesOfStock
+	 * @return-Contents of the file
+	 */
+	public static String toCsv(double[] dailyPricesOfStock)
+	{
+		StringBuilder text = new StringBuilder("Date,Open,High,Low,Close,Adj Close,Volume\n");
+
+		LocalDate date = LocalDate.of(2000, 1, 3);
+		for (double price : dailyPricesOfStock)
+		{
+			String formattedPrice = String.format(Locale.ROOT, "%.6f", price);
+			text.append(date).append(',').append(formattedPrice).append(',').append(formattedPrice).append(',')
+					.append(formattedPrice).append(',').append(formattedPrice).append(',').append(formattedPrice)
+					.append(",1000000\n");
+
+			date = date.plusDays(date.getDayOfWeek() == DayOfWeek.FRIDAY ? 3 : 1);
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Calibrates an SDE system on daily prices
+	 *
+	 * @param dailyPrices-Daily prices indexed by [stock][day]
+	 * @return
+	 */
+	public static SDESystem calibrate(double[][] dailyPrices)
+	{
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPrices);
+
+		return new SDESystem(GatherDriftsAndVolatilities.gatherStatisticsForStocks(statistics),
+				statistics.getCovolatilityMatrix());
+	}
+
+	/**
+	 * Converts daily prices into the ArrayList form used by the original calibration code
+	 *
+	 * @param dailyPrices
+	 * @return
+	 */
+	public static ArrayList<ArrayList<Double>> toArrayLists(double[][] dailyPrices)
+	{
+		return StockDataLoader.toArrayListMatrix(dailyPrices);
+	}
+}
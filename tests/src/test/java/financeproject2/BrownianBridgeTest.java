@@ -0,0 +1,125 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the bridge walked forward in time against the bridge built a whole path at a time, and the Sobol source
+ * built on it against the path it handed out before.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class BrownianBridgeTest
+{
+	@Test
+	void walkMatchesTransform()
+	{
+		SplittableRandom random = new SplittableRandom(8);
+
+		for (int numberOfSteps : new int[] { 1, 2, 3, 4, 5, 7, 8, 9, 63, 64, 65, 100, 257, 1000, 7500 })
+		{
+			for (int numberOfDimensions : new int[] { 1, 3 })
+			{
+				BrownianBridge bridge = new BrownianBridge(numberOfSteps);
+
+				double[] samples = new double[numberOfSteps * numberOfDimensions];
+				for (int c = 0; c < samples.length; c++)
+				{
+					samples[c] = random.nextGaussian();
+				}
+
+				double[] expected = new double[samples.length];
+				double[] path = new double[numberOfSteps];
+				for (int k = 0; k < numberOfDimensions; k++)
+				{
+					bridge.transform(samples, expected, k, numberOfDimensions, path);
+				}
+
+				boolean[] isUsed = new boolean[samples.length];
+				BrownianBridge.Walk walk = bridge.new Walk(numberOfDimensions, (i, dimension) ->
+				{
+					int c = i * numberOfDimensions + dimension;
+					assertEquals(false, isUsed[c], "sample " + c + " asked for twice");
+					isUsed[c] = true;
+					return samples[c];
+				});
+
+				double[] increments = new double[numberOfDimensions];
+				for (int step = 0; step < numberOfSteps; step++)
+				{
+					walk.nextIncrements(increments);
+					for (int k = 0; k < numberOfDimensions; k++)
+					{
+						assertEquals(expected[step * numberOfDimensions + k], increments[k], 0.0,
+								numberOfSteps + " steps, dimension " + k + ", step " + step);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void sobolPathsMatchWholePathBridge()
+	{
+		int noiseDimension = 4;
+		int numberOfSteps = 101;
+		SobolGaussianSource source = new SobolGaussianSource(noiseDimension, numberOfSteps, 99, 1024);
+
+		BrownianBridge bridge = new BrownianBridge(numberOfSteps - 1);
+		double[] path = new double[numberOfSteps - 1];
+
+		for (long pathIndex = 0; pathIndex < 16; pathIndex++)
+		{
+			//Every coordinate of these paths comes from the Sobol point
+			double[] samples = new double[noiseDimension * (numberOfSteps - 1)];
+			source.sequence.point(pathIndex, samples);
+			for (int c = 0; c < samples.length; c++)
+			{
+				samples[c] = NormalDistribution.inverseCumulativeProbability(samples[c]);
+			}
+
+			double[] expected = new double[samples.length];
+			for (int k = 0; k < noiseDimension; k++)
+			{
+				bridge.transform(samples, expected, k, noiseDimension, path);
+			}
+
+			GaussianStream stream = source.forPath(pathIndex);
+			double[] sample = new double[noiseDimension];
+			for (int step = 0; step < numberOfSteps - 1; step++)
+			{
+				stream.nextGaussians(sample);
+				for (int k = 0; k < noiseDimension; k++)
+				{
+					assertEquals(expected[step * noiseDimension + k], sample[k], 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	void sobolPathsAreReproducible()
+	{
+		//Most coordinates are filled in from the stream of the path
+		SobolGaussianSource source = new SobolGaussianSource(50, 750, 3, 64);
+
+		double[] first = new double[50];
+		double[] second = new double[50];
+		GaussianStream firstStream = source.forPath(5);
+		source.forPath(6).nextGaussians(second);
+		GaussianStream secondStream = source.forPath(5);
+		for (int step = 0; step < 749; step++)
+		{
+			firstStream.nextGaussians(first);
+			secondStream.nextGaussians(second);
+			for (int k = 0; k < 50; k++)
+			{
+				assertEquals(first[k], second[k], 0.0);
+			}
+		}
+	}
+}
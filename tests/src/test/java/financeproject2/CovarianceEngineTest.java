@@ -0,0 +1,188 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the tiled covariance against a dense calculation, and against a pair-by-pair calculation when returns
+ * are missing. The numbers of stocks are not multiples of TILE_SIZE so that partial panels are covered.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class CovarianceEngineTest
+{
+	static final double RELATIVE_TOLERANCE = 1e-12;
+
+	@Test
+	void completeReturnsMatchDenseCovariance()
+	{
+		int numberOfStocks = 2 * CovarianceEngine.TILE_SIZE + 7;
+		double[][] returns = returnsOf(numberOfStocks, 301, 23);
+
+		double[] covariances = new CovarianceEngine().covariance(returns);
+
+		//C = X^T X / T for the centered returns X
+		int numberOfDays = returns.length;
+		double[] means = new double[numberOfStocks];
+		for (double[] returnsOnDay : returns)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				means[i] += returnsOnDay[i] / numberOfDays;
+			}
+		}
+
+		double[][] centered = new double[numberOfDays][numberOfStocks];
+		for (int day = 0; day < numberOfDays; day++)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				centered[day][i] = returns[day][i] - means[i];
+			}
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				double sum = 0.0;
+				for (int day = 0; day < numberOfDays; day++)
+				{
+					sum += centered[day][i] * centered[day][j];
+				}
+
+				assertClose(sum / numberOfDays, covariances, numberOfStocks, i, j);
+			}
+		}
+	}
+
+	@Test
+	void missingReturnsMatchPairwiseCovariance()
+	{
+		int numberOfStocks = CovarianceEngine.TILE_SIZE + 13;
+		SplittableRandom random = new SplittableRandom(29);
+
+		//Ragged histories, as for stocks listed on different days, with a few days missing inside them
+		double[][] returnsOfStocks = new double[numberOfStocks][];
+		double[][] complete = returnsOf(numberOfStocks, 260, 31);
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			returnsOfStocks[i] = new double[i % 5 == 0 ? 40 + random.nextInt(200) : 260];
+			for (int day = 0; day < returnsOfStocks[i].length; day++)
+			{
+				returnsOfStocks[i][day] = random.nextInt(20) == 0 ? Double.NaN : complete[day][i];
+			}
+		}
+		double[][] returns = CovarianceEngine.toDayMajor(returnsOfStocks);
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		double[] covariances;
+		try
+		{
+			covariances = new CovarianceEngine(pool).covariance(returns);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				assertClose(pairwiseCovariance(returns, i, j), covariances, numberOfStocks, i, j);
+			}
+		}
+	}
+
+	@Test
+	void stocksWithoutSharedDaysGetNaN()
+	{
+		double[][] returns = {
+				{ 0.01, Double.NaN, 0.02 },
+				{ 0.03, Double.NaN, -0.01 },
+				{ Double.NaN, 0.02, 0.00 },
+				{ Double.NaN, -0.01, 0.01 } };
+
+		double[] covariances = new CovarianceEngine().covariance(returns);
+
+		assertTrue(Double.isNaN(covariances[0 * 3 + 1]));
+		assertTrue(Double.isNaN(covariances[1 * 3 + 0]));
+		assertClose(pairwiseCovariance(returns, 0, 2), covariances, 3, 0, 2);
+		assertClose(pairwiseCovariance(returns, 1, 1), covariances, 3, 1, 1);
+	}
+
+	/**
+	 * Population covariance over the days both stocks have a return for, each centered on its mean over those days
+	 */
+	static double pairwiseCovariance(double[][] returns, int first, int second)
+	{
+		int sharedDays = 0;
+		double firstMean = 0.0;
+		double secondMean = 0.0;
+		for (double[] returnsOnDay : returns)
+		{
+			if (!Double.isNaN(returnsOnDay[first]) && !Double.isNaN(returnsOnDay[second]))
+			{
+				sharedDays++;
+				firstMean += returnsOnDay[first];
+				secondMean += returnsOnDay[second];
+			}
+		}
+		if (sharedDays == 0)
+		{
+			return Double.NaN;
+		}
+		firstMean /= sharedDays;
+		secondMean /= sharedDays;
+
+		double sum = 0.0;
+		for (double[] returnsOnDay : returns)
+		{
+			if (!Double.isNaN(returnsOnDay[first]) && !Double.isNaN(returnsOnDay[second]))
+			{
+				sum += (returnsOnDay[first] - firstMean) * (returnsOnDay[second] - secondMean);
+			}
+		}
+
+		return sum / sharedDays;
+	}
+
+	static void assertClose(double expected, double[] covariances, int numberOfStocks, int row, int column)
+	{
+		//Scaled by the variances so that near zero covariances are held to the same standard
+		double scale = Math.sqrt(Math.abs(covariances[row * numberOfStocks + row]
+				* covariances[column * numberOfStocks + column]));
+
+		assertEquals(expected, covariances[row * numberOfStocks + column], RELATIVE_TOLERANCE * scale,
+				"covariance " + row + " " + column);
+		assertEquals(covariances[row * numberOfStocks + column], covariances[column * numberOfStocks + row], 0.0,
+				"symmetry " + row + " " + column);
+	}
+
+	/**
+	 * Returns [day][stock] driven by a common factor, with a different mean for each stock
+	 */
+	static double[][] returnsOf(int numberOfStocks, int numberOfDays, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+
+		double[][] returns = new double[numberOfDays][numberOfStocks];
+		for (double[] returnsOnDay : returns)
+		{
+			double market = random.nextGaussian();
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				returnsOnDay[i] = 0.0001 * (i % 7) + 0.01 * (0.5 * market + random.nextGaussian());
+			}
+		}
+
+		return returns;
+	}
+}
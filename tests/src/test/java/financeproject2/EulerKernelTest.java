@@ -0,0 +1,154 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the double[] Euler-Maruyama kernel against the per-step ArrayList code it replaced, run on the same
+ * Gaussian samples.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class EulerKernelTest
+{
+	static final double RELATIVE_TOLERANCE = 1e-12;
+
+	@Test
+	void kernelMatchesPerStepCode()
+	{
+		for (int upSampleFactor : new int[] { 1, 4 })
+		{
+			SDESystem system = systemOf(5, 11);
+			double[] initialPrices = { 101.5, 47.25, 12.0, 250.75, 88.0 };
+			int numberOfSteps = 60 * upSampleFactor;
+
+			double[][] simulatedPrices = new NumericalSDESolution(system, initialPrices,
+					new double[initialPrices.length][numberOfSteps], upSampleFactor, new SplittableRandom(42))
+					.getSimulatedPrices();
+
+			ArrayList<ArrayList<Double>> expectedPrices = perStepPrices(system, initialPrices, numberOfSteps,
+					upSampleFactor, new SplittableRandom(42));
+
+			for (int i = 0; i < initialPrices.length; i++)
+			{
+				for (int j = 0; j < numberOfSteps; j++)
+				{
+					double expected = expectedPrices.get(i).get(j);
+					assertEquals(expected, simulatedPrices[i][j], RELATIVE_TOLERANCE * Math.abs(expected),
+							"stock " + i + " step " + j + " upsample " + upSampleFactor);
+				}
+			}
+		}
+	}
+
+	@Test
+	void dailyPricesMatchSimulatedPrices()
+	{
+		SDESystem system = systemOf(3, 5);
+		double[] initialPrices = { 10.0, 20.0, 30.0 };
+
+		NumericalSDESolution solution = new NumericalSDESolution(system, initialPrices, new double[3][25], 1,
+				new SplittableRandom(7));
+
+		double[][] simulatedPrices = solution.getSimulatedPrices();
+		ArrayList<ArrayList<Double>> dailyPrices = solution.getDailyPrices();
+		for (int i = 0; i < simulatedPrices.length; i++)
+		{
+			for (int j = 0; j < simulatedPrices[i].length; j++)
+			{
+				assertEquals(simulatedPrices[i][j], dailyPrices.get(i).get(j), 0.0);
+			}
+		}
+	}
+
+	/**
+	 * The step as the ArrayList code took it, with the volatility (rather than the drift) in the growth rate:
+	 * S_j+1 = S_j + (mu + sigma / 2) S_j dt + S_j / sqrt(250 upSampleFactor) * (L z)
+	 */
+	static ArrayList<ArrayList<Double>> perStepPrices(SDESystem system, double[] initialPrices, int numberOfSteps,
+			int upSampleFactor, SplittableRandom gaussianSampler)
+	{
+		ArrayList<Double> drifts = system.getDriftsOfStocks();
+		ArrayList<Double> volatilities = system.getVolatilitiesOfStocks();
+		ArrayList<ArrayList<Double>> covolatilityMatrixSqrt = system.getCovolatilityMatrixSqrt();
+
+		ArrayList<ArrayList<Double>> dailyPrices = new ArrayList<ArrayList<Double>>();
+		for (double initialPrice : initialPrices)
+		{
+			dailyPrices.add(new ArrayList<Double>(List.of(initialPrice)));
+		}
+
+		for (int day = 1; day < numberOfSteps; day++)
+		{
+			ArrayList<Double> sample = new ArrayList<Double>();
+			for (int i = 0; i < initialPrices.length; i++)
+			{
+				sample.add(gaussianSampler.nextGaussian());
+			}
+
+			for (int i = 0; i < initialPrices.length; i++)
+			{
+				double Sj = dailyPrices.get(i).get(day - 1);
+
+				double correlated = 0.0;
+				for (int k = 0; k < sample.size(); k++)
+				{
+					correlated += covolatilityMatrixSqrt.get(i).get(k) * sample.get(k);
+				}
+
+				double growth = (drifts.get(i) + 0.5 * volatilities.get(i)) * Sj / (250 * upSampleFactor);
+				double diffusion = Sj / Math.sqrt(250 * upSampleFactor) * correlated;
+
+				dailyPrices.get(i).add(Sj + growth + diffusion);
+			}
+		}
+
+		return dailyPrices;
+	}
+
+	/**
+	 * A system with random drifts and a random positive definite covolatility matrix
+	 */
+	static SDESystem systemOf(int numberOfStocks, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+
+		double[][] factor = new double[numberOfStocks][numberOfStocks];
+		for (double[] row : factor)
+		{
+			Arrays.setAll(row, k -> 0.2 * random.nextGaussian());
+		}
+
+		ArrayList<ArrayList<Double>> covolatilityMatrix = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			ArrayList<Double> row = new ArrayList<Double>();
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				double entry = i == j ? 0.01 : 0.0;
+				for (int k = 0; k < numberOfStocks; k++)
+				{
+					entry += factor[i][k] * factor[j][k];
+				}
+				row.add(entry);
+			}
+			covolatilityMatrix.add(row);
+		}
+
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double drift = 0.05 + 0.1 * random.nextGaussian();
+			driftsAndVolatilities.add(new ArrayList<Double>(List.of(drift, covolatilityMatrix.get(i).get(i))));
+		}
+
+		return new SDESystem(driftsAndVolatilities, covolatilityMatrix);
+	}
+}
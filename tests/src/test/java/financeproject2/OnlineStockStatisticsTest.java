@@ -0,0 +1,198 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the Welford updates of the streaming statistics against a two-pass calculation over the same log returns,
+ * and against the ArrayList calibration they replaced in the driver.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class OnlineStockStatisticsTest
+{
+	static final double RELATIVE_TOLERANCE = 1e-10;
+
+	@Test
+	void onlineStatisticsMatchTwoPass()
+	{
+		double[][] logReturns = logReturnsOf(4, 500, 0.0, 3);
+
+		OnlineStockStatistics statistics = new OnlineStockStatistics(4);
+		for (double[] logReturnsOnDay : logReturns)
+		{
+			statistics.addLogReturns(logReturnsOnDay);
+		}
+
+		assertMatchesTwoPass(statistics, logReturns, 0, logReturns.length);
+	}
+
+	@Test
+	void onlineStatisticsKeepPrecisionFarFromZero()
+	{
+		//With an offset 1e5 times the spread the one-pass sum of squares keeps only about six digits
+		double[][] logReturns = logReturnsOf(3, 2000, 1e3, 5);
+
+		OnlineStockStatistics statistics = new OnlineStockStatistics(3);
+		for (double[] logReturnsOnDay : logReturns)
+		{
+			statistics.addLogReturns(logReturnsOnDay);
+		}
+
+		assertMatchesTwoPass(statistics, logReturns, 0, logReturns.length, 1e-9);
+	}
+
+	@Test
+	void statisticsFromPricesMatchTwoPass()
+	{
+		double[][] logReturns = logReturnsOf(3, 250, 0.0, 13);
+
+		//Prices [stock][day] whose log returns are the ones above
+		double[][] dailyPrices = new double[3][logReturns.length + 1];
+		for (int i = 0; i < 3; i++)
+		{
+			dailyPrices[i][0] = 50.0 + 10.0 * i;
+			for (int day = 0; day < logReturns.length; day++)
+			{
+				dailyPrices[i][day + 1] = dailyPrices[i][day] * Math.exp(logReturns[day][i]);
+			}
+		}
+
+		OnlineStockStatistics statistics = OnlineStockStatistics.fromDailyPrices(dailyPrices);
+
+		assertMatchesTwoPass(statistics, logReturns, 0, logReturns.length);
+	}
+
+	@Test
+	void statisticsMatchArrayListCalibration()
+	{
+		double[][] logReturns = logReturnsOf(5, 300, 0.0, 19);
+
+		ArrayList<ArrayList<Double>> dailyPricesOfStocks = new ArrayList<ArrayList<Double>>();
+		OnlineStockStatistics statistics = new OnlineStockStatistics(5);
+		double[] pricesOnDay = { 20.0, 40.0, 60.0, 80.0, 100.0 };
+		for (int i = 0; i < 5; i++)
+		{
+			dailyPricesOfStocks.add(new ArrayList<Double>(List.of(pricesOnDay[i])));
+		}
+		statistics.addPrices(pricesOnDay);
+		for (double[] logReturnsOnDay : logReturns)
+		{
+			for (int i = 0; i < 5; i++)
+			{
+				pricesOnDay[i] *= Math.exp(logReturnsOnDay[i]);
+				dailyPricesOfStocks.get(i).add(pricesOnDay[i]);
+			}
+			statistics.addPrices(pricesOnDay);
+		}
+
+		ArrayList<ArrayList<Double>> logReturnsOfStocks =
+				GatherDriftsAndVolatilities.generateLogReturnsOfStocks(dailyPricesOfStocks);
+		ArrayList<ArrayList<Double>> driftsAndVolatilities =
+				GatherDriftsAndVolatilities.gatherStatisticsForStocks(logReturnsOfStocks);
+		ArrayList<ArrayList<Double>> covolatilityMatrix = CovolatilityMatrixCalculator
+				.generateCovolatilityMatrix(dailyPricesOfStocks, driftsAndVolatilities, logReturnsOfStocks);
+
+		for (int i = 0; i < 5; i++)
+		{
+			double drift = driftsAndVolatilities.get(i).get(0);
+			double volatility = driftsAndVolatilities.get(i).get(1);
+			assertEquals(drift, statistics.getDriftOfStock(i), RELATIVE_TOLERANCE * Math.abs(drift), "drift " + i);
+			assertEquals(volatility, statistics.getVolatilityOfStock(i), RELATIVE_TOLERANCE * volatility,
+					"volatility " + i);
+			for (int j = 0; j < 5; j++)
+			{
+				double covolatility = covolatilityMatrix.get(i).get(j);
+				assertEquals(covolatility, statistics.getCovolatility(i, j), RELATIVE_TOLERANCE * volatility,
+						"covolatility " + i + " " + j);
+			}
+		}
+	}
+
+	/**
+	 * Compares the drifts and covolatilities with the mean and population covariance of the days [from, to)
+	 */
+	static void assertMatchesTwoPass(OnlineStockStatistics statistics, double[][] logReturns, int from, int to)
+	{
+		assertMatchesTwoPass(statistics, logReturns, from, to, RELATIVE_TOLERANCE);
+	}
+
+	static void assertMatchesTwoPass(OnlineStockStatistics statistics, double[][] logReturns, int from, int to,
+			double relativeTolerance)
+	{
+		int numberOfStocks = logReturns[0].length;
+		int numberOfDays = to - from;
+
+		double[] means = new double[numberOfStocks];
+		for (int day = from; day < to; day++)
+		{
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				means[i] += logReturns[day][i];
+			}
+		}
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			means[i] /= numberOfDays;
+		}
+
+		assertEquals(numberOfDays, statistics.getNumberOfObservations());
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			double drift = 250.0 * means[i];
+			assertEquals(drift, statistics.getDriftOfStock(i), relativeTolerance * Math.abs(drift), "drift " + i);
+
+			for (int j = 0; j < numberOfStocks; j++)
+			{
+				double sum = 0.0;
+				for (int day = from; day < to; day++)
+				{
+					sum += (logReturns[day][i] - means[i]) * (logReturns[day][j] - means[j]);
+				}
+				double covolatility = 250.0 * sum / numberOfDays;
+
+				//Scaled by the variances so that near zero covariances are held to the same standard
+				double scale = 250.0 * Math.sqrt(variance(logReturns, i, means[i], from, to)
+						* variance(logReturns, j, means[j], from, to));
+				assertEquals(covolatility, statistics.getCovolatility(i, j), relativeTolerance * scale,
+						"covolatility " + i + " " + j);
+			}
+		}
+	}
+
+	static double variance(double[][] logReturns, int stock, double mean, int from, int to)
+	{
+		double sum = 0.0;
+		for (int day = from; day < to; day++)
+		{
+			sum += (logReturns[day][stock] - mean) * (logReturns[day][stock] - mean);
+		}
+		return sum / (to - from);
+	}
+
+	/**
+	 * Correlated log returns [day][stock] around a common offset
+	 */
+	static double[][] logReturnsOf(int numberOfStocks, int numberOfDays, double offset, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+
+		double[][] logReturns = new double[numberOfDays][numberOfStocks];
+		for (double[] logReturnsOnDay : logReturns)
+		{
+			double market = random.nextGaussian();
+			for (int i = 0; i < numberOfStocks; i++)
+			{
+				logReturnsOnDay[i] = offset + 0.0005 * i + 0.01 * (0.6 * market + 0.8 * random.nextGaussian());
+			}
+		}
+
+		return logReturns;
+	}
+}
@@ -0,0 +1,191 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import financeproject2.PathwiseSensitivities.Direction;
+import financeproject2.PathwiseSensitivities.Sensitivities;
+
+/**
+ * Checks the adjoint sensitivities against forward mode on the same paths, and against central finite
+ * differences of the mean payoff with common random numbers (the same seed for the bumped systems).
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class PathwiseSensitivitiesTest
+{
+	static final int NUMBER_OF_STOCKS = 3;
+	static final int UP_SAMPLE_FACTOR = 2;
+	static final int NUMBER_OF_STEPS = 32 * UP_SAMPLE_FACTOR + 1;
+	static final long NUMBER_OF_PATHS = 4000;
+	static final long SEED = 2023;
+
+	static final double[] INITIAL_PRICES = { 100.0, 50.0, 75.0 };
+	static final double[] HOLDINGS = { 1.0, 2.0, 0.5 };
+
+	@Test
+	void adjointMatchesForwardMode()
+	{
+		for (DifferentiablePayoff payoff : payoffs())
+		{
+			SDESystem system = EulerKernelTest.systemOf(NUMBER_OF_STOCKS, 3);
+			PathwiseSensitivities sensitivities = new PathwiseSensitivities(system, INITIAL_PRICES, NUMBER_OF_STEPS,
+					UP_SAMPLE_FACTOR, SEED);
+
+			Sensitivities adjoint = sensitivities.adjoint(payoff, NUMBER_OF_PATHS);
+
+			List<Direction> directions = new ArrayList<Direction>();
+			List<Double> expected = new ArrayList<Double>();
+			for (int i = 0; i < NUMBER_OF_STOCKS; i++)
+			{
+				directions.add(Direction.initialPrice(NUMBER_OF_STOCKS, i));
+				expected.add(adjoint.getInitialPriceSensitivities()[i]);
+				directions.add(Direction.drift(NUMBER_OF_STOCKS, i));
+				expected.add(adjoint.getDriftSensitivities()[i]);
+				directions.add(Direction.volatility(NUMBER_OF_STOCKS, i));
+				expected.add(adjoint.getVolatilitySensitivities()[i]);
+				for (int j = 0; j <= i; j++)
+				{
+					directions.add(Direction.covolatility(NUMBER_OF_STOCKS, i, j));
+					expected.add(adjoint.getCovolatilitySensitivities()[i][j]);
+				}
+			}
+
+			double[] forward = sensitivities.forward(payoff, directions, NUMBER_OF_PATHS);
+
+			for (int d = 0; d < forward.length; d++)
+			{
+				assertEquals(expected.get(d), forward[d], 1e-9 * (1 + Math.abs(forward[d])),
+						directions.get(d).toString());
+			}
+		}
+	}
+
+	@Test
+	void adjointMatchesFiniteDifferences()
+	{
+		for (DifferentiablePayoff payoff : payoffs())
+		{
+			SDESystem system = EulerKernelTest.systemOf(NUMBER_OF_STOCKS, 3);
+			Sensitivities adjoint = new PathwiseSensitivities(system, INITIAL_PRICES, NUMBER_OF_STEPS,
+					UP_SAMPLE_FACTOR, SEED).adjoint(payoff, NUMBER_OF_PATHS);
+
+			ArrayList<ArrayList<Double>> driftsAndVolatilities = driftsAndVolatilitiesOf(system);
+			ArrayList<ArrayList<Double>> covolatilityMatrix = system.getCovolatilityMatrix();
+
+			for (int i = 0; i < NUMBER_OF_STOCKS; i++)
+			{
+				double h = 1e-4 * INITIAL_PRICES[i];
+				double[] up = INITIAL_PRICES.clone();
+				double[] down = INITIAL_PRICES.clone();
+				up[i] += h;
+				down[i] -= h;
+				double difference = (valueOf(payoff, system, up) - valueOf(payoff, system, down)) / (2 * h);
+				assertClose(difference, adjoint.getInitialPriceSensitivities()[i], "initialPrice " + i);
+
+				for (int entry = 0; entry < 2; entry++)
+				{
+					h = 1e-5;
+					double value = driftsAndVolatilities.get(i).get(entry);
+
+					driftsAndVolatilities.get(i).set(entry, value + h);
+					double valueUp = valueOf(payoff, new SDESystem(driftsAndVolatilities, covolatilityMatrix),
+							INITIAL_PRICES);
+					driftsAndVolatilities.get(i).set(entry, value - h);
+					double valueDown = valueOf(payoff, new SDESystem(driftsAndVolatilities, covolatilityMatrix),
+							INITIAL_PRICES);
+					driftsAndVolatilities.get(i).set(entry, value);
+
+					difference = (valueUp - valueDown) / (2 * h);
+					if (entry == 0)
+					{
+						assertClose(difference, adjoint.getDriftSensitivities()[i], "drift " + i);
+					}
+					else
+					{
+						assertClose(difference, adjoint.getVolatilitySensitivities()[i], "volatility " + i);
+					}
+				}
+
+				for (int j = 0; j <= i; j++)
+				{
+					h = 1e-6;
+					double valueUp = valueOf(payoff, new SDESystem(driftsAndVolatilities,
+							bumped(covolatilityMatrix, i, j, h)), INITIAL_PRICES);
+					double valueDown = valueOf(payoff, new SDESystem(driftsAndVolatilities,
+							bumped(covolatilityMatrix, i, j, -h)), INITIAL_PRICES);
+
+					difference = (valueUp - valueDown) / (2 * h);
+					assertClose(difference, adjoint.getCovolatilitySensitivities()[i][j], "covolatility " + i + " " + j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mean payoff of a system on the paths of the shared seed
+	 */
+	static double valueOf(DifferentiablePayoff payoff, SDESystem system, double[] initialPrices)
+	{
+		return new PathwiseSensitivities(system, initialPrices, NUMBER_OF_STEPS, UP_SAMPLE_FACTOR, SEED)
+				.adjoint(payoff, NUMBER_OF_PATHS).getValue();
+	}
+
+	/**
+	 * The covolatility matrix with the covolatility of a pair moved, both of its entries
+	 */
+	static ArrayList<ArrayList<Double>> bumped(ArrayList<ArrayList<Double>> covolatilityMatrix, int first, int second,
+			double h)
+	{
+		ArrayList<ArrayList<Double>> bumped = new ArrayList<ArrayList<Double>>();
+		for (ArrayList<Double> row : covolatilityMatrix)
+		{
+			bumped.add(new ArrayList<Double>(row));
+		}
+
+		bumped.get(first).set(second, bumped.get(first).get(second) + h);
+		if (first != second)
+		{
+			bumped.get(second).set(first, bumped.get(second).get(first) + h);
+		}
+
+		return bumped;
+	}
+
+	static ArrayList<ArrayList<Double>> driftsAndVolatilitiesOf(SDESystem system)
+	{
+		ArrayList<ArrayList<Double>> driftsAndVolatilities = new ArrayList<ArrayList<Double>>();
+		for (int i = 0; i < system.getNumberOfStocks(); i++)
+		{
+			driftsAndVolatilities.add(new ArrayList<Double>(List.of(system.getDriftsOfStocks().get(i),
+					system.getVolatilitiesOfStocks().get(i))));
+		}
+		return driftsAndVolatilities;
+	}
+
+	/**
+	 * The portfolio value is smooth in every input; the basket call only has a kink the bumps are too small to
+	 * move a path across
+	 */
+	static List<DifferentiablePayoff> payoffs()
+	{
+		double basketValue = 0.0;
+		for (int i = 0; i < NUMBER_OF_STOCKS; i++)
+		{
+			basketValue += HOLDINGS[i] * INITIAL_PRICES[i];
+		}
+
+		return List.of(DifferentiablePayoff.portfolioValue(HOLDINGS),
+				DifferentiablePayoff.basketCall(HOLDINGS, basketValue));
+	}
+
+	static void assertClose(double expected, double actual, String message)
+	{
+		assertEquals(expected, actual, 1e-5 * (1 + Math.abs(expected)), message);
+	}
+}
@@ -0,0 +1,236 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the VaR and ES kept from the bounded tail of losses against the same measures read off the whole sorted
+ * array of losses, and the mean and standard deviation of merged engines against a two-pass calculation.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class PortfolioRiskEngineTest
+{
+	//Confidence levels in thousandths, so that the reference tail length is exact
+	static final int[] CONFIDENCE_LEVELS_PER_MILLE = { 900, 950, 975, 990, 999 };
+
+	static final double RELATIVE_TOLERANCE = 1e-10;
+
+	@Test
+	void singleEngineMatchesSortedLosses()
+	{
+		for (int numberOfPaths : new int[] { 1000, 1234, 20000 })
+		{
+			double[] profitsAndLosses = profitsAndLossesOf(numberOfPaths, numberOfPaths);
+
+			PortfolioRiskEngine engine = newRiskEngine(numberOfPaths);
+			for (double profitAndLoss : profitsAndLosses)
+			{
+				engine.addProfitAndLoss(profitAndLoss);
+			}
+
+			assertMatchesSortedLosses(engine, profitsAndLosses);
+		}
+	}
+
+	@Test
+	void mergedEnginesMatchSortedLosses()
+	{
+		double[] profitsAndLosses = profitsAndLossesOf(10007, 3);
+
+		PortfolioRiskEngine merged = newRiskEngine(profitsAndLosses.length);
+		int[] ends = { 0, 13, 5000, 5001, 9000, profitsAndLosses.length };
+		for (int part = 1; part < ends.length; part++)
+		{
+			PortfolioRiskEngine engine = merged.newEmptyCopy();
+			for (int p = ends[part - 1]; p < ends[part]; p++)
+			{
+				engine.addProfitAndLoss(profitsAndLosses[p]);
+			}
+			merged.merge(engine);
+		}
+
+		assertMatchesSortedLosses(merged, profitsAndLosses);
+	}
+
+	@Test
+	void mergedRiskEnginesMatchTwoPass()
+	{
+		SplittableRandom random = new SplittableRandom(17);
+		double[] profitsAndLosses = new double[3001];
+		for (int p = 0; p < profitsAndLosses.length; p++)
+		{
+			profitsAndLosses[p] = 1e5 + 250.0 * random.nextGaussian();
+		}
+
+		//Uneven parts, including an empty one, folded together in a different order than they were filled
+		int[] ends = { 1, 700, 700, 2345, profitsAndLosses.length };
+		PortfolioRiskEngine merged = newRiskEngine(profitsAndLosses.length);
+		int start = 0;
+		for (int end : ends)
+		{
+			PortfolioRiskEngine part = merged.newEmptyCopy();
+			for (int p = start; p < end; p++)
+			{
+				part.addProfitAndLoss(profitsAndLosses[p]);
+			}
+			merged.merge(part);
+			start = end;
+		}
+
+		double mean = 0.0;
+		for (double profitAndLoss : profitsAndLosses)
+		{
+			mean += profitAndLoss;
+		}
+		mean /= profitsAndLosses.length;
+
+		double sumOfSquaredDeviations = 0.0;
+		for (double profitAndLoss : profitsAndLosses)
+		{
+			sumOfSquaredDeviations += (profitAndLoss - mean) * (profitAndLoss - mean);
+		}
+		double standardDeviation = Math.sqrt(sumOfSquaredDeviations / (profitsAndLosses.length - 1));
+
+		assertEquals(profitsAndLosses.length, merged.getNumberOfPaths());
+		assertEquals(mean, merged.getMeanProfitAndLoss(), RELATIVE_TOLERANCE * Math.abs(mean));
+		assertEquals(standardDeviation, merged.getStandardDeviation(), RELATIVE_TOLERANCE * standardDeviation);
+	}
+
+	@Test
+	void tiedLossesMatchSortedLosses()
+	{
+		//Few distinct values, so that the VaR sits inside a run of equal losses
+		SplittableRandom random = new SplittableRandom(5);
+		double[] profitsAndLosses = new double[2000];
+		for (int p = 0; p < profitsAndLosses.length; p++)
+		{
+			profitsAndLosses[p] = 100.0 * (random.nextInt(9) - 4);
+		}
+
+		PortfolioRiskEngine engine = newRiskEngine(profitsAndLosses.length);
+		for (double profitAndLoss : profitsAndLosses)
+		{
+			engine.addProfitAndLoss(profitAndLoss);
+		}
+
+		assertMatchesSortedLosses(engine, profitsAndLosses);
+	}
+
+	@Test
+	void pathsAreMeasuredAtTheHorizon()
+	{
+		double[] holdings = { 2.0, 0.5 };
+		int horizonDays = 3;
+		int stepStride = 4;
+		PortfolioRiskEngine engine = new PortfolioRiskEngine(holdings, horizonDays, stepStride, new double[] { 0.5 },
+				4);
+
+		SplittableRandom random = new SplittableRandom(11);
+		double[] profitsAndLosses = new double[4];
+		for (int path = 0; path < profitsAndLosses.length; path++)
+		{
+			double[][] simulatedPrices = new double[2][horizonDays * stepStride + 5];
+			for (double[] pricesOfStock : simulatedPrices)
+			{
+				Arrays.setAll(pricesOfStock, step -> 100.0 + 10.0 * random.nextGaussian());
+			}
+
+			engine.acceptPath(path, simulatedPrices);
+
+			int horizonStep = horizonDays * stepStride;
+			for (int i = 0; i < holdings.length; i++)
+			{
+				profitsAndLosses[path] += holdings[i] * (simulatedPrices[i][horizonStep] - simulatedPrices[i][0]);
+			}
+		}
+
+		double[] losses = lossesOf(profitsAndLosses);
+		assertEquals(losses[2], engine.getValueAtRisk(0.5), 1e-12);
+		assertEquals((losses[2] + losses[3]) / 2, engine.getExpectedShortfall(0.5), 1e-12);
+	}
+
+	@Test
+	void tooShortATailIsRejected()
+	{
+		PortfolioRiskEngine engine = new PortfolioRiskEngine(new double[] { 1.0 }, 1, 1, new double[] { 0.99 }, 100);
+		for (double profitAndLoss : profitsAndLossesOf(1000, 7))
+		{
+			engine.addProfitAndLoss(profitAndLoss);
+		}
+
+		assertThrows(IllegalStateException.class, () -> engine.getValueAtRisk(0.99));
+		assertThrows(IllegalStateException.class, () -> newRiskEngine(10).getValueAtRisk(0.99));
+	}
+
+	/**
+	 * VaR is the k-th largest loss and ES the mean of the k largest, k = ceil((1 - confidenceLevel) n)
+	 */
+	static void assertMatchesSortedLosses(PortfolioRiskEngine engine, double[] profitsAndLosses)
+	{
+		double[] losses = lossesOf(profitsAndLosses);
+		int n = losses.length;
+
+		for (int perMille : CONFIDENCE_LEVELS_PER_MILLE)
+		{
+			double confidenceLevel = perMille / 1000.0;
+			int k = (int) Math.max(1, ((long) (1000 - perMille) * n + 999) / 1000);
+
+			double valueAtRisk = losses[n - k];
+			double sum = 0.0;
+			for (int j = n - k; j < n; j++)
+			{
+				sum += losses[j];
+			}
+			double expectedShortfall = sum / k;
+
+			assertEquals(valueAtRisk, engine.getValueAtRisk(confidenceLevel), 0.0, "VaR " + confidenceLevel);
+			assertEquals(expectedShortfall, engine.getExpectedShortfall(confidenceLevel),
+					1e-12 * Math.abs(expectedShortfall), "ES " + confidenceLevel);
+		}
+	}
+
+	static double[] lossesOf(double[] profitsAndLosses)
+	{
+		double[] losses = new double[profitsAndLosses.length];
+		for (int p = 0; p < losses.length; p++)
+		{
+			losses[p] = -profitsAndLosses[p];
+		}
+		Arrays.sort(losses);
+		return losses;
+	}
+
+	/**
+	 * Heavy tailed P&L, a Gaussian scaled by a random volatility
+	 */
+	static double[] profitsAndLossesOf(int numberOfPaths, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+
+		double[] profitsAndLosses = new double[numberOfPaths];
+		for (int p = 0; p < numberOfPaths; p++)
+		{
+			profitsAndLosses[p] = 1000.0 * random.nextGaussian() * Math.exp(0.5 * random.nextGaussian());
+		}
+
+		return profitsAndLosses;
+	}
+
+	static PortfolioRiskEngine newRiskEngine(long expectedPaths)
+	{
+		double[] confidenceLevels = new double[CONFIDENCE_LEVELS_PER_MILLE.length];
+		for (int c = 0; c < confidenceLevels.length; c++)
+		{
+			confidenceLevels[c] = CONFIDENCE_LEVELS_PER_MILLE[c] / 1000.0;
+		}
+
+		return new PortfolioRiskEngine(new double[] { 1.0 }, 1, 1, confidenceLevels, expectedPaths);
+	}
+}
@@ -0,0 +1,111 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the statistics of a sliding window, kept by adding and removing days, against a two-pass calculation
+ * over the days in the window.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class RollingCalibrationTest
+{
+	@Test
+	void removingDaysMatchesTwoPassOverTheWindow()
+	{
+		double[][] logReturns = OnlineStockStatisticsTest.logReturnsOf(4, 400, 0.5, 9);
+		int window = 60;
+
+		OnlineStockStatistics statistics = new OnlineStockStatistics(4);
+		for (int day = 0; day < logReturns.length; day++)
+		{
+			statistics.addLogReturns(logReturns[day]);
+			if (day >= window)
+			{
+				statistics.removeLogReturns(logReturns[day - window]);
+			}
+		}
+
+		OnlineStockStatisticsTest.assertMatchesTwoPass(statistics, logReturns, logReturns.length - window,
+				logReturns.length);
+	}
+
+	@Test
+	void longRunsMatchTwoPassOverTheWindow()
+	{
+		double[][] logReturns = OnlineStockStatisticsTest.logReturnsOf(3, 20000, 0.01, 21);
+		int window = 250;
+
+		RollingCalibration calibration = new RollingCalibration(3, window, 0.05);
+		double[] pricesOnDay = { 10.0, 20.0, 30.0 };
+		calibration.addPrices(pricesOnDay);
+		for (int day = 0; day < logReturns.length; day++)
+		{
+			//Days that do not end a block of the window length, so the last recompute is some days back
+			if (day == logReturns.length - 17)
+			{
+				OnlineStockStatisticsTest.assertMatchesTwoPass(calibration.getStatistics(), logReturns,
+						day - window, day);
+			}
+
+			for (int i = 0; i < 3; i++)
+			{
+				pricesOnDay[i] *= Math.exp(logReturns[day][i]);
+			}
+			calibration.addPrices(pricesOnDay);
+		}
+
+		OnlineStockStatisticsTest.assertMatchesTwoPass(calibration.getStatistics(), logReturns,
+				logReturns.length - window, logReturns.length);
+	}
+
+	@Test
+	void statisticsAreRecomputedEveryWindowLength()
+	{
+		double[][] logReturns = OnlineStockStatisticsTest.logReturnsOf(3, 1000, 0.0, 33);
+		int window = 100;
+
+		RollingCalibration calibration = new RollingCalibration(3, window, 0.05);
+		double[] pricesOnDay = { 10.0, 20.0, 30.0 };
+		calibration.addPrices(pricesOnDay);
+		for (double[] logReturnsOnDay : logReturns)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				pricesOnDay[i] *= Math.exp(logReturnsOnDay[i]);
+			}
+			calibration.addPrices(pricesOnDay);
+		}
+
+		//Right after a recompute the statistics are those of adding the window afresh
+		OnlineStockStatistics afresh = new OnlineStockStatistics(3);
+		double[] previousPrices = new double[3];
+		pricesOnDay = new double[] { 10.0, 20.0, 30.0 };
+		for (int day = 0; day < logReturns.length; day++)
+		{
+			System.arraycopy(pricesOnDay, 0, previousPrices, 0, 3);
+			double[] logReturnsOnDay = new double[3];
+			for (int i = 0; i < 3; i++)
+			{
+				pricesOnDay[i] *= Math.exp(logReturns[day][i]);
+				logReturnsOnDay[i] = Math.log(pricesOnDay[i] / previousPrices[i]);
+			}
+			if (day >= logReturns.length - window)
+			{
+				afresh.addLogReturns(logReturnsOnDay);
+			}
+		}
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(afresh.getDriftOfStock(i), calibration.getStatistics().getDriftOfStock(i), 0.0);
+			for (int j = 0; j < 3; j++)
+			{
+				assertEquals(afresh.getCovolatility(i, j), calibration.getStatistics().getCovolatility(i, j), 0.0);
+			}
+		}
+	}
+}
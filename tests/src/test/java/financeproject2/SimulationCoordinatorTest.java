@@ -0,0 +1,194 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the same distributed job with different numbers of worker threads in this JVM, which speak the same
+ * protocol over the loopback address as worker processes.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class SimulationCoordinatorTest
+{
+	static final long NUMBER_OF_PATHS = 1000;
+
+	static final long PATHS_PER_CHUNK = 64;
+
+	@Test
+	void summaryIsTheSameWithOneOrThreeWorkers() throws Exception
+	{
+		SimulationJob job = jobOf(4);
+
+		byte[] withOneWorker = toBytes(runOn(job, 1));
+		byte[] withThreeWorkers = toBytes(runOn(job, 3));
+
+		assertArrayEquals(withOneWorker, withThreeWorkers);
+	}
+
+	@Test
+	void summariesFromAFailedRunAreDropped() throws Exception
+	{
+		SimulationJob job = jobOf(3);
+		PathSummaryAggregator expected = runOn(job, 1);
+
+		try (SimulationCoordinator coordinator = new SimulationCoordinator(job, 0, PATHS_PER_CHUNK))
+		{
+			//No worker has connected, so the first run fails
+			coordinator.setProgressTimeout(100);
+			assertThrows(IOException.class, () -> coordinator.run(NUMBER_OF_PATHS));
+			int failedGeneration;
+			synchronized (coordinator)
+			{
+				failedGeneration = coordinator.generation;
+			}
+
+			coordinator.setProgressTimeout(60000);
+			PathSummaryAggregator[] summary = new PathSummaryAggregator[1];
+			Thread run = new Thread(() ->
+			{
+				try
+				{
+					summary[0] = coordinator.run(NUMBER_OF_PATHS);
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			});
+			run.start();
+
+			//A worker of the failed run answers once the next run has started
+			while (true)
+			{
+				synchronized (coordinator)
+				{
+					if (coordinator.generation != failedGeneration)
+					{
+						break;
+					}
+				}
+				Thread.sleep(1);
+			}
+			coordinator.receiveSummary(failedGeneration, 0, expected);
+
+			List<Thread> workers = startWorkers(coordinator, 2);
+			run.join();
+			coordinator.close();
+			for (Thread worker : workers)
+			{
+				worker.join();
+			}
+
+			assertEquals(NUMBER_OF_PATHS, summary[0].getNumberOfPaths());
+			assertArrayEquals(toBytes(expected), toBytes(summary[0]));
+		}
+	}
+
+	/**
+	 * Runs a job on worker threads and waits for them to be told they are done
+	 *
+	 * @param job
+	 * @param numberOfWorkers
+	 * @return-Summary of the paths
+	 * @throws Exception
+	 */
+	static PathSummaryAggregator runOn(SimulationJob job, int numberOfWorkers) throws Exception
+	{
+		PathSummaryAggregator summary;
+		List<Thread> workers;
+
+		try (SimulationCoordinator coordinator = new SimulationCoordinator(job, 0, PATHS_PER_CHUNK))
+		{
+			workers = startWorkers(coordinator, numberOfWorkers);
+			summary = coordinator.run(NUMBER_OF_PATHS);
+		}
+
+		for (Thread worker : workers)
+		{
+			worker.join();
+		}
+
+		return summary;
+	}
+
+	/**
+	 * Starts worker threads connected to a coordinator
+	 *
+	 * @param coordinator
+	 * @param numberOfWorkers
+	 * @return-The worker threads
+	 */
+	static List<Thread> startWorkers(SimulationCoordinator coordinator, int numberOfWorkers)
+	{
+		String host = coordinator.getAddress().getHostAddress();
+		int port = coordinator.getPort();
+
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < numberOfWorkers; i++)
+		{
+			Thread worker = new Thread(() ->
+			{
+				try
+				{
+					SimulationWorker.serve(host, port);
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			});
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		return workers;
+	}
+
+	/**
+	 * Builds a small job on a random system
+	 *
+	 * @param numberOfStocks
+	 * @return
+	 */
+	static SimulationJob jobOf(int numberOfStocks)
+	{
+		double[] initialPrices = new double[numberOfStocks];
+		for (int i = 0; i < numberOfStocks; i++)
+		{
+			initialPrices[i] = 50 + 10 * i;
+		}
+
+		return new SimulationJob(EulerKernelTest.systemOf(numberOfStocks, 13), initialPrices, 20, 2, 5760,
+				VarianceReduction.NONE);
+	}
+
+	/**
+	 * Serializes a summary, so two summaries can be compared whole
+	 *
+	 * @param summary
+	 * @return
+	 * @throws IOException
+	 */
+	static byte[] toBytes(PathSummaryAggregator summary) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			summary.writeTo(out);
+		}
+
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,73 @@
+package financeproject2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the allocation free number parser against Double.parseDouble, bit for bit, around the limits of its fast
+ * path: 15 significant digits and powers of ten up to 10^22.
+ *
+ * @author Zach Archibald and Evan Turner
+ * @version 2023-12-12
+ */
+class StockDataLoaderTest
+{
+	@Test
+	void edgesOfTheFastPathMatchDoubleParseDouble()
+	{
+		String[] numbers = {
+				"0", "-0", "0.0", "-0.0", "1", "-1", "0.1", "4.35", "123.456", ".5", "5.",
+				//15 significant digits, the most the fast path takes, and 16, which it hands on
+				"123456789012345", "999999999999999", "1234567890123456", "9999999999999999",
+				"0.123456789012345", "0.1234567890123456", "12345678.9012345", "12345678.90123456",
+				"0.000000000000001", "0.00000000000000123456789012345", "000000000000000000123.45",
+				//The largest exact power of ten, 10^22, and the first one that is not
+				"1e22", "1E22", "1e+22", "1e23", "1e-22", "1e-23", "9.99999999999999e22", "999999999999999e22",
+				"123456789012345e7", "123456789012345e8", "1.23456789012345e-7", "123456789012345e-22",
+				"123456789012345e-23", "4.9e-324", "1.7976931348623157e308", "2.2250738585072014E-308",
+				//Digits the fast path cannot convert, handed to Double.parseDouble
+				"NaN", "Infinity", "-Infinity" };
+
+		for (String number : numbers)
+		{
+			assertEquals(Double.parseDouble(number), parse(number), number);
+		}
+	}
+
+	@Test
+	void randomFifteenDigitNumbersMatchDoubleParseDouble()
+	{
+		SplittableRandom random = new SplittableRandom(6);
+
+		for (int k = 0; k < 200000; k++)
+		{
+			long mantissa = random.nextLong(1000000000000000L);
+			int exponent = random.nextInt(-22, 23);
+			String number = (random.nextBoolean() ? "-" : "") + mantissa + "e" + exponent;
+
+			assertEquals(Double.parseDouble(number), parse(number), number);
+
+			//The same digits written with a decimal point
+			String digits = Long.toString(mantissa);
+			int point = random.nextInt(digits.length() + 1);
+			number = digits.substring(0, point) + "." + digits.substring(point);
+
+			assertEquals(Double.parseDouble(number), parse(number), number);
+		}
+	}
+
+	/**
+	 * Parses a number in the middle of a buffer, as the loader sees it
+	 */
+	static double parse(String number)
+	{
+		byte[] bytes = (" ,\t" + number + "\t, ").getBytes(StandardCharsets.US_ASCII);
+
+		return StockDataLoader.parseDouble(ByteBuffer.wrap(bytes), 3, 3 + number.length());
+	}
+}